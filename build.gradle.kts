@@ -14,6 +14,7 @@ plugins {
     id("net.researchgate.release") version "3.1.0"
     id("com.github.jk1.dependency-license-report") version "2.9"
     id("org.cyclonedx.bom") version "1.10.0"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 tasks.withType<JavaCompile> {
@@ -72,6 +73,7 @@ dependencies {
     implementation("org.json:json:20250517")
     implementation("org.apache.maven:maven-artifact:3.9.11")
     implementation("org.apache.httpcomponents.client5:httpclient5:5.5.1")
+    implementation("org.apache.commons:commons-compress:1.27.1")
     implementation("com.espirit.moddev.components:annotations:${fsmAnnotationsVersion}")
     implementation("de.espirit.firstspirit:fs-isolated-runtime:${fsRuntimeVersion}")
 
@@ -84,6 +86,8 @@ dependencies {
     testImplementation("org.mockito:mockito-junit-jupiter:5.21.0")
     testImplementation("org.ow2.asm:asm:9.9")
     testImplementation(gradleTestKit())
+
+    jmhImplementation("org.ow2.asm:asm:9.9")
 }
 
 licenseReport {
@@ -186,6 +190,21 @@ tasks.test {
     useJUnitPlatform()
 }
 
+/**
+ * Benchmarks for the module descriptor generation and the FSM archive writer. Run selected benchmarks with e.g.
+ * `-PjmhIncludes=componentScan`
+ */
+jmh {
+    (findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
+    resultFormat.set("JSON")
+}
+
+tasks.jmhJar {
+    dependsOn(writePropertiesToResourceFile)
+}
+
+apply(from = "test-projects/performance/performance.gradle.kts")
+
 val integrationTest by tasks.registering(Test::class) {
     filter {
         includeTestsMatching("*IT")
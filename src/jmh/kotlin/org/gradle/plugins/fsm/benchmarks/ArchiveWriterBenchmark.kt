@@ -0,0 +1,119 @@
+package org.gradle.plugins.fsm.benchmarks
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream
+import org.gradle.plugins.fsm.FSMPluginExtension
+import org.gradle.plugins.fsm.tasks.bundling.EntryCompression
+import org.gradle.plugins.fsm.tasks.bundling.FsmArchiveWriter
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import java.io.File
+import java.nio.file.Files
+import java.util.*
+import java.util.concurrent.TimeUnit
+import java.util.zip.ZipEntry
+
+/**
+ * Benchmarks for writing the final FSM archive with [FsmArchiveWriter], run with `gradle jmh -PjmhIncludes=ArchiveWriter`.
+ *
+ * The archive assembled by Gradle is generated with [libraries] jars of random, i.e. incompressible, content and
+ * [textFiles] text files. [compression] selects the entry compression: `nestedArchivesStored` is the default of the
+ * plugin, `deflateAll` deflates every entry like the FSM task did before nested archives were stored.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+open class ArchiveWriterBenchmark {
+
+    @Param("nestedArchivesStored", "deflateAll")
+    var compression = ""
+
+    @Param("120")
+    var libraries = 0
+
+    @Param("80")
+    var textFiles = 0
+
+    private lateinit var directory: File
+    private lateinit var assembledArchive: File
+    private lateinit var previousArchive: File
+    private lateinit var target: File
+    private lateinit var writer: FsmArchiveWriter
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        directory = Files.createTempDirectory("fsm-archive-benchmark").toFile()
+        assembledArchive = directory.resolve("assembled.fsm")
+        previousArchive = directory.resolve("previous.fsm")
+        target = directory.resolve("module.fsm")
+        writeAssembledArchive()
+
+        val patterns = when (compression) {
+            "nestedArchivesStored" -> FSMPluginExtension.NESTED_ARCHIVES_STORED
+            else -> emptyMap()
+        }
+        writer = FsmArchiveWriter(EntryCompression(patterns))
+        writer.write(assembledArchive, previousArchive, mapOf(DESCRIPTOR))
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Benchmark
+    fun fullWrite(): FsmArchiveWriter.Result {
+        return writer.write(assembledArchive, target, mapOf(DESCRIPTOR))
+    }
+
+    @Benchmark
+    fun incrementalWrite(): FsmArchiveWriter.Result {
+        return writer.write(assembledArchive, target, mapOf(DESCRIPTOR), previousArchive)
+    }
+
+    /**
+     * Writes the archive like Gradle assembles it for the FSM task, with all entries stored
+     */
+    private fun writeAssembledArchive() {
+        val random = Random(0)
+        ZipArchiveOutputStream(assembledArchive).use { zip ->
+            for (i in 0 until libraries) {
+                val content = ByteArray(LIBRARY_SIZE).also { random.nextBytes(it) }
+                zip.writeStored("lib/library-$i.jar", content)
+            }
+            for (i in 0 until textFiles) {
+                val content = (0 until TEXT_LINES).joinToString("\n") { "Line $it of resource $i" }
+                zip.writeStored("files/resource-$i.txt", content.toByteArray())
+            }
+        }
+    }
+
+    private fun ZipArchiveOutputStream.writeStored(name: String, content: ByteArray) {
+        val entry = ZipArchiveEntry(name)
+        entry.method = ZipEntry.STORED
+        putArchiveEntry(entry)
+        write(content)
+        closeArchiveEntry()
+    }
+
+    companion object {
+        private const val LIBRARY_SIZE = 256 * 1024
+        private const val TEXT_LINES = 2000
+        private val DESCRIPTOR = "META-INF/module-isolated.xml" to "<module/>".toByteArray()
+    }
+
+}
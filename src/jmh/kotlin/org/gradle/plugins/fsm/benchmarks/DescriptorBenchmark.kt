@@ -0,0 +1,106 @@
+package org.gradle.plugins.fsm.benchmarks
+
+import org.gradle.plugins.fsm.descriptor.ComponentScan
+import org.gradle.plugins.fsm.descriptor.Components
+import org.gradle.plugins.fsm.descriptor.FsmResources
+import org.gradle.plugins.fsm.descriptor.ModuleDescriptor
+import org.gradle.plugins.fsm.descriptor.Resources
+import org.gradle.plugins.fsm.descriptor.ScannedComponent
+import org.gradle.plugins.fsm.descriptor.ScannedComponents
+import org.gradle.plugins.fsm.descriptor.WebAppComponents
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.redundent.kotlin.xml.Node
+import java.util.concurrent.TimeUnit
+
+/**
+ * Benchmarks for the steps of the module descriptor generation, run with `gradle jmh`.
+ * Each step is measured separately on a [SyntheticModule].
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = ["--add-opens=java.base/java.lang=ALL-UNNAMED"])
+open class DescriptorBenchmark {
+
+    @Param("100", "1000")
+    var components = 0
+
+    @Param("10")
+    var webApps = 0
+
+    @Param("10")
+    var libraries = 0
+
+    @Param("1000")
+    var artifacts = 0
+
+    private lateinit var module: SyntheticModule
+    private lateinit var scannedComponents: List<ScannedComponent>
+    private lateinit var webXmlPaths: List<String>
+    private lateinit var moduleDescriptor: ModuleDescriptor
+    private lateinit var moduleDescriptorXml: String
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        module = SyntheticModule(components, webApps, libraries, artifacts)
+        scannedComponents = ComponentScan(module.project).use { ScannedComponents.of(it) }
+        webXmlPaths = Components(module.project, scannedComponents).webXmlPaths
+        moduleDescriptor = ModuleDescriptor(module.project)
+        moduleDescriptorXml = moduleDescriptor.toString()
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        module.close()
+    }
+
+    @Benchmark
+    fun componentScan(): Int {
+        return ComponentScan(module.project).use { ScannedComponents.of(it).size }
+    }
+
+    @Benchmark
+    fun components(): Node {
+        return Components(module.project, scannedComponents).node
+    }
+
+    @Benchmark
+    fun webAppComponents(): List<Node> {
+        return WebAppComponents(module.project, scannedComponents).nodes
+    }
+
+    @Benchmark
+    fun resources(): Node {
+        return Resources(module.project, webXmlPaths).node
+    }
+
+    @Benchmark
+    fun fsmResources(): List<Node> {
+        return FsmResources(module.project, webXmlPaths).fsmResources()
+    }
+
+    @Benchmark
+    fun moduleDescriptorToString(): String {
+        return moduleDescriptor.toString()
+    }
+
+    @Benchmark
+    fun moduleDescriptorReformat(): String {
+        return moduleDescriptor.reformat(moduleDescriptorXml)
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.gradle.plugins.fsm.benchmarks
+
+import com.espirit.moddev.components.annotations.PublicComponent
+import com.espirit.moddev.components.annotations.WebAppComponent
+import org.gradle.api.Project
+import org.gradle.api.plugins.JavaPlugin
+import org.gradle.plugins.fsm.FSMPlugin
+import org.gradle.plugins.fsm.FSMPluginExtension
+import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.FSM_RESOURCES_PATH
+import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.FS_MODULE_COMPILE_CONFIGURATION_NAME
+import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.FS_SERVER_COMPILE_CONFIGURATION_NAME
+import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.FS_WEB_COMPILE_CONFIGURATION_NAME
+import org.gradle.plugins.fsm.descriptor.buildJar
+import org.gradle.testfixtures.ProjectBuilder
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.Type
+import java.io.Closeable
+import java.io.File
+import java.nio.file.Files
+import java.util.*
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+/**
+ * A generated FSM project for benchmarks. All inputs are created in a temporary directory, so no repository access
+ * is required:
+ *
+ * - A project jar with [components] classes annotated with `@PublicComponent` and one `@WebAppComponent` class
+ *   for each web-app
+ * - [webApps] web-app subprojects, each with a jar and a file in its fsm-resources directory
+ * - [libraries] library components, each with its own configuration of [ARTIFACTS_PER_LIBRARY] artifacts
+ * - [artifacts] artifacts, distributed over `fsModuleCompile`, `fsServerCompile` and `fsWebCompile` and resolved from
+ *   a flat directory repository
+ */
+class SyntheticModule(
+    val components: Int,
+    val webApps: Int,
+    val libraries: Int,
+    val artifacts: Int
+): Closeable {
+
+    private val directory: File = Files.createTempDirectory("fsm-benchmark").toFile()
+    private val repository = directory.resolve("repository")
+
+    val project: Project = ProjectBuilder.builder()
+        .withProjectDir(directory.resolve("module"))
+        .withName("module")
+        .build()
+
+    init {
+        repository.mkdirs()
+        project.group = GROUP
+        project.version = "1.0.0"
+        project.repositories.flatDir { dirs(repository) }
+        project.plugins.apply(FSMPlugin::class.java)
+        copyAnnotationsJar()
+
+        val extension = project.extensions.getByType(FSMPluginExtension::class.java)
+        val configurations = listOf(FS_MODULE_COMPILE_CONFIGURATION_NAME, FS_SERVER_COMPILE_CONFIGURATION_NAME,
+            FS_WEB_COMPILE_CONFIGURATION_NAME)
+        for (i in 0 until artifacts) {
+            project.dependencies.add(configurations[i % configurations.size], artifact("artifact$i"))
+        }
+
+        for (i in 0 until libraries) {
+            val configuration = project.configurations.create("library$i")
+            for (j in 0 until ARTIFACTS_PER_LIBRARY) {
+                project.dependencies.add(configuration.name, artifact("library$i-artifact$j"))
+            }
+            extension.libraries.create("library$i") {
+                this.configuration = configuration
+            }
+        }
+
+        for (i in 0 until webApps) {
+            val webApp = ProjectBuilder.builder()
+                .withParent(project)
+                .withProjectDir(directory.resolve("web$i"))
+                .withName("web$i")
+                .build()
+            webApp.plugins.apply(JavaPlugin::class.java)
+            webApp.group = GROUP
+            webApp.version = "1.0.0"
+            writeJar(webApp.buildJar(), mapOf("$GROUP/web$i/Resource.class" to emptyClass("$GROUP/web$i/Resource")))
+            writeFile(webApp.projectDir.resolve(FSM_RESOURCES_PATH).resolve("web$i.txt"))
+            extension.webAppComponent("WebApp$i", webApp)
+        }
+
+        for (i in 0 until FSM_RESOURCES) {
+            writeFile(project.projectDir.resolve(FSM_RESOURCES_PATH).resolve("resources/resource$i.txt"))
+        }
+
+        val classes = mutableMapOf<String, ByteArray>()
+        for (i in 0 until components) {
+            val name = "$GROUP/components/PublicComponent$i"
+            classes["$name.class"] = componentClass(name, PublicComponent::class.java,
+                mapOf("name" to "PublicComponent$i", "displayName" to "Public component $i"))
+        }
+        for (i in 0 until webApps) {
+            val name = "$GROUP/webapps/WebApp$i"
+            classes["$name.class"] = componentClass(name, WebAppComponent::class.java,
+                mapOf("name" to "WebApp$i", "webXml" to "web$i/web.xml"))
+        }
+        writeJar(project.buildJar(), classes)
+    }
+
+    override fun close() {
+        directory.deleteRecursively()
+    }
+
+    /**
+     * The annotations dependency is resolved for the component scan, provide the jar on the classpath
+     */
+    private fun copyAnnotationsJar() {
+        val properties = Properties()
+        FSMPlugin::class.java.getResourceAsStream(FSMPlugin.VERSIONS_PROPERTIES_FILE).use { properties.load(it) }
+        val annotationsJar = File(PublicComponent::class.java.protectionDomain.codeSource.location.toURI())
+        annotationsJar.copyTo(repository.resolve("annotations-${properties.getProperty("fsm-annotations-version")}.jar"))
+    }
+
+    private fun artifact(name: String): String {
+        writeJar(repository.resolve("$name-1.0.jar"), mapOf("$GROUP/$name/Api.class" to emptyClass("$GROUP/$name/Api")))
+        return "$GROUP:$name:1.0"
+    }
+
+    private fun writeFile(file: File) {
+        file.parentFile.mkdirs()
+        file.writeText(file.name)
+    }
+
+    private fun writeJar(file: File, entries: Map<String, ByteArray>) {
+        file.parentFile.mkdirs()
+        JarOutputStream(file.outputStream()).use { jar ->
+            jar.putNextEntry(JarEntry("META-INF/MANIFEST.MF"))
+            jar.write("Manifest-Version: 1.0\n".toByteArray())
+            for ((name, content) in entries) {
+                jar.putNextEntry(JarEntry(name))
+                jar.write(content)
+            }
+        }
+    }
+
+    private fun emptyClass(name: String): ByteArray {
+        return componentClass(name, null, emptyMap())
+    }
+
+    private fun componentClass(name: String, annotation: Class<out Annotation>?, values: Map<String, Any>): ByteArray {
+        val writer = ClassWriter(0)
+        writer.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null)
+        if (annotation != null) {
+            val annotationVisitor = writer.visitAnnotation(Type.getDescriptor(annotation), true)
+            values.forEach(annotationVisitor::visit)
+            annotationVisitor.visitEnd()
+        }
+        writer.visitEnd()
+        return writer.toByteArray()
+    }
+
+    companion object {
+        const val GROUP = "bench"
+        const val ARTIFACTS_PER_LIBRARY = 10
+        const val FSM_RESOURCES = 100
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.gradle.plugins.fsm
+
+/**
+ * Converts the Ant-style patterns of the [FSMPluginExtension] options, e.g. of
+ * [FSMPluginExtension.entryCompression] or [FSMPluginExtension.componentScanAcceptJars], to regular expressions:
+ *
+ * - `*` matches any number of characters within a directory
+ * - `?` matches a single character within a directory
+ * - `**` matches any number of directories
+ */
+object AntPattern {
+
+    fun toRegex(antPattern: String): Regex {
+        val pattern = antPattern.removePrefix("/")
+        val regex = StringBuilder()
+        var i = 0
+        while (i < pattern.length) {
+            val c = pattern[i]
+            when {
+                pattern.startsWith("**/", i) -> {
+                    regex.append("(?:.*/)?")
+                    i += 2
+                }
+                pattern.startsWith("**", i) -> {
+                    regex.append(".*")
+                    i++
+                }
+                c == '*' -> regex.append("[^/]*")
+                c == '?' -> regex.append("[^/]")
+                else -> regex.append(Regex.escape(c.toString()))
+            }
+            i++
+        }
+        return Regex(regex.toString())
+    }
+
+}
@@ -1,9 +1,9 @@
 package org.gradle.plugins.fsm
 
 import com.espirit.moddev.components.annotations.WebAppComponent
-import io.github.classgraph.AnnotationInfo
-import io.github.classgraph.ClassInfo
 import org.gradle.api.Project
+import org.gradle.plugins.fsm.descriptor.ScannedAnnotation
+import org.gradle.plugins.fsm.descriptor.ScannedComponent
 import org.gradle.plugins.fsm.descriptor.getString
 import org.gradle.plugins.fsm.descriptor.isClass
 
@@ -12,7 +12,7 @@ import org.gradle.plugins.fsm.descriptor.isClass
  * declared in [FSMPluginExtension.getWebApps]. Reports web app annotations that do not have a corresponding
  * declaration or vice-versa.
  */
-class DeclaredWebAppChecker(val project: Project, webAppClasses: Collection<ClassInfo>) {
+class DeclaredWebAppChecker(val project: Project, webAppClasses: Collection<ScannedComponent>) {
 
     private val classes = webAppClasses.toMutableList()
 
@@ -24,7 +24,7 @@ class DeclaredWebAppChecker(val project: Project, webAppClasses: Collection<Clas
         return field
     }
 
-    var webAppAnnotationsWithoutDeclaration: Set<AnnotationInfo>? = null
+    var webAppAnnotationsWithoutDeclaration: Set<ScannedAnnotation>? = null
         get() {
             if (field == null) {
                 scanWebApps()
@@ -36,10 +36,10 @@ class DeclaredWebAppChecker(val project: Project, webAppClasses: Collection<Clas
         val declaredWebapps = project.extensions.getByType(FSMPluginExtension::class.java).getWebApps()
 
         val projects = declaredWebapps.keys.toMutableSet()
-        val annotations = mutableSetOf<AnnotationInfo>()
+        val annotations = mutableSetOf<ScannedAnnotation>()
 
         classes.forEach { webAppClass ->
-            val annotation = webAppClass.annotationInfo
+            val annotation = webAppClass.annotations
                     .filter { it.isClass(WebAppComponent::class) }
                     .firstOrNull()
             if (annotation != null) {
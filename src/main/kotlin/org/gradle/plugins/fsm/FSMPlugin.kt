@@ -8,10 +8,13 @@ import org.gradle.api.Plugin
 import org.gradle.api.Project
 import org.gradle.api.Task
 import org.gradle.api.artifacts.Dependency
+import org.gradle.api.execution.TaskExecutionGraph
 import org.gradle.api.plugins.BasePlugin
 import org.gradle.api.plugins.JavaBasePlugin
 import org.gradle.api.plugins.JavaBasePlugin.VERIFICATION_GROUP
 import org.gradle.api.plugins.JavaPlugin
+import org.gradle.api.provider.Provider
+import org.gradle.api.tasks.SourceSet
 import org.gradle.api.tasks.SourceSetContainer
 import org.gradle.api.tasks.TaskProvider
 import org.gradle.api.tasks.testing.Test
@@ -20,10 +23,24 @@ import org.gradle.language.base.plugins.LifecycleBasePlugin
 import org.gradle.plugins.fsm.annotations.FSMAnnotationsPlugin
 import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin
 import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.FS_CONFIGURATIONS
+import org.gradle.plugins.fsm.descriptor.ScannedComponents
+import org.gradle.plugins.fsm.isolationcheck.DetectorClientService
+import org.gradle.plugins.fsm.licenses.CachedLicenseReport
+import org.gradle.plugins.fsm.licenses.LicenseMetadataCache
+import org.gradle.plugins.fsm.metrics.PhaseMetrics
+import org.gradle.plugins.fsm.tasks.bundling.ApplyFSMDelta
 import org.gradle.plugins.fsm.tasks.bundling.FSM
+import org.gradle.plugins.fsm.tasks.bundling.FSMDelta
+import org.gradle.plugins.fsm.tasks.bundling.ScanComponents
+import org.gradle.plugins.fsm.tasks.verification.AggregateIsolationCheck
+import org.gradle.plugins.fsm.tasks.verification.CheckClassConflicts
+import org.gradle.plugins.fsm.tasks.verification.CheckLibraries
 import org.gradle.plugins.fsm.tasks.verification.IsolationCheck
+import org.gradle.plugins.fsm.tasks.verification.LicenseFileValidator
+import org.gradle.plugins.fsm.tasks.verification.SubmitIsolationCheck
 import org.gradle.plugins.fsm.tasks.verification.ValidateDescriptor
 import java.util.*
+import java.util.concurrent.Callable
 
 class FSMPlugin : Plugin<Project> {
 
@@ -38,16 +55,33 @@ class FSMPlugin : Plugin<Project> {
         project.plugins.apply(LicenseReportPlugin::class.java)
 
         val validateTask = project.tasks.register(VALIDATE_DESCRIPTOR_TASK_NAME, ValidateDescriptor::class.java)
-        val fsmTask = configureFsmTask(project, validateTask)
-
-        configureValidateTask(validateTask, fsmTask)
-        val isolationCheck = configureIsolationCheckTask(project, fsmTask)
+        val workerPool = project.gradle.sharedServices.registerIfAbsent(WorkerPoolService.NAME,
+            WorkerPoolService::class.java) {
+            parameters.maxWorkers.set(project.gradle.startParameter.maxWorkerCount)
+        }
+        val scanComponentsTask = configureScanComponentsTask(project, workerPool)
+        val fsmTask = configureFsmTask(project, validateTask, scanComponentsTask)
+
+        configureValidateTask(validateTask, fsmTask, scanComponentsTask)
+        val checkLibrariesTask = configureCheckLibrariesTask(project, fsmTask, workerPool)
+        val checkClassConflictsTask = configureCheckClassConflictsTask(project, fsmTask, workerPool)
+        val detectorClientService = project.gradle.sharedServices.registerIfAbsent(DetectorClientService.NAME,
+            DetectorClientService::class.java) {
+            val extension = project.extensions.getByType(FSMPluginExtension::class.java)
+            parameters.maxConnections.set(project.gradle.startParameter.maxWorkerCount)
+            parameters.connectTimeout.set(project.provider { extension.isolationDetectorConnectTimeout })
+        }
+        val isolationCheck = configureIsolationCheckTask(project, fsmTask, checkLibrariesTask, detectorClientService)
+        configureSubmitIsolationCheckTask(project, fsmTask, checkLibrariesTask, isolationCheck, detectorClientService)
+        configureAggregateIsolationCheckTask(project, detectorClientService)
+        configureDeltaTasks(project, fsmTask)
         val checkTask = project.tasks.getByName(JavaBasePlugin.CHECK_TASK_NAME)
-        checkTask.dependsOn(validateTask, isolationCheck)
+        checkTask.dependsOn(validateTask, checkClassConflictsTask, isolationCheck)
 
         configureJarTask(project)
         configureLicenseReport(project)
         configureManifest(project)
+        configureReproducibleArchives(project)
         configureComplianceCheckTask(project)
     }
 
@@ -60,7 +94,8 @@ class FSMPlugin : Plugin<Project> {
 
     private fun configureFsmTask(
         project: Project,
-        validateTask: TaskProvider<ValidateDescriptor>
+        validateTask: TaskProvider<ValidateDescriptor>,
+        scanComponentsTask: TaskProvider<ScanComponents>
     ): TaskProvider<FSM> {
         removeDefaultJarArtifactFromArchives(project)
 
@@ -68,6 +103,8 @@ class FSMPlugin : Plugin<Project> {
             description = "Assembles an fsmTask archive containing the FirstSpirit module."
             group = BasePlugin.BUILD_GROUP
 
+            componentIndexFile.convention(scanComponentsTask.flatMap { it.componentIndexFile })
+
             dependsOn(project.tasks.getByName(GENERATE_LICENSE_REPORT_TASK_NAME))
             dependsOn(JavaPlugin.JAR_TASK_NAME)
 
@@ -86,26 +123,228 @@ class FSMPlugin : Plugin<Project> {
         archivesConfig.artifacts.clear()
     }
 
-    private fun configureValidateTask(validateTask: TaskProvider<ValidateDescriptor>, fsmTask: TaskProvider<FSM>) {
+    private fun configureScanComponentsTask(
+        project: Project,
+        workerPool: Provider<WorkerPoolService>
+    ): TaskProvider<ScanComponents> {
+        return project.tasks.register(SCAN_COMPONENTS_TASK_NAME, ScanComponents::class.java) {
+            description = "Scans the project for FirstSpirit module components."
+            group = BasePlugin.BUILD_GROUP
+
+            this.workerPool.set(workerPool)
+            usesService(workerPool)
+
+            val extension = project.extensions.getByType(FSMPluginExtension::class.java)
+            classpath.from(project.files(Callable {
+                project.compileDependencies().map { dependency ->
+                    if (extension.scanClassesDirectories) {
+                        dependency.extensions.getByType(SourceSetContainer::class.java)
+                            .getByName(SourceSet.MAIN_SOURCE_SET_NAME).output.classesDirs
+                    } else {
+                        dependency.tasks.named(JavaPlugin.JAR_TASK_NAME)
+                    }
+                }
+            }))
+            classpath.from(project.configurations.named("fsmAnnotations"))
+            componentIndexFile.convention(project.layout.buildDirectory.file(ScannedComponents.FILE_NAME))
+        }
+    }
+
+    private fun configureValidateTask(
+        validateTask: TaskProvider<ValidateDescriptor>,
+        fsmTask: TaskProvider<FSM>,
+        scanComponentsTask: TaskProvider<ScanComponents>
+    ) {
         validateTask.configure {
             description = "Validates the module descriptor."
             group = LifecycleBasePlugin.VERIFICATION_GROUP
-            inputs.file(fsmTask.map { it.outputs.files.singleFile })
+            fsmFile.convention(fsmTask.flatMap { it.archiveFile })
+            componentIndexFile.convention(scanComponentsTask.flatMap { it.componentIndexFile })
             dependsOn(fsmTask)
         }
     }
 
-    private fun configureIsolationCheckTask(project: Project, fsmTask: TaskProvider<FSM>): TaskProvider<IsolationCheck> {
+    private fun configureCheckLibrariesTask(
+        project: Project,
+        fsmTask: TaskProvider<FSM>,
+        workerPool: Provider<WorkerPoolService>
+    ): TaskProvider<CheckLibraries> {
+        val extension = project.extensions.getByType(FSMPluginExtension::class.java)
+        return project.tasks.register(CHECK_LIBRARIES_TASK_NAME, CheckLibraries::class.java) {
+            description = "Checks the libraries of the FSM for invalid bytecode versions and FirstSpirit artifacts."
+            group = LifecycleBasePlugin.VERIFICATION_GROUP
+            fsmFile.convention(fsmTask.flatMap { it.archiveFile })
+            maxBytecodeVersion.convention(project.provider { extension.maxBytecodeVersion })
+            this.workerPool.set(workerPool)
+            usesService(workerPool)
+        }
+    }
+
+    private fun configureCheckClassConflictsTask(
+        project: Project,
+        fsmTask: TaskProvider<FSM>,
+        workerPool: Provider<WorkerPoolService>
+    ): TaskProvider<CheckClassConflicts> {
+        val extension = project.extensions.getByType(FSMPluginExtension::class.java)
+        return project.tasks.register(CHECK_CLASS_CONFLICTS_TASK_NAME, CheckClassConflicts::class.java) {
+            description = "Checks the resources of the FSM for classes contained in several jars of the same classloader."
+            group = LifecycleBasePlugin.VERIFICATION_GROUP
+            fsmFile.convention(fsmTask.flatMap { it.archiveFile })
+            reportFile.convention(project.layout.buildDirectory.file(CheckClassConflicts.REPORT_FILE_NAME))
+            failOnConflicts.convention(project.provider { extension.failOnClassConflicts })
+            this.workerPool.set(workerPool)
+            usesService(workerPool)
+        }
+    }
+
+    private fun configureIsolationCheckTask(
+        project: Project,
+        fsmTask: TaskProvider<FSM>,
+        checkLibrariesTask: TaskProvider<CheckLibraries>,
+        detectorClientService: Provider<DetectorClientService>
+    ): TaskProvider<IsolationCheck> {
+        val extension = project.extensions.getByType(FSMPluginExtension::class.java)
         val isolationCheck = project.tasks.register(ISOLATION_CHECK_TASK_NAME, IsolationCheck::class.java) {
             description = "Verifies the isolation of resources in the FSM."
             group = LifecycleBasePlugin.VERIFICATION_GROUP
-            inputs.file(fsmTask.map { it.outputs.files.singleFile })
+            inputs.file(fsmTask.flatMap { it.archiveFile })
+            this.detectorClientService.set(detectorClientService)
+            usesService(detectorClientService)
             dependsOn(fsmTask)
+            // Check the libraries locally before uploading the FSM to the detector
+            dependsOn(project.provider {
+                if (extension.isolationDetectorUrl != null) listOf(checkLibrariesTask) else emptyList()
+            })
+            // The FSM is uploaded together with the other modules instead
+            val taskGraph = project.gradle.taskGraph
+            onlyIf("$AGGREGATE_ISOLATION_CHECK_TASK_PATH is not part of the build") {
+                !taskGraph.hasTask(AGGREGATE_ISOLATION_CHECK_TASK_PATH)
+            }
         }
 
         return isolationCheck
     }
 
+    private fun configureSubmitIsolationCheckTask(
+        project: Project,
+        fsmTask: TaskProvider<FSM>,
+        checkLibrariesTask: TaskProvider<CheckLibraries>,
+        isolationCheck: TaskProvider<IsolationCheck>,
+        detectorClientService: Provider<DetectorClientService>
+    ) {
+        val extension = project.extensions.getByType(FSMPluginExtension::class.java)
+        val submitIsolationCheck = project.tasks.register(SUBMIT_ISOLATION_CHECK_TASK_NAME, SubmitIsolationCheck::class.java) {
+            description = "Starts the isolation check of the FSM in the background."
+            group = LifecycleBasePlugin.VERIFICATION_GROUP
+            this.isolationCheck.set(isolationCheck)
+            this.detectorClientService.set(detectorClientService)
+            usesService(detectorClientService)
+            dependsOn(fsmTask)
+            // checkIsolation depends on checkLibraries, so the libraries are checked before the FSM is submitted
+            // without running checkLibraries for every assembleFSM
+            mustRunAfter(checkLibrariesTask)
+            // Only submitted if the result is awaited
+            val taskGraph = project.gradle.taskGraph
+            onlyIf("${isolationCheck.name} is part of the build") {
+                taskGraph.hasTask(isolationCheck.get()) && !taskGraph.hasTask(AGGREGATE_ISOLATION_CHECK_TASK_PATH)
+            }
+        }
+
+        val asyncIsolationCheck = project.provider { extension.asyncIsolationCheck }
+        fsmTask.configure {
+            finalizedBy(asyncIsolationCheck.map { async -> if (async) listOf(submitIsolationCheck) else emptyList() })
+        }
+        isolationCheck.configure {
+            dependsOn(asyncIsolationCheck.map { async -> if (async) listOf(submitIsolationCheck) else emptyList() })
+            // Wait for the result after the other verification tasks
+            shouldRunAfter(asyncIsolationCheck.map { async ->
+                if (async) project.tasks.withType(Test::class.java) else emptyList()
+            })
+        }
+    }
+
+    /**
+     * Registers the aggregate isolation check on the root project when the first project applies the plugin. The task
+     * collects the FSMs and detector settings of all projects applying the plugin itself.
+     */
+    private fun configureAggregateIsolationCheckTask(project: Project, detectorClientService: Provider<DetectorClientService>) {
+        val rootProject = project.rootProject
+        if (AGGREGATE_ISOLATION_CHECK_TASK_NAME in rootProject.tasks.names) {
+            return
+        }
+
+        rootProject.tasks.register(AGGREGATE_ISOLATION_CHECK_TASK_NAME, AggregateIsolationCheck::class.java) {
+            description = "Verifies the isolation of resources in the FSMs of all projects with as few uploads as possible."
+            group = LifecycleBasePlugin.VERIFICATION_GROUP
+            this.detectorClientService.set(detectorClientService)
+            usesService(detectorClientService)
+            val fsmProjects = rootProject.provider {
+                rootProject.allprojects.filter { it.plugins.hasPlugin(NAME) && it.fsmExtension().isolationDetectorUrl != null }
+            }
+            fsmFiles.convention(fsmProjects.map { projects ->
+                projects.associate { it.path to (it.tasks.getByName(FSM_TASK_NAME) as FSM).archiveFile.get().asFile }
+            })
+            detectorSettings.convention(fsmProjects.map { projects ->
+                projects.associate { it.path to detectorSettings(it.fsmExtension()) }
+            })
+            responseTimeouts.convention(fsmProjects.map { projects ->
+                projects.associate { it.path to it.fsmExtension().isolationDetectorResponseTimeout }
+            })
+            buildDirectories.convention(fsmProjects.map { projects ->
+                projects.associate { it.path to it.layout.buildDirectory.get().asFile }
+            })
+            reportDirectory.convention(rootProject.layout.buildDirectory)
+            inputs.files(fsmFiles.map { it.values })
+            dependsOn(fsmProjects.map { projects ->
+                projects.flatMap { listOf(it.tasks.named(FSM_TASK_NAME), it.tasks.named(CHECK_LIBRARIES_TASK_NAME)) }
+            })
+        }
+    }
+
+    private fun detectorSettings(extension: FSMPluginExtension): AggregateIsolationCheck.DetectorSettings {
+        return AggregateIsolationCheck.DetectorSettings(
+            extension.isolationDetectorUrl!!,
+            extension.firstSpiritVersion,
+            extension.complianceLevel,
+            extension.maxBytecodeVersion,
+            extension.isolationDetectorWhitelist.sorted(),
+            extension.contentCreatorComponents.sorted(),
+            extension.isolationDetectorUsername,
+            extension.isolationDetectorPassword
+        )
+    }
+
+    private fun Project.fsmExtension(): FSMPluginExtension {
+        return extensions.getByType(FSMPluginExtension::class.java)
+    }
+
+    private fun configureDeltaTasks(project: Project, fsmTask: TaskProvider<FSM>) {
+        val baselineFsm = project.providers.gradleProperty(FSM_BASELINE_PROPERTY)
+            .map { project.layout.projectDirectory.file(it) }
+
+        val deltaTask = project.tasks.register(FSM_DELTA_TASK_NAME, FSMDelta::class.java) {
+            description = "Creates a delta archive with the changes of the FSM compared to a baseline FSM."
+            group = BasePlugin.BUILD_GROUP
+            this.baselineFsm.convention(baselineFsm)
+            fsm.convention(fsmTask.flatMap { it.archiveFile })
+            deltaFile.convention(fsmTask.flatMap { task ->
+                task.destinationDirectory.file(task.archiveFileName.map { it.removeSuffix(".${FSM.FSM_EXTENSION}") + "-delta.zip" })
+            })
+        }
+
+        project.tasks.register(APPLY_FSM_DELTA_TASK_NAME, ApplyFSMDelta::class.java) {
+            description = "Reconstructs an FSM from a baseline FSM and a delta archive."
+            group = BasePlugin.BUILD_GROUP
+            this.baselineFsm.convention(baselineFsm)
+            deltaFile.convention(project.providers.gradleProperty(FSM_DELTA_PROPERTY)
+                .map { project.layout.projectDirectory.file(it) }
+                .orElse(deltaTask.flatMap { it.deltaFile }))
+            fsm.convention(fsmTask.flatMap { task ->
+                task.destinationDirectory.dir("reconstructed").flatMap { it.file(task.archiveFileName) }
+            })
+        }
+    }
+
     private fun configureJarTask(project: Project) {
         val jarTask = project.tasks.getByName(JavaPlugin.JAR_TASK_NAME) as Jar
         jarTask.exclude("module-isolated.xml")
@@ -124,18 +363,53 @@ class FSMPlugin : Plugin<Project> {
         val licenseReportTask = project.tasks.withType(ReportTask::class.java).first()
 
         // Library names and web apps are only available after the configuration phase
-        val preparationAction = { _: Task ->
+        val metricsFile = project.layout.buildDirectory.file("${PhaseMetrics.METRICS_DIR_NAME}/${licenseReportTask.name}.json")
+        licenseReportTask.outputs.file(metricsFile)
+        var metrics = PhaseMetrics()
+        var userExcludes = emptyArray<String>()
+        var cachedReport: CachedLicenseReport? = null
+        val preparationAction = { task: Task ->
+            metrics = PhaseMetrics()
+            val configurationNames = getLicenseReportConfigurations(project)
             with(project.extensions.getByType(LicenseReportExtension::class.java)) {
-                configurations = getLicenseReportConfigurations(project).toTypedArray()
+                configurations = configurationNames.toTypedArray()
+
+                // Modules of the previous run or the shared cache are excluded from the report and added again
+                // after it has been created
+                val configurationHash = CachedLicenseReport.configurationHash(this)
+                val previousRun = LicenseMetadataCache(task.temporaryDir.resolve(PREVIOUS_LICENSE_REPORT_DIR_NAME), configurationHash)
+                val sharedCache = if (project.extensions.getByType(FSMPluginExtension::class.java).licenseMetadataCache) {
+                    LicenseMetadataCache(project.gradle.gradleUserHomeDir.resolve(LicenseMetadataCache.CACHE_DIR_NAME), configurationHash)
+                } else {
+                    null
+                }
+                val report = metrics.measure(PhaseMetrics.LICENSE_CACHE) {
+                    CachedLicenseReport(previousRun, sharedCache, CachedLicenseReport.modules(project, configurationNames))
+                }
+                userExcludes = excludes ?: emptyArray()
+                excludes = userExcludes + report.excludes()
+                cachedReport = report
             }
         }
         licenseReportTask.doFirst(preparationAction)
 
         // License Report Plugin escapes quotes not in accordance with RFC 4180. A " should be "", but instead becomes \"
-        // Since there is no way to override this in the plugin configuration, we do a textual replace of \" to "".
+        // Since there is no way to override this in the plugin configuration, the file is streamed through a reader
+        // replacing \" with "" and validated in the same pass.
         val repairQuotes = { task: Task ->
-            val licenseFile = task.outputs.files.singleFile.resolve("licenses.csv")
-            licenseFile.writeText(licenseFile.readText().replace("\\\"", "\"\""))
+            val outputDir = (task as ReportTask).outputFolder
+            val licenseFile = outputDir.resolve("licenses.csv")
+            metrics.measure(PhaseMetrics.LICENSE_REPORT_FIXUP) {
+                LicenseFileValidator.repairLicenseCsv(licenseFile)
+            }
+            cachedReport?.let { report ->
+                metrics.measure(PhaseMetrics.LICENSE_CACHE) {
+                    report.complete(outputDir)
+                }
+                project.extensions.getByType(LicenseReportExtension::class.java).excludes = userExcludes
+                cachedReport = null
+            }
+            metrics.report(task.path, metricsFile.get().asFile, task.logger)
         }
         licenseReportTask.doLast(repairQuotes)
 
@@ -163,21 +437,61 @@ class FSMPlugin : Plugin<Project> {
 
         project.gradle.taskGraph.whenReady {
             project.logger.info("Configuring JAR manifests...")
+            // The JDK used for the build is left out of reproducible archives
+            val reproducibleArchives = reproducibleArchives(this)
             allTasks.filterIsInstance<Jar>().forEach { task ->
                 val buildJdk = "${System.getProperty("java.runtime.version")} (${System.getProperty("java.vendor")})"
+                val reproducible = task in reproducibleArchives
                 project.logger.info("Configuring task of project ${task.project.name}, task name: ${task.path}")
                 if (task is FSM) {
                     task.addManifestAttribute("Created-By", "FirstSpirit Module Gradle Plugin ${getPluginVersion()}")
-                    task.addManifestAttribute("Build-Jdk", buildJdk)
+                    if (!reproducible) task.addManifestAttribute("Build-Jdk", buildJdk)
                     task.addManifestAttribute("Build-Tool", "Gradle ${project.gradle.gradleVersion}")
                 } else {
-                    task.addManifestAttribute("Build-Jdk", buildJdk)
+                    if (!reproducible) task.addManifestAttribute("Build-Jdk", buildJdk)
                     task.addManifestAttribute("Created-By", "Gradle ${project.gradle.gradleVersion}")
                 }
             }
         }
     }
 
+    private fun configureReproducibleArchives(project: Project) {
+        // Like the manifests, all archives in the task graph are configured, including the jars of other projects
+        // which are added to the FSM
+        project.gradle.taskGraph.whenReady {
+            reproducibleArchives(this).forEach { task ->
+                project.logger.info("Configuring reproducible archive for task ${task.path}")
+                task.isPreserveFileTimestamps = false
+                task.isReproducibleFileOrder = true
+            }
+        }
+    }
+
+    /**
+     * Finds the archives of the task graph which are written reproducibly: The archives of projects with
+     * [FSMPluginExtension.reproducibleArchive] set, and the archives a reproducible FSM depends on. Each project applying
+     * the plugin configures all archives of the graph, so the result must not depend on the configuring project.
+     */
+    private fun reproducibleArchives(taskGraph: TaskExecutionGraph): Set<Jar> {
+        val reproducibleFsms = taskGraph.allTasks.filter { it is FSM && it.project.isReproducible() }
+        val dependencies = mutableSetOf<Task>()
+        val pending = ArrayDeque(reproducibleFsms)
+        while (pending.isNotEmpty()) {
+            val task = pending.removeFirst()
+            if (dependencies.add(task)) {
+                pending.addAll(taskGraph.getDependencies(task))
+            }
+        }
+
+        return taskGraph.allTasks.filterIsInstance<Jar>()
+            .filter { it in dependencies || it.project.isReproducible() }
+            .toSet()
+    }
+
+    private fun Project.isReproducible(): Boolean {
+        return extensions.findByType(FSMPluginExtension::class.java)?.reproducibleArchive == true
+    }
+
     /**
      * Gets the version of the FSM gradle plugin from `fsm-gradle-plugin/versions.properties`.
      * It would also be possible to use the [Package.getImplementationVersion] property of FSMPlugin,
@@ -256,11 +570,22 @@ class FSMPlugin : Plugin<Project> {
         const val FSM_EXTENSION_NAME = "firstSpiritModule"
         const val FSM_TASK_NAME = "assembleFSM"
         const val VALIDATE_DESCRIPTOR_TASK_NAME = "validateDescriptor"
+        const val SCAN_COMPONENTS_TASK_NAME = "scanComponents"
         const val ISOLATION_CHECK_TASK_NAME = "checkIsolation"
+        const val CHECK_LIBRARIES_TASK_NAME = "checkLibraries"
+        const val CHECK_CLASS_CONFLICTS_TASK_NAME = "checkClassConflicts"
+        const val SUBMIT_ISOLATION_CHECK_TASK_NAME = "submitIsolationCheck"
+        const val AGGREGATE_ISOLATION_CHECK_TASK_NAME = "checkAggregateIsolation"
+        private const val AGGREGATE_ISOLATION_CHECK_TASK_PATH = ":$AGGREGATE_ISOLATION_CHECK_TASK_NAME"
         const val COMPLIANCE_CHECK_TASK_NAME = "checkCompliance"
+        const val FSM_DELTA_TASK_NAME = "assembleFSMDelta"
+        const val APPLY_FSM_DELTA_TASK_NAME = "applyFSMDelta"
+        const val FSM_BASELINE_PROPERTY = "fsmBaseline"
+        const val FSM_DELTA_PROPERTY = "fsmDelta"
         const val GENERATE_LICENSE_REPORT_TASK_NAME = "generateLicenseReport"
         const val WEBAPPS_CONFIGURATION_NAME = "fsmWebappsRuntime"
         const val VERSIONS_PROPERTIES_FILE = "/fsm-gradle-plugin/versions.properties"
+        const val PREVIOUS_LICENSE_REPORT_DIR_NAME = "previous-report"
     }
 
 }
\ No newline at end of file
@@ -4,6 +4,10 @@ import de.espirit.mavenplugins.fsmchecker.ComplianceLevel
 import org.gradle.api.Action
 import org.gradle.api.NamedDomainObjectContainer
 import org.gradle.api.Project
+import org.gradle.plugins.fsm.isolationcheck.DetectorClientService
+import org.gradle.plugins.fsm.isolationcheck.WebServiceConnector
+import java.time.Duration
+import java.util.zip.Deflater
 
 open class FSMPluginExtension(val project: Project) {
 
@@ -78,6 +82,24 @@ open class FSMPluginExtension(val project: Project) {
      */
     var isolationDetectorUrl: String? = null
 
+    /**
+     * The maximum time to wait for a response of the FSM Dependency Detector. The analysis of large modules may take
+     * several minutes.
+     */
+    var isolationDetectorResponseTimeout: Duration = WebServiceConnector.DEFAULT_RESPONSE_TIMEOUT
+
+    /**
+     * The timeout for establishing a connection to the FSM Dependency Detector. The connections are shared by the
+     * isolation checks of all projects of the build, so the timeout of the first project applying the plugin is used.
+     */
+    var isolationDetectorConnectTimeout: Duration = DetectorClientService.DEFAULT_CONNECT_TIMEOUT
+
+    /**
+     * If set, the isolation check is started in the background as soon as the FSM is assembled. The `checkIsolation`
+     * task only waits for the result, so tests and other tasks run while the detector analyzes the FSM.
+     */
+    var asyncIsolationCheck: Boolean = false
+
     /**
      * Resource identifiers of the form 'groupId:artifactId:version' of resources
      * which should not be scanned for external dependencies
@@ -140,8 +162,129 @@ open class FSMPluginExtension(val project: Project) {
      */
     var addDefaultJarTaskOutputToWebResources: Boolean = true
 
+    /**
+     * Compression of the FSM entries, keyed by Ant-style patterns for the entry paths. Values are deflate levels
+     * from 1 to 9, or [STORED] to add matching entries without compression. The first matching pattern is used,
+     * entries not matching any pattern are deflated with the default level.
+     *
+     * Nested archives are already compressed, so they are stored by default.
+     */
+    var entryCompression: Map<String, Int> = NESTED_ARCHIVES_STORED
+        set(value) {
+            value.forEach { (pattern, level) ->
+                if (level !in STORED..Deflater.BEST_COMPRESSION) {
+                    throw IllegalArgumentException("Invalid compression level $level for pattern '$pattern'.")
+                }
+            }
+            field = value
+        }
+
+    /**
+     * If set to true, the FSM of the previous build is used when writing the archive: Deflated entries which did not
+     * change are copied from the previous FSM without compressing them again.
+     *
+     * The archive is still assembled by Gradle and every entry is written to a new FSM, so only the compression of
+     * unchanged deflated entries is saved. Nested archives are stored by default, see [entryCompression], which leaves
+     * little to save for most modules.
+     */
+    var incrementalArchive: Boolean = false
+
+    /**
+     * If set to true, jars in the `lib` directory of the FSM with identical content are only added once. References
+     * to the duplicates in the module-isolated.xml are replaced by the path of the remaining jar.
+     */
+    var deduplicateLibraries: Boolean = false
+
+    /**
+     * If set to true, license texts in the `META-INF/licenses` directory of the FSM with identical content are only
+     * added once. The paths of the removed license texts are listed in `META-INF/licenses/duplicates.csv`, together
+     * with the path of the remaining license text.
+     */
+    var deduplicateLicenseTexts: Boolean = false
+
+    /**
+     * If set to true, building the FSM twice from the same sources results in identical archives: Timestamps of all
+     * entries are set to a constant value, entries are written in a stable order and the `Build-Jdk` attribute is not
+     * added to the manifests.
+     */
+    var reproducibleArchive: Boolean = false
+
+    /**
+     * If set to true, components are found by scanning the class output directories of the project and its project
+     * dependencies instead of their jars, so `scanComponents` and `assembleFSM` can use the components right after
+     * the compilation. Set to false if the jar task adds classes which are not compiled by the project itself.
+     */
+    var scanClassesDirectories: Boolean = false
+
+    /**
+     * Packages to scan for components, e.g. `com.example.components` or `com.example.*`. If empty, all packages
+     * are scanned.
+     */
+    var componentScanAcceptPackages: Collection<String> = emptySet()
+
+    /**
+     * Packages not to scan for components. Takes precedence over [componentScanAcceptPackages].
+     */
+    var componentScanRejectPackages: Collection<String> = emptySet()
+
+    /**
+     * File names of the project jars to scan for components, e.g. `*-components-*.jar`. Applies to the class
+     * directories of the corresponding projects as well. If empty, all jars are scanned.
+     */
+    var componentScanAcceptJars: Collection<String> = emptySet()
+
+    /**
+     * File names of the project jars not to scan for components. Takes precedence over [componentScanAcceptJars].
+     */
+    var componentScanRejectJars: Collection<String> = emptySet()
+
+    /**
+     * If set to true, jars and class directories without any class referencing the component annotations or the
+     * module interface are not scanned for components. Set to false if a module class only extends a module class
+     * of another jar.
+     */
+    var skipJarsWithoutComponents: Boolean = true
+
+    /**
+     * The number of threads scanning for components. Defaults to the maximum number of Gradle workers
+     * (`--max-workers`). The threads are shared by all FSM projects of the build.
+     */
+    var componentScanThreads: Int? = null
+        set(value) {
+            if (value != null && value < 1) {
+                throw IllegalArgumentException("Invalid number of component scan threads $value.")
+            }
+            field = value
+        }
+
+    /**
+     * If set to true, the license metadata of third-party modules is cached in the Gradle user home. The license
+     * report then only reads the POMs and artifacts of modules not found in the cache. Cached modules are excluded
+     * from the License Report Plugin, so its `checkLicense` task does not check them.
+     */
+    var licenseMetadataCache: Boolean = false
+
+    /**
+     * If set to true, classes with different content in jars of the same classloader of the module fail the
+     * `checkClassConflicts` task. Otherwise, they are reported as warnings.
+     */
+    var failOnClassConflicts: Boolean = false
+
     open fun libraries(action: Action<in NamedDomainObjectContainer<LibraryDeclaration>>) {
         action.execute(libraries)
     }
 
+    companion object {
+        /**
+         * Compression level for entries which are stored without compression, see [entryCompression]
+         */
+        const val STORED = 0
+
+        val NESTED_ARCHIVES_STORED = linkedMapOf(
+            "**/*.jar" to STORED,
+            "**/*.war" to STORED,
+            "**/*.zip" to STORED
+        )
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package org.gradle.plugins.fsm
+
+import org.gradle.api.provider.Property
+import org.gradle.api.services.BuildService
+import org.gradle.api.services.BuildServiceParameters
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Build service running the parallel work of the FSM tasks of all projects of a build on one shared thread pool, e.g.
+ * the component scans, the library checks and the class conflict checks. The pool has as many threads as Gradle
+ * workers (`--max-workers`), so projects built in parallel do not start a thread pool each.
+ */
+abstract class WorkerPoolService : BuildService<WorkerPoolService.Parameters>, AutoCloseable {
+
+    interface Parameters : BuildServiceParameters {
+        /**
+         * The number of threads of the shared pool, usually the maximum number of Gradle workers
+         */
+        val maxWorkers: Property<Int>
+    }
+
+    private val executorDelegate = lazy { newFixedThreadPool("fsm-worker", parameters.maxWorkers.get()) }
+
+    /**
+     * The shared pool, created on first use. It is shut down at the end of the build and must not be shut down by the
+     * caller.
+     */
+    val executor: ExecutorService by executorDelegate
+
+    val maxWorkers: Int
+        get() = parameters.maxWorkers.get()
+
+    override fun close() {
+        if (executorDelegate.isInitialized()) {
+            executor.shutdownNow()
+        }
+    }
+
+    companion object {
+        const val NAME = "fsmWorkerPool"
+
+        fun newFixedThreadPool(threadName: String, threads: Int): ExecutorService {
+            return Executors.newFixedThreadPool(threads, daemonThreads(threadName))
+        }
+
+        fun newCachedThreadPool(threadName: String): ExecutorService {
+            return Executors.newCachedThreadPool(daemonThreads(threadName))
+        }
+
+        /**
+         * Runs [action] for all [items] in parallel and returns the results in the order of the items. If an action
+         * fails, the actions not yet done are cancelled and its exception is rethrown.
+         *
+         * @param executor   The pool to run the actions on, e.g. the [WorkerPoolService.executor]. If `null`, a pool
+         *                   with at most [threads] threads is created for this call.
+         * @param threadName The name of the threads of a pool created for this call, numbered from 1
+         */
+        fun <T, R> map(
+            items: Collection<T>,
+            executor: ExecutorService?,
+            threadName: String,
+            threads: Int,
+            action: (T) -> R
+        ): List<R> {
+            if (items.isEmpty()) {
+                return emptyList()
+            }
+            if (executor != null) {
+                return map(items, executor, action)
+            }
+
+            val ownExecutor = newFixedThreadPool(threadName, minOf(items.size, threads))
+            try {
+                return map(items, ownExecutor, action)
+            } finally {
+                ownExecutor.shutdownNow()
+            }
+        }
+
+        /**
+         * Waits for the result of a task, rethrowing the exception of a failed task instead of the
+         * [ExecutionException]
+         */
+        fun <T> await(future: Future<T>): T {
+            try {
+                return future.get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+        }
+
+        private fun <T, R> map(items: Collection<T>, executor: ExecutorService, action: (T) -> R): List<R> {
+            val results = items.map { item -> executor.submit(Callable { action(item) }) }
+            try {
+                return results.map { await(it) }
+            } finally {
+                results.forEach { it.cancel(true) }
+            }
+        }
+
+        private fun daemonThreads(threadName: String): ThreadFactory {
+            val threadNumber = AtomicInteger()
+            return ThreadFactory { runnable ->
+                Thread(runnable, "$threadName-${threadNumber.incrementAndGet()}").apply { isDaemon = true }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.gradle.plugins.fsm.annotations
+
+import org.gradle.plugins.fsm.descriptor.ComponentIndex
+import javax.annotation.processing.AbstractProcessor
+import javax.annotation.processing.RoundEnvironment
+import javax.annotation.processing.SupportedAnnotationTypes
+import javax.lang.model.SourceVersion
+import javax.lang.model.element.ElementKind
+import javax.lang.model.element.TypeElement
+import javax.lang.model.type.DeclaredType
+import javax.lang.model.type.TypeMirror
+import javax.tools.Diagnostic
+import javax.tools.StandardLocation
+
+/**
+ * Annotation processor writing the [ComponentIndex] of a jar at compile time. Each class annotated with a FirstSpirit
+ * component annotation and each class implementing the FirstSpirit module interface gets its own index file, listing
+ * the class together with its supertypes. The component scan of the FSM then only needs to read these classes instead
+ * of all classes of the jar.
+ *
+ * The processor is added to the `annotationProcessor` configuration by the [FSMAnnotationsPlugin] if
+ * [FSMAnnotationsPluginExtension.componentIndex] is enabled. It must only depend on the JDK and the Kotlin
+ * standard library, because it runs in the Java compiler.
+ *
+ * The processor is registered as isolating for Gradle's incremental compilation: each index file only depends on the
+ * top-level class it was written for. In an incremental compilation, the index files of unchanged classes are kept,
+ * and the files of recompiled or deleted classes are replaced or removed by Gradle.
+ */
+@SupportedAnnotationTypes("*")
+class ComponentIndexProcessor : AbstractProcessor() {
+
+    override fun getSupportedSourceVersion(): SourceVersion {
+        return SourceVersion.latestSupported()
+    }
+
+    override fun process(annotations: Set<TypeElement>, roundEnv: RoundEnvironment): Boolean {
+        val moduleType = processingEnv.elementUtils.getTypeElement(ComponentIndex.MODULE_INTERFACE)?.asType()
+        roundEnv.rootElements.filterIsInstance<TypeElement>().forEach { visit(it, it, moduleType) }
+        // Never claim the annotations, other processors may be interested in them as well
+        return false
+    }
+
+    private fun visit(element: TypeElement, topLevelElement: TypeElement, moduleType: TypeMirror?) {
+        val className = processingEnv.elementUtils.getBinaryName(element).toString()
+        val kinds = sortedSetOf<String>()
+        element.annotationMirrors
+            .map { it.annotationType.asElement() as TypeElement }
+            .filter { it.qualifiedName.toString().startsWith(ComponentIndex.ANNOTATIONS_PACKAGE + ".") }
+            .forEach { kinds.add(it.simpleName.toString()) }
+
+        if (moduleType != null && element.kind == ElementKind.CLASS && isModule(element, moduleType)) {
+            kinds.add(ComponentIndex.MODULE)
+        }
+
+        if (kinds.isNotEmpty()) {
+            val entries = sortedMapOf<String, MutableSet<String>>(className to kinds)
+            addSupertypes(element.asType(), entries)
+            writeIndex(className, entries, topLevelElement)
+        }
+
+        element.enclosedElements.filterIsInstance<TypeElement>().forEach { visit(it, topLevelElement, moduleType) }
+    }
+
+    private fun isModule(element: TypeElement, moduleType: TypeMirror): Boolean {
+        val types = processingEnv.typeUtils
+        return types.isAssignable(types.erasure(element.asType()), types.erasure(moduleType))
+    }
+
+    /**
+     * Adds the supertypes of an indexed class, so the component scan can resolve the class hierarchy,
+     * e.g. of classes implementing the module interface indirectly
+     */
+    private fun addSupertypes(type: TypeMirror, entries: MutableMap<String, MutableSet<String>>) {
+        for (supertype in processingEnv.typeUtils.directSupertypes(type)) {
+            val element = (supertype as? DeclaredType)?.asElement() as? TypeElement ?: continue
+            val className = processingEnv.elementUtils.getBinaryName(element).toString()
+            if (className == Any::class.java.name || className == ComponentIndex.MODULE_INTERFACE) {
+                continue
+            }
+            entries.getOrPut(className) { sortedSetOf() }.add(ComponentIndex.SUPERTYPE)
+            addSupertypes(supertype, entries)
+        }
+    }
+
+    /**
+     * Writes the index file of a class. The top-level class is the originating element, so Gradle removes the file
+     * when the class is recompiled or deleted.
+     */
+    private fun writeIndex(className: String, entries: Map<String, Set<String>>, topLevelElement: TypeElement) {
+        val indexFile = ComponentIndex.INDEX_DIRECTORY + className
+        try {
+            val file = processingEnv.filer.createResource(StandardLocation.CLASS_OUTPUT, "", indexFile, topLevelElement)
+            file.openWriter().use { writer ->
+                writer.write(ComponentIndex.HEADER + "\n")
+                entries.forEach { (indexedClass, kinds) ->
+                    writer.write("$indexedClass ${kinds.joinToString(",")}\n")
+                }
+            }
+        } catch (e: Exception) {
+            processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, "Cannot write component index $indexFile: $e")
+        }
+    }
+
+}
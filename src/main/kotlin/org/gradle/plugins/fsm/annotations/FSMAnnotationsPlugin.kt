@@ -4,14 +4,20 @@ import org.gradle.api.Plugin
 import org.gradle.api.Project
 import org.gradle.api.plugins.JavaPlugin
 import org.gradle.plugins.fsm.FSMPlugin
+import java.io.File
+import java.net.JarURLConnection
+import java.net.URL
 import java.util.*
+import java.util.concurrent.Callable
 
 class FSMAnnotationsPlugin: Plugin<Project> {
 
     @Override
     override fun apply(project: Project) {
         project.plugins.apply(JavaPlugin::class.java)
+        val extension = project.extensions.create(EXTENSION_NAME, FSMAnnotationsPluginExtension::class.java)
         addFsmAnnotationsDependencyToProject(project)
+        addComponentIndexProcessor(project, extension)
     }
 
     private fun addFsmAnnotationsDependencyToProject(project: Project) {
@@ -34,8 +40,45 @@ class FSMAnnotationsPlugin: Plugin<Project> {
 
     }
 
+    /**
+     * Adds the [ComponentIndexProcessor] to the annotation processor path if the component index is enabled.
+     * The processor is loaded from the plugin classpath together with the Kotlin standard library.
+     */
+    private fun addComponentIndexProcessor(project: Project, extension: FSMAnnotationsPluginExtension) {
+        val processorPath = project.files(Callable {
+            if (extension.componentIndex) processorPath() else emptySet()
+        })
+        project.dependencies.add(JavaPlugin.ANNOTATION_PROCESSOR_CONFIGURATION_NAME, processorPath)
+    }
+
+    private fun processorPath(): Set<File> {
+        val classes = codeSource(ComponentIndexProcessor::class.java)
+        val kotlinStdlib = codeSource(Unit::class.java)
+        // The service file may be in a different directory than the classes, e.g. when running from the build output
+        val services = FSMAnnotationsPlugin::class.java.classLoader.getResources(PROCESSOR_SERVICE_FILE).asSequence()
+            .filter { url -> url.openStream().use { it.reader().readText() }.contains(ComponentIndexProcessor::class.java.name) }
+            .map { classpathRoot(it) }
+        return setOf(classes, kotlinStdlib) + services
+    }
+
+    private fun codeSource(type: Class<*>): File {
+        return File(type.protectionDomain.codeSource.location.toURI())
+    }
+
+    private fun classpathRoot(resource: URL): File {
+        val connection = resource.openConnection()
+        if (connection is JarURLConnection) {
+            return File(connection.jarFileURL.toURI())
+        }
+        var root = File(resource.toURI())
+        repeat(PROCESSOR_SERVICE_FILE.count { it == '/' } + 1) { root = root.parentFile }
+        return root
+    }
+
     companion object {
         const val NAME = "de.espirit.firstspirit-module-annotations"
+        const val EXTENSION_NAME = "firstSpiritModuleAnnotations"
+        private const val PROCESSOR_SERVICE_FILE = "META-INF/services/javax.annotation.processing.Processor"
     }
 
 }
\ No newline at end of file
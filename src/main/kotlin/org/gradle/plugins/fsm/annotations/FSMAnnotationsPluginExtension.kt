@@ -0,0 +1,13 @@
+package org.gradle.plugins.fsm.annotations
+
+open class FSMAnnotationsPluginExtension {
+
+    /**
+     * Whether to write a component index into the jar of the project at compile time, see [ComponentIndexProcessor].
+     * The index is only written by the Java compiler. If the FSM is built with
+     * [org.gradle.plugins.fsm.FSMPluginExtension.scanClassesDirectories] disabled, it must not be enabled for
+     * projects with components written in other JVM languages.
+     */
+    var componentIndex: Boolean = false
+
+}
@@ -1,29 +1,25 @@
 package org.gradle.plugins.fsm.descriptor
 
-import io.github.classgraph.AnnotationClassRef
-import io.github.classgraph.AnnotationEnumValue
-import io.github.classgraph.AnnotationInfo
-import io.github.classgraph.ClassInfo
 import kotlin.reflect.KClass
 
-fun AnnotationInfo.isClass(annotationClass: KClass<*>): Boolean {
+fun ScannedAnnotation.isClass(annotationClass: KClass<*>): Boolean {
     return name == annotationClass.java.name
 }
 
-fun AnnotationInfo.getString(parameter: String): String {
-    return parameterValues[parameter].value.toString()
+fun ScannedAnnotation.getString(parameter: String): String {
+    return parameterValues.getValue(parameter).toString()
 }
 
-fun AnnotationInfo.getEnumValue(parameter: String): AnnotationEnumValue {
-    return (parameterValues[parameter].value as AnnotationEnumValue)
+fun ScannedAnnotation.getEnumValue(parameter: String): ScannedEnumValue {
+    return (parameterValues.getValue(parameter) as ScannedEnumValue)
 }
 
 /**
 * Returns the annotation value for the given parameter. Returns `null` if the value
 * equals the default value for the parameter
 */
-fun AnnotationInfo.getStringOrNull(parameter: String, defaultValue: String): String? {
-    val value = parameterValues[parameter].value.toString()
+fun ScannedAnnotation.getStringOrNull(parameter: String, defaultValue: String): String? {
+    val value = parameterValues.getValue(parameter).toString()
     return if (value != defaultValue) {
         value
     } else {
@@ -35,8 +31,8 @@ fun AnnotationInfo.getStringOrNull(parameter: String, defaultValue: String): Str
  * Returns the name of the class for the given parameter. Returns `null` if the class
  * matches the default class for the parameter, as we do not enter default classes in the module.xml
  */
-fun AnnotationInfo.getClassNameOrNull(parameter: String, defaultClass: KClass<*>): String? {
-    val classInfo = parameterValues[parameter].value as AnnotationClassRef
+fun ScannedAnnotation.getClassNameOrNull(parameter: String, defaultClass: KClass<*>): String? {
+    val classInfo = parameterValues.getValue(parameter) as ScannedClassRef
     return if (classInfo.name != defaultClass.qualifiedName) {
         classInfo.name
     } else {
@@ -44,16 +40,20 @@ fun AnnotationInfo.getClassNameOrNull(parameter: String, defaultClass: KClass<*>
     }
 }
 
-fun AnnotationInfo.getClassNames(parameter: String): List<ClassInfo> {
-    return (parameterValues[parameter].value as Array<*>)
-                .map { it as AnnotationClassRef }
-                .map { it.classInfo }
+/**
+ * Returns the names of the classes for the given parameter. Only the names are available for all classes,
+ * because referenced classes are not necessarily read by the [ComponentScan]
+ */
+fun ScannedAnnotation.getClassNames(parameter: String): List<String> {
+    return (parameterValues.getValue(parameter) as List<*>)
+                .map { it as ScannedClassRef }
+                .map { it.name }
 }
 
-fun AnnotationInfo.getEnumValues(parameter: String): List<AnnotationEnumValue> {
-    return (parameterValues[parameter].value as Array<*>).map { it as AnnotationEnumValue }
+fun ScannedAnnotation.getEnumValues(parameter: String): List<ScannedEnumValue> {
+    return (parameterValues.getValue(parameter) as List<*>).map { it as ScannedEnumValue }
 }
 
-fun AnnotationInfo.getAnnotationValues(parameter: String): List<AnnotationInfo> {
-    return (parameterValues[parameter].value as Array<*>).map { it as AnnotationInfo }
+fun ScannedAnnotation.getAnnotationValues(parameter: String): List<ScannedAnnotation> {
+    return (parameterValues.getValue(parameter) as List<*>).map { it as ScannedAnnotation }
 }
@@ -0,0 +1,83 @@
+package org.gradle.plugins.fsm.descriptor
+
+import java.io.File
+import java.util.zip.ZipFile
+
+/**
+ * The component index written into a jar at compile time by the
+ * [org.gradle.plugins.fsm.annotations.ComponentIndexProcessor]. It lists the classes the [ComponentScan] has to
+ * read from the jar. Each indexed class has its own file in the [INDEX_DIRECTORY], named after the class, with one
+ * line per class, followed by the kinds of the class:
+ *
+ * ```
+ * # FirstSpirit module component index 2
+ * de.espirit.BaseModule module,supertype
+ * de.espirit.MyModule ModuleComponent,module
+ * ```
+ *
+ * Jars without any index file, e.g. because they contain no components, have no index and are scanned completely.
+ */
+object ComponentIndex {
+
+    const val INDEX_DIRECTORY = "META-INF/fsm/component-index/"
+    const val HEADER = "# FirstSpirit module component index 2"
+
+    const val ANNOTATIONS_PACKAGE = "com.espirit.moddev.components.annotations"
+    const val MODULE_INTERFACE = "de.espirit.firstspirit.module.Module"
+
+    /**
+     * Kind of classes implementing the [MODULE_INTERFACE]
+     */
+    const val MODULE = "module"
+
+    /**
+     * Kind of the supertypes of indexed classes
+     */
+    const val SUPERTYPE = "supertype"
+
+    /**
+     * Reads the names of the indexed classes of a jar or class directory, merging the index files of all classes.
+     *
+     * @param classpathElement The jar file or class directory
+     * @return The indexed class names, or `null` if there is no index or an index file of an unsupported version
+     */
+    fun read(classpathElement: File): List<String>? {
+        val indexFiles = if (classpathElement.isDirectory) {
+            classpathElement.resolve(INDEX_DIRECTORY).listFiles { file -> file.isFile }.orEmpty()
+                .map { it.readLines() }
+        } else if (classpathElement.isFile) {
+            ZipFile(classpathElement).use { zipFile ->
+                zipFile.entries().asSequence()
+                    .filter { !it.isDirectory && it.name.startsWith(INDEX_DIRECTORY) }
+                    .map { entry -> zipFile.getInputStream(entry).bufferedReader().readLines() }
+                    .toList()
+            }
+        } else {
+            emptyList()
+        }
+
+        if (indexFiles.isEmpty() || indexFiles.any { it.firstOrNull() != HEADER }) {
+            return null
+        }
+        return indexFiles.flatMap { it.drop(1) }.filter { it.isNotBlank() }.map { it.substringBefore(' ') }.distinct()
+    }
+
+    /**
+     * Lists the names of all classes of a jar or class directory without reading the classes
+     */
+    fun classNames(classpathElement: File): List<String> {
+        val paths = if (classpathElement.isDirectory) {
+            classpathElement.walkTopDown().filter { it.isFile }.map { it.relativeTo(classpathElement).invariantSeparatorsPath }.toList()
+        } else if (classpathElement.isFile) {
+            ZipFile(classpathElement).use { zipFile -> zipFile.entries().asSequence().map { it.name }.toList() }
+        } else {
+            emptyList()
+        }
+
+        return paths
+            .filter { it.endsWith(".class") && !it.startsWith("META-INF/") }
+            .filter { it != "module-info.class" && !it.endsWith("/package-info.class") }
+            .map { it.removeSuffix(".class").replace('/', '.') }
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.gradle.plugins.fsm.descriptor
+
+import java.io.DataInputStream
+import java.io.File
+import java.io.InputStream
+import java.util.zip.ZipFile
+
+/**
+ * Checks whether the classes of a jar or class directory reference the FirstSpirit component annotations or the
+ * module interface at all. Only the constant pools of the classes are read, which is much cheaper than the full class
+ * parsing of the [ComponentScan]. Jars and directories without any reference cannot contain components and can be
+ * skipped.
+ */
+object ComponentReferences {
+
+    private val ANNOTATIONS_PACKAGE_PATH = (ComponentIndex.ANNOTATIONS_PACKAGE.replace('.', '/') + "/").toByteArray()
+    private val MODULE_INTERFACE_PATH = ComponentIndex.MODULE_INTERFACE.replace('.', '/').toByteArray()
+    private val MODULE_INTERFACE_DESCRIPTOR = "L${ComponentIndex.MODULE_INTERFACE.replace('.', '/')};".toByteArray()
+
+    /**
+     * @property classCount           The number of classes read, i.e. all classes if there is no reference
+     * @property referencesComponents Whether any class references the component annotations or the module interface
+     */
+    data class Result(val classCount: Int, val referencesComponents: Boolean)
+
+    fun check(classpathElement: File): Result {
+        if (classpathElement.isDirectory) {
+            val classFiles = classpathElement.walkTopDown().filter { it.isFile && it.name.endsWith(".class") }
+            return check(classFiles.map { file -> { file.inputStream() } })
+        } else if (classpathElement.isFile) {
+            ZipFile(classpathElement).use { zipFile ->
+                val entries = zipFile.entries().asSequence().filter { !it.isDirectory && it.name.endsWith(".class") }
+                return check(entries.map { entry -> { zipFile.getInputStream(entry) } })
+            }
+        }
+        return Result(0, false)
+    }
+
+    private fun check(classes: Sequence<() -> InputStream>): Result {
+        var classCount = 0
+        for (openClass in classes) {
+            classCount++
+            if (openClass().use { referencesComponents(it) }) {
+                return Result(classCount, true)
+            }
+        }
+        return Result(classCount, false)
+    }
+
+    /**
+     * Reads the constant pool of a class file and checks for UTF-8 entries containing the annotations package, e.g.
+     * the type descriptor `Lcom/espirit/moddev/components/annotations/PublicComponent;`, or the module interface, e.g.
+     * as an implemented interface. Returns true for unknown constant pool entries, so the class is scanned in that case.
+     */
+    fun referencesComponents(classFile: InputStream): Boolean {
+        val input = DataInputStream(classFile.buffered())
+        if (input.readInt() != CLASS_FILE_MAGIC) {
+            return false
+        }
+        input.skipBytes(4) // minor and major version
+        val constantPoolCount = input.readUnsignedShort()
+        var index = 1
+        while (index < constantPoolCount) {
+            when (input.readUnsignedByte()) {
+                CONSTANT_UTF8 -> {
+                    val bytes = ByteArray(input.readUnsignedShort())
+                    input.readFully(bytes)
+                    if (contains(bytes, ANNOTATIONS_PACKAGE_PATH) || bytes.contentEquals(MODULE_INTERFACE_PATH)
+                        || contains(bytes, MODULE_INTERFACE_DESCRIPTOR)) {
+                        return true
+                    }
+                }
+                CONSTANT_LONG, CONSTANT_DOUBLE -> {
+                    input.skipBytes(8)
+                    // Long and double constants take two slots in the constant pool
+                    index++
+                }
+                in FOUR_BYTE_CONSTANTS -> input.skipBytes(4)
+                in TWO_BYTE_CONSTANTS -> input.skipBytes(2)
+                CONSTANT_METHOD_HANDLE -> input.skipBytes(3)
+                else -> return true
+            }
+            index++
+        }
+        return false
+    }
+
+    private fun contains(bytes: ByteArray, part: ByteArray): Boolean {
+        outer@ for (start in 0..bytes.size - part.size) {
+            for (i in part.indices) {
+                if (bytes[start + i] != part[i]) {
+                    continue@outer
+                }
+            }
+            return true
+        }
+        return false
+    }
+
+    private const val CLASS_FILE_MAGIC = 0xCAFEBABE.toInt()
+    private const val CONSTANT_UTF8 = 1
+    private const val CONSTANT_LONG = 5
+    private const val CONSTANT_DOUBLE = 6
+    private const val CONSTANT_METHOD_HANDLE = 15
+
+    // Integer, Float, Fieldref, Methodref, InterfaceMethodref, NameAndType, Dynamic, InvokeDynamic
+    private val FOUR_BYTE_CONSTANTS = setOf(3, 4, 9, 10, 11, 12, 17, 18)
+
+    // Class, String, MethodType, Module, Package
+    private val TWO_BYTE_CONSTANTS = setOf(7, 8, 16, 19, 20)
+
+}
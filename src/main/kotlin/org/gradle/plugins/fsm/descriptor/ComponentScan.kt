@@ -4,23 +4,47 @@ import io.github.classgraph.ClassGraph
 import io.github.classgraph.ClassInfoList
 import io.github.classgraph.ScanResult
 import org.gradle.api.Project
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+import org.gradle.plugins.fsm.AntPattern
+import org.gradle.plugins.fsm.FSMPluginExtension
 import org.gradle.plugins.fsm.compileDependencies
+import org.gradle.plugins.fsm.metrics.ComponentScanEvent
 import java.io.Closeable
+import java.io.File
+import java.util.concurrent.ExecutorService
 import kotlin.reflect.KClass
 
 /**
  * Allows for finding FSM components in the project from their annotations. Wraps a [ScanResult] and provides a
  * Kotlin-centric API for interacting with it.
  *
- * Components are found in all project-internal Jar files that are included with the FSM.
+ * Components are found in all project-internal Jar files that are included with the FSM. If
+ * [FSMPluginExtension.scanClassesDirectories] is set, the class output directories of the projects are scanned
+ * instead of their jars, so the jars do not need to be read again. Projects without compiled classes are still
+ * scanned from their jar.
+ *
+ * If a jar or class directory contains a [ComponentIndex], only its indexed classes are read. Jars and directories
+ * without an index are scanned completely.
+ *
+ * The scan can be restricted to packages and jars in the [FSMPluginExtension]. With
+ * [FSMPluginExtension.skipJarsWithoutComponents], jars and directories whose classes do not reference the component
+ * annotations at all are skipped, see [ComponentReferences].
+ *
+ * The scan runs with [FSMPluginExtension.componentScanThreads] threads, or on the given [executor] with the given
+ * [parallelism]. Use the [org.gradle.plugins.fsm.WorkerPoolService] to share one thread pool in a build.
  *
  * Like [ScanResult], this class is [Closeable] and should be closed after using it.
  *
  * @see ClassGraph
  */
-class ComponentScan(private val project: Project): Closeable {
+class ComponentScan(
+    private val project: Project,
+    private val executor: ExecutorService? = null,
+    private val parallelism: Int? = null
+): Closeable {
 
-    private val scanResult: ScanResult = createClassGraph().scan()
+    private val scanResult: ScanResult = scan()
 
     override fun close() {
         scanResult.close()
@@ -30,19 +54,111 @@ class ComponentScan(private val project: Project): Closeable {
         return scanResult.getClassesImplementing(interfaceClass.java)
     }
 
-    fun getClassesWithAnnotation(annotationClass: KClass<out Annotation>): ClassInfoList {
-        return scanResult.getClassesWithAnnotation(annotationClass.java)
+    /**
+     * Returns all scanned classes with a component annotation or implementing the FirstSpirit module interface
+     */
+    fun getComponentClasses(): ClassInfoList {
+        val modules = scanResult.getClassesImplementing(ComponentIndex.MODULE_INTERFACE).names.toSet()
+        return scanResult.allClasses.filter { classInfo ->
+            classInfo.packageName != ComponentIndex.ANNOTATIONS_PACKAGE && (classInfo.name in modules
+                    || classInfo.annotationInfo.any { it.name.startsWith(ComponentIndex.ANNOTATIONS_PACKAGE + ".") })
+        }
     }
 
-    private fun createClassGraph(): ClassGraph {
-        val jarFiles = project.compileDependencies().map { it.buildJar() }
+    private fun scan(): ScanResult {
+        val event = ComponentScanEvent()
+        event.begin()
+        val extension = project.extensions.getByType(FSMPluginExtension::class.java)
+        val classpath = classpath(extension)
+        val indexes = classpath.associateWith { ComponentIndex.read(it) }
+
+        var skippedClasses = 0
+        val scannedClasspath = classpath.filter { element ->
+            if (!extension.skipJarsWithoutComponents || indexes[element] != null) {
+                return@filter true
+            }
+            val references = ComponentReferences.check(element)
+            if (!references.referencesComponents) {
+                LOGGER.debug("Skipping {} without references to component annotations", element)
+                skippedClasses += references.classCount
+            }
+            references.referencesComponents
+        }
+        if (scannedClasspath.size < classpath.size) {
+            LOGGER.info("Skipped {} of {} classpath elements with {} classes without references to component annotations",
+                classpath.size - scannedClasspath.size, classpath.size, skippedClasses)
+        }
+
         // Must include annotations dependency to get default values for annotations
         val annotationsDependency = project.configurations.getByName("fsmAnnotations").singleFile
 
-        return ClassGraph()
+        val classGraph = ClassGraph()
                 .enableClassInfo()
                 .enableAnnotationInfo()
-                .overrideClasspath(jarFiles + annotationsDependency)
+                .overrideClasspath(scannedClasspath + annotationsDependency)
+
+        if (extension.componentScanAcceptPackages.isNotEmpty()) {
+            classGraph.acceptPackages(*extension.componentScanAcceptPackages.toTypedArray())
+            classGraph.acceptPackagesNonRecursive(ComponentIndex.ANNOTATIONS_PACKAGE)
+        }
+        if (extension.componentScanRejectPackages.isNotEmpty()) {
+            classGraph.rejectPackages(*extension.componentScanRejectPackages.toTypedArray())
+        }
+
+        if (scannedClasspath.any { indexes[it] != null }) {
+            // ClassGraph only supports accepting classes for the whole scan, so all classes of jars
+            // and directories without an index are accepted explicitly
+            val acceptedClasses = scannedClasspath.flatMap { indexes[it] ?: ComponentIndex.classNames(it) }
+            LOGGER.info("Using component index of {} of {} classpath elements, reading {} classes",
+                indexes.values.count { it != null }, scannedClasspath.size, acceptedClasses.size)
+            classGraph.acceptPackagesNonRecursive(ComponentIndex.ANNOTATIONS_PACKAGE)
+            if (acceptedClasses.isNotEmpty()) {
+                classGraph.acceptClasses(*acceptedClasses.toTypedArray())
+            }
+        }
+
+        val threads = parallelism ?: extension.componentScanThreads
+        val scanResult = if (executor != null) {
+            classGraph.scan(executor, threads ?: Runtime.getRuntime().availableProcessors())
+        } else if (threads != null) {
+            classGraph.scan(threads)
+        } else {
+            classGraph.scan()
+        }
+
+        event.end()
+        if (event.shouldCommit()) {
+            event.jarCount = scannedClasspath.size + 1
+            event.classCount = scanResult.allClasses.size
+            event.skippedClassCount = skippedClasses
+            event.commit()
+        }
+        return scanResult
+    }
+
+    /**
+     * The class directories or jars of the project and its compile project dependencies, filtered by
+     * [FSMPluginExtension.componentScanAcceptJars] and [FSMPluginExtension.componentScanRejectJars]
+     */
+    private fun classpath(extension: FSMPluginExtension): List<File> {
+        val acceptJars = extension.componentScanAcceptJars.map { AntPattern.toRegex(it) }
+        val rejectJars = extension.componentScanRejectJars.map { AntPattern.toRegex(it) }
+
+        return project.compileDependencies().flatMap { dependency ->
+            val jar = dependency.buildJar()
+            val accepted = (acceptJars.isEmpty() || acceptJars.any { it.matches(jar.name) })
+                    && rejectJars.none { it.matches(jar.name) }
+            if (!accepted) {
+                LOGGER.info("Not scanning {} for components", jar.name)
+                return@flatMap emptyList()
+            }
+
+            if (extension.scanClassesDirectories) dependency.classesDirs() else listOf(jar)
+        }
+    }
+
+    companion object {
+        private val LOGGER: Logger = Logging.getLogger(ComponentScan::class.java)
     }
 
 }
\ No newline at end of file
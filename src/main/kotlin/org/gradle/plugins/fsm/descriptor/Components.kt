@@ -8,30 +8,29 @@ import de.espirit.firstspirit.module.Configuration
 import de.espirit.firstspirit.module.GadgetFactory
 import de.espirit.firstspirit.module.GadgetSpecification
 import de.espirit.firstspirit.scheduling.ScheduleTaskFormFactory
-import io.github.classgraph.ClassInfo
 import org.gradle.api.Project
 import org.redundent.kotlin.xml.Node
 import org.redundent.kotlin.xml.PrintOptions
 import org.redundent.kotlin.xml.xml
 import kotlin.reflect.KClass
 
-class Components(private val project: Project, private val scanResult: ComponentScan) {
+class Components(private val project: Project, private val scannedComponents: List<ScannedComponent>) {
 
     lateinit var webXmlPaths: List<String>
     val node: Node
 
     init {
         node = xml("components") {
-            components(PublicComponent::class, ::nodesForPublicComponent, scanResult).forEach(this::addElement)
-            components(ScheduleTaskComponent::class, ::nodesForScheduleTaskComponent, scanResult).forEach(this::addElement)
-            components(GadgetComponent::class, ::nodesForGadgetComponent, scanResult).forEach(this::addElement)
-            components(UrlFactoryComponent::class, ::nodesForUrlFactoryComponent, scanResult).forEach(this::addElement)
-            components(ServiceComponent::class, ::nodesForServiceComponent, scanResult).forEach(this::addElement)
-            components(WebServerComponent::class, ::nodesForWebServerComponent, scanResult).forEach(this::addElement)
-            ProjectAppComponents(project, scanResult).nodes.forEach(this::addElement)
+            components(PublicComponent::class, ::nodesForPublicComponent, scannedComponents).forEach(this::addElement)
+            components(ScheduleTaskComponent::class, ::nodesForScheduleTaskComponent, scannedComponents).forEach(this::addElement)
+            components(GadgetComponent::class, ::nodesForGadgetComponent, scannedComponents).forEach(this::addElement)
+            components(UrlFactoryComponent::class, ::nodesForUrlFactoryComponent, scannedComponents).forEach(this::addElement)
+            components(ServiceComponent::class, ::nodesForServiceComponent, scannedComponents).forEach(this::addElement)
+            components(WebServerComponent::class, ::nodesForWebServerComponent, scannedComponents).forEach(this::addElement)
+            ProjectAppComponents(project, scannedComponents).nodes.forEach(this::addElement)
             LibraryComponents(project).nodes.forEach(this::addElement)
 
-            val webAppComponents = WebAppComponents(project, scanResult)
+            val webAppComponents = WebAppComponents(project, scannedComponents)
             webAppComponents.nodes.forEach(this::addElement)
             webXmlPaths = webAppComponents.webXmlPaths
         }
@@ -45,22 +44,22 @@ class Components(private val project: Project, private val scanResult: Component
         return node.filter { true }.joinToString("\n\n") { it.toString(PRINT_OPTIONS) }
     }
 
-    private fun components(type: KClass<out Annotation>, transform: (ClassInfo) -> List<Node>, scanResult: ComponentScan): List<Node> {
-        return scanResult
-            .getClassesWithAnnotation(type)
+    private fun components(type: KClass<out Annotation>, transform: (ScannedComponent) -> List<Node>, scannedComponents: List<ScannedComponent>): List<Node> {
+        return scannedComponents
+            .filter { it.hasAnnotation(type) }
             .flatMap(transform)
     }
 
     @Suppress("DuplicatedCode") // No refactoring possible because of incompatible annotations
-    private fun nodesForPublicComponent(publicComponent: ClassInfo): List<Node> {
-        return publicComponent.annotationInfo
+    private fun nodesForPublicComponent(publicComponent: ScannedComponent): List<Node> {
+        return publicComponent.annotations
             .filter { it.isClass(PublicComponent::class) }
             .map { annotation ->
                 xml("public") {
                     "name" { -annotation.getString("name") }
                     "displayname" { -annotation.getString("displayName")  }
                     "description" { -annotation.getString("description") }
-                    "class" { -publicComponent.name }
+                    "class" { -publicComponent.className }
                     annotation.getClassNameOrNull("configurable", Configuration::class)?.let { "configurable" { -it } }
                     if (annotation.getString("hidden").toBoolean()) {
                         "hidden" { -"true" }
@@ -69,8 +68,8 @@ class Components(private val project: Project, private val scanResult: Component
             }
     }
 
-    private fun nodesForScheduleTaskComponent(scheduleTaskComponent: ClassInfo): List<Node> {
-        return scheduleTaskComponent.annotationInfo
+    private fun nodesForScheduleTaskComponent(scheduleTaskComponent: ScannedComponent): List<Node> {
+        return scheduleTaskComponent.annotations
             .filter { it.isClass(ScheduleTaskComponent::class) }
             .map { annotation ->
                 xml("public") {
@@ -79,7 +78,7 @@ class Components(private val project: Project, private val scanResult: Component
                     "description" { -annotation.getString("description") }
                     "class" { -"de.espirit.firstspirit.module.ScheduleTaskSpecification" }
                     "configuration" {
-                        "application" { -scheduleTaskComponent.name }
+                        "application" { -scheduleTaskComponent.className }
                         annotation.getClassNameOrNull("formClass", ScheduleTaskFormFactory::class)?.let { "form" { -it } }
                     }
                     annotation.getClassNameOrNull("configurable", Configuration::class)?.let { "configurable" { -it } }
@@ -87,8 +86,8 @@ class Components(private val project: Project, private val scanResult: Component
             }
     }
 
-    private fun nodesForGadgetComponent(gadgetComponent: ClassInfo): List<Node> {
-        return gadgetComponent.annotationInfo
+    private fun nodesForGadgetComponent(gadgetComponent: ScannedComponent): List<Node> {
+        return gadgetComponent.annotations
             .filter { it.isClass(GadgetComponent::class) }
             .map { annotation ->
                 xml("public") {
@@ -96,11 +95,11 @@ class Components(private val project: Project, private val scanResult: Component
                     "description" { -annotation.getString("description") }
                     "class" { -GadgetSpecification::class.java.name }
                     "configuration" {
-                        "gom" { -gadgetComponent.name }
+                        "gom" { -gadgetComponent.className }
 
                         annotation.getClassNames("factories")
-                                .filter { it.name != GadgetFactory::class.qualifiedName }
-                                .forEach { "factory" { -it.name } }
+                                .filter { it != GadgetFactory::class.qualifiedName }
+                                .forEach { "factory" { -it } }
 
                         annotation.getClassNameOrNull("valueEngineerFactory", ValueEngineerFactory::class)?.let { "value" { -it } }
 
@@ -119,8 +118,8 @@ class Components(private val project: Project, private val scanResult: Component
             }
     }
 
-    private fun nodesForUrlFactoryComponent(urlFactoryComponent: ClassInfo): List<Node> {
-        return urlFactoryComponent.annotationInfo
+    private fun nodesForUrlFactoryComponent(urlFactoryComponent: ScannedComponent): List<Node> {
+        return urlFactoryComponent.annotations
             .filter { it.isClass(UrlFactoryComponent::class) }
             .map { annotation ->
                 xml("public") {
@@ -129,7 +128,7 @@ class Components(private val project: Project, private val scanResult: Component
                     "description" { -annotation.getString("description") }
                     "class" { -UrlCreatorSpecification::class.java.name }
                     "configuration" {
-                        "UrlFactory" { -urlFactoryComponent.name }
+                        "UrlFactory" { -urlFactoryComponent.className }
                         "UseRegistry" { -annotation.getString("useRegistry") }
                         annotation.getClassNameOrNull("filenameFactory", FilenameFactory::class)?.let { "FilenameFactory" { -it } }
                         annotation.getAnnotationValues("parameters").forEach {
@@ -141,15 +140,15 @@ class Components(private val project: Project, private val scanResult: Component
     }
 
     @Suppress("DuplicatedCode") // No refactoring possible because of incompatible annotations
-    private fun nodesForServiceComponent(serviceComponent: ClassInfo): List<Node> {
-        return serviceComponent.annotationInfo
+    private fun nodesForServiceComponent(serviceComponent: ScannedComponent): List<Node> {
+        return serviceComponent.annotations
             .filter { it.isClass(ServiceComponent::class) }
             .map { annotation ->
                 xml("service") {
                     "name" { -annotation.getString("name") }
                     "displayname" { -annotation.getString("displayName") }
                     "description" { -annotation.getString("description") }
-                    "class" { -serviceComponent.name }
+                    "class" { -serviceComponent.className }
                     annotation.getClassNameOrNull("configurable", Configuration::class)?.let { "configurable" { -it } }
                     if (annotation.getString("hidden").toBoolean()) {
                         "hidden" { -"true" }
@@ -160,15 +159,15 @@ class Components(private val project: Project, private val scanResult: Component
 
 
     @Suppress("DuplicatedCode")
-    private fun nodesForWebServerComponent(webServerComponent: ClassInfo): List<Node> {
-        return webServerComponent.annotationInfo
+    private fun nodesForWebServerComponent(webServerComponent: ScannedComponent): List<Node> {
+        return webServerComponent.annotations
             .filter { it.isClass(WebServerComponent::class) }
             .map { annotation ->
                 xml("web-server") {
                     "name" { -annotation.getString("name") }
                     "displayname" { -annotation.getString("displayName") }
                     "description" { -annotation.getString("description") }
-                    "class" { -webServerComponent.name }
+                    "class" { -webServerComponent.className }
                     annotation.getClassNameOrNull("configurable", Configuration::class)?.let { "configurable" { -it } }
                     if (annotation.getString("hidden").toBoolean()) {
                         "hidden" { -"true" }
@@ -69,7 +69,7 @@ class FsmResources(private val project: Project, private val webXmlPaths: List<S
         }
 
         val fsmResources = mutableListOf<ResourceEntry>()
-        val files = resourcesDir.listFiles() ?: return fsmResources
+        val files = resourcesDir.listFiles()?.sortedBy { it.name } ?: return fsmResources
 
         for (resource in files) {
             val relativePath = resourcesDir.toPath().relativize(resource.toPath())
@@ -3,6 +3,8 @@ package org.gradle.plugins.fsm.descriptor
 import org.gradle.api.Project
 import org.gradle.api.artifacts.ResolvedArtifact
 import org.gradle.api.plugins.JavaPlugin
+import org.gradle.api.plugins.JavaPluginExtension
+import org.gradle.api.tasks.SourceSet
 import org.gradle.jvm.tasks.Jar
 import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.FS_MODULE_COMPILE_CONFIGURATION_NAME
 import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.FS_SERVER_COMPILE_CONFIGURATION_NAME
@@ -21,6 +23,15 @@ fun Project.buildJar(): File {
     return jarTask.archiveFile.get().asFile
 }
 
+/**
+ * Returns the existing class output directories of the main source set, e.g. of the Java and Kotlin compilations
+ */
+fun Project.classesDirs(): List<File> {
+    val mainSourceSet = extensions.getByType(JavaPluginExtension::class.java).sourceSets
+        .getByName(SourceSet.MAIN_SOURCE_SET_NAME)
+    return mainSourceSet.output.classesDirs.files.filter { it.isDirectory }
+}
+
 /**
  * Returns all artifacts defined on the server scope, i.e. with `fsServerCompile`
  */
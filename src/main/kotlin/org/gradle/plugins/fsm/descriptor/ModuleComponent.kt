@@ -8,21 +8,20 @@ import org.redundent.kotlin.xml.PrintOptions
 import org.redundent.kotlin.xml.xml
 import com.espirit.moddev.components.annotations.ModuleComponent
 import de.espirit.firstspirit.module.Configuration
-import io.github.classgraph.ClassInfo
 
-class ModuleComponent(scanResult: ComponentScan) {
+class ModuleComponent(scannedComponents: List<ScannedComponent>) {
 
     val nodes: List<Node>
 
     init {
-        val moduleAnnotatedClasses = scanResult.getClassesWithAnnotation(ModuleComponent::class)
-        val moduleImplClasses = scanResult.getClassesImplementing(Module::class)
+        val moduleAnnotatedClasses = scannedComponents.filter { it.hasAnnotation(ModuleComponent::class) }
+        val moduleImplClasses = scannedComponents.filter { it.module }
 
         val moduleClass = moduleClass(moduleAnnotatedClasses, moduleImplClasses)
         if (moduleClass != null) {
-            val annotation = moduleClass.annotationInfo.first { it.isClass(ModuleComponent::class) }
+            val annotation = moduleClass.annotations.first { it.isClass(ModuleComponent::class) }
             nodes = mutableListOf()
-            nodes.add(xml("class") { -moduleClass.name })
+            nodes.add(xml("class") { -moduleClass.className })
             annotation.getClassNameOrNull("configurable", Configuration::class)?.let {
                 nodes.add(xml("configurable") { -it })
             }
@@ -35,12 +34,12 @@ class ModuleComponent(scanResult: ComponentScan) {
         return nodes.joinToString("\n") { it.toString(PrintOptions(singleLineTextElements = true)) }
     }
 
-    private fun moduleClass(annotated: List<ClassInfo>, impl: List<ClassInfo>): ClassInfo? {
+    private fun moduleClass(annotated: List<ScannedComponent>, impl: List<ScannedComponent>): ScannedComponent? {
         val multipleModuleImplementations = impl.size > 1
         if (multipleModuleImplementations) {
             throw IllegalStateException(
                 """The following classes implementing ${Module::class.qualifiedName} were found in your project:
-                   ${impl.map { it.name }}
+                   ${impl.map { it.className }}
                    You cannot have more than one class implementing the module interface in your project.""")
         }
 
@@ -51,14 +50,14 @@ class ModuleComponent(scanResult: ComponentScan) {
         if (noModuleAnnotatedClasses) {
             LOGGER.info("No class with an @ModuleComponent annotation could be found in your project.")
             if (singleModuleImplementation) {
-                LOGGER.info("Looks like you forgot to add the @ModuleComponent annotation to " + impl[0])
+                LOGGER.info("Looks like you forgot to add the @ModuleComponent annotation to " + impl[0].className)
             }
         } else if (singleModuleAnnotatedClass) {
             return annotated.single()
         } else {
             throw IllegalStateException(
                 """The following classes annotated with @ModuleComponent were found in your project:
-                   ${annotated.map { it.name }}
+                   ${annotated.map { it.className }}
                    You cannot have more than one class annotated with @ModuleComponent in your project.""")
         }
 
@@ -3,10 +3,21 @@ package org.gradle.plugins.fsm.descriptor
 import org.gradle.api.GradleException
 import org.gradle.api.Project
 import org.gradle.plugins.fsm.FSMPluginExtension
+import org.gradle.plugins.fsm.metrics.PhaseMetrics
 import org.redundent.kotlin.xml.*
 import java.io.ByteArrayInputStream
 
-class ModuleDescriptor(private val project: Project) {
+/**
+ * The module-isolated.xml of a project.
+ *
+ * @param scannedComponents The components of the project, e.g. read from the file written by the `scanComponents`
+ *                          task, see [ScannedComponents]. If not set, the project is scanned.
+ */
+class ModuleDescriptor(
+    private val project: Project,
+    private val metrics: PhaseMetrics = PhaseMetrics(),
+    scannedComponents: List<ScannedComponent>? = null
+) {
 
     private val pluginExtension = project.extensions.getByType(FSMPluginExtension::class.java)
 
@@ -19,46 +30,70 @@ class ModuleDescriptor(private val project: Project) {
     init {
         val componentsNode: Node
 
-        ComponentScan(project).use {
-            components = Components(project, it)
-            componentsNode = components.node
-            resources = Resources(project, components.webXmlPaths)
-            moduleClass = ModuleComponent(it)
-            dependencies = pluginExtension.fsmDependencies.map { xml("depends") { -it } }
+        val scanned = scannedComponents ?: metrics.measure(PhaseMetrics.COMPONENT_SCAN) {
+            ComponentScan(project).use { ScannedComponents.of(it) }
+        }
+        components = metrics.measure(PhaseMetrics.COMPONENT_NODES) { Components(project, scanned) }
+        componentsNode = components.node
+        resources = metrics.measure(PhaseMetrics.RESOURCE_NODES) { Resources(project, components.webXmlPaths) }
+        moduleClass = metrics.measure(PhaseMetrics.COMPONENT_NODES) { ModuleComponent(scanned) }
+        dependencies = pluginExtension.fsmDependencies.map { xml("depends") { -it } }
 
-            node = xml("module") {
-                includeXmlProlog = true
-                version = XmlVersion.V10
-                moduleInformation(this)
-                "dependencies" {
-                    dependencies.forEach(this::addElement)
-                }
-                moduleClass.nodes.forEach(this::addElement)
-                addElement(componentsNode)
-                addElement(resources.node)
+        node = xml("module") {
+            includeXmlProlog = true
+            version = XmlVersion.V10
+            moduleInformation(this)
+            "dependencies" {
+                dependencies.forEach(this::addElement)
             }
+            moduleClass.nodes.forEach(this::addElement)
+            addElement(componentsNode)
+            addElement(resources.node)
         }
     }
 
     override fun toString(): String {
-        return node.toString(PRINT_OPTIONS)
+        return metrics.measure(PhaseMetrics.XML_RENDERING) { node.toString(PRINT_OPTIONS) }
     }
 
-    fun reformat(xml: String): String {
+    /**
+     * Parses and formats the module descriptor.
+     *
+     * @param replacedResources Resource paths mapped to the path replacing them in all `<resource>` elements,
+     *                          e.g. for libraries removed as duplicates from the FSM
+     */
+    fun reformat(xml: String, replacedResources: Map<String, String> = emptyMap()): String {
         if (xml.isBlank()) {
             throw GradleException("Module descriptor is empty.")
         }
 
-        val bytes = ByteArrayInputStream(xml.toByteArray())
-        val parsedNode = parse(bytes)
-        parsedNode.includeXmlProlog = true
-        return parsedNode.toString(PRINT_OPTIONS)
+        return metrics.measure(PhaseMetrics.REFORMAT) {
+            val bytes = ByteArrayInputStream(xml.toByteArray())
+            val parsedNode = parse(bytes)
+            if (replacedResources.isNotEmpty()) {
+                replaceResources(parsedNode, replacedResources)
+            }
+            parsedNode.includeXmlProlog = true
+            parsedNode.toString(PRINT_OPTIONS)
+        }
     }
 
     fun fsmDependencies(): String {
         return dependencies.joinToString("\n") { it.toString(PRINT_OPTIONS) }
     }
 
+    private fun replaceResources(node: Node, replacedResources: Map<String, String>) {
+        node.children.filterIsInstance<Node>().forEach { child ->
+            val path = child.children.singleOrNull() as? TextElement
+            val replacement = path?.let { replacedResources[it.text.trim()] }
+            if (child.nodeName == "resource" && replacement != null) {
+                child.replaceElement(path, TextElement(replacement))
+            } else {
+                replaceResources(child, replacedResources)
+            }
+        }
+    }
+
     private fun moduleInformation(descriptor: Node) {
         with(descriptor) {
             "name" { -(pluginExtension.moduleName ?: project.name) }
@@ -4,37 +4,35 @@ import com.espirit.moddev.components.annotations.ProjectAppComponent
 import de.espirit.firstspirit.module.Configuration
 import de.espirit.firstspirit.module.ProjectApp
 import de.espirit.firstspirit.server.module.ModuleInfo.Mode
-import io.github.classgraph.AnnotationInfo
-import io.github.classgraph.ClassInfo
 import org.gradle.api.Project
 import org.gradle.api.logging.Logger
 import org.gradle.api.logging.Logging
 import org.redundent.kotlin.xml.Node
 import org.redundent.kotlin.xml.xml
 
-class ProjectAppComponents(project: Project, private val scanResult: ComponentScan) : ComponentsWithResources(project) {
+class ProjectAppComponents(project: Project, private val scannedComponents: List<ScannedComponent>) : ComponentsWithResources(project) {
 
     val nodes by lazy {
-        scanResult.getClassesWithAnnotation(ProjectAppComponent::class)
+        scannedComponents.filter { it.hasAnnotation(ProjectAppComponent::class) }
             .map(this::nodeForProjectApp)
     }
 
     @Suppress("DuplicatedCode") // No refactoring possible because of incompatible annotations
-    private fun nodeForProjectApp(projectApp: ClassInfo): Node {
+    private fun nodeForProjectApp(projectApp: ScannedComponent): Node {
         // Report if ProjectApp does not seem to implement ProjectApp
-        if (projectApp.superclass?.name !in PROJECT_APP_TYPES) {
-            LOGGER.info("Project App '${projectApp.name}' does not appear to implement interface '${ProjectApp::class.qualifiedName}'.")
+        if (projectApp.superclassName !in PROJECT_APP_TYPES) {
+            LOGGER.info("Project App '${projectApp.className}' does not appear to implement interface '${ProjectApp::class.qualifiedName}'.")
             LOGGER.info("This might be because the class implements or extends an intermediary type inheriting from ${ProjectApp::class.simpleName}.")
         }
 
-        return projectApp.annotationInfo
+        return projectApp.annotations
             .filter { it.isClass(ProjectAppComponent::class) }
             .map { annotation ->
                 xml("project-app") {
                     "name" { -annotation.getString("name") }
                     "displayname" { -annotation.getString("displayName") }
                     "description" { -annotation.getString("description") }
-                    "class" { -projectApp.name }
+                    "class" { -projectApp.className }
                     annotation.getClassNameOrNull("configurable", Configuration::class)?.let { "configurable" { -it } }
 
                     val resources = nodesForResources(annotation)
@@ -51,7 +49,7 @@ class ProjectAppComponents(project: Project, private val scanResult: ComponentSc
             .first()
     }
 
-    private fun nodesForResources(annotation: AnnotationInfo): List<Node> {
+    private fun nodesForResources(annotation: ScannedAnnotation): List<Node> {
         val resources = annotation.getAnnotationValues("resources")
         val nodes = mutableListOf<Node>()
 
@@ -0,0 +1,177 @@
+package org.gradle.plugins.fsm.descriptor
+
+import de.espirit.firstspirit.module.Module
+import io.github.classgraph.AnnotationClassRef
+import io.github.classgraph.AnnotationEnumValue
+import io.github.classgraph.AnnotationInfo
+import java.io.DataInput
+import java.io.DataInputStream
+import java.io.DataOutput
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import kotlin.reflect.KClass
+
+/**
+ * The components found by a [ComponentScan], persisted by the `scanComponents` task so other tasks, e.g. the FSM
+ * task building the module descriptor, can use them without scanning the classes again.
+ *
+ * @property className      The name of the class
+ * @property superclassName The name of the direct superclass, if it was found by the scan
+ * @property annotations    The component annotations of the class, with the values of all parameters
+ * @property module         Whether the class implements the FirstSpirit module interface
+ */
+data class ScannedComponent(
+    val className: String,
+    val superclassName: String?,
+    val annotations: List<ScannedAnnotation>,
+    val module: Boolean
+) {
+
+    fun hasAnnotation(annotationClass: KClass<out Annotation>): Boolean {
+        return annotations.any { it.isClass(annotationClass) }
+    }
+
+}
+
+/**
+ * An annotation of a [ScannedComponent]. The parameter values include the defaults of the annotation type and are
+ * either strings, e.g. for primitive values, [ScannedClassRef]s, [ScannedEnumValue]s, nested [ScannedAnnotation]s
+ * or lists of these.
+ */
+data class ScannedAnnotation(val name: String, val parameterValues: Map<String, Any>)
+
+data class ScannedClassRef(val name: String)
+
+data class ScannedEnumValue(val className: String, val valueName: String)
+
+object ScannedComponents {
+
+    /**
+     * Path of the file written by the `scanComponents` task, relative to the build directory
+     */
+    const val FILE_NAME = "fsm/component-index.bin"
+
+    private const val MAGIC = 0x46534D43 // "FSMC"
+    private const val VERSION = 2
+
+    private const val STRING: Byte = 0
+    private const val CLASS_REF: Byte = 1
+    private const val ENUM_VALUE: Byte = 2
+    private const val ANNOTATION: Byte = 3
+    private const val LIST: Byte = 4
+
+    fun of(componentScan: ComponentScan): List<ScannedComponent> {
+        val modules = componentScan.getClassesImplementing(Module::class).names.toSet()
+        return componentScan.getComponentClasses().map { classInfo ->
+            val annotations = classInfo.annotationInfo
+                .filter { it.name.startsWith(ComponentIndex.ANNOTATIONS_PACKAGE + ".") }
+                .map(::annotation)
+            ScannedComponent(classInfo.name, classInfo.superclass?.name, annotations, classInfo.name in modules)
+        }.sortedBy { it.className }
+    }
+
+    fun write(file: File, components: List<ScannedComponent>) {
+        file.parentFile.mkdirs()
+        DataOutputStream(file.outputStream().buffered()).use { output ->
+            output.writeInt(MAGIC)
+            output.writeInt(VERSION)
+            output.writeInt(components.size)
+            for (component in components) {
+                output.writeUTF(component.className)
+                output.writeUTF(component.superclassName ?: "")
+                output.writeBoolean(component.module)
+                output.writeShort(component.annotations.size)
+                component.annotations.forEach { writeAnnotation(output, it) }
+            }
+        }
+    }
+
+    fun read(file: File): List<ScannedComponent> {
+        DataInputStream(file.inputStream().buffered()).use { input ->
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw IOException("Unsupported component index file '$file'.")
+            }
+            return List(input.readInt()) {
+                val className = input.readUTF()
+                val superclassName = input.readUTF().ifEmpty { null }
+                val module = input.readBoolean()
+                val annotations = List(input.readUnsignedShort()) { readAnnotation(input) }
+                ScannedComponent(className, superclassName, annotations, module)
+            }
+        }
+    }
+
+    private fun annotation(annotationInfo: AnnotationInfo): ScannedAnnotation {
+        // The parameter values include the defaults, because the annotations are on the classpath of the scan
+        val parameterValues = annotationInfo.parameterValues.associate { it.name to value(it.value) }
+        return ScannedAnnotation(annotationInfo.name, parameterValues)
+    }
+
+    private fun value(value: Any): Any {
+        return when (value) {
+            is AnnotationClassRef -> ScannedClassRef(value.name)
+            is AnnotationEnumValue -> ScannedEnumValue(value.className, value.valueName)
+            is AnnotationInfo -> annotation(value)
+            is Array<*> -> value.map { value(it!!) }
+            else -> value.toString()
+        }
+    }
+
+    private fun writeAnnotation(output: DataOutput, annotation: ScannedAnnotation) {
+        output.writeUTF(annotation.name)
+        output.writeShort(annotation.parameterValues.size)
+        annotation.parameterValues.forEach { (name, value) ->
+            output.writeUTF(name)
+            writeValue(output, value)
+        }
+    }
+
+    private fun writeValue(output: DataOutput, value: Any) {
+        when (value) {
+            is ScannedClassRef -> {
+                output.writeByte(CLASS_REF.toInt())
+                output.writeUTF(value.name)
+            }
+            is ScannedEnumValue -> {
+                output.writeByte(ENUM_VALUE.toInt())
+                output.writeUTF(value.className)
+                output.writeUTF(value.valueName)
+            }
+            is ScannedAnnotation -> {
+                output.writeByte(ANNOTATION.toInt())
+                writeAnnotation(output, value)
+            }
+            is List<*> -> {
+                output.writeByte(LIST.toInt())
+                output.writeShort(value.size)
+                value.forEach { writeValue(output, it!!) }
+            }
+            else -> {
+                output.writeByte(STRING.toInt())
+                output.writeUTF(value.toString())
+            }
+        }
+    }
+
+    private fun readAnnotation(input: DataInput): ScannedAnnotation {
+        val name = input.readUTF()
+        val parameterValues = LinkedHashMap<String, Any>()
+        repeat(input.readUnsignedShort()) {
+            parameterValues[input.readUTF()] = readValue(input)
+        }
+        return ScannedAnnotation(name, parameterValues)
+    }
+
+    private fun readValue(input: DataInput): Any {
+        return when (val type = input.readByte()) {
+            STRING -> input.readUTF()
+            CLASS_REF -> ScannedClassRef(input.readUTF())
+            ENUM_VALUE -> ScannedEnumValue(input.readUTF(), input.readUTF())
+            ANNOTATION -> readAnnotation(input)
+            LIST -> List(input.readUnsignedShort()) { readValue(input) }
+            else -> throw IOException("Unsupported value type $type in component index file.")
+        }
+    }
+
+}
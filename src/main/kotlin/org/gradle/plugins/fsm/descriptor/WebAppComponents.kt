@@ -4,8 +4,6 @@ import com.espirit.moddev.components.annotations.WebAppComponent
 import de.espirit.firstspirit.module.AbstractWebApp
 import de.espirit.firstspirit.module.Configuration
 import de.espirit.firstspirit.module.WebApp
-import io.github.classgraph.AnnotationInfo
-import io.github.classgraph.ClassInfo
 import org.gradle.api.GradleException
 import org.gradle.api.Project
 import org.gradle.api.artifacts.ResolvedArtifact
@@ -15,6 +13,8 @@ import org.gradle.api.plugins.JavaPlugin
 import org.gradle.plugins.fsm.DeclaredWebAppChecker
 import org.gradle.plugins.fsm.FSMPluginExtension
 import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin
+import org.gradle.plugins.fsm.metrics.ArtifactResolutionEvent
+import org.gradle.plugins.fsm.metrics.WebAppNodeEvent
 import org.gradle.plugins.fsm.projectDependencies
 import org.gradle.plugins.fsm.runtimeProjectDependencies
 import org.redundent.kotlin.xml.Node
@@ -22,17 +22,17 @@ import org.redundent.kotlin.xml.xml
 import java.io.File
 import java.util.*
 
-class WebAppComponents(project: Project, private val scanResult: ComponentScan): ComponentsWithResources(project) {
+class WebAppComponents(project: Project, private val scannedComponents: List<ScannedComponent>): ComponentsWithResources(project) {
 
     lateinit var webXmlPaths: List<String>
 
     val nodes by lazy {
-        val webAppClasses = scanResult.getClassesWithAnnotation(WebAppComponent::class)
+        val webAppClasses = scannedComponents.filter { it.hasAnnotation(WebAppComponent::class) }
         verify(webAppClasses)
         nodesForWebApp(webAppClasses)
     }
 
-    private fun verify(webAppClasses: List<ClassInfo>) {
+    private fun verify(webAppClasses: List<ScannedComponent>) {
         val webAppChecker = DeclaredWebAppChecker(project, webAppClasses)
         val declaredWebApps = project.extensions.getByType(FSMPluginExtension::class.java).getWebApps()
 
@@ -60,7 +60,7 @@ class WebAppComponents(project: Project, private val scanResult: ComponentScan):
         }
     }
 
-    private fun nodesForWebApp(webAppClasses: List<ClassInfo>): List<Node> {
+    private fun nodesForWebApp(webAppClasses: List<ScannedComponent>): List<Node> {
         // We might find the same dependencies in different subprojects / configurations, but with different versions
         // Because only one version ends up in the FSM archive, we need to make sure we always use the correct version
         val allCompileDependencies = project.configurations.getByName(JavaPlugin.RUNTIME_CLASSPATH_CONFIGURATION_NAME)
@@ -74,13 +74,16 @@ class WebAppComponents(project: Project, private val scanResult: ComponentScan):
         val nodes = mutableListOf<Node>()
 
         webAppClasses.forEach { webAppClass ->
+            val event = WebAppNodeEvent()
+            event.begin()
+
             // Report if WebApp does not seem to implement WebApp or AbstractWebApp
-            if (webAppClass.superclass?.name !in WEB_APP_TYPES) {
-                LOGGER.info("Web App '${webAppClass.name}' does not appear to implement interface '${WebApp::class.qualifiedName}'.")
+            if (webAppClass.superclassName !in WEB_APP_TYPES) {
+                LOGGER.info("Web App '${webAppClass.className}' does not appear to implement interface '${WebApp::class.qualifiedName}'.")
                 LOGGER.info("This might be because the class implements or extends an intermediary type inheriting from ${WebApp::class.simpleName}.")
             }
 
-            val annotation = webAppClass.annotationInfo
+            val annotation = webAppClass.annotations
                     .filter { it.isClass(WebAppComponent::class) }
                     .first()
             val webCompileConfiguration = project.configurations.getByName(FSMConfigurationsPlugin.FS_WEB_COMPILE_CONFIGURATION_NAME)
@@ -144,7 +147,7 @@ class WebAppComponents(project: Project, private val scanResult: ComponentScan):
                 "name" { -webAppName }
                 "displayname" { -annotation.getString("displayName") }
                 "description" { -annotation.getString("description") }
-                "class" { -webAppClass.name }
+                "class" { -webAppClass.className }
                 annotation.getClassNameOrNull("configurable", Configuration::class)?.let { "configurable" { -it } }
                 "web-xml" { -webXmlPath }
                 "web-resources" {
@@ -163,6 +166,13 @@ class WebAppComponents(project: Project, private val scanResult: ComponentScan):
                     "hidden" { -"true" }
                 }
             })
+
+            event.end()
+            if (event.shouldCommit()) {
+                event.webApp = webAppName
+                event.webResourceCount = webResources.size
+                event.commit()
+            }
         }
 
         this.webXmlPaths = webXmlPaths
@@ -180,7 +190,9 @@ class WebAppComponents(project: Project, private val scanResult: ComponentScan):
      */
     private fun getResolvedDependencies(project: Project, configurationName: String, allDependencies: Set<ResolvedArtifact>): MutableSet<ResolvedArtifact> {
         val configuration = project.configurations.findByName(configurationName) ?: return Collections.emptySet()
-        val resolvedArtifacts = configuration.resolvedConfiguration.resolvedArtifacts
+        val resolvedArtifacts = ArtifactResolutionEvent.record(project.path, configurationName) {
+            configuration.resolvedConfiguration.resolvedArtifacts
+        }
         return allDependencies.filter { resource ->
             resolvedArtifacts.any { it.hasSameModuleAs(resource) }
         }.toMutableSet()
@@ -190,7 +202,7 @@ class WebAppComponents(project: Project, private val scanResult: ComponentScan):
         val fsmWebResourcesPath = project.projectDir.resolve(FSMConfigurationsPlugin.FSM_RESOURCES_PATH).absolutePath
         val fsmWebResourcesFolder = File(fsmWebResourcesPath)
         return if (fsmWebResourcesFolder.exists()) {
-            fsmWebResourcesFolder.listFiles()?.map { file ->
+            fsmWebResourcesFolder.listFiles()?.sortedBy { it.name }?.map { file ->
                 val relPath = fsmWebResourcesFolder.toPath().relativize(file.toPath())
                 xml("resource") {
                     attribute("name", "${project.group}:${project.name}-$relPath")
@@ -203,7 +215,7 @@ class WebAppComponents(project: Project, private val scanResult: ComponentScan):
         }
     }
 
-    private fun nodesForWebResources(annotation: AnnotationInfo): List<Node> {
+    private fun nodesForWebResources(annotation: ScannedAnnotation): List<Node> {
         val resources = annotation.getAnnotationValues("webResources")
         val nodes = mutableListOf<Node>()
 
@@ -9,10 +9,20 @@ import org.json.JSONObject
 import java.io.Closeable
 import java.net.UnknownHostException
 import java.nio.file.Path
-
-class ComplianceCheck(private val complianceLevel: ComplianceLevel, targetPath: Path,
+import java.util.zip.ZipFile
+
+/**
+ * Uploads FSMs to the FSM Dependency Detector and checks the analysis against a [ComplianceLevel]. Several FSMs can
+ * be checked with a single upload and analysis, see [checkEach].
+ *
+ * @param targetPaths The directories the JUnit reports of the category violations are written to
+ */
+class ComplianceCheck(private val complianceLevel: ComplianceLevel, targetPaths: Collection<Path>,
                       private val webserviceConnector: WebServiceConnector): Closeable {
 
+    constructor(complianceLevel: ComplianceLevel, targetPath: Path, webserviceConnector: WebServiceConnector):
+            this(complianceLevel, listOf(targetPath), webserviceConnector)
+
     private var resultMessage = ""
 
     private val violationHandlers = mutableListOf<ViolationHandler>()
@@ -31,7 +41,7 @@ class ComplianceCheck(private val complianceLevel: ComplianceLevel, targetPath:
                 }
             }
         })
-        violationHandlers.add(JUnitXMLFormatHandler(targetPath))
+        targetPaths.forEach { violationHandlers.add(JUnitXMLFormatHandler(it)) }
     }
 
     fun addWhitelistedResource(resourceInfo: String) {
@@ -47,20 +57,39 @@ class ComplianceCheck(private val complianceLevel: ComplianceLevel, targetPath:
             return VerificationResult(VALID, NO_FILES_SKIP_CHECK_MESSAGE)
         }
 
-        val uploadResult: VerificationResult = uploadFiles(files)
+        val results = checkEach(files).values
+        return results.firstOrNull { !it.isValid() } ?: results.first()
+    }
 
+    /**
+     * Checks several FSMs with a single upload and analysis. Failed modules are assigned to the FSMs by their file
+     * name, jars with invalid bytecode and FirstSpirit artifacts to the FSMs containing them. The detector reports
+     * the category violations for all uploaded FSMs together, so they cannot be assigned to the FSMs causing them:
+     * if several FSMs were uploaded and a category fails, the FSMs passing the analysis get an
+     * [UNASSIGNED][VerificationResult.Status.UNASSIGNED] result and are to be checked separately. No report is written
+     * in this case.
+     *
+     * @param files The FSMs to check
+     * @return The result of each FSM, in the order of [files]
+     */
+    fun checkEach(files: List<Path>): Map<Path, VerificationResult> {
+        if (files.isEmpty()) {
+            return emptyMap()
+        }
+
+        val uploadResult = uploadFiles(files)
         if (uploadResult.status !== VALID) {
-            return uploadResult
+            return files.associateWith { uploadResult }
         }
 
         for (resource in whitelistedResources) {
             try {
                 webserviceConnector.addWhitelistedResource(resource)
             } catch (e: HttpResponseException) {
-                return VerificationResult(
+                return files.associateWith { VerificationResult(
                     CONNECTION_FAILED,
                     "Adding whitelist resource failed with status '${e.statusCode}'"
-                )
+                ) }
             }
         }
 
@@ -68,29 +97,37 @@ class ComplianceCheck(private val complianceLevel: ComplianceLevel, targetPath:
             try {
                 webserviceConnector.addContentCreatorComponent(component)
             } catch (e: HttpResponseException) {
-                return VerificationResult(
+                return files.associateWith { VerificationResult(
                     CONNECTION_FAILED,
                     "Adding ContentCreator component failed with status '${e.statusCode}'"
-                )
+                ) }
             }
         }
 
-        val analyzeResult = analyzeUploadedFiles()
-        if (analyzeResult.status === VALID) {
-            val categories =
-                try {
-                    webserviceConnector.requestCategories()
-                } catch (e: HttpResponseException) {
-                    return VerificationResult(
-                        CONNECTION_FAILED,
-                        "Retrieving categories failed with status '${e.statusCode}'"
-                    )
-                }
-            val categoriesResult = CategoriesResult(categories)
-            return analyzeCategories(categoriesResult)
-        } else {
-            return analyzeResult
+        val analyzeResults = analyzeUploadedFiles(files)
+        val analyzedFiles = analyzeResults.filterValues { it.status === VALID }.keys
+        if (analyzedFiles.isEmpty()) {
+            return analyzeResults
         }
+
+        val categories =
+            try {
+                webserviceConnector.requestCategories()
+            } catch (e: HttpResponseException) {
+                return analyzeResults + analyzedFiles.associateWith { VerificationResult(
+                    CONNECTION_FAILED,
+                    "Retrieving categories failed with status '${e.statusCode}'"
+                ) }
+            }
+        val categoriesResult = CategoriesResult(categories)
+        if (files.size > 1 && isFailure(categoriesResult)) {
+            return analyzeResults + analyzedFiles.associateWith { VerificationResult(
+                UNASSIGNED,
+                "Category violations of the modules checked together cannot be assigned to a single module"
+            ) }
+        }
+        val result = analyzeCategories(categoriesResult)
+        return analyzeResults + analyzedFiles.associateWith { result }
     }
 
     private fun uploadFiles(files: List<Path>): VerificationResult {
@@ -104,41 +141,48 @@ class ComplianceCheck(private val complianceLevel: ComplianceLevel, targetPath:
         }
     }
 
-    private fun analyzeUploadedFiles(): VerificationResult {
+    private fun analyzeUploadedFiles(files: List<Path>): Map<Path, VerificationResult> {
         val analyzeResult = try {
             webserviceConnector.analyzeRequest()
         } catch (e: HttpResponseException) {
-            return VerificationResult(
+            return files.associateWith { VerificationResult(
                 CONNECTION_FAILED,
                 "Analyze failed with status '${e.statusCode}'"
-            )
+            ) }
         }
 
         val jsonResult = JSONObject(analyzeResult)
-        val failedModules = jsonResult.getJSONArray("failedModules")
-        return if (failedModules.toList().isEmpty()) {
-            val checkedFsmFiles = jsonResult.getJSONArray("checkedFsmFiles")
-            for (checkedFsmFile in checkedFsmFiles) {
-                val jarsWithInvalidBytecode =
-                    (checkedFsmFile as JSONObject).getJSONArray("jarsWithInvalidBytecode")
-                if (!jarsWithInvalidBytecode.isEmpty) {
-                    return VerificationResult(
-                        INVALID, "Jars with invalid bytecode level detected: "
-                                + jarsWithInvalidBytecode.join(", ")
-                    )
-                }
-                val detectedFirstSpiritJars =
-                    checkedFsmFile.getJSONArray("detectedFirstSpiritArtifacts")
-                if (!detectedFirstSpiritJars.isEmpty) {
-                    return VerificationResult(
-                        INVALID, "FirstSpirit artifacts detected: "
-                                + detectedFirstSpiritJars.join(", ")
-                    )
-                }
+        val failedModules = jsonResult.getJSONArray("failedModules").map { it as JSONObject }
+        // Failed modules which cannot be assigned to an uploaded file fail all files
+        val failedModulesByFile = failedModules.groupBy { failedModule ->
+            files.firstOrNull { it.fileName.toString() == failedModule.optString("failedFile") }
+        }
+        val unassignedFailedModules = failedModulesByFile[null].orEmpty()
+
+        val jarsWithInvalidBytecode = mutableListOf<String>()
+        val detectedFirstSpiritJars = mutableListOf<String>()
+        for (checkedFsmFile in jsonResult.getJSONArray("checkedFsmFiles")) {
+            jarsWithInvalidBytecode += (checkedFsmFile as JSONObject).getJSONArray("jarsWithInvalidBytecode").map { it.toString() }
+            detectedFirstSpiritJars += checkedFsmFile.getJSONArray("detectedFirstSpiritArtifacts").map { it.toString() }
+        }
+        val jarOwners = JarOwners(files)
+
+        return files.associateWith { file ->
+            val fileFailedModules = failedModulesByFile[file].orEmpty() + unassignedFailedModules
+            val fileJarsWithInvalidBytecode = jarsWithInvalidBytecode.filter { file in jarOwners.filesContaining(it) }
+            val fileFirstSpiritJars = detectedFirstSpiritJars.filter { file in jarOwners.filesContaining(it) }
+            when {
+                fileFailedModules.isNotEmpty() -> VerificationResult.createInvalidResultFromJson(JSONArray(fileFailedModules))
+                fileJarsWithInvalidBytecode.isNotEmpty() -> VerificationResult(
+                    INVALID, "Jars with invalid bytecode level detected: "
+                            + fileJarsWithInvalidBytecode.joinToString(", ") { JSONObject.quote(it) }
+                )
+                fileFirstSpiritJars.isNotEmpty() -> VerificationResult(
+                    INVALID, "FirstSpirit artifacts detected: "
+                            + fileFirstSpiritJars.joinToString(", ") { JSONObject.quote(it) }
+                )
+                else -> VerificationResult(VALID, "")
             }
-            VerificationResult(VALID, "")
-        } else {
-            VerificationResult.createInvalidResultFromJson(failedModules)
         }
     }
 
@@ -175,6 +219,28 @@ class ComplianceCheck(private val complianceLevel: ComplianceLevel, targetPath:
         }
     }
 
+    /**
+     * Finds the uploaded files containing a jar reported by the detector. With a single file, all jars belong to it
+     * and the file is not read.
+     */
+    private class JarOwners(private val files: List<Path>) {
+
+        private val entryNames by lazy {
+            files.associateWith { file ->
+                ZipFile(file.toFile()).use { zip -> zip.entries().asSequence().map { it.name }.toSet() }
+            }
+        }
+
+        fun filesContaining(jar: String): List<Path> {
+            if (files.size == 1) {
+                return files
+            }
+            val owners = files.filter { file -> entryNames.getValue(file).any { it == jar || it.endsWith("/$jar") } }
+            return owners.ifEmpty { files }
+        }
+
+    }
+
     override fun close() {
         webserviceConnector.close()
     }
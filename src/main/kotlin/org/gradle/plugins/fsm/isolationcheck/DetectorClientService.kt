@@ -0,0 +1,176 @@
+package org.gradle.plugins.fsm.isolationcheck
+
+import org.apache.hc.client5.http.config.ConnectionConfig
+import org.apache.hc.client5.http.impl.ChainElement
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder
+import org.apache.hc.core5.http.ConnectionClosedException
+import org.apache.hc.core5.http.HttpStatus
+import org.apache.hc.core5.io.CloseMode
+import org.apache.hc.core5.util.TimeValue
+import org.apache.hc.core5.util.Timeout
+import org.gradle.api.provider.Property
+import org.gradle.api.services.BuildService
+import org.gradle.api.services.BuildServiceParameters
+import org.gradle.plugins.fsm.WorkerPoolService
+import java.io.InterruptedIOException
+import java.net.ConnectException
+import java.net.NoRouteToHostException
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+import java.time.Duration
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
+import javax.net.ssl.SSLException
+
+/**
+ * Build service providing one pooled HTTP client for the requests of all isolation checks of a build. Connections to
+ * the FSM Dependency Detector are kept alive and reused by the checks of all projects, so the TLS handshake is done
+ * once per connection instead of once per check. Isolation checks of projects built in parallel lease separate
+ * connections from the pool.
+ *
+ * The client does not keep any state of a check: cookies, credentials, the response timeout and the request telemetry
+ * belong to the [WebServiceConnector] of each check.
+ *
+ * Checks can also be submitted to run in the background, see [submitCheck]. The service keeps the submitted checks
+ * until they are awaited, checks not awaited until the end of the build are cancelled.
+ */
+abstract class DetectorClientService : BuildService<DetectorClientService.Parameters>, AutoCloseable {
+
+    interface Parameters : BuildServiceParameters {
+        /**
+         * The maximum number of pooled connections, usually the maximum number of Gradle workers
+         */
+        val maxConnections: Property<Int>
+
+        /**
+         * The timeout for establishing a connection to the detector
+         */
+        val connectTimeout: Property<Duration>
+    }
+
+    private val clientDelegate = lazy { createClient(parameters.maxConnections.get(), parameters.connectTimeout.get()) }
+
+    /**
+     * The shared client, created on first use. It is closed at the end of the build and must not be closed by the
+     * caller.
+     */
+    val client: CloseableHttpClient by clientDelegate
+
+    private val executorDelegate = lazy { WorkerPoolService.newCachedThreadPool("fsm-isolation-check") }
+
+    private val executor: ExecutorService by executorDelegate
+
+    private val submittedChecks = ConcurrentHashMap<String, Pair<DetectorCheck, Future<VerificationResult>>>()
+
+    /**
+     * Starts a check in the background
+     *
+     * @param key   The key to await the check with, usually the path of the isolation check task
+     * @param check The check
+     */
+    fun submitCheck(key: String, check: DetectorCheck) {
+        submittedChecks[key] = check to executor.submit(check)
+    }
+
+    /**
+     * Waits for a check started with [submitCheck]
+     *
+     * @return The finished check, or `null` if no check was submitted for the key
+     */
+    fun awaitCheck(key: String): FinishedCheck? {
+        val (check, result) = submittedChecks.remove(key) ?: return null
+        val outcome = try {
+            Result.success(WorkerPoolService.await(result))
+        } catch (e: Exception) {
+            Result.failure(e)
+        }
+        return FinishedCheck(outcome, check.requestTelemetry)
+    }
+
+    override fun close() {
+        if (executorDelegate.isInitialized()) {
+            executor.shutdownNow()
+        }
+        if (clientDelegate.isInitialized()) {
+            // Aborts the requests of checks which were not awaited
+            client.close(CloseMode.IMMEDIATE)
+        }
+    }
+
+    /**
+     * A check which can be submitted to the service. It must not access the project, as it runs on another thread.
+     */
+    interface DetectorCheck : Callable<VerificationResult> {
+        /**
+         * The telemetry of the requests sent by the check
+         */
+        val requestTelemetry: List<RequestTelemetry>
+    }
+
+    /**
+     * A check started with [submitCheck] which finished, successfully or not
+     *
+     * @property requestTelemetry The telemetry of the requests sent by the check, also if it failed
+     */
+    class FinishedCheck(private val outcome: Result<VerificationResult>, val requestTelemetry: List<RequestTelemetry>) {
+
+        /**
+         * Returns the result of the check, or rethrows the exception of a failed check
+         */
+        fun getResult(): VerificationResult {
+            return outcome.getOrThrow()
+        }
+
+    }
+
+    companion object {
+        const val NAME = "fsmDetectorClient"
+
+        val DEFAULT_CONNECT_TIMEOUT: Duration = Duration.ofMinutes(3)
+
+        /**
+         * Creates a pooled client with the retry strategy and telemetry of the detector requests. Pooled connections
+         * inactive for some time are validated before they are reused, idle connections are closed after a minute.
+         */
+        fun createClient(maxConnections: Int, connectTimeout: Duration): CloseableHttpClient {
+            val connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build()
+            val connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(connectionConfig)
+                .build()
+
+            val retryStrategy = object : DefaultHttpRequestRetryStrategy(3, TimeValue.ofSeconds(5),
+                listOf(
+                    InterruptedIOException::class.java,
+                    UnknownHostException::class.java,
+                    ConnectException::class.java,
+                    ConnectionClosedException::class.java,
+                    NoRouteToHostException::class.java,
+                    SSLException::class.java,
+                    SocketTimeoutException::class.java),
+                listOf(
+                    HttpStatus.SC_TOO_MANY_REQUESTS,
+                    HttpStatus.SC_BAD_GATEWAY,
+                    HttpStatus.SC_SERVICE_UNAVAILABLE,
+                )) {}
+
+            return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setRetryStrategy(retryStrategy)
+                // Called for each attempt, including retries
+                .addExecInterceptorAfter(ChainElement.RETRY.name, "telemetry", TelemetryExecHandler())
+                .evictIdleConnections(TimeValue.ofMinutes(1))
+                .build()
+        }
+    }
+
+}
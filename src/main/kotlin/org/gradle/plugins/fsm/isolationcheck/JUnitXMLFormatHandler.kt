@@ -105,7 +105,7 @@ class JUnitXMLFormatHandler(private val targetPath: Path): ViolationHandler {
     }
 
     companion object {
-        private const val JUNIT_REPORTS_DIR = "fsmchecker-reports"
+        const val JUNIT_REPORTS_DIR = "fsmchecker-reports"
 
         fun getTestSuiteName(category: Category): String {
             for (complianceLevel in ComplianceLevel.values()) {
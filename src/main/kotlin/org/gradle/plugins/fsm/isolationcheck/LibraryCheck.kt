@@ -0,0 +1,143 @@
+package org.gradle.plugins.fsm.isolationcheck
+
+import org.gradle.plugins.fsm.WorkerPoolService
+import org.gradle.plugins.fsm.isolationcheck.VerificationResult.Status.INVALID
+import org.gradle.plugins.fsm.isolationcheck.VerificationResult.Status.VALID
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.File
+import java.io.InputStream
+import java.util.Properties
+import java.util.concurrent.ExecutorService
+import java.util.zip.ZipFile
+import java.util.zip.ZipInputStream
+
+/**
+ * Checks the libraries of an FSM for the problems the FSM Dependency Detector reports as `jarsWithInvalidBytecode`
+ * and `detectedFirstSpiritArtifacts`, without uploading the FSM:
+ *
+ * - Classes compiled for a newer Java version than [maxBytecodeVersion]. Only the first 8 bytes of each class are read
+ *   to get its major version. Classes of multi-release jars for newer Java versions (`META-INF/versions/`) are
+ *   ignored, as they are only loaded by newer JVMs.
+ * - FirstSpirit artifacts, which are provided by the FirstSpirit server and must not be part of a module. They are
+ *   detected by the Maven coordinates in the jar, including those of artifacts shaded into it, or by the file name if the
+ *   jar has no coordinates.
+ *
+ * The jars in the `lib` directory of the FSM are streamed without extracting them, in parallel.
+ *
+ * @param maxBytecodeVersion The maximum class file major version, e.g. 61 for Java 17
+ * @param executor           The pool checking the jars, e.g. of the [WorkerPoolService]. If not set, a pool with
+ *                           [parallelism] threads is used.
+ * @param parallelism        The number of jars checked in parallel if no [executor] is set
+ */
+class LibraryCheck(
+    private val maxBytecodeVersion: Int,
+    private val executor: ExecutorService? = null,
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors()
+) {
+
+    /**
+     * The result of checking a single jar
+     *
+     * @property bytecodeVersion    The highest class file major version found in the jar, 0 if it contains no classes
+     * @property firstSpiritArtifact Whether the jar is a FirstSpirit artifact
+     */
+    data class JarResult(val path: String, val bytecodeVersion: Int, val firstSpiritArtifact: Boolean)
+
+    fun check(fsm: File): VerificationResult {
+        val results = checkLibraries(fsm)
+
+        val jarsWithInvalidBytecode = results.filter { it.bytecodeVersion > maxBytecodeVersion }
+        if (jarsWithInvalidBytecode.isNotEmpty()) {
+            return VerificationResult(INVALID, "Jars with invalid bytecode level detected: " +
+                    jarsWithInvalidBytecode.joinToString(", ") { "${it.path} (${it.bytecodeVersion})" } +
+                    ". The maximum bytecode version is $maxBytecodeVersion.")
+        }
+
+        val firstSpiritArtifacts = results.filter { it.firstSpiritArtifact }
+        if (firstSpiritArtifacts.isNotEmpty()) {
+            return VerificationResult(INVALID, "FirstSpirit artifacts detected: " +
+                    firstSpiritArtifacts.joinToString(", ") { it.path })
+        }
+
+        return VerificationResult(VALID, "Checked ${results.size} libraries: no invalid bytecode level" +
+                " or FirstSpirit artifacts detected.")
+    }
+
+    /**
+     * Checks all jars in the `lib` directory of the FSM
+     *
+     * @return The results of the jars, in the order of the archive
+     */
+    fun checkLibraries(fsm: File): List<JarResult> {
+        ZipFile(fsm).use { zipFile ->
+            val jars = zipFile.entries().asSequence()
+                .filter { !it.isDirectory && it.name.startsWith(LIB_DIR) && it.name.endsWith(".jar") }
+                .toList()
+            return WorkerPoolService.map(jars, executor, "fsm-library-check", parallelism) { jar ->
+                zipFile.getInputStream(jar).use { checkJar(jar.name, it) }
+            }
+        }
+    }
+
+    private fun checkJar(path: String, input: InputStream): JarResult {
+        var bytecodeVersion = 0
+        val groupIds = mutableSetOf<String>()
+
+        val jar = ZipInputStream(input)
+        var entry = jar.nextEntry
+        while (entry != null) {
+            val name = entry.name
+            if (name.endsWith(".class") && !name.startsWith(VERSIONED_CLASSES_DIR)) {
+                bytecodeVersion = maxOf(bytecodeVersion, readMajorVersion(jar) ?: 0)
+            } else if (name.startsWith(MAVEN_METADATA_DIR) && name.endsWith("/pom.properties")) {
+                val properties = Properties()
+                properties.load(jar)
+                properties.getProperty("groupId")?.let { groupIds.add(it) }
+            }
+            entry = jar.nextEntry
+        }
+
+        val fileName = path.substringAfterLast('/')
+        // Shaded jars contain the coordinates of every bundled artifact, so any FirstSpirit coordinates flag the jar
+        val firstSpiritArtifact = if (groupIds.isNotEmpty()) {
+            FIRSTSPIRIT_GROUP_ID in groupIds
+        } else {
+            FIRSTSPIRIT_ARTIFACT_IDS.any { fileName.startsWith("$it-") || fileName == "$it.jar" }
+        }
+        return JarResult(path, bytecodeVersion, firstSpiritArtifact)
+    }
+
+    /**
+     * Reads the major version from the class file header: `0xCAFEBABE`, minor version, major version
+     *
+     * @return The major version, or `null` if the entry is not a valid class file
+     */
+    private fun readMajorVersion(input: InputStream): Int? {
+        val header = DataInputStream(input)
+        return try {
+            if (header.readInt() != CLASS_FILE_MAGIC) {
+                return null
+            }
+            header.readUnsignedShort()
+            header.readUnsignedShort()
+        } catch (e: EOFException) {
+            null
+        }
+    }
+
+    companion object {
+        private const val LIB_DIR = "lib/"
+        private const val VERSIONED_CLASSES_DIR = "META-INF/versions/"
+        private const val MAVEN_METADATA_DIR = "META-INF/maven/"
+        private const val CLASS_FILE_MAGIC = 0xCAFEBABE.toInt()
+        private const val FIRSTSPIRIT_GROUP_ID = "de.espirit.firstspirit"
+
+        /**
+         * Artifacts of the FirstSpirit server API, detected by file name if a jar has no Maven coordinates
+         */
+        private val FIRSTSPIRIT_ARTIFACT_IDS = listOf("fs-isolated-runtime", "fs-isolated-server", "fs-access",
+            "fs-server", "fs-api")
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.gradle.plugins.fsm.isolationcheck
+
+import org.apache.hc.client5.http.classic.ExecChain
+import org.apache.hc.client5.http.classic.ExecChainHandler
+import org.apache.hc.core5.http.ClassicHttpRequest
+import org.apache.hc.core5.http.ClassicHttpResponse
+import org.apache.hc.core5.http.HttpEntity
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.FilterInputStream
+import java.io.InputStream
+import java.io.OutputStream
+import java.util.concurrent.TimeUnit
+
+/**
+ * Telemetry of a single attempt of a request to the FSM Dependency Detector. Retried requests are recorded once
+ * for each attempt.
+ *
+ * @property endpoint The request path, without query parameters
+ * @property attempt  The attempt number, starting with 1
+ */
+class RequestTelemetry(val method: String, val endpoint: String, val attempt: Int, val bytesSent: Long) {
+
+    /**
+     * The HTTP status code, or 0 if no response was received
+     */
+    @Volatile
+    var status: Int = 0
+        internal set
+
+    /**
+     * The exception if no response was received
+     */
+    @Volatile
+    var error: String? = null
+        internal set
+
+    @Volatile
+    var bytesReceived: Long = 0
+        internal set
+
+    /**
+     * Time from sending the request until the response headers were received, or -1 if no response was received
+     */
+    @Volatile
+    var timeToFirstByteMillis: Long = -1
+        internal set
+
+    /**
+     * Time from sending the request until the response was read completely
+     */
+    @Volatile
+    var durationMillis: Long = 0
+        internal set
+
+    fun toJson(): JSONObject {
+        return JSONObject().apply {
+            put("method", method)
+            put("endpoint", endpoint)
+            put("attempt", attempt)
+            put("status", status)
+            error?.let { put("error", it) }
+            put("bytesSent", bytesSent)
+            put("bytesReceived", bytesReceived)
+            put("timeToFirstByteMillis", timeToFirstByteMillis)
+            put("durationMillis", durationMillis)
+        }
+    }
+
+    override fun toString(): String {
+        val result = error ?: "status $status"
+        return "$method $endpoint (attempt $attempt): $result, time to first byte $timeToFirstByteMillis ms," +
+                " duration $durationMillis ms, sent $bytesSent bytes, received $bytesReceived bytes"
+    }
+
+    companion object {
+        /**
+         * Context attribute with the number of attempts of the current request
+         */
+        const val ATTEMPT_ATTRIBUTE = "fsm.attempt"
+
+        /**
+         * Context attribute with the list the telemetry of the request is added to
+         */
+        const val TELEMETRY_ATTRIBUTE = "fsm.telemetry"
+
+        fun toJson(telemetry: List<RequestTelemetry>): JSONObject {
+            return JSONObject().apply {
+                put("requests", telemetry.count { it.attempt == 1 })
+                put("attempts", telemetry.size)
+                put("retries", telemetry.count { it.attempt > 1 })
+                put("bytesSent", telemetry.sumOf { it.bytesSent })
+                put("bytesReceived", telemetry.sumOf { it.bytesReceived })
+                put("durationMillis", telemetry.sumOf { it.durationMillis })
+                put("attemptDetails", JSONArray(telemetry.map { it.toJson() }))
+            }
+        }
+    }
+
+}
+
+/**
+ * Records [RequestTelemetry] for each attempt of a request. Registered after the retry handler of the client,
+ * so it is called again for each retry. The telemetry is added to the list in the
+ * [RequestTelemetry.TELEMETRY_ATTRIBUTE] of the request context, requests without this attribute are not recorded.
+ */
+internal class TelemetryExecHandler: ExecChainHandler {
+
+    override fun execute(request: ClassicHttpRequest, scope: ExecChain.Scope, chain: ExecChain): ClassicHttpResponse {
+        val context = scope.clientContext
+        @Suppress("UNCHECKED_CAST")
+        val telemetry = context.getAttribute(RequestTelemetry.TELEMETRY_ATTRIBUTE) as MutableList<RequestTelemetry>?
+            ?: return chain.proceed(request, scope)
+        val attempt = (context.getAttribute(RequestTelemetry.ATTEMPT_ATTRIBUTE) as Int? ?: 0) + 1
+        context.setAttribute(RequestTelemetry.ATTEMPT_ATTRIBUTE, attempt)
+
+        val record = RequestTelemetry(request.method, request.requestUri.substringBefore('?'), attempt,
+            request.entity?.contentLength?.coerceAtLeast(0) ?: 0)
+        synchronized(telemetry) { telemetry.add(record) }
+
+        val start = System.nanoTime()
+        try {
+            val response = chain.proceed(request, scope)
+            record.status = response.code
+            record.timeToFirstByteMillis = millisSince(start)
+            val entity = response.entity
+            if (entity == null) {
+                record.durationMillis = record.timeToFirstByteMillis
+            } else {
+                response.entity = CountingEntity(entity, record, start)
+            }
+            return response
+        } catch (e: Exception) {
+            record.error = e.toString()
+            record.durationMillis = millisSince(start)
+            throw e
+        }
+    }
+
+    /**
+     * Counts the bytes of the response body and records the duration when the body was read
+     */
+    private class CountingEntity(entity: HttpEntity, private val record: RequestTelemetry, private val start: Long)
+        : HttpEntityWrapper(entity) {
+
+        override fun getContent(): InputStream {
+            return object : FilterInputStream(super.getContent()) {
+                override fun read(): Int {
+                    val read = super.read()
+                    if (read >= 0) record.bytesReceived++ else finished()
+                    return read
+                }
+
+                override fun read(b: ByteArray, off: Int, len: Int): Int {
+                    val read = super.read(b, off, len)
+                    if (read >= 0) record.bytesReceived += read else finished()
+                    return read
+                }
+
+                override fun close() {
+                    finished()
+                    super.close()
+                }
+            }
+        }
+
+        override fun writeTo(outStream: OutputStream) {
+            content.use { it.copyTo(outStream) }
+        }
+
+        private fun finished() {
+            record.durationMillis = millisSince(start)
+        }
+    }
+
+}
+
+private fun millisSince(start: Long): Long {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+}
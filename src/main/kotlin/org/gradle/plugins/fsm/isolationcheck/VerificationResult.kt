@@ -8,7 +8,12 @@ import org.json.JSONObject
 class VerificationResult private constructor(val status: Status, val message: String, val moduleErrors: List<String>) {
 
     enum class Status {
-        VALID, INVALID, CONNECTION_FAILED
+        VALID, INVALID, CONNECTION_FAILED,
+
+        /**
+         * The FSM was checked together with other FSMs and the result of the check cannot be assigned to it
+         */
+        UNASSIGNED
     }
 
     constructor(
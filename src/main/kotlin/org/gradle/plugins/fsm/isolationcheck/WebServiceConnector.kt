@@ -1,80 +1,80 @@
 package org.gradle.plugins.fsm.isolationcheck
 
 import de.espirit.mavenplugins.fsmchecker.Category
+import org.apache.hc.client5.http.auth.CredentialsProvider
 import org.apache.hc.client5.http.auth.UsernamePasswordCredentials
 import org.apache.hc.client5.http.classic.methods.HttpGet
 import org.apache.hc.client5.http.classic.methods.HttpPost
 import org.apache.hc.client5.http.classic.methods.HttpPut
 import org.apache.hc.client5.http.config.RequestConfig
+import org.apache.hc.client5.http.cookie.BasicCookieStore
 import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder
-import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy
 import org.apache.hc.client5.http.impl.auth.CredentialsProviderBuilder
 import org.apache.hc.client5.http.impl.classic.BasicHttpClientResponseHandler
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient
-import org.apache.hc.client5.http.impl.classic.HttpClientBuilder
-import org.apache.hc.core5.http.ConnectionClosedException
+import org.apache.hc.client5.http.protocol.HttpClientContext
+import org.apache.hc.core5.http.ClassicHttpRequest
 import org.apache.hc.core5.http.ContentType.APPLICATION_OCTET_STREAM
 import org.apache.hc.core5.http.HttpHost
-import org.apache.hc.core5.http.HttpStatus
 import org.apache.hc.core5.http.io.entity.StringEntity
 import org.apache.hc.core5.net.URIBuilder
-import org.apache.hc.core5.util.TimeValue
 import org.apache.hc.core5.util.Timeout
+import org.gradle.plugins.fsm.metrics.DetectorRequestEvent
 import java.io.Closeable
-import java.io.InterruptedIOException
-import java.net.*
+import java.net.URI
 import java.nio.file.Path
 import java.time.Duration
-import javax.net.ssl.SSLException
 
+/**
+ * Sends the requests of an isolation check to the FSM Dependency Detector. The requests of a check build on each other,
+ * e.g. the analysis of the uploaded files, so each connector keeps its own cookies and credentials, even if the HTTP
+ * client is shared with other checks.
+ *
+ * @param responseTimeout The maximum time to wait for a response, the analysis of large modules may take several minutes
+ * @param sharedClient    A client shared by several connectors, see [DetectorClientService]. The connector creates and
+ *                        closes its own client if not set.
+ */
 class WebServiceConnector(
     uri: URI,
     private val firstSpiritVersion: String?,
     private val maxBytecodeVersion: Int,
     isolationDetectorUsername: String?,
-    isolationDetectorPassword: String?
+    isolationDetectorPassword: String?,
+    responseTimeout: Duration = DEFAULT_RESPONSE_TIMEOUT,
+    sharedClient: CloseableHttpClient? = null
 ): Closeable {
     private val baseUri: URI
     private val client: CloseableHttpClient
+    private val ownsClient: Boolean
+    private val cookieStore = BasicCookieStore()
+    private val credentialsProvider: CredentialsProvider?
+    private val requestConfig: RequestConfig
+    private val telemetry = mutableListOf<RequestTelemetry>()
 
-    init {
-        val clientBuilder = HttpClientBuilder.create()
+    /**
+     * Telemetry of all requests sent by this connector, with one entry for each attempt
+     */
+    val requestTelemetry: List<RequestTelemetry>
+        get() = synchronized(telemetry) { telemetry.toList() }
 
+    init {
         baseUri = if (uri.toString().endsWith("/")) {
             URI.create(uri.toString().substring(0, uri.toString().length-1))
         } else {
             uri
         }
 
-        isolationDetectorUsername?.let { username ->
+        credentialsProvider = isolationDetectorUsername?.let { username ->
             isolationDetectorPassword?.let { password ->
                 val credentials = UsernamePasswordCredentials(username, password.toCharArray())
-                val provider = CredentialsProviderBuilder.create().add(HttpHost(baseUri.host), credentials).build()
-                clientBuilder.setDefaultCredentialsProvider(provider)
+                CredentialsProviderBuilder.create().add(HttpHost(baseUri.host), credentials).build()
             }
         }
 
-        val requestConfig = RequestConfig.custom().setResponseTimeout(Timeout.of(Duration.ofMinutes(20))).build()
-        clientBuilder.setDefaultRequestConfig(requestConfig)
-
-        val retryStrategy = object : DefaultHttpRequestRetryStrategy(3, TimeValue.ofSeconds(5),
-            listOf(
-                InterruptedIOException::class.java,
-                UnknownHostException::class.java,
-                ConnectException::class.java,
-                ConnectionClosedException::class.java,
-                NoRouteToHostException::class.java,
-                SSLException::class.java,
-                SocketTimeoutException::class.java),
-            listOf(
-                HttpStatus.SC_TOO_MANY_REQUESTS,
-                HttpStatus.SC_BAD_GATEWAY,
-                HttpStatus.SC_SERVICE_UNAVAILABLE,
-            )) {}
-
-        clientBuilder.setRetryStrategy(retryStrategy)
-
-        client = clientBuilder.build()
+        requestConfig = RequestConfig.custom().setResponseTimeout(Timeout.of(responseTimeout)).build()
+
+        ownsClient = sharedClient == null
+        client = sharedClient ?: DetectorClientService.createClient(1, DetectorClientService.DEFAULT_CONNECT_TIMEOUT)
     }
 
 
@@ -86,7 +86,7 @@ class WebServiceConnector(
         val put = HttpPut(addUri)
         put.entity = StringEntity(resourceInfo)
 
-        client.execute(put, BasicHttpClientResponseHandler())
+        execute(put)
     }
 
     fun addContentCreatorComponent(componentName: String) {
@@ -97,7 +97,7 @@ class WebServiceConnector(
         val put = HttpPut(addUri)
         put.entity = StringEntity(componentName)
 
-        client.execute(put, BasicHttpClientResponseHandler())
+        execute(put)
     }
 
     fun uploadRequest(files: List<Path>) {
@@ -110,7 +110,7 @@ class WebServiceConnector(
         val post = HttpPost("$baseUri/rest/upload")
         post.entity = builder.build()
 
-        client.execute(post, BasicHttpClientResponseHandler())
+        execute(post)
     }
 
     fun analyzeRequest(): String {
@@ -119,7 +119,7 @@ class WebServiceConnector(
         firstSpiritVersion?.let { uriBuilder.addParameter("version", firstSpiritVersion) }
         uriBuilder.addParameter("maxBytecodeVersion", maxBytecodeVersion.toString())
 
-        return client.execute(HttpGet(uriBuilder.build()), BasicHttpClientResponseHandler())
+        return execute(HttpGet(uriBuilder.build()))
     }
 
     /**
@@ -128,7 +128,7 @@ class WebServiceConnector(
      * @return a Response with JSON Payload containing all violation categories
      */
     fun requestCategories(): String {
-        return client.execute(HttpGet("$baseUri/rest/categories"), BasicHttpClientResponseHandler())
+        return execute(HttpGet("$baseUri/rest/categories"))
     }
 
     /**
@@ -141,11 +141,51 @@ class WebServiceConnector(
             .addParameter("category", category.name)
             .build()
 
-        return client.execute(HttpGet(categoryUri), BasicHttpClientResponseHandler())
+        return execute(HttpGet(categoryUri))
+    }
+
+    /**
+     * Executes a request and returns the response body, recording a [DetectorRequestEvent]
+     */
+    private fun execute(request: ClassicHttpRequest): String {
+        val event = DetectorRequestEvent()
+        val context = HttpClientContext.create()
+        context.cookieStore = cookieStore
+        credentialsProvider?.let { context.credentialsProvider = it }
+        context.requestConfig = requestConfig
+        context.setAttribute(RequestTelemetry.TELEMETRY_ATTRIBUTE, telemetry)
+        var status = 0
+        val previousAttempts = synchronized(telemetry) { telemetry.size }
+        event.begin()
+        try {
+            return client.execute(request, context) { response ->
+                status = response.code
+                BasicHttpClientResponseHandler().handleResponse(response)
+            } ?: ""
+        } finally {
+            event.end()
+            if (event.shouldCommit()) {
+                event.method = request.method
+                event.endpoint = request.requestUri.substringBefore('?')
+                event.status = status
+                event.requestBytes = request.entity?.contentLength ?: 0
+                // Bytes of the response body as counted for the last attempt, see RequestTelemetry.bytesReceived
+                event.responseBytes = synchronized(telemetry) { telemetry.drop(previousAttempts).lastOrNull() }
+                    ?.bytesReceived ?: 0
+                event.retries = ((context.getAttribute(RequestTelemetry.ATTEMPT_ATTRIBUTE) as Int? ?: 1) - 1).coerceAtLeast(0)
+                event.commit()
+            }
+        }
     }
 
     override fun close() {
-        client.close()
+        if (ownsClient) {
+            client.close()
+        }
+    }
+
+    companion object {
+        val DEFAULT_RESPONSE_TIMEOUT: Duration = Duration.ofMinutes(20)
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+package org.gradle.plugins.fsm.licenses
+
+import com.github.jk1.license.LicenseReportExtension
+import com.github.jk1.license.filter.LicenseBundleNormalizer
+import org.gradle.api.Project
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+import org.gradle.plugins.fsm.licenses.LicenseMetadataCache.Module
+import org.gradle.plugins.fsm.tasks.verification.CsvRecordReader
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+
+/**
+ * Incremental license report of a project. The modules of the previous run of the report are kept in [previousRun],
+ * so only added or changed modules are read again. Modules not found there are taken from the shared cache, if any.
+ *
+ * Cached modules are excluded from the License Report Plugin, see [excludes], so it only reads the POMs and artifacts
+ * of new modules. After the report, [complete] adds the cached modules to the report and stores the new modules in
+ * the caches.
+ *
+ * Modules are excluded by group and name. If some versions of a module in the report are not cached, all versions
+ * are read by the License Report Plugin.
+ *
+ * @param previousRun The modules of the previous run, only containing the modules of the last report
+ * @param sharedCache The cache shared by all projects and builds, see [LicenseMetadataCache]
+ * @param modules     The third-party modules of the report, see [modules]
+ */
+class CachedLicenseReport(
+    private val previousRun: LicenseMetadataCache,
+    sharedCache: LicenseMetadataCache?,
+    private val modules: Collection<Module>
+) {
+
+    private val caches = listOfNotNull(previousRun, sharedCache)
+
+    /**
+     * The modules taken from the cache
+     */
+    val cachedModules: List<Module>
+
+    /**
+     * The modules read by the License Report Plugin
+     */
+    val newModules: List<Module>
+
+    /**
+     * The number of modules unchanged since the previous run
+     */
+    val unchangedModuleCount: Int
+
+    init {
+        val cachedModuleNames = modules.groupBy { "${it.group}:${it.name}" }
+            .filterValues { versions -> versions.all { module -> caches.any { it.isCached(module) } } }
+            .keys
+        val (cached, new) = modules.partition { "${it.group}:${it.name}" in cachedModuleNames }
+        cachedModules = cached
+        newModules = new
+        unchangedModuleCount = modules.count { previousRun.isCached(it) }
+    }
+
+    /**
+     * Patterns for the `excludes` of the License Report Plugin, excluding the [cachedModules]
+     */
+    fun excludes(): List<String> {
+        return cachedModules.map { Regex.escape(it.group) + ":" + Regex.escape(it.name) }.distinct()
+    }
+
+    /**
+     * Adds the [cachedModules] to the report and stores the [newModules] in the caches. The records of the
+     * `licenses.csv` are merged in the order of the License Report Plugin. Modules removed since the previous run are
+     * removed from [previousRun].
+     *
+     * @param outputDir The output directory of the license report
+     */
+    fun complete(outputDir: File) {
+        val licenseFile = outputDir.resolve(LicenseCsv.FILE_NAME)
+        val newModulesByCoordinates = newModules.associateBy { it.coordinates }
+        val cachedRecords = cachedModules.map { module ->
+            val record = caches.first { it.isCached(module) }.restore(module, outputDir)
+            store(module, record, outputDir)
+            record
+        }.sortedWith(LicenseCsv.ORDER)
+
+        val mergedFile = licenseFile.resolveSibling("${licenseFile.name}.tmp")
+        try {
+            licenseFile.bufferedReader().use { input ->
+                mergedFile.bufferedWriter().use { output ->
+                    val records = CsvRecordReader(input)
+                    records.next()?.let { output.write(LicenseCsv.format(it)) }
+
+                    val remainingCachedRecords = cachedRecords.iterator()
+                    var cachedRecord = remainingCachedRecords.nextOrNull()
+                    while (true) {
+                        val record = records.next() ?: break
+                        newModulesByCoordinates[record.first()]?.let { store(it, record, outputDir) }
+                        while (cachedRecord != null && LicenseCsv.ORDER.compare(cachedRecord, record) < 0) {
+                            output.write(LicenseCsv.format(cachedRecord))
+                            cachedRecord = remainingCachedRecords.nextOrNull()
+                        }
+                        output.write(LicenseCsv.format(record))
+                    }
+                    while (cachedRecord != null) {
+                        output.write(LicenseCsv.format(cachedRecord))
+                        cachedRecord = remainingCachedRecords.nextOrNull()
+                    }
+                }
+            }
+            Files.move(mergedFile.toPath(), licenseFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } finally {
+            Files.deleteIfExists(mergedFile.toPath())
+        }
+
+        val removedModuleCount = previousRun.retainOnly(modules)
+        LOGGER.info("License report: {} modules unchanged, {} added or changed, {} removed since the previous run",
+            unchangedModuleCount, modules.size - unchangedModuleCount, removedModuleCount)
+        LOGGER.info("License report: {} modules from the license metadata cache, {} modules read",
+            cachedModules.size, newModules.size)
+    }
+
+    private fun store(module: Module, record: List<String>, outputDir: File) {
+        caches.filter { !it.isCached(module) }.forEach { it.store(module, record, outputDir) }
+    }
+
+    private fun <T> Iterator<T>.nextOrNull(): T? {
+        return if (hasNext()) next() else null
+    }
+
+    companion object {
+
+        private val LOGGER: Logger = Logging.getLogger(CachedLicenseReport::class.java)
+        private const val CONFIGURATION_HASH_LENGTH = 16
+
+        /**
+         * Resolves the third-party modules of the given configurations. Project dependencies are not cached.
+         */
+        fun modules(project: Project, configurationNames: Collection<String>): List<Module> {
+            return configurationNames
+                .mapNotNull { project.configurations.findByName(it) }
+                .filter { it.isCanBeResolved }
+                .flatMap { it.resolvedConfiguration.lenientConfiguration.artifacts }
+                .filter { it.id.componentIdentifier is ModuleComponentIdentifier }
+                .groupBy { it.moduleVersion.id }
+                .map { (id, artifacts) -> Module(id.group, id.name, id.version, artifacts.map { it.file }.distinct()) }
+        }
+
+        /**
+         * Hash of the settings affecting the license metadata of a module: the versions of this plugin and of the
+         * License Report Plugin, the `unionParentPomLicenses` flag and the importers, filters and renderers of the
+         * report. Filters are compared by class and, in case of a [LicenseBundleNormalizer], by its bundle.
+         */
+        fun configurationHash(extension: LicenseReportExtension): String {
+            val settings = listOf(
+                CachedLicenseReport::class.java.`package`?.implementationVersion,
+                LicenseReportExtension::class.java.`package`?.implementationVersion,
+                extension.unionParentPomLicenses
+            ) + extension.importers.orEmpty().map { it.javaClass.name } +
+                extension.filters.orEmpty().map { it.javaClass.name + ((it as? LicenseBundleNormalizer)?.filterConfigForCache ?: "") } +
+                extension.renderers.orEmpty().map { it.javaClass.name }
+
+            val digest = MessageDigest.getInstance("SHA-256")
+            settings.forEach { digest.update("$it\n".toByteArray()) }
+            return digest.digest().joinToString("") { "%02x".format(it) }.take(CONFIGURATION_HASH_LENGTH)
+        }
+
+    }
+
+}
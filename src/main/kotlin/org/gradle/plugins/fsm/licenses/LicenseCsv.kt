@@ -0,0 +1,31 @@
+package org.gradle.plugins.fsm.licenses
+
+/**
+ * Writes records of the `licenses.csv` in the format of the `CsvReportRenderer` of the License Report Plugin, with
+ * quotes escaped according to RFC 4180.
+ */
+internal object LicenseCsv {
+
+    const val FILE_NAME = "licenses.csv"
+
+    private const val LINE_SEPARATOR = "\r\n"
+    private const val FIELD_COUNT = 4
+
+    /**
+     * Orders records like the License Report Plugin, by the group, name and version in the artifact column
+     */
+    val ORDER: Comparator<List<String>> = compareBy<List<String>> { it.first().substringBefore(':') }
+        .thenBy { it.first().substringAfter(':').substringBefore(':') }
+        .thenBy { it.first().substringAfter(':').substringAfter(':') }
+
+    /**
+     * Formats a record. All fields are quoted, except for the empty field after a trailing comma.
+     */
+    fun format(record: List<String>): String {
+        val trailingComma = record.size > FIELD_COUNT && record.last().isEmpty()
+        val fields = if (trailingComma) record.dropLast(1) else record
+        val line = fields.joinToString(",") { "\"" + it.replace("\"", "\"\"") + "\"" }
+        return line + (if (trailingComma) "," else "") + LINE_SEPARATOR
+    }
+
+}
@@ -0,0 +1,169 @@
+package org.gradle.plugins.fsm.licenses
+
+import org.gradle.plugins.fsm.tasks.verification.CsvRecordReader
+import java.io.File
+import java.nio.file.FileSystemException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+
+/**
+ * Persistent cache of the license metadata of third-party modules, i.e. their record in the `licenses.csv` and the
+ * license files found in their artifacts. The shared cache is stored in the Gradle user home, so it is used by all
+ * projects and builds. The license report of a project also keeps the modules of its previous run in a cache of its
+ * own, see [CachedLicenseReport].
+ *
+ * Entries are keyed by the [FORMAT_VERSION] of the entries, the [configurationHash] of the license report, the
+ * coordinates of the module and a checksum of its artifacts:
+ *
+ * ```
+ * [format version]-[configuration hash]/[group]/[name]/[version]/[checksum]/record.csv
+ * [format version]-[configuration hash]/[group]/[name]/[version]/[checksum]/licenses/[artifact file name]/LICENSE.txt
+ * ```
+ *
+ * Entries are never changed after they have been written. Concurrent builds writing the same entry are safe, the first
+ * entry moved into place wins.
+ *
+ * @param configurationHash Hash of the settings affecting the license metadata, see [CachedLicenseReport.configurationHash]
+ */
+class LicenseMetadataCache(private val cacheDir: File, private val configurationHash: String) {
+
+    /**
+     * A third-party module of the license report
+     *
+     * @property files The artifact files of the module, usually a single jar
+     */
+    data class Module(val group: String, val name: String, val version: String, val files: List<File>) {
+
+        val coordinates: String
+            get() = "$group:$name:$version"
+
+        internal val checksum: String by lazy {
+            val digest = MessageDigest.getInstance("SHA-256")
+            files.sortedBy { it.name }.forEach { file ->
+                digest.update(file.name.toByteArray())
+                file.inputStream().use { input ->
+                    val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+                    var read = input.read(buffer)
+                    while (read >= 0) {
+                        digest.update(buffer, 0, read)
+                        read = input.read(buffer)
+                    }
+                }
+            }
+            digest.digest().joinToString("") { "%02x".format(it) }
+        }
+
+    }
+
+    fun isCached(module: Module): Boolean {
+        return entryDir(module).resolve(RECORD_FILE).isFile
+    }
+
+    /**
+     * Stores the license metadata of a module read by the License Report Plugin
+     *
+     * @param module      The module
+     * @param record      The record of the module in the `licenses.csv`
+     * @param licensesDir The output directory of the license report containing the license files of the module
+     */
+    fun store(module: Module, record: List<String>, licensesDir: File) {
+        val entryDir = entryDir(module)
+        if (entryDir.exists()) {
+            return
+        }
+
+        Files.createDirectories(cacheDir.toPath())
+        val tempDir = Files.createTempDirectory(cacheDir.toPath(), "entry").toFile()
+        try {
+            tempDir.resolve(RECORD_FILE).writeText(LicenseCsv.format(record))
+            for (file in module.files) {
+                val licenseFiles = licensesDir.resolve(file.name)
+                if (licenseFiles.isDirectory) {
+                    licenseFiles.copyRecursively(tempDir.resolve(LICENSES_DIR).resolve(file.name))
+                }
+            }
+
+            Files.createDirectories(entryDir.parentFile.toPath())
+            try {
+                Files.move(tempDir.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE)
+            } catch (e: FileSystemException) {
+                // Stored by another project or build in the meantime
+                if (!entryDir.exists()) {
+                    throw e
+                }
+            }
+        } finally {
+            if (tempDir.exists()) {
+                tempDir.deleteRecursively()
+            }
+        }
+    }
+
+    /**
+     * Copies the license files of a cached module into the output directory of the license report
+     *
+     * @return The record of the module in the `licenses.csv`
+     */
+    fun restore(module: Module, licensesDir: File): List<String> {
+        val entryDir = entryDir(module)
+        val licenseFiles = entryDir.resolve(LICENSES_DIR)
+        if (licenseFiles.isDirectory) {
+            licenseFiles.copyRecursively(licensesDir, overwrite = true)
+        }
+        return entryDir.resolve(RECORD_FILE).bufferedReader().use { CsvRecordReader(it).next() }
+            ?: error("Empty license cache entry '$entryDir'")
+    }
+
+    /**
+     * Returns the keys of all entries, see [key]
+     */
+    fun keys(): Set<String> {
+        if (!cacheDir.isDirectory) {
+            return emptySet()
+        }
+        return cacheDir.walkTopDown().maxDepth(ENTRY_DEPTH)
+            .filter { it.isDirectory && it.resolve(RECORD_FILE).isFile }
+            .map { it.relativeTo(cacheDir).invariantSeparatorsPath }
+            .toSet()
+    }
+
+    /**
+     * Removes the entries of all modules except for the given ones
+     *
+     * @return The number of removed entries
+     */
+    fun retainOnly(modules: Collection<Module>): Int {
+        val removedKeys = keys() - modules.map { key(it) }.toSet()
+        removedKeys.forEach { cacheDir.resolve(it).deleteRecursively() }
+        return removedKeys.size
+    }
+
+    /**
+     * The key of the entry of a module, i.e. the path of the entry relative to the cache directory
+     */
+    fun key(module: Module): String {
+        return "$FORMAT_VERSION-$configurationHash/${module.group}/${module.name}/${module.version}/${module.checksum}"
+    }
+
+    private fun entryDir(module: Module): File {
+        return cacheDir.resolve(key(module))
+    }
+
+    companion object {
+        /**
+         * Location of the cache in the Gradle user home
+         */
+        const val CACHE_DIR_NAME = "caches/fsm-license-metadata"
+
+        /**
+         * Version of the layout of the entries, to be increased whenever the stored record or license files change
+         */
+        const val FORMAT_VERSION = 1
+
+        private const val RECORD_FILE = "record.csv"
+        private const val LICENSES_DIR = "licenses"
+        private const val ENTRY_DEPTH = 5
+    }
+
+}
@@ -0,0 +1,162 @@
+package org.gradle.plugins.fsm.metrics
+
+import jdk.jfr.Category
+import jdk.jfr.DataAmount
+import jdk.jfr.Description
+import jdk.jfr.Event
+import jdk.jfr.Label
+import jdk.jfr.Name
+import jdk.jfr.Percentage
+
+/*
+ * Java Flight Recorder events for the hot paths of the plugin. The events are recorded when JFR is enabled for the
+ * Gradle daemon, e.g. with `org.gradle.jvmargs=-XX:StartFlightRecording=...`, and are shown in the category
+ * "FirstSpirit Module" of JDK Mission Control. The duration of each event is the duration of the measured work.
+ */
+
+@Name("org.gradle.plugins.fsm.ComponentScan")
+@Label("Component Scan")
+@Category(EVENT_CATEGORY)
+@Description("Scan of the project jars for FirstSpirit component annotations")
+class ComponentScanEvent : Event() {
+    @field:Label("Jar Count")
+    @JvmField
+    var jarCount: Int = 0
+
+    @field:Label("Class Count")
+    @JvmField
+    var classCount: Int = 0
+
+    @field:Label("Skipped Class Count")
+    @field:Description("Classes of jars and directories skipped because they do not reference component annotations")
+    @JvmField
+    var skippedClassCount: Int = 0
+}
+
+@Name("org.gradle.plugins.fsm.ArtifactResolution")
+@Label("Artifact Resolution")
+@Category(EVENT_CATEGORY)
+@Description("Resolution of the artifacts of a configuration included in the FSM")
+class ArtifactResolutionEvent : Event() {
+    @field:Label("Project")
+    @JvmField
+    var project: String? = null
+
+    @field:Label("Configuration")
+    @JvmField
+    var configuration: String? = null
+
+    @field:Label("Artifact Count")
+    @JvmField
+    var artifactCount: Int = 0
+
+    companion object {
+        /**
+         * Records the resolution of a configuration
+         *
+         * @param project       The path of the project
+         * @param configuration The name of the configuration, or a description of several configurations
+         * @param resolve       Resolves the artifacts
+         * @return The resolved artifacts
+         */
+        fun <T : Collection<*>> record(project: String, configuration: String, resolve: () -> T): T {
+            val event = ArtifactResolutionEvent()
+            event.begin()
+            val artifacts = resolve()
+            event.end()
+            if (event.shouldCommit()) {
+                event.project = project
+                event.configuration = configuration
+                event.artifactCount = artifacts.size
+                event.commit()
+            }
+            return artifacts
+        }
+    }
+}
+
+@Name("org.gradle.plugins.fsm.WebAppNode")
+@Label("Web-App Node")
+@Category(EVENT_CATEGORY)
+@Description("Generation of the module descriptor node of a web-app component")
+class WebAppNodeEvent : Event() {
+    @field:Label("Web-App")
+    @JvmField
+    var webApp: String? = null
+
+    @field:Label("Web Resource Count")
+    @JvmField
+    var webResourceCount: Int = 0
+}
+
+@Name("org.gradle.plugins.fsm.ArchiveEntryWrite")
+@Label("Archive Entry Write")
+@Category(EVENT_CATEGORY)
+@Description("Write of an entry of the FSM archive")
+class ArchiveEntryWriteEvent : Event() {
+    @field:Label("Entry")
+    @JvmField
+    var entry: String? = null
+
+    @field:Label("Source")
+    @field:Description("How the entry was written: copied raw, reused from the previous archive, compressed or generated")
+    @JvmField
+    var source: String? = null
+
+    @field:Label("Size")
+    @field:DataAmount
+    @JvmField
+    var size: Long = 0
+
+    @field:Label("Compressed Size")
+    @field:DataAmount
+    @JvmField
+    var compressedSize: Long = 0
+
+    @field:Label("Compression Ratio")
+    @field:Description("Compressed size relative to the size")
+    @field:Percentage
+    @JvmField
+    var compressionRatio: Double = 0.0
+
+    companion object {
+        const val COPIED = "copied"
+        const val REUSED = "reused"
+        const val COMPRESSED = "compressed"
+        const val GENERATED = "generated"
+    }
+}
+
+@Name("org.gradle.plugins.fsm.DetectorRequest")
+@Label("Dependency Detector Request")
+@Category(EVENT_CATEGORY)
+@Description("HTTP request to the FSM Dependency Detector web service")
+class DetectorRequestEvent : Event() {
+    @field:Label("Method")
+    @JvmField
+    var method: String? = null
+
+    @field:Label("Endpoint")
+    @JvmField
+    var endpoint: String? = null
+
+    @field:Label("Status")
+    @JvmField
+    var status: Int = 0
+
+    @field:Label("Request Size")
+    @field:DataAmount
+    @JvmField
+    var requestBytes: Long = 0
+
+    @field:Label("Response Size")
+    @field:DataAmount
+    @JvmField
+    var responseBytes: Long = 0
+
+    @field:Label("Retries")
+    @JvmField
+    var retries: Int = 0
+}
+
+private const val EVENT_CATEGORY = "FirstSpirit Module"
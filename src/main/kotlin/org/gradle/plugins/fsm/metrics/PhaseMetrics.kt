@@ -0,0 +1,151 @@
+package org.gradle.plugins.fsm.metrics
+
+import org.gradle.api.logging.Logger
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.time.Instant
+
+/**
+ * Measures the wall-clock time and the allocated memory of the phases of a task. Measuring a phase several times
+ * adds up the values, so a phase may consist of several steps.
+ *
+ * A phase measured while another phase is running on the same thread is nested, e.g. the dependency resolution while
+ * the archive is assembled. Nested phases are reported, but not added to the total of the task, so the total is the
+ * time spent in top-level phases.
+ *
+ * Allocations are measured for the current thread only, work done in other threads (e.g. the ClassGraph worker
+ * threads of the component scan) is not included. If the JVM does not support measuring allocations, only the
+ * time is recorded.
+ */
+class PhaseMetrics {
+
+    private val phases = linkedMapOf<String, Phase>()
+    private val depth = ThreadLocal.withInitial { 0 }
+    private var total = Phase(TOTAL, 0, 0, false)
+
+    fun <T> measure(name: String, action: () -> T): T {
+        val nested = depth.get() > 0
+        depth.set(depth.get() + 1)
+        val allocatedBefore = allocatedBytes()
+        val start = System.nanoTime()
+        try {
+            return action()
+        } finally {
+            val durationNanos = System.nanoTime() - start
+            val allocated = allocatedBytes()?.let { after -> allocatedBefore?.let { after - it } }
+            depth.set(depth.get() - 1)
+            synchronized(phases) {
+                phases[name] = phases[name]?.plus(durationNanos, allocated, nested)
+                    ?: Phase(name, durationNanos, allocated, nested)
+                if (!nested) {
+                    total = total.plus(durationNanos, allocated, false)
+                }
+            }
+        }
+    }
+
+    fun phases(): List<Phase> {
+        return synchronized(phases) { phases.values.toList() }
+    }
+
+    /**
+     * The sum of all top-level phases
+     */
+    fun total(): Phase {
+        return synchronized(phases) { total }
+    }
+
+    /**
+     * Logs the measured phases at info level and writes them to a JSON file.
+     *
+     * @param task   The path of the task the metrics were measured for
+     * @param file   The JSON file to write
+     * @param logger The logger of the task
+     */
+    fun report(task: String, file: File, logger: Logger) {
+        val phases = phases()
+        for (phase in phases) {
+            logger.info("{}: phase '{}'{} took {} ms, allocated {}", task, phase.name, if (phase.nested) " (nested)" else "",
+                "%.1f".format(phase.durationMillis), phase.allocatedBytes?.let { "$it bytes" } ?: "unknown")
+        }
+
+        val total = total()
+        val json = JSONObject()
+        json.put("task", task)
+        json.put("timestamp", Instant.now().toString())
+        json.put("durationMillis", total.durationMillis)
+        total.allocatedBytes?.let { json.put("allocatedBytes", it) }
+        json.put("phases", JSONArray(phases.map { phase ->
+            JSONObject().apply {
+                put("name", phase.name)
+                put("durationMillis", phase.durationMillis)
+                phase.allocatedBytes?.let { put("allocatedBytes", it) }
+                if (phase.nested) {
+                    put("nested", true)
+                }
+            }
+        }))
+
+        file.parentFile.mkdirs()
+        file.writeText(json.toString(2))
+    }
+
+    /**
+     * @param nested True if the phase was only measured within other phases
+     */
+    data class Phase(val name: String, val durationNanos: Long, val allocatedBytes: Long?, val nested: Boolean = false) {
+        val durationMillis: Double
+            get() = durationNanos / 1_000_000.0
+
+        internal fun plus(durationNanos: Long, allocatedBytes: Long?, nested: Boolean): Phase {
+            return Phase(name, this.durationNanos + durationNanos, allocatedBytes?.let { this.allocatedBytes?.plus(it) },
+                this.nested && nested)
+        }
+    }
+
+    companion object {
+        /**
+         * Directory for the metrics files, relative to the build directory
+         */
+        const val METRICS_DIR_NAME = "fsm/metrics"
+
+        private const val TOTAL = "total"
+
+        const val DEPENDENCY_RESOLUTION = "dependencyResolution"
+        const val ARCHIVE_ASSEMBLY = "archiveAssembly"
+        const val LIBRARY_DEDUPLICATION = "libraryDeduplication"
+        const val LICENSE_DEDUPLICATION = "licenseDeduplication"
+        const val COMPONENT_SCAN = "componentScan"
+        const val COMPONENT_NODES = "componentNodes"
+        const val RESOURCE_NODES = "resourceNodes"
+        const val TEMPLATE_EXPANSION = "templateExpansion"
+        const val XML_RENDERING = "xmlRendering"
+        const val REFORMAT = "reformat"
+        const val ARCHIVE_WRITING = "archiveWriting"
+        const val READ_ARCHIVE = "readArchive"
+        const val VALIDATION = "validation"
+
+        /**
+         * Prefix of the phases of the validation rules, followed by the name of the rule. The rules run within the
+         * [VALIDATION] phase, so their phases are nested.
+         */
+        const val VALIDATION_RULE_PREFIX = "validation."
+
+        const val LICENSE_REPORT_FIXUP = "licenseReportFixup"
+        const val LICENSE_CACHE = "licenseCache"
+
+        private val threadMXBean = ManagementFactory.getThreadMXBean()
+
+        private fun allocatedBytes(): Long? {
+            val bean = threadMXBean as? com.sun.management.ThreadMXBean ?: return null
+            if (!bean.isThreadAllocatedMemorySupported || !bean.isThreadAllocatedMemoryEnabled) {
+                return null
+            }
+            @Suppress("DEPRECATION") // Thread.threadId() requires Java 19
+            return bean.getThreadAllocatedBytes(Thread.currentThread().id)
+        }
+    }
+
+}
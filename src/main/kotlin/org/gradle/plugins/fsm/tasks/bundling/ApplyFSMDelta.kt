@@ -0,0 +1,39 @@
+package org.gradle.plugins.fsm.tasks.bundling
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+
+/**
+ * Reconstructs an FSM from a baseline FSM and a delta archive created by [FSMDelta].
+ */
+abstract class ApplyFSMDelta: DefaultTask() {
+
+    /**
+     * The FSM the delta is based on
+     */
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val baselineFsm: RegularFileProperty
+
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val deltaFile: RegularFileProperty
+
+    /**
+     * The reconstructed FSM
+     */
+    @get:OutputFile
+    abstract val fsm: RegularFileProperty
+
+    @TaskAction
+    fun applyDelta() {
+        FsmDeltaArchive.apply(baselineFsm.get().asFile, deltaFile.get().asFile, fsm.get().asFile)
+        logger.lifecycle("Reconstructed FSM ${fsm.get().asFile}")
+    }
+
+}
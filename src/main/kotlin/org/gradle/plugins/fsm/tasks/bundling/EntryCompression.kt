@@ -0,0 +1,29 @@
+package org.gradle.plugins.fsm.tasks.bundling
+
+import org.gradle.plugins.fsm.AntPattern
+import org.gradle.plugins.fsm.FSMPluginExtension
+import java.util.zip.Deflater
+
+/**
+ * Determines how the entries of an FSM archive are compressed, based on the Ant-style patterns configured
+ * with [FSMPluginExtension.entryCompression], see [AntPattern]. Patterns are matched against the full entry path.
+ */
+class EntryCompression(patterns: Map<String, Int>) {
+
+    private val rules = patterns.map { (pattern, level) -> Rule(AntPattern.toRegex(pattern), level) }
+
+    /**
+     * Returns the deflate level for the given entry, or [FSMPluginExtension.STORED] if the entry should be stored
+     * without compression. Directories are always stored.
+     */
+    fun levelFor(entryName: String): Int {
+        if (entryName.endsWith("/")) {
+            return FSMPluginExtension.STORED
+        }
+
+        return rules.firstOrNull { it.pattern.matches(entryName) }?.level ?: Deflater.DEFAULT_COMPRESSION
+    }
+
+    private data class Rule(val pattern: Regex, val level: Int)
+
+}
@@ -1,15 +1,22 @@
 package org.gradle.plugins.fsm.tasks.bundling
 
+import org.apache.commons.compress.archivers.zip.ZipFile
 import org.gradle.api.GradleException
 import org.gradle.api.Project
 import org.gradle.api.artifacts.ProjectDependency
 import org.gradle.api.file.DuplicatesStrategy
 import org.gradle.api.file.FileCollection
 import org.gradle.api.file.ProjectLayout
+import org.gradle.api.file.RegularFileProperty
 import org.gradle.api.plugins.JavaPlugin
 import org.gradle.api.provider.Provider
+import org.gradle.api.tasks.InputFile
 import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
 import org.gradle.api.tasks.TaskAction
+import org.gradle.api.tasks.bundling.ZipEntryCompression
 import org.gradle.jvm.tasks.Jar
 import org.gradle.plugins.fsm.FSMPlugin.Companion.WEBAPPS_CONFIGURATION_NAME
 import org.gradle.plugins.fsm.FSMPluginExtension
@@ -20,16 +27,24 @@ import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.F
 import org.gradle.plugins.fsm.dependencyProject
 import org.gradle.plugins.fsm.descriptor.LibraryComponents
 import org.gradle.plugins.fsm.descriptor.ModuleDescriptor
+import org.gradle.plugins.fsm.descriptor.ScannedComponents
 import org.gradle.plugins.fsm.descriptor.moduleScopeDependencies
 import org.gradle.plugins.fsm.descriptor.serverScopeDependencies
+import org.gradle.plugins.fsm.licenses.LicenseCsv
+import org.gradle.plugins.fsm.metrics.ArtifactResolutionEvent
+import org.gradle.plugins.fsm.metrics.PhaseMetrics
+import org.gradle.plugins.fsm.metrics.PhaseMetrics.Companion.ARCHIVE_ASSEMBLY
+import org.gradle.plugins.fsm.metrics.PhaseMetrics.Companion.ARCHIVE_WRITING
+import org.gradle.plugins.fsm.metrics.PhaseMetrics.Companion.DEPENDENCY_RESOLUTION
+import org.gradle.plugins.fsm.metrics.PhaseMetrics.Companion.LIBRARY_DEDUPLICATION
+import org.gradle.plugins.fsm.metrics.PhaseMetrics.Companion.LICENSE_DEDUPLICATION
+import org.gradle.plugins.fsm.metrics.PhaseMetrics.Companion.TEMPLATE_EXPANSION
 import org.gradle.plugins.fsm.projectDependencies
 import org.jetbrains.annotations.TestOnly
 import java.io.File
 import java.nio.charset.StandardCharsets
-import java.nio.file.FileSystem
-import java.nio.file.FileSystems
 import java.nio.file.Files
-import java.nio.file.StandardOpenOption
+import java.nio.file.StandardCopyOption
 import javax.inject.Inject
 
 abstract class FSM: Jar() {
@@ -42,37 +57,83 @@ abstract class FSM: Jar() {
     @Internal("Visible for tests")
     val fsmResourceFileToProject = mutableMapOf<File, MutableSet<Project>>()
 
+    /**
+     * Statistics of the last archive written by this task. Used for tests
+     */
+    @get:Internal
+    var archiveWriteResult: FsmArchiveWriter.Result? = null
+        private set
+
     @get:Inject
     abstract val layout: ProjectLayout
 
+    /**
+     * Timings of the phases of building the FSM, see [PhaseMetrics]. Dependency resolution is measured when the
+     * libraries are resolved, which usually happens before the task action while Gradle fingerprints the inputs.
+     */
+    @Internal
+    val metrics = PhaseMetrics()
+
+    /**
+     * The file the [metrics] are written to
+     */
+    @get:OutputFile
+    abstract val metricsFile: RegularFileProperty
+
+    /**
+     * The components of the project written by the `scanComponents` task, see [ScannedComponents]. If the file does
+     * not exist, e.g. if the task is executed directly in tests, the project is scanned by the task.
+     */
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val componentIndexFile: RegularFileProperty
+
     init {
         archiveExtension.set(FSM_EXTENSION)
         destinationDirectory.set(project.layout.buildDirectory.dir("fsm"))
         pluginExtension = project.extensions.getByType(FSMPluginExtension::class.java)
+        metricsFile.convention(project.layout.buildDirectory.file("${PhaseMetrics.METRICS_DIR_NAME}/$name.json"))
         duplicatesStrategy = DuplicatesStrategy.WARN
+        // Entries are compressed when writing the final archive, see copy()
+        entryCompression = ZipEntryCompression.STORED
+        // Not named "entryCompression", which is the input of the Zip task for the compression of the assembled archive
+        inputs.property("fsmEntryCompression", project.provider { pluginExtension.entryCompression })
+        inputs.property("deduplicateLibraries", project.provider { pluginExtension.deduplicateLibraries })
+        inputs.property("deduplicateLicenseTexts", project.provider { pluginExtension.deduplicateLicenseTexts })
+        inputs.property("reproducibleArchive", project.provider { pluginExtension.reproducibleArchive })
 
         pluginExtension.moduleDirName?.let { inputs.dir(layout.projectDirectory.dir(it)) }
 
         configureProjectDependencies()
         into("lib") {
-            from(project.provider { project.serverScopeDependencies().map { it.file } })
-            from(project.provider { project.moduleScopeDependencies().map { it.file } })
-            from(project.provider {
-                project.configurations.getByName(FS_WEB_COMPILE_CONFIGURATION_NAME).resolve()
+            from(resolvedOnce {
+                resolve(FS_SERVER_COMPILE_CONFIGURATION_NAME) { project.serverScopeDependencies().map { it.file } }
+            })
+            from(resolvedOnce {
+                resolve(FS_MODULE_COMPILE_CONFIGURATION_NAME) { project.moduleScopeDependencies().map { it.file } }
+            })
+            from(resolvedOnce {
+                resolve(FS_WEB_COMPILE_CONFIGURATION_NAME) {
+                    project.configurations.getByName(FS_WEB_COMPILE_CONFIGURATION_NAME).resolve()
+                }
             })
             from(project.tasks.named(JavaPlugin.JAR_TASK_NAME))
-            from(project.provider {
-                project.configurations.getByName(WEBAPPS_CONFIGURATION_NAME).resolve()
+            from(resolvedOnce {
+                resolve(WEBAPPS_CONFIGURATION_NAME) {
+                    project.configurations.getByName(WEBAPPS_CONFIGURATION_NAME).resolve()
+                }
             })
             from(project.provider {
                 pluginExtension.getWebApps().values
                     .mapNotNull { it.tasks.findByName(JavaPlugin.JAR_TASK_NAME) }
                     .map { it.outputs.files.singleFile }
             })
-            from(project.provider {
+            from(resolvedOnce {
                 pluginExtension.libraries
                     .asSequence().mapNotNull { it.configuration }
-                    .flatMap { LibraryComponents.getResolvedDependencies(project, it) }
+                    .flatMap { configuration ->
+                        resolve(configuration.name) { LibraryComponents.getResolvedDependencies(project, configuration) }
+                    }
                     .map { it.file }
                     .toList()
             })
@@ -93,7 +154,7 @@ abstract class FSM: Jar() {
                     // Set output path
                     // - Remove "META-INF/" directory from collected licenses
                     // - Add .txt if the file doesn't have an extension
-                    path = "META-INF/licenses/" + path.replace("META-INF/", "/")
+                    path = LICENSE_TEXTS_PATH + path.replace("META-INF/", "/")
                     if (!name.contains(".")) {
                         path += ".txt"
                     }
@@ -146,6 +207,24 @@ abstract class FSM: Jar() {
         })
     }
 
+    /**
+     * Resolves the artifacts of a configuration, recording the time in the [metrics] and as a JFR event
+     */
+    private fun <T : Collection<*>> resolve(configuration: String, resolve: () -> T): T {
+        return metrics.measure(DEPENDENCY_RESOLUTION) {
+            ArtifactResolutionEvent.record(project.path, configuration, resolve)
+        }
+    }
+
+    /**
+     * Provides the resolved libraries of a configuration. Gradle may query the provider several times, e.g. when
+     * fingerprinting the inputs and when copying, but the libraries are resolved and measured only once
+     */
+    private fun <T : Collection<*>> resolvedOnce(resolve: () -> T): Provider<T> {
+        val resolved = lazy(resolve)
+        return project.provider { resolved.value }
+    }
+
     private fun fsmResourcesFolder(dep: Project): Provider<FileCollection> {
         return project.provider {
             val fsmResourcesPath = dep.projectDir.absolutePath + '/' + FSM_RESOURCES_PATH
@@ -168,47 +247,144 @@ abstract class FSM: Jar() {
 
     @TaskAction
     override fun copy() {
-        super.copy()
+        val previousArchive = keepPreviousArchive()
+        metrics.measure(ARCHIVE_ASSEMBLY) { super.copy() }
 
         logger.info("Generating module.xml files")
         val archive = archiveFile.get().asFile
         logger.info("Found archive ${archive.path}")
-        FileSystems.newFileSystem(archive.toPath(), javaClass.classLoader).use { fs ->
-            writeModuleDescriptorToZipFile(fs, getUnfilteredModuleXml())
+
+        // Gradle assembled the archive without compression, write the FSM with the configured entry compression
+        val assembledArchive = temporaryDir.resolve(archive.name)
+        Files.move(archive.toPath(), assembledArchive.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        val archiveWriter = FsmArchiveWriter(EntryCompression(pluginExtension.entryCompression),
+            pluginExtension.reproducibleArchive, isZip64)
+        val duplicates = metrics.measure(LIBRARY_DEDUPLICATION) { findDuplicateLibraries(archiveWriter, assembledArchive) }
+        val moduleXml = createModuleDescriptor(getUnfilteredModuleXml(), duplicates)
+        val licenseDuplicates = metrics.measure(LICENSE_DEDUPLICATION) { findDuplicateLicenseTexts(archiveWriter, assembledArchive) }
+        val generatedEntries = mutableMapOf(MODULE_DESCRIPTOR_PATH to moduleXml.toByteArray(StandardCharsets.UTF_8))
+        if (licenseDuplicates.isNotEmpty()) {
+            generatedEntries[LICENSE_DUPLICATES_PATH] = licenseDuplicatesCsv(licenseDuplicates).toByteArray(StandardCharsets.UTF_8)
         }
+        val result = metrics.measure(ARCHIVE_WRITING) {
+            archiveWriter.write(assembledArchive, archive, generatedEntries, previousArchive,
+                duplicates.keys + licenseDuplicates.keys)
+        }
+        Files.delete(assembledArchive.toPath())
+        previousArchive?.let { Files.deleteIfExists(it.toPath()) }
+        compressionStateFile().writeText(pluginExtension.entryCompression.toString())
+        archiveWriteResult = result
+        logger.info("Archive contains ${result.storedEntries} stored and ${result.deflatedEntries} deflated entries," +
+                " ${result.reusedEntries} entries reused from previous archive, size is ${result.size} bytes")
+        metrics.report(path, metricsFile.get().asFile, logger)
+    }
+
+    /**
+     * Finds jars in the assembled archive with the same content as another jar, if enabled.
+     *
+     * @return The paths of the duplicate jars, mapped to the path of the jar which is kept in the FSM
+     */
+    private fun findDuplicateLibraries(archiveWriter: FsmArchiveWriter, assembledArchive: File): Map<String, String> {
+        if (!pluginExtension.deduplicateLibraries) {
+            return emptyMap()
+        }
+
+        return findDuplicates(archiveWriter, assembledArchive, "lib/", "libraries")
+    }
+
+    /**
+     * Finds license texts in the assembled archive with the same content as another license text, if enabled.
+     *
+     * @return The paths of the duplicate license texts, mapped to the path of the license text which is kept in the FSM
+     */
+    private fun findDuplicateLicenseTexts(archiveWriter: FsmArchiveWriter, assembledArchive: File): Map<String, String> {
+        if (!pluginExtension.deduplicateLicenseTexts) {
+            return emptyMap()
+        }
+
+        return findDuplicates(archiveWriter, assembledArchive, LICENSE_TEXTS_PATH, "license texts")
+    }
+
+    private fun findDuplicates(archiveWriter: FsmArchiveWriter, assembledArchive: File, directory: String,
+                               description: String): Map<String, String> {
+        val duplicates = archiveWriter.findDuplicates(assembledArchive, directory)
+        if (duplicates.isNotEmpty()) {
+            ZipFile.builder().setFile(assembledArchive).get().use { zipFile ->
+                val savedBytes = duplicates.keys.sumOf { zipFile.getEntry(it).size }
+                duplicates.forEach { (duplicate, original) ->
+                    logger.info("Not adding {} to the FSM, it is identical to {}", duplicate, original)
+                }
+                logger.info("Removed ${duplicates.size} duplicate $description from the FSM, saving $savedBytes bytes")
+            }
+        }
+        return duplicates
+    }
+
+    /**
+     * Lists the removed license texts with the path of the identical license text kept in the FSM, in the CSV format
+     * of the `licenses.csv`
+     */
+    private fun licenseDuplicatesCsv(licenseDuplicates: Map<String, String>): String {
+        return LicenseCsv.format(listOf("license", "identicalTo")) + licenseDuplicates.toSortedMap()
+            .map { (duplicate, original) -> LicenseCsv.format(listOf(duplicate, original)) }
+            .joinToString("")
+    }
+
+    /**
+     * Moves the FSM of the previous build out of the way, so it can be used to update the archive incrementally.
+     * The previous FSM is only used if it was written with the same entry compression.
+     *
+     * @return The previous FSM, or `null` if the archive needs to be written from scratch
+     */
+    private fun keepPreviousArchive(): File? {
+        val archive = archiveFile.get().asFile
+        val compressionStateFile = compressionStateFile()
+        if (!pluginExtension.incrementalArchive || !archive.isFile || !compressionStateFile.isFile
+            || compressionStateFile.readText() != pluginExtension.entryCompression.toString()) {
+            return null
+        }
+
+        val previousArchive = temporaryDir.resolve("previous-${archive.name}")
+        Files.move(archive.toPath(), previousArchive.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        logger.info("Updating previous archive ${archive.path}")
+        return previousArchive
+    }
+
+    private fun compressionStateFile(): File {
+        return temporaryDir.resolve("entry-compression.txt")
     }
 
     @Suppress("CanConvertToMultiDollarString") // Not supported in Kotlin shipped with Gradle 8.11
-    private fun writeModuleDescriptorToZipFile(fs: FileSystem, unfilteredModuleXml: String?) {
+    private fun createModuleDescriptor(unfilteredModuleXml: String?, replacedResources: Map<String, String>): String {
         val filteredModuleXml: String
 
-        val moduleDescriptor = ModuleDescriptor(project)
+        val scannedComponents = componentIndexFile.orNull?.asFile?.takeIf { it.isFile }?.let(ScannedComponents::read)
+        val moduleDescriptor = ModuleDescriptor(project, metrics, scannedComponents)
 
         if (unfilteredModuleXml != null) {
             // Replace values in XML provided by user
-            filteredModuleXml = unfilteredModuleXml
-                .replace("\$name", pluginExtension.moduleName ?: project.name)
-                .replace("\$displayName", pluginExtension.displayName ?: project.name)
-                .replace("\$version", project.version.toString())
-                .replace("\$minimalFirstSpiritVersion", pluginExtension.minimalFirstSpiritVersion ?: "")
-                .replace("\$description", project.description ?: project.name)
-                .replace("\$vendor", pluginExtension.vendor ?: "")
-                .replace("\$artifact", project.tasks.named("jar", Jar::class.java).get()
-                    .archiveFileName.getOrElse("unknown-archiveFileName"))
-                .replace("\$class", moduleDescriptor.moduleClass.toString())
-                .replace("\$dependencies", moduleDescriptor.fsmDependencies())
-                .replace("\$resources", moduleDescriptor.resources.innerResourcesToString())
-                .replace("\$components", moduleDescriptor.components.innerComponentsToString())
-                .replace("\$licensesFile", "META-INF/licenses.csv")
+            filteredModuleXml = metrics.measure(TEMPLATE_EXPANSION) {
+                unfilteredModuleXml
+                    .replace("\$name", pluginExtension.moduleName ?: project.name)
+                    .replace("\$displayName", pluginExtension.displayName ?: project.name)
+                    .replace("\$version", project.version.toString())
+                    .replace("\$minimalFirstSpiritVersion", pluginExtension.minimalFirstSpiritVersion ?: "")
+                    .replace("\$description", project.description ?: project.name)
+                    .replace("\$vendor", pluginExtension.vendor ?: "")
+                    .replace("\$artifact", project.tasks.named("jar", Jar::class.java).get()
+                        .archiveFileName.getOrElse("unknown-archiveFileName"))
+                    .replace("\$class", moduleDescriptor.moduleClass.toString())
+                    .replace("\$dependencies", moduleDescriptor.fsmDependencies())
+                    .replace("\$resources", moduleDescriptor.resources.innerResourcesToString())
+                    .replace("\$components", moduleDescriptor.components.innerComponentsToString())
+                    .replace("\$licensesFile", "META-INF/licenses.csv")
+            }
         } else {
             // Create descriptor from scratch
             filteredModuleXml = moduleDescriptor.toString()
         }
 
-        val moduleXmlFile = fs.getPath("/META-INF/module-isolated.xml")
-        Files.newBufferedWriter(moduleXmlFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE).use {
-            it.write(moduleDescriptor.reformat(filteredModuleXml))
-        }
+        return moduleDescriptor.reformat(filteredModuleXml, replacedResources)
     }
 
     private fun getUnfilteredModuleXml(): String? {
@@ -231,24 +407,39 @@ abstract class FSM: Jar() {
 
 
     /**
-     * Helper method for executing Unit tests
+     * Helper method for executing Unit tests. An existing archive is kept, so executing the task again
+     * updates the archive of the previous execution incrementally
      */
     @TestOnly
     fun execute() {
-        Files.createDirectories(archiveFile.get().asFile.parentFile.toPath())
-        Files.createFile(archiveFile.get().asFile.toPath())
+        val archive = archiveFile.get().asFile
+        Files.createDirectories(archive.parentFile.toPath())
+        if (!archive.exists()) {
+            Files.createFile(archive.toPath())
+        }
         copy()
     }
 
 
     companion object {
         const val FSM_EXTENSION = "fsm"
+        const val MODULE_DESCRIPTOR_PATH = "META-INF/module-isolated.xml"
         const val FSM_RESOURCES_PATH = FSMConfigurationsPlugin.FSM_RESOURCES_PATH
 
         /**
          * Output dir name for license reports of license report plugin.
          */
         const val LICENSES_DIR_NAME = "licenses"
+
+        /**
+         * Directory of the license texts in the FSM
+         */
+        const val LICENSE_TEXTS_PATH = "META-INF/licenses/"
+
+        /**
+         * List of license texts removed from the FSM, see [FSMPluginExtension.deduplicateLicenseTexts]
+         */
+        const val LICENSE_DUPLICATES_PATH = LICENSE_TEXTS_PATH + "duplicates.csv"
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package org.gradle.plugins.fsm.tasks.bundling
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+
+/**
+ * Creates a delta archive containing the changes of the FSM compared to a baseline FSM, e.g. the FSM deployed
+ * to a server. The full FSM can be reconstructed from the baseline and the delta with [ApplyFSMDelta].
+ *
+ * @see FsmDeltaArchive
+ */
+abstract class FSMDelta: DefaultTask() {
+
+    /**
+     * The FSM the delta is based on
+     */
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val baselineFsm: RegularFileProperty
+
+    /**
+     * The new FSM
+     */
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val fsm: RegularFileProperty
+
+    @get:OutputFile
+    abstract val deltaFile: RegularFileProperty
+
+    @TaskAction
+    fun createDelta() {
+        val delta = deltaFile.get().asFile
+        val result = FsmDeltaArchive.create(baselineFsm.get().asFile, fsm.get().asFile, delta)
+        logger.lifecycle("Delta contains ${result.changedEntries} changed or added entries, " +
+                "${result.unchangedEntries} entries unchanged and ${result.removedEntries} entries removed")
+        logger.lifecycle("Delta size is ${result.size} bytes, FSM size is ${fsm.get().asFile.length()} bytes")
+    }
+
+}
@@ -0,0 +1,238 @@
+package org.gradle.plugins.fsm.tasks.bundling
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream
+import org.apache.commons.compress.archivers.zip.ZipFile
+import org.gradle.plugins.fsm.FSMPluginExtension.Companion.STORED
+import org.gradle.plugins.fsm.metrics.ArchiveEntryWriteEvent
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.security.MessageDigest
+import java.util.Calendar
+import java.util.GregorianCalendar
+import java.util.jar.JarFile
+import java.util.zip.ZipEntry
+
+/**
+ * Writes the final FSM archive based on the archive assembled by the Gradle copy action.
+ *
+ * The [FSM] task lets Gradle write all entries without compression. Entries which should be stored are then copied
+ * to the final archive as raw bytes, without computing checksums again. All other entries are deflated with the level
+ * determined by [EntryCompression]. Generated entries like the module descriptor are appended to the archive,
+ * replacing entries of the same name.
+ *
+ * If the FSM of a previous build is passed, deflated entries with the same name, checksum and size are copied raw
+ * from the previous archive instead of compressing them again. All entries are still read from the assembled archive
+ * and written to a new file, the previous archive is not updated in place.
+ *
+ * Libraries with identical content may end up in the archive under different names, e.g. if the same jar is resolved
+ * with different coordinates. These duplicates are detected with [findDuplicates] and can be left out of the archive.
+ *
+ * Reproducible archives are written with entries sorted by path, starting with the manifest, and with a constant
+ * timestamp for the generated entries.
+ *
+ * Like Gradle archive tasks, ZIP64 extensions are only used if enabled, see [org.gradle.api.tasks.bundling.Zip.isZip64].
+ */
+class FsmArchiveWriter(
+    private val compression: EntryCompression,
+    private val reproducible: Boolean = false,
+    private val zip64: Boolean = false
+) {
+
+    /**
+     * Writes the archive.
+     *
+     * @param source            The archive assembled by Gradle
+     * @param target            The FSM file to write
+     * @param generatedEntries  Additional entries to write, by entry path
+     * @param previous          The FSM written by a previous build with the same entry compression, if available
+     * @param excludedEntries   Entries of the assembled archive which should not be written, e.g. duplicates
+     * @return Statistics about the written archive
+     */
+    fun write(source: File, target: File, generatedEntries: Map<String, ByteArray>, previous: File? = null,
+              excludedEntries: Set<String> = emptySet()): Result {
+        var storedEntries = 0
+        var deflatedEntries = 0
+        var reusedEntries = 0
+
+        ZipFile.builder().setFile(source).get().use { sourceZip ->
+            openPrevious(previous).use { previousZip ->
+                ZipArchiveOutputStream(target).use { targetZip ->
+                    targetZip.setUseZip64(if (zip64) Zip64Mode.AsNeeded else Zip64Mode.Never)
+                    for (entry in sourceEntries(sourceZip)) {
+                        if (generatedEntries.containsKey(entry.name) || excludedEntries.contains(entry.name)) {
+                            continue
+                        }
+
+                        val level = compression.levelFor(entry.name)
+                        val previousEntry = previousZip?.getEntry(entry.name)
+                        val event = ArchiveEntryWriteEvent()
+                        event.begin()
+                        val writtenEntry: ZipArchiveEntry
+                        if (level == STORED && entry.method == ZipEntry.STORED) {
+                            // Copy stored entries as they are, including checksum and sizes
+                            sourceZip.getRawInputStream(entry).use { targetZip.addRawArchiveEntry(entry, it) }
+                            writtenEntry = entry
+                            event.source = ArchiveEntryWriteEvent.COPIED
+                            storedEntries++
+                        } else if (previousEntry != null && isUnchanged(entry, previousEntry, level)) {
+                            // Copy the compressed data of the previous build
+                            val reusedEntry = ZipArchiveEntry(previousEntry)
+                            reusedEntry.time = entry.time
+                            previousZip.getRawInputStream(previousEntry).use { targetZip.addRawArchiveEntry(reusedEntry, it) }
+                            writtenEntry = reusedEntry
+                            event.source = ArchiveEntryWriteEvent.REUSED
+                            reusedEntries++
+                            if (level == STORED) storedEntries++ else deflatedEntries++
+                        } else {
+                            writtenEntry = newEntry(entry.name, entry.time, entry.unixMode, level)
+                            targetZip.putEntry(writtenEntry, level)
+                            sourceZip.getInputStream(entry).use { it.copyTo(targetZip) }
+                            targetZip.closeArchiveEntry()
+                            event.source = ArchiveEntryWriteEvent.COMPRESSED
+                            if (level == STORED) storedEntries++ else deflatedEntries++
+                        }
+                        event.commit(writtenEntry)
+                    }
+
+                    val time = if (reproducible) CONSTANT_TIME_FOR_ZIP_ENTRIES else System.currentTimeMillis()
+                    for ((name, content) in generatedEntries.toSortedMap()) {
+                        val level = compression.levelFor(name)
+                        val event = ArchiveEntryWriteEvent()
+                        event.begin()
+                        val generatedEntry = newEntry(name, time, 0, level)
+                        targetZip.putEntry(generatedEntry, level)
+                        targetZip.write(content)
+                        targetZip.closeArchiveEntry()
+                        event.source = ArchiveEntryWriteEvent.GENERATED
+                        event.commit(generatedEntry)
+                        if (level == STORED) storedEntries++ else deflatedEntries++
+                    }
+                }
+            }
+        }
+
+        return Result(storedEntries, deflatedEntries, reusedEntries, target.length())
+    }
+
+    private fun sourceEntries(sourceZip: ZipFile): List<ZipArchiveEntry> {
+        val entries = sourceZip.entriesInPhysicalOrder.toList()
+        if (!reproducible) {
+            return entries
+        }
+
+        return entries.sortedWith(compareBy({ it.name !in MANIFEST_ENTRIES }, { it.name }))
+    }
+
+    /**
+     * Finds entries of the assembled archive in the given directory with the same content as an entry before them.
+     * Candidates are determined by checksum and size, their content is then compared by SHA-256 hash.
+     *
+     * @param source    The archive assembled by Gradle
+     * @param directory The directory of the entries to check, e.g. `lib/`
+     * @return The paths of the duplicate entries, mapped to the path of the first entry with the same content
+     */
+    fun findDuplicates(source: File, directory: String): Map<String, String> {
+        val duplicates = linkedMapOf<String, String>()
+
+        ZipFile.builder().setFile(source).get().use { sourceZip ->
+            val candidates = sourceZip.entriesInPhysicalOrder.asSequence()
+                .filter { !it.isDirectory && it.name.startsWith(directory) }
+                .groupBy { it.crc to it.size }
+                .values.filter { it.size > 1 }
+
+            for (entries in candidates) {
+                val firstEntryByHash = mutableMapOf<String, String>()
+                for (entry in entries) {
+                    val hash = sourceZip.getInputStream(entry).use { sha256(it) }
+                    val firstEntry = firstEntryByHash.putIfAbsent(hash, entry.name)
+                    if (firstEntry != null) {
+                        duplicates[entry.name] = firstEntry
+                    }
+                }
+            }
+        }
+
+        return duplicates
+    }
+
+    /**
+     * Opens the previous archive. Returns `null` if there is no previous archive or if it cannot be read,
+     * e.g. because the last build was interrupted.
+     */
+    private fun openPrevious(previous: File?): ZipFile? {
+        if (previous == null || !previous.isFile) {
+            return null
+        }
+
+        return try {
+            ZipFile.builder().setFile(previous).get()
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    private fun isUnchanged(entry: ZipArchiveEntry, previousEntry: ZipArchiveEntry, level: Int): Boolean {
+        val method = if (level == STORED) ZipEntry.STORED else ZipEntry.DEFLATED
+        return previousEntry.method == method
+                && previousEntry.crc == entry.crc
+                && previousEntry.size == entry.size
+                && previousEntry.unixMode == entry.unixMode
+    }
+
+    private fun newEntry(name: String, time: Long, unixMode: Int, level: Int): ZipArchiveEntry {
+        val entry = ZipArchiveEntry(name)
+        entry.time = time
+        if (unixMode != 0) {
+            entry.unixMode = unixMode
+        }
+        entry.method = if (level == STORED) ZipEntry.STORED else ZipEntry.DEFLATED
+        return entry
+    }
+
+    private fun ArchiveEntryWriteEvent.commit(entry: ZipArchiveEntry) {
+        end()
+        if (shouldCommit()) {
+            this.entry = entry.name
+            size = entry.size
+            compressedSize = entry.compressedSize
+            compressionRatio = if (entry.size > 0) entry.compressedSize.toDouble() / entry.size else 1.0
+            commit()
+        }
+    }
+
+    private fun ZipArchiveOutputStream.putEntry(entry: ZipArchiveEntry, level: Int) {
+        if (level != STORED) {
+            setLevel(level)
+        }
+        putArchiveEntry(entry)
+    }
+
+    companion object {
+        private val MANIFEST_ENTRIES = setOf("META-INF/", JarFile.MANIFEST_NAME)
+
+        /**
+         * Computes the SHA-256 hash of the given content as a hex string
+         */
+        internal fun sha256(input: InputStream): String {
+            val digest = MessageDigest.getInstance("SHA-256")
+            val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+            var read = input.read(buffer)
+            while (read >= 0) {
+                digest.update(buffer, 0, read)
+                read = input.read(buffer)
+            }
+            return digest.digest().joinToString("") { "%02x".format(it) }
+        }
+
+        /**
+         * Timestamp for entries of reproducible archives, same as used by Gradle
+         */
+        val CONSTANT_TIME_FOR_ZIP_ENTRIES = GregorianCalendar(1980, Calendar.FEBRUARY, 1, 0, 0, 0).timeInMillis
+    }
+
+    data class Result(val storedEntries: Int, val deflatedEntries: Int, val reusedEntries: Int, val size: Long)
+
+}
@@ -0,0 +1,131 @@
+package org.gradle.plugins.fsm.tasks.bundling
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream
+import org.apache.commons.compress.archivers.zip.ZipFile
+import org.gradle.api.GradleException
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+
+/**
+ * Creates and applies delta archives between two FSMs.
+ *
+ * A delta archive contains all entries of the new FSM which are not part of the baseline FSM with the same
+ * checksum, size, compressed size, compression method, timestamp and file attributes, always including the module
+ * descriptor. Entries are copied with their compressed data, so neither creating nor applying a delta compresses any
+ * entry again. Entries taken from the baseline are only assumed to match the new FSM by this metadata, their
+ * compressed data is not compared. The delta archive also contains an index
+ * in the [INDEX_DIR] directory:
+ *
+ * - `baseline.sha256`: The SHA-256 hash of the baseline FSM, to verify the delta is applied to the right FSM
+ * - `entries.txt`: The paths of all entries of the new FSM, in the order of the archive
+ * - `removed.txt`: The paths of all entries of the baseline FSM which are not part of the new FSM
+ */
+object FsmDeltaArchive {
+
+    const val INDEX_DIR = "FSM-DELTA/"
+    private const val BASELINE_HASH = INDEX_DIR + "baseline.sha256"
+    private const val ENTRIES = INDEX_DIR + "entries.txt"
+    private const val REMOVED = INDEX_DIR + "removed.txt"
+
+    /**
+     * Creates a delta archive.
+     *
+     * @param baseline The FSM the delta is based on, e.g. the FSM deployed to a server
+     * @param fsm      The new FSM
+     * @param delta    The delta archive to write
+     * @return Statistics about the delta
+     */
+    fun create(baseline: File, fsm: File, delta: File): Result {
+        var changedEntries = 0
+        var unchangedEntries = 0
+        var removedEntries = 0
+
+        ZipFile.builder().setFile(baseline).get().use { baselineZip ->
+            ZipFile.builder().setFile(fsm).get().use { fsmZip ->
+                ZipArchiveOutputStream(delta).use { deltaZip ->
+                    val entries = fsmZip.entriesInPhysicalOrder.toList()
+                    for (entry in entries) {
+                        val baselineEntry = baselineZip.getEntry(entry.name)
+                        if (entry.name == FSM.MODULE_DESCRIPTOR_PATH || baselineEntry == null || isChanged(entry, baselineEntry)) {
+                            fsmZip.getRawInputStream(entry).use { deltaZip.addRawArchiveEntry(entry, it) }
+                            changedEntries++
+                        } else {
+                            unchangedEntries++
+                        }
+                    }
+
+                    val entryNames = entries.map { it.name }.toSet()
+                    val removed = baselineZip.entries.toList().map { it.name }.filter { it !in entryNames }
+                    removedEntries = removed.size
+
+                    deltaZip.writeText(BASELINE_HASH, sha256(baseline))
+                    deltaZip.writeText(ENTRIES, entries.joinToString("\n") { it.name })
+                    deltaZip.writeText(REMOVED, removed.joinToString("\n"))
+                }
+            }
+        }
+
+        return Result(changedEntries, unchangedEntries, removedEntries, delta.length())
+    }
+
+    /**
+     * Reconstructs an FSM from its baseline and a delta archive.
+     *
+     * @param baseline The FSM the delta is based on
+     * @param delta    The delta archive created with [create]
+     * @param target   The FSM to write
+     * @throws GradleException If the delta was not created for the given baseline
+     */
+    fun apply(baseline: File, delta: File, target: File) {
+        ZipFile.builder().setFile(delta).get().use { deltaZip ->
+            val baselineHash = deltaZip.readText(BASELINE_HASH)
+            if (baselineHash != sha256(baseline)) {
+                throw GradleException("Delta archive '$delta' was not created for baseline '$baseline'.")
+            }
+
+            ZipFile.builder().setFile(baseline).get().use { baselineZip ->
+                ZipArchiveOutputStream(target).use { targetZip ->
+                    for (name in deltaZip.readText(ENTRIES).lines().filter { it.isNotEmpty() }) {
+                        val source = if (deltaZip.getEntry(name) != null) deltaZip else baselineZip
+                        val entry = source.getEntry(name)
+                            ?: throw GradleException("Entry '$name' not found in baseline '$baseline'.")
+                        source.getRawInputStream(entry).use { targetZip.addRawArchiveEntry(entry, it) }
+                    }
+                }
+            }
+        }
+    }
+
+    private fun isChanged(entry: ZipArchiveEntry, baselineEntry: ZipArchiveEntry): Boolean {
+        return entry.crc != baselineEntry.crc || entry.size != baselineEntry.size
+                || entry.compressedSize != baselineEntry.compressedSize || entry.method != baselineEntry.method
+                || entry.time != baselineEntry.time || entry.externalAttributes != baselineEntry.externalAttributes
+    }
+
+    private fun ZipArchiveOutputStream.writeText(name: String, text: String) {
+        val content = text.toByteArray(StandardCharsets.UTF_8)
+        val entry = ZipArchiveEntry(name)
+        // Store the index, so it can be read without inflating
+        entry.method = ZipEntry.STORED
+        entry.size = content.size.toLong()
+        entry.crc = CRC32().apply { update(content) }.value
+        putArchiveEntry(entry)
+        write(content)
+        closeArchiveEntry()
+    }
+
+    private fun ZipFile.readText(name: String): String {
+        val entry = getEntry(name) ?: throw GradleException("Invalid delta archive, '$name' not found.")
+        return getInputStream(entry).use { it.reader(StandardCharsets.UTF_8).readText() }
+    }
+
+    private fun sha256(file: File): String {
+        return file.inputStream().use { FsmArchiveWriter.sha256(it) }
+    }
+
+    data class Result(val changedEntries: Int, val unchangedEntries: Int, val removedEntries: Int, val size: Long)
+
+}
@@ -0,0 +1,78 @@
+package org.gradle.plugins.fsm.tasks.bundling
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Classpath
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.TaskAction
+import org.gradle.plugins.fsm.FSMPluginExtension
+import org.gradle.plugins.fsm.WorkerPoolService
+import org.gradle.plugins.fsm.descriptor.ComponentScan
+import org.gradle.plugins.fsm.descriptor.ScannedComponents
+import org.gradle.plugins.fsm.metrics.PhaseMetrics
+
+/**
+ * Scans the project for FSM components and writes them to [componentIndexFile], see [ScannedComponents]. Tasks
+ * using the components, e.g. the FSM task building the module descriptor and `validateDescriptor`, declare the file
+ * as an input instead of scanning the classes again.
+ */
+abstract class ScanComponents : DefaultTask() {
+
+    /**
+     * The jars of the project and its compile project dependencies, or their class output directories if
+     * [FSMPluginExtension.scanClassesDirectories] is set
+     */
+    @get:Classpath
+    abstract val classpath: ConfigurableFileCollection
+
+    @get:OutputFile
+    abstract val componentIndexFile: RegularFileProperty
+
+    /**
+     * The file the timings of the scan are written to, see [PhaseMetrics]
+     */
+    @get:OutputFile
+    abstract val metricsFile: RegularFileProperty
+
+    /**
+     * Shared thread pool of the build, see [WorkerPoolService]. If not set, the project is scanned with a thread pool
+     * of the task.
+     */
+    @get:Internal
+    abstract val workerPool: Property<WorkerPoolService>
+
+    init {
+        val pluginExtension = project.extensions.getByType(FSMPluginExtension::class.java)
+        metricsFile.convention(project.layout.buildDirectory.file("${PhaseMetrics.METRICS_DIR_NAME}/$name.json"))
+        inputs.property("scanClassesDirectories", project.provider { pluginExtension.scanClassesDirectories })
+        inputs.property("componentScanAcceptPackages", project.provider { pluginExtension.componentScanAcceptPackages.toList() })
+        inputs.property("componentScanRejectPackages", project.provider { pluginExtension.componentScanRejectPackages.toList() })
+        inputs.property("componentScanAcceptJars", project.provider { pluginExtension.componentScanAcceptJars.toList() })
+        inputs.property("componentScanRejectJars", project.provider { pluginExtension.componentScanRejectJars.toList() })
+        inputs.property("skipJarsWithoutComponents", project.provider { pluginExtension.skipJarsWithoutComponents })
+    }
+
+    @TaskAction
+    fun scanComponents() {
+        val metrics = PhaseMetrics()
+        val components = metrics.measure(PhaseMetrics.COMPONENT_SCAN) {
+            val pool = workerPool.orNull
+            val componentScan = if (pool != null) {
+                val extension = project.extensions.getByType(FSMPluginExtension::class.java)
+                ComponentScan(project, pool.executor, extension.componentScanThreads ?: pool.maxWorkers)
+            } else {
+                ComponentScan(project)
+            }
+            componentScan.use { ScannedComponents.of(it) }
+        }
+
+        val file = componentIndexFile.get().asFile
+        ScannedComponents.write(file, components)
+        logger.info("Wrote {} components to {}", components.size, file)
+        metrics.report(path, metricsFile.get().asFile, logger)
+    }
+
+}
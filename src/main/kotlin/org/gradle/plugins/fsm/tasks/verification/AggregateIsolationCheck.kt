@@ -0,0 +1,184 @@
+package org.gradle.plugins.fsm.tasks.verification
+
+import de.espirit.mavenplugins.fsmchecker.ComplianceLevel
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.provider.MapProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.TaskAction
+import org.gradle.plugins.fsm.isolationcheck.ComplianceCheck
+import org.gradle.plugins.fsm.isolationcheck.DetectorClientService
+import org.gradle.plugins.fsm.isolationcheck.JUnitXMLFormatHandler
+import org.gradle.plugins.fsm.isolationcheck.RequestTelemetry
+import org.gradle.plugins.fsm.isolationcheck.VerificationResult
+import org.gradle.plugins.fsm.isolationcheck.WebServiceConnector
+import java.io.File
+import java.io.Serializable
+import java.net.URI
+import java.time.Duration
+
+/**
+ * Checks the FSMs of all projects of a multi-project build with as few uploads to the FSM Dependency Detector as
+ * possible, see [ComplianceCheck.checkEach]. Registered on the root project, every project with an
+ * `isolationDetectorUrl` adds its FSM.
+ *
+ * FSMs are grouped by their [DetectorSettings], the FSMs of each group are uploaded and analyzed together. The detector
+ * reports category violations for all FSMs of an upload, so if a category fails for a group of several FSMs, its FSMs
+ * are checked again one by one to find the FSMs causing the violations.
+ *
+ * The result of each FSM is written to the build directory of its project, like with [IsolationCheck]. When this task
+ * is part of the build, the [IsolationCheck] tasks of the projects are skipped.
+ */
+abstract class AggregateIsolationCheck : DefaultTask() {
+
+    /**
+     * The settings of a project for the detector. FSMs with equal settings are checked with a single upload.
+     */
+    data class DetectorSettings(
+        val detectorUrl: String,
+        val firstSpiritVersion: String?,
+        val complianceLevel: ComplianceLevel,
+        val maxBytecodeVersion: Int,
+        val whitelistedResources: List<String>,
+        val contentCreatorComponents: List<String>,
+        val isolationDetectorUsername: String?,
+        val isolationDetectorPassword: String?
+    ) : Serializable {
+
+        override fun toString(): String {
+            return "detector '$detectorUrl', FirstSpirit version '$firstSpiritVersion', ComplianceLevel '$complianceLevel'," +
+                    " maximum bytecode version '$maxBytecodeVersion'"
+        }
+
+    }
+
+    /**
+     * The FSM of each project, by project path
+     */
+    @get:Internal
+    abstract val fsmFiles: MapProperty<String, File>
+
+    /**
+     * The detector settings of each project with an FSM, by project path
+     */
+    @get:Input
+    abstract val detectorSettings: MapProperty<String, DetectorSettings>
+
+    /**
+     * The response timeout of each project with an FSM, by project path. A group of FSMs uses the longest timeout.
+     */
+    @get:Internal
+    abstract val responseTimeouts: MapProperty<String, Duration>
+
+    /**
+     * The build directory of each project, by project path. The JUnit report of the FSM is written to it.
+     */
+    @get:Internal
+    abstract val buildDirectories: MapProperty<String, File>
+
+    /**
+     * The directory the request telemetry is written to
+     */
+    @get:Internal
+    abstract val reportDirectory: DirectoryProperty
+
+    /**
+     * Shared HTTP client of the build, see [DetectorClientService]. If not set, the task creates its own client.
+     */
+    @get:Internal
+    abstract val detectorClientService: Property<DetectorClientService>
+
+    @TaskAction
+    fun check() {
+        val fsms = fsmFiles.get()
+        if (fsms.isEmpty()) {
+            logger.lifecycle("No FSMs with an isolation detector configured. -> skipping check.")
+            return
+        }
+
+        val settings = detectorSettings.get()
+        val groups = fsms.keys.groupBy { settings.getValue(it) }
+        if (groups.keys.any { it.firstSpiritVersion.isNullOrEmpty() }) {
+            throw GradleException("Isolation check requires FirstSpirit version to check against. Please consult the README.")
+        }
+
+        val telemetry = mutableListOf<RequestTelemetry>()
+        val checkResults = mutableMapOf<String, VerificationResult>()
+        try {
+            for ((groupSettings, projectPaths) in groups) {
+                logger.lifecycle("Running isolation check of ${projectPaths.size} modules ...")
+                logger.lifecycle("\tComplianceLevel: '${groupSettings.complianceLevel}'")
+                logger.lifecycle("\tmaximum bytecode version: '${groupSettings.maxBytecodeVersion}'")
+                logger.lifecycle("\tagainst detector: '${groupSettings.detectorUrl}'")
+                if (groupSettings.isolationDetectorUsername != null) {
+                    logger.lifecycle("\tauthenticating as: '${groupSettings.isolationDetectorUsername}'")
+                }
+                logger.lifecycle("\tusing FirstSpirit version: '${groupSettings.firstSpiritVersion}'")
+                projectPaths.forEach { logger.lifecycle("\t$it: '${fsms.getValue(it)}'") }
+
+                val groupResults = check(groupSettings, projectPaths, telemetry)
+                checkResults += groupResults
+                val unassigned = projectPaths.filter { groupResults.getValue(it).status == VerificationResult.Status.UNASSIGNED }
+                if (unassigned.isNotEmpty()) {
+                    logger.lifecycle("Category violations found, checking ${unassigned.size} modules separately ...")
+                    unassigned.forEach { checkResults += check(groupSettings, listOf(it), telemetry) }
+                }
+            }
+        } finally {
+            IsolationCheck.reportTelemetry(logger, telemetry, reportDirectory.get().asFile
+                .resolve(JUnitXMLFormatHandler.JUNIT_REPORTS_DIR).resolve(IsolationCheck.TELEMETRY_REPORT_FILE_NAME))
+        }
+
+        val failures = mutableListOf<String>()
+        for (projectPath in fsms.keys) {
+            val checkResult = checkResults.getValue(projectPath)
+            if (checkResult.isValid()) {
+                logger.lifecycle("$projectPath: ${checkResult.message}")
+                continue
+            }
+            logger.error("$projectPath: Isolation check failed!\nViolation details: " + checkResult.message)
+            if (checkResult.moduleErrors.isNotEmpty()) {
+                logger.error("\nmodule details:")
+                checkResult.moduleErrors.forEach { logger.error("\t" + it) }
+            }
+            failures.add("$projectPath: ${checkResult.message}")
+        }
+
+        if (failures.isNotEmpty()) {
+            throw GradleException("Isolation check failed for ${failures.size} of ${fsms.size} modules!\n" +
+                    failures.joinToString("\n") { " - $it" })
+        }
+    }
+
+    /**
+     * Checks the FSMs of the given projects with a single upload
+     *
+     * @param telemetry Collects the telemetry of the requests sent
+     * @return The result of each FSM, by project path
+     */
+    private fun check(settings: DetectorSettings, projectPaths: List<String>,
+                      telemetry: MutableList<RequestTelemetry>): Map<String, VerificationResult> {
+        val fsms = fsmFiles.get()
+        val buildDirs = buildDirectories.get()
+        val responseTimeout = projectPaths.maxOf { responseTimeouts.get().getValue(it) }
+        val connector = WebServiceConnector(URI.create(settings.detectorUrl), settings.firstSpiritVersion,
+            settings.maxBytecodeVersion, settings.isolationDetectorUsername, settings.isolationDetectorPassword,
+            responseTimeout, detectorClientService.orNull?.client)
+
+        val complianceCheck = ComplianceCheck(settings.complianceLevel,
+            projectPaths.map { buildDirs.getValue(it).toPath() }, connector)
+        settings.whitelistedResources.forEach { complianceCheck.addWhitelistedResource(it) }
+        settings.contentCreatorComponents.forEach { complianceCheck.addContentCreatorComponent(it) }
+
+        try {
+            val results = complianceCheck.use { it.checkEach(projectPaths.map { path -> fsms.getValue(path).toPath() }) }
+            return projectPaths.associateWith { results.getValue(fsms.getValue(it).toPath()) }
+        } finally {
+            telemetry += connector.requestTelemetry
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.gradle.plugins.fsm.tasks.verification
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+import org.gradle.plugins.fsm.WorkerPoolService
+import org.gradle.plugins.fsm.tasks.bundling.FSM
+import org.redundent.kotlin.xml.parse
+import java.util.zip.ZipFile
+
+/**
+ * Checks the classloaders of the module for classes contained in several jars, see [ClassConflicts]. Classes with
+ * different content are reported as warnings, or fail the task if [failOnConflicts] is set. Identical classes and split
+ * packages are always reported as warnings. All findings are written to [reportFile].
+ */
+abstract class CheckClassConflicts : DefaultTask() {
+
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val fsmFile: RegularFileProperty
+
+    @get:OutputFile
+    abstract val reportFile: RegularFileProperty
+
+    /**
+     * If set to true, classes with different content in jars of the same classloader fail the task
+     */
+    @get:Input
+    abstract val failOnConflicts: Property<Boolean>
+
+    /**
+     * Shared thread pool of the build, see [WorkerPoolService]. If not set, the task reads the jars with its own thread
+     * pool.
+     */
+    @get:Internal
+    abstract val workerPool: Property<WorkerPoolService>
+
+    init {
+        failOnConflicts.convention(false)
+    }
+
+    @TaskAction
+    fun checkClassConflicts() {
+        val findings = ZipFile(fsmFile.get().asFile).use { fsm ->
+            val descriptorEntry = fsm.getEntry(FSM.MODULE_DESCRIPTOR_PATH)
+                ?: throw GradleException("Module descriptor '${FSM.MODULE_DESCRIPTOR_PATH}' not found!")
+            val descriptor = fsm.getInputStream(descriptorEntry).use { parse(it) }
+            ClassConflicts(workerPool.orNull?.executor).check(fsm, ClassConflicts.scopes(descriptor))
+        }
+
+        val report = reportFile.get().asFile
+        report.parentFile.mkdirs()
+        report.writeText(findings.joinToString("") { "$it\n" })
+
+        findings.filter { !it.isConflict }.forEach { logger.warn(it.toString()) }
+        val conflicts = findings.filter { it.isConflict }
+        if (conflicts.isEmpty()) {
+            logger.info("No conflicting classes found, see {}", report)
+            return
+        }
+        val message = "Found classes with different content in jars of the same classloader:\n" +
+                conflicts.joinToString("\n") { " - $it" } + "\nSee $report for all findings."
+        if (failOnConflicts.get()) {
+            throw GradleException(message)
+        }
+        logger.warn(message)
+    }
+
+    companion object {
+        /**
+         * Location of the report, relative to the build directory
+         */
+        const val REPORT_FILE_NAME = "fsm/class-conflicts.txt"
+    }
+
+}
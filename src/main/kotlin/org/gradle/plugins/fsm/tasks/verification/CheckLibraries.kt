@@ -0,0 +1,55 @@
+package org.gradle.plugins.fsm.tasks.verification
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
+import org.gradle.api.tasks.TaskAction
+import org.gradle.plugins.fsm.WorkerPoolService
+import org.gradle.plugins.fsm.isolationcheck.LibraryCheck
+
+/**
+ * Checks the libraries of the FSM for classes with a bytecode version above the maximum and for FirstSpirit artifacts,
+ * see [LibraryCheck]. Runs locally before the [IsolationCheck], so these problems are found without uploading the FSM
+ * to the FSM Dependency Detector.
+ */
+abstract class CheckLibraries : DefaultTask() {
+
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val fsmFile: RegularFileProperty
+
+    /**
+     * The maximum class file major version, see [org.gradle.plugins.fsm.FSMPluginExtension.maxBytecodeVersion]
+     */
+    @get:Input
+    abstract val maxBytecodeVersion: Property<Int>
+
+    /**
+     * Shared thread pool of the build, see [WorkerPoolService]. If not set, the task checks the libraries with its own
+     * thread pool.
+     */
+    @get:Internal
+    abstract val workerPool: Property<WorkerPoolService>
+
+    @TaskAction
+    fun checkLibraries() {
+        val pool = workerPool.orNull
+        val libraryCheck = if (pool != null) {
+            LibraryCheck(maxBytecodeVersion.get(), pool.executor)
+        } else {
+            LibraryCheck(maxBytecodeVersion.get())
+        }
+        val result = libraryCheck.check(fsmFile.get().asFile)
+        if (!result.isValid()) {
+            throw GradleException("Library check failed!\nViolation details: " + result.message)
+        }
+        logger.info(result.message)
+    }
+
+}
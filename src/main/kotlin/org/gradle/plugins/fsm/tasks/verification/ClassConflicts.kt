@@ -0,0 +1,230 @@
+package org.gradle.plugins.fsm.tasks.verification
+
+import org.gradle.plugins.fsm.WorkerPoolService
+import org.gradle.plugins.fsm.descriptor.textContent
+import org.redundent.kotlin.xml.Node
+import java.io.InputStream
+import java.util.concurrent.ExecutorService
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipInputStream
+
+/**
+ * Finds classes contained in several jars of an FSM which are loaded by the same classloader, e.g. two versions of
+ * the same library. Jars are grouped by the classloaders FirstSpirit creates for them, see [scopes]. Within a
+ * classloader, only the first jar containing a class is used, so a class with different content in two jars usually
+ * breaks at runtime.
+ *
+ * The jars in the FSM are streamed once each, in parallel. Classes are compared by the CRC-32 checksum stored for each
+ * jar entry, so the index only keeps the class name and a `Long` per class, packing the first jar containing the class
+ * and its checksum. Classes for newer Java versions in multi-release jars (`META-INF/versions/`) and
+ * `module-info`/`package-info` classes are ignored.
+ *
+ * @param executor    The pool reading the jars, e.g. of the [WorkerPoolService]. If not set, a pool with [parallelism]
+ *                    threads is used.
+ * @param parallelism The number of jars read in parallel if no [executor] is set
+ */
+class ClassConflicts(
+    private val executor: ExecutorService? = null,
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors()
+) {
+
+    /**
+     * The jars loaded by a classloader of the module
+     *
+     * @property name       A description of the classloader, e.g. `web-app 'MyWebApp'`
+     * @property jars       The paths of the jars in the FSM
+     * @property parentJars The paths of the jars of the parent classloader. Conflicts between them are reported for
+     *                      the parent classloader only.
+     */
+    class ClassLoaderScope(val name: String, val jars: List<String>, val parentJars: List<String> = emptyList())
+
+    /**
+     * A class with different content in two jars
+     */
+    data class ConflictingClass(val className: String, val firstChecksum: Int, val secondChecksum: Int) {
+        override fun toString(): String {
+            return "$className (%08x, %08x)".format(firstChecksum, secondChecksum)
+        }
+    }
+
+    /**
+     * Two jars of the same classloader with classes or packages in common
+     *
+     * @property conflictingClasses      Examples of the classes with different content, up to [MAX_EXAMPLES]
+     * @property conflictingClassCount   The number of classes with different content
+     * @property identicalClassCount     The number of classes with the same content in both jars
+     * @property splitPackages           Packages with classes in both jars, if the jars have no class in common
+     */
+    data class Finding(
+        val scope: String,
+        val firstJar: String,
+        val secondJar: String,
+        val conflictingClasses: List<ConflictingClass>,
+        val conflictingClassCount: Int,
+        val identicalClassCount: Int,
+        val splitPackages: Set<String>
+    ) {
+        val isConflict: Boolean
+            get() = conflictingClassCount > 0
+
+        override fun toString(): String {
+            return when {
+                conflictingClassCount > 0 -> "$scope: $firstJar and $secondJar contain $conflictingClassCount classes" +
+                        " with different content, e.g. ${conflictingClasses.joinToString()}"
+                identicalClassCount > 0 -> "$scope: $firstJar and $secondJar contain $identicalClassCount identical classes"
+                else -> "$scope: $firstJar and $secondJar share the packages ${splitPackages.sorted().joinToString()}"
+            }
+        }
+    }
+
+    private class JarClasses(val classNames: Array<String>, val checksums: IntArray)
+
+    private class PairStatistics {
+        val conflictingClasses = mutableListOf<ConflictingClass>()
+        var conflictingClassCount = 0
+        var identicalClassCount = 0
+        val sharedPackages = sortedSetOf<String>()
+    }
+
+    /**
+     * Checks the classloaders of a module
+     *
+     * @param fsm    The FSM
+     * @param scopes The classloaders of the module, see [scopes]
+     * @return The findings of all classloaders
+     */
+    fun check(fsm: ZipFile, scopes: List<ClassLoaderScope>): List<Finding> {
+        val jars = readJars(fsm, scopes.flatMap { it.jars + it.parentJars }.toSet())
+        return scopes.flatMap { check(it, jars) }
+    }
+
+    private fun check(scope: ClassLoaderScope, jars: Map<String, JarClasses>): List<Finding> {
+        val scopeJars = (scope.parentJars + scope.jars).distinct().filter { it in jars }
+        val parentJarCount = scope.parentJars.distinct().count { it in jars }
+
+        // First jar and checksum of each class, packed into a Long
+        val classIndex = HashMap<String, Long>()
+        val packageIndex = HashMap<String, Int>()
+        val pairs = linkedMapOf<Pair<Int, Int>, PairStatistics>()
+
+        scopeJars.forEachIndexed { jarIndex, path ->
+            val classes = jars.getValue(path)
+            val reportConflicts = jarIndex >= parentJarCount
+            for (i in classes.classNames.indices) {
+                val className = classes.classNames[i]
+                val checksum = classes.checksums[i]
+                val packageName = className.substringBeforeLast('.', "")
+                val packageJar = packageIndex.putIfAbsent(packageName, jarIndex)
+                if (reportConflicts && packageJar != null && packageJar != jarIndex) {
+                    pairs.getOrPut(packageJar to jarIndex) { PairStatistics() }.sharedPackages.add(packageName)
+                }
+
+                val existing = classIndex.putIfAbsent(className, (jarIndex.toLong() shl 32) or (checksum.toLong() and 0xffffffffL))
+                    ?: continue
+                val firstJar = (existing ushr 32).toInt()
+                if (!reportConflicts || firstJar == jarIndex) {
+                    continue
+                }
+                val statistics = pairs.getOrPut(firstJar to jarIndex) { PairStatistics() }
+                val firstChecksum = existing.toInt()
+                if (firstChecksum == checksum) {
+                    statistics.identicalClassCount++
+                } else {
+                    statistics.conflictingClassCount++
+                    if (statistics.conflictingClasses.size < MAX_EXAMPLES) {
+                        statistics.conflictingClasses.add(ConflictingClass(className, firstChecksum, checksum))
+                    }
+                }
+            }
+        }
+
+        return pairs.map { (pair, statistics) ->
+            val splitPackages = if (statistics.conflictingClassCount + statistics.identicalClassCount == 0) {
+                statistics.sharedPackages
+            } else {
+                emptySet()
+            }
+            Finding(scope.name, scopeJars[pair.first], scopeJars[pair.second], statistics.conflictingClasses.toList(),
+                statistics.conflictingClassCount, statistics.identicalClassCount, splitPackages)
+        }
+    }
+
+    private fun readJars(fsm: ZipFile, paths: Set<String>): Map<String, JarClasses> {
+        val entries = paths.mapNotNull { fsm.getEntry(it) }.filter { !it.isDirectory && it.name.endsWith(".jar") }
+        val jars = WorkerPoolService.map(entries, executor, "fsm-class-conflicts", parallelism) { entry ->
+            fsm.getInputStream(entry).use { readJar(it) }
+        }
+        return entries.map { it.name }.zip(jars).toMap()
+    }
+
+    private fun readJar(input: InputStream): JarClasses {
+        val classEntries = mutableListOf<ZipEntry>()
+        val jar = ZipInputStream(input)
+        // Advancing to the next entry reads the previous one completely, so its checksum is known at the end
+        var entry = jar.nextEntry
+        while (entry != null) {
+            val name = entry.name
+            if (name.endsWith(".class") && !name.startsWith(VERSIONED_CLASSES_DIR)
+                && !name.endsWith("module-info.class") && !name.endsWith("package-info.class")) {
+                classEntries.add(entry)
+            }
+            entry = jar.nextEntry
+        }
+
+        return JarClasses(
+            Array(classEntries.size) { classEntries[it].name.removeSuffix(".class").replace('/', '.') },
+            IntArray(classEntries.size) { classEntries[it].crc.toInt() }
+        )
+    }
+
+    companion object {
+        const val MAX_EXAMPLES = 5
+        private const val VERSIONED_CLASSES_DIR = "META-INF/versions/"
+
+        /**
+         * Determines the classloaders of a module from its descriptor:
+         *
+         * - `server`: The global resources with `server` scope, and resources without scope
+         * - `module`: The global resources with `module` scope and the resources of components, with the server
+         *   resources as parent
+         * - `web-app '[name]'`: The web resources of a web-app
+         * - `library '[name]'`: The resources of a library
+         */
+        fun scopes(descriptor: Node): List<ClassLoaderScope> {
+            val serverJars = mutableListOf<String>()
+            val moduleJars = mutableListOf<String>()
+            val otherScopes = mutableListOf<ClassLoaderScope>()
+
+            fun addResources(resources: Node) {
+                resources.filter("resource").filter { it.children.isNotEmpty() }.forEach { resource ->
+                    if (resource.attributes["scope"] == "module") {
+                        moduleJars.add(resource.textContent())
+                    } else {
+                        serverJars.add(resource.textContent())
+                    }
+                }
+            }
+
+            descriptor.filter("resources").forEach(::addResources)
+            descriptor.filter("components").singleOrNull()?.children?.filterIsInstance<Node>()?.forEach { component ->
+                val name = component.firstOrNull("name")?.takeIf { it.children.isNotEmpty() }?.textContent() ?: ""
+                when (component.nodeName) {
+                    "web-app" -> otherScopes.add(ClassLoaderScope("web-app '$name'",
+                        component.filter("web-resources").flatMap { resources(it) }))
+                    "library" -> otherScopes.add(ClassLoaderScope("library '$name'",
+                        component.filter("resources").flatMap { resources(it) }))
+                    else -> component.filter("resources").forEach(::addResources)
+                }
+            }
+
+            return listOf(ClassLoaderScope("server", serverJars), ClassLoaderScope("module", moduleJars, serverJars)) +
+                    otherScopes
+        }
+
+        private fun resources(resources: Node): List<String> {
+            return resources.filter("resource").filter { it.children.isNotEmpty() }.map { it.textContent() }
+        }
+    }
+
+}
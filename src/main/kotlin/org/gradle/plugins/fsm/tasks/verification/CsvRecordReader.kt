@@ -0,0 +1,148 @@
+package org.gradle.plugins.fsm.tasks.verification
+
+import java.io.Reader
+import java.io.Writer
+
+/**
+ * Reads the records of a CSV file according to RFC 4180 one at a time, so only the current record is kept in memory.
+ * Quoted fields may contain commas, line breaks and quotes escaped as `""`. Like the `CsvReader` of FirstSpirit, which
+ * validates the `licenses.csv` of a module, whitespace after the closing quote of a field is kept in the field and an
+ * empty line is a record with one empty field.
+ *
+ * Parse errors are reported with an [IllegalStateException].
+ */
+internal class CsvRecordReader(private val reader: Reader) {
+
+    /**
+     * Whether the previous record ended with `\r`, so a following `\n` belongs to the same line break
+     */
+    private var afterCarriageReturn = false
+
+    /**
+     * Reads the next record
+     *
+     * @return The fields of the record, or `null` at the end of the file
+     */
+    fun next(): List<String>? {
+        var c = reader.read()
+        if (afterCarriageReturn && c == LF) {
+            c = reader.read()
+        }
+        afterCarriageReturn = false
+        if (c == EOF) {
+            return null
+        }
+
+        val record = mutableListOf<String>()
+        val field = StringBuilder()
+        while (true) {
+            if (c == QUOTE) {
+                while (true) {
+                    c = reader.read()
+                    if (c == EOF) {
+                        throw IllegalStateException("Unterminated string literal!")
+                    }
+                    if (c == QUOTE) {
+                        c = reader.read()
+                        if (c != QUOTE) {
+                            break
+                        }
+                    }
+                    field.append(c.toChar())
+                }
+                while (c == ' '.code || c == '\t'.code) {
+                    field.append(c.toChar())
+                    c = reader.read()
+                }
+                if (!isFieldEnd(c)) {
+                    throw IllegalStateException("Found non-whitespace characters after string literal!")
+                }
+            } else {
+                while (!isFieldEnd(c)) {
+                    field.append(c.toChar())
+                    c = reader.read()
+                }
+            }
+
+            record.add(field.toString())
+            field.setLength(0)
+            if (c != COMMA) {
+                afterCarriageReturn = c == CR
+                return record
+            }
+            c = reader.read()
+        }
+    }
+
+    private fun isFieldEnd(c: Int): Boolean {
+        return c == COMMA || c == LF || c == CR || c == EOF
+    }
+
+    companion object {
+        private const val EOF = -1
+        private const val QUOTE = '"'.code
+        private const val COMMA = ','.code
+        private const val CR = '\r'.code
+        private const val LF = '\n'.code
+    }
+
+}
+
+/**
+ * Replaces quotes escaped as `\"` with `""` while reading, and copies all characters read to [copy]. Used to fix the
+ * escaping of the `licenses.csv` written by the License Report Plugin.
+ */
+internal class QuoteRepairingReader(private val input: Reader, private val copy: Writer) : Reader() {
+
+    private var pendingQuote = false
+    private var lookahead = NONE
+
+    override fun read(buffer: CharArray, offset: Int, length: Int): Int {
+        for (i in 0 until length) {
+            val c = read()
+            if (c == EOF) {
+                return if (i == 0) EOF else i
+            }
+            buffer[offset + i] = c.toChar()
+        }
+        return length
+    }
+
+    override fun close() {
+        input.close()
+    }
+
+    override fun read(): Int {
+        val c = nextChar()
+        if (c != EOF) {
+            copy.write(c)
+        }
+        return c
+    }
+
+    private fun nextChar(): Int {
+        if (pendingQuote) {
+            pendingQuote = false
+            return QUOTE
+        }
+
+        val c = if (lookahead != NONE) lookahead.also { lookahead = NONE } else input.read()
+        if (c == BACKSLASH) {
+            val next = input.read()
+            if (next == QUOTE) {
+                pendingQuote = true
+                return QUOTE
+            }
+            lookahead = next
+        }
+        return c
+    }
+
+    companion object {
+        private const val EOF = -1
+        private const val NONE = -2
+        private const val QUOTE = '"'.code
+        private const val BACKSLASH = '\\'.code
+    }
+
+}
@@ -3,13 +3,24 @@ package org.gradle.plugins.fsm.tasks.verification
 import de.espirit.mavenplugins.fsmchecker.ComplianceLevel
 import org.gradle.api.DefaultTask
 import org.gradle.api.GradleException
+import org.gradle.api.logging.Logger
+import org.gradle.api.provider.Property
 import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.Internal
 import org.gradle.api.tasks.Optional
 import org.gradle.api.tasks.TaskAction
+import org.gradle.plugins.fsm.FSMPlugin
 import org.gradle.plugins.fsm.FSMPluginExtension
 import org.gradle.plugins.fsm.isolationcheck.ComplianceCheck
+import org.gradle.plugins.fsm.isolationcheck.DetectorClientService
+import org.gradle.plugins.fsm.isolationcheck.JUnitXMLFormatHandler
+import org.gradle.plugins.fsm.isolationcheck.RequestTelemetry
+import org.gradle.plugins.fsm.isolationcheck.VerificationResult
 import org.gradle.plugins.fsm.isolationcheck.WebServiceConnector
+import java.io.File
 import java.net.URI
+import java.nio.file.Path
+import java.time.Duration
 
 /**
  * Checks the degree of compliance in terms of isolation a module has towards a given version of FirstSpirit. Depends
@@ -20,13 +31,68 @@ open class IsolationCheck: DefaultTask() {
 
     private val pluginExtension = project.extensions.getByType(FSMPluginExtension::class.java)
 
+    /**
+     * Shared HTTP client of the build, see [DetectorClientService]. If not set, the task creates its own client.
+     */
+    @get:Internal
+    val detectorClientService: Property<DetectorClientService> =
+        project.objects.property(DetectorClientService::class.java)
+
     @TaskAction
     fun check() {
+        val submittedCheck = detectorClientService.orNull?.awaitCheck(path)
+        val checkResult = if (submittedCheck != null) {
+            logger.lifecycle("Isolation check submitted by {} finished", FSMPlugin.SUBMIT_ISOLATION_CHECK_TASK_NAME)
+            reportTelemetry(logger, submittedCheck.requestTelemetry, telemetryReportFile())
+            submittedCheck.getResult()
+        } else {
+            val check = prepareCheck() ?: return
+            try {
+                check.call()
+            } finally {
+                reportTelemetry(logger, check.requestTelemetry, telemetryReportFile())
+            }
+        }
+
+        if (!checkResult.isValid()) {
+            logger.error("Isolation check failed!\nViolation details: " + checkResult.message)
+            val moduleErrors = checkResult.moduleErrors
+            if (moduleErrors.isNotEmpty()) {
+                logger.error("\nmodule details:")
+                for (moduleError in moduleErrors) {
+                    logger.error("\t" + moduleError)
+                }
+            }
+            throw GradleException("Isolation check failed!\nViolation details: " + checkResult.message)
+        } else {
+            logger.lifecycle(checkResult.message)
+        }
+    }
+
+    /**
+     * Starts the check of the FSM with the current configuration in the background, see [SubmitIsolationCheck]. The
+     * check is kept by the [DetectorClientService] until [check] awaits it.
+     *
+     * @return `false` if no detector is configured
+     */
+    internal fun submit(service: DetectorClientService): Boolean {
+        val check = prepareCheck() ?: return false
+        service.submitCheck(path, check)
+        return true
+    }
+
+    /**
+     * Prepares the check of the FSM with the current configuration. The returned check does not access the project
+     * and does not log, so it can run on another thread.
+     *
+     * @return The check, or `null` if no detector is configured
+     */
+    private fun prepareCheck(): PreparedCheck? {
         val pathList = inputs.files.files.map { it.toPath() }
-        val uri = URI.create(pluginExtension.isolationDetectorUrl ?: return)
+        val uri = URI.create(pluginExtension.isolationDetectorUrl ?: return null)
 
         if (pathList.isEmpty() || uri.toString().isEmpty()) {
-            return
+            return null
         }
 
         if (getFirstSpiritVersion().isNullOrEmpty()) {
@@ -43,27 +109,39 @@ open class IsolationCheck: DefaultTask() {
         logger.lifecycle("\tusing FirstSpirit version: '${getFirstSpiritVersion()}'")
         logger.lifecycle("\tfsms: '$pathList'")
         val connector = WebServiceConnector(uri, getFirstSpiritVersion(), getMaxBytecodeVersion(),
-            getIsolationDetectorUsername(), getIsolationDetectorPassword())
+            getIsolationDetectorUsername(), getIsolationDetectorPassword(), getResponseTimeout(),
+            detectorClientService.orNull?.client)
 
-        val complianceCheck = ComplianceCheck(getComplianceLevel(), project.layout.buildDirectory.get().asFile.toPath(), connector)
+        val buildDir = project.layout.buildDirectory.get().asFile
+        val complianceCheck = ComplianceCheck(getComplianceLevel(), buildDir.toPath(), connector)
         pluginExtension.isolationDetectorWhitelist.forEach { complianceCheck.addWhitelistedResource(it) }
         pluginExtension.contentCreatorComponents.forEach { complianceCheck.addContentCreatorComponent(it) }
 
-        val checkResult = complianceCheck.use { it.check(pathList) }
+        return PreparedCheck(complianceCheck, pathList, connector)
+    }
 
-        if (!checkResult.isValid()) {
-            logger.error("Isolation check failed!\nViolation details: " + checkResult.message)
-            val moduleErrors = checkResult.moduleErrors
-            if (moduleErrors.isNotEmpty()) {
-                logger.error("\nmodule details:")
-                for (moduleError in moduleErrors) {
-                    logger.error("\t" + moduleError)
-                }
-            }
-            throw GradleException("Isolation check failed!\nViolation details: " + checkResult.message)
-        } else {
-            logger.lifecycle(checkResult.message)
+    private fun telemetryReportFile(): File {
+        return project.layout.buildDirectory.get().asFile
+            .resolve(JUnitXMLFormatHandler.JUNIT_REPORTS_DIR).resolve(TELEMETRY_REPORT_FILE_NAME)
+    }
+
+    /**
+     * A check of the FSM, independent of the project. The telemetry of its requests is reported by the task awaiting
+     * the result, see [reportTelemetry].
+     */
+    private class PreparedCheck(
+        private val complianceCheck: ComplianceCheck,
+        private val fsms: List<Path>,
+        private val connector: WebServiceConnector
+    ) : DetectorClientService.DetectorCheck {
+
+        override val requestTelemetry: List<RequestTelemetry>
+            get() = connector.requestTelemetry
+
+        override fun call(): VerificationResult {
+            return complianceCheck.use { it.check(fsms) }
         }
+
     }
 
     @Input
@@ -76,6 +154,15 @@ open class IsolationCheck: DefaultTask() {
         pluginExtension.isolationDetectorUrl = detectorUrl
     }
 
+    @Internal
+    fun getResponseTimeout(): Duration {
+        return pluginExtension.isolationDetectorResponseTimeout
+    }
+
+    fun setResponseTimeout(responseTimeout: Duration) {
+        pluginExtension.isolationDetectorResponseTimeout = responseTimeout
+    }
+
     @Input
     @Optional
     fun getComplianceLevel(): ComplianceLevel {
@@ -145,4 +232,30 @@ open class IsolationCheck: DefaultTask() {
         pluginExtension.isolationDetectorPassword = isolationDetectorPassword
     }
 
+    companion object {
+        const val TELEMETRY_REPORT_FILE_NAME = "isolation-check-requests.json"
+
+        /**
+         * Logs a summary of the requests sent to the detector and writes the details to a JSON file
+         */
+        internal fun reportTelemetry(logger: Logger, telemetry: List<RequestTelemetry>, reportFile: File) {
+            if (telemetry.isEmpty()) {
+                return
+            }
+
+            telemetry.forEach { logger.info("\t{}", it) }
+            val retries = telemetry.filter { it.attempt > 1 }
+            val slowest = telemetry.maxByOrNull { it.durationMillis }!!
+            logger.lifecycle("Isolation check sent ${telemetry.size - retries.size} requests with ${retries.size} retries" +
+                    " in ${telemetry.sumOf { it.durationMillis }} ms, ${telemetry.sumOf { it.bytesSent }} bytes sent," +
+                    " ${telemetry.sumOf { it.bytesReceived }} bytes received." +
+                    " Slowest: ${slowest.method} ${slowest.endpoint} (${slowest.durationMillis} ms)")
+            telemetry.filter { it.status == 0 || it.status >= 300 }.forEach { logger.lifecycle("\tFailed attempt: {}", it) }
+
+            reportFile.parentFile.mkdirs()
+            reportFile.writeText(RequestTelemetry.toJson(telemetry).toString(2))
+            logger.info("Request telemetry written to {}", reportFile)
+        }
+    }
+
 }
\ No newline at end of file
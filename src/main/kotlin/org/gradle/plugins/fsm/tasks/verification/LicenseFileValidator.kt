@@ -1,9 +1,11 @@
 package org.gradle.plugins.fsm.tasks.verification
 
-import de.espirit.common.util.CsvReader
 import org.gradle.api.GradleException
+import java.io.File
 import java.io.InputStream
 import java.io.InputStreamReader
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
 
 /**
  * Verifies a `licenses.csv` file to be packaged up in a FSM archive. The [validateLicenseCsv] method
@@ -28,27 +30,48 @@ object LicenseFileValidator {
      * @param inputStream     An [InputStream] providing the contents of the `licenses.csv` file.
      */
     fun validateLicenseCsv(licenseFilename: String, inputStream: InputStream) {
-        val csvEntries: List<List<String>>
-        InputStreamReader(inputStream).use {
-            try {
-                csvEntries = CsvReader.parseCsvToList(it, ',')
-            } catch (e: IllegalStateException) {
-                throw GradleException("License file '$licenseFilename' cannot be parsed: ${e.message}")
+        InputStreamReader(inputStream).use { validateRecords(licenseFilename, CsvRecordReader(it)) }
+    }
+
+    /**
+     * Fixes the quote escaping of the `licenses.csv` file written by the License Report Plugin and validates the
+     * repaired records as described in [validateLicenseCsv]. The file is streamed and validated record by record in
+     * the same pass, so it is never read into memory as a whole. The FSM archive is validated again when it is
+     * packaged, see [ValidateDescriptor].
+     *
+     * @param licenseFile The `licenses.csv` file, replaced by the repaired file
+     * @see QuoteRepairingReader
+     */
+    fun repairLicenseCsv(licenseFile: File) {
+        val repairedFile = licenseFile.resolveSibling("${licenseFile.name}.tmp")
+        try {
+            repairedFile.bufferedWriter().use { output ->
+                QuoteRepairingReader(licenseFile.bufferedReader(), output).use { input ->
+                    validateRecords(licenseFile.path, CsvRecordReader(input))
+                }
             }
+            Files.move(repairedFile.toPath(), licenseFile.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } finally {
+            Files.deleteIfExists(repairedFile.toPath())
         }
+    }
 
+    private fun validateRecords(licenseFilename: String, records: CsvRecordReader) {
         // Header Line is required. An optional trailing comma is allowed.
-        if (csvEntries.isEmpty() || csvEntries[0].isEmpty()) {
+        val header = nextRecord(licenseFilename, records)
+        if (header == null || header.isEmpty()) {
             throw GradleException("License file '$licenseFilename' is empty.")
         }
-        val header = csvEntries[0]
         val expectedHeader = mutableListOf("artifact", "moduleUrl", "moduleLicense", "moduleLicenseUrl")
         if (header != expectedHeader && header != expectedHeader + "") {
             throw GradleException("License file '$licenseFilename': Invalid Header: ${header.joinToString(", ")}")
         }
         // If one line has a trailing comma, all lines must have one
         val expectedRecordSize = header.size
-        for ((i, record) in csvEntries.withIndex().drop(1)) {
+        var i = 0
+        while (true) {
+            val record = nextRecord(licenseFilename, records) ?: break
+            i++
             if (record.size != expectedRecordSize) {
                 throw GradleException("License file '$licenseFilename', line $i: Invalid Entry: ${record.joinToString(", ")}")
             }
@@ -61,6 +84,14 @@ object LicenseFileValidator {
                 throw GradleException("License file '$licenseFilename', line $i: Invalid Entry: ${record.joinToString(", ")}")
             }
         }
+    }
 
+    private fun nextRecord(licenseFilename: String, records: CsvRecordReader): List<String>? {
+        return try {
+            records.next()
+        } catch (e: IllegalStateException) {
+            throw GradleException("License file '$licenseFilename' cannot be parsed: ${e.message}")
+        }
     }
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,34 @@
+package org.gradle.plugins.fsm.tasks.verification
+
+import org.gradle.api.DefaultTask
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.TaskAction
+import org.gradle.plugins.fsm.isolationcheck.DetectorClientService
+
+/**
+ * Starts the [IsolationCheck] of the FSM in the background, see
+ * [org.gradle.plugins.fsm.FSMPluginExtension.asyncIsolationCheck]. Runs right after the FSM is assembled, the
+ * isolation check task then only waits for the result, so other tasks can run while the detector analyzes the FSM.
+ */
+abstract class SubmitIsolationCheck : DefaultTask() {
+
+    /**
+     * The isolation check awaiting the result
+     */
+    @get:Internal
+    abstract val isolationCheck: Property<IsolationCheck>
+
+    @get:Internal
+    abstract val detectorClientService: Property<DetectorClientService>
+
+    @TaskAction
+    fun submit() {
+        val isolationCheck = isolationCheck.get()
+        if (!isolationCheck.submit(detectorClientService.get())) {
+            return
+        }
+        logger.lifecycle("Isolation check submitted, the result is awaited by {}", isolationCheck.path)
+    }
+
+}
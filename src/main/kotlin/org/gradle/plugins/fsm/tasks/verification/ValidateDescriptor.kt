@@ -4,31 +4,72 @@ import de.espirit.firstspirit.generate.UrlCreatorSpecification
 import org.apache.maven.artifact.versioning.ComparableVersion
 import org.gradle.api.DefaultTask
 import org.gradle.api.GradleException
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.Optional
+import org.gradle.api.tasks.OutputFile
+import org.gradle.api.tasks.PathSensitive
+import org.gradle.api.tasks.PathSensitivity
 import org.gradle.api.tasks.TaskAction
+import org.gradle.plugins.fsm.descriptor.ScannedComponents
 import org.gradle.plugins.fsm.descriptor.textContent
+import org.gradle.plugins.fsm.metrics.PhaseMetrics
 import org.redundent.kotlin.xml.Node
 import org.redundent.kotlin.xml.TextElement
 import org.redundent.kotlin.xml.parse
 import java.io.ByteArrayInputStream
 import java.util.zip.ZipFile
 
+/**
+ * Validates the module descriptor of the FSM against the entries of the archive.
+ *
+ * After the descriptor has been parsed, the validation rules run one after another, each of them reporting all
+ * violations it finds. The violations of all rules are reported together, so all problems of a module can be fixed at once.
+ * The time taken by each rule is recorded in the metrics of the task, see [PhaseMetrics].
+ */
 abstract class ValidateDescriptor : DefaultTask() {
 
     private lateinit var fsm: ZipFile
-    private val files: MutableList<String> = mutableListOf()
+    private val files: MutableSet<String> = linkedSetOf()
     private var descriptor: String = ""
 
+    @get:InputFile
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val fsmFile: RegularFileProperty
+
+    /**
+     * The components found in the project by the `scanComponents` task. If set, the task warns about components
+     * missing in the module descriptor.
+     */
+    @get:InputFile
+    @get:Optional
+    @get:PathSensitive(PathSensitivity.NONE)
+    abstract val componentIndexFile: RegularFileProperty
+
+    /**
+     * The file the timings of the validation are written to, see [PhaseMetrics]
+     */
+    @get:OutputFile
+    abstract val metricsFile: RegularFileProperty
+
+    init {
+        metricsFile.convention(project.layout.buildDirectory.file("${PhaseMetrics.METRICS_DIR_NAME}/$name.json"))
+    }
+
     @TaskAction
     fun validateDescriptor() {
-        fsm = ZipFile(inputs.files.singleFile)
+        val metrics = PhaseMetrics()
+        fsm = ZipFile(fsmFile.get().asFile)
         fsm.use { zip ->
             val descriptorPath = "META-INF/module-isolated.xml"
 
-            for (entry in zip.entries()) {
-                files.add(entry.name)
+            metrics.measure(PhaseMetrics.READ_ARCHIVE) {
+                for (entry in zip.entries()) {
+                    files.add(entry.name)
 
-                if (entry.name == descriptorPath) {
-                    descriptor = zip.getInputStream(entry).use { it.bufferedReader().readText() }
+                    if (entry.name == descriptorPath) {
+                        descriptor = zip.getInputStream(entry).use { it.bufferedReader().readText() }
+                    }
                 }
             }
 
@@ -36,11 +77,16 @@ abstract class ValidateDescriptor : DefaultTask() {
                 throw GradleException("Module descriptor '$descriptorPath' not found!")
             }
 
-            validate()
+            metrics.measure(PhaseMetrics.VALIDATION) {
+                val xml = parseDescriptor()
+                validate(xml, metrics)
+                checkScannedComponents(xml)
+            }
         }
+        metrics.report(path, metricsFile.get().asFile, logger)
     }
 
-    private fun validate() {
+    private fun parseDescriptor(): Node {
         if (descriptor.isBlank()) {
             throw GradleException("Module descriptor is empty!")
         }
@@ -49,14 +95,44 @@ abstract class ValidateDescriptor : DefaultTask() {
         if (xml.nodeName != "module") {
             throw GradleException("Module descriptor must contain a single <module> tag!")
         }
+        return xml
+    }
+
+    private fun validate(xml: Node, metrics: PhaseMetrics) {
+        val rules = listOf(
+            Rule("moduleInfo") { violations ->
+                violations.check {
+                    val name = elementRequired(xml, "name")
+                    validateCharactersForName(name)
+                    elementRequired(xml, "version")
+                }
+            },
+            Rule("licenseFile") { violations -> violations.check { validateLicenseFile(xml) } },
+            Rule("components") { violations -> checkComponents(xml, violations) },
+            Rule("resources") { violations -> checkAllResources(xml, violations) },
+            Rule("webXmlFiles") { violations -> checkWebXmlFiles(xml, violations) }
+        )
+
+        val violations = runRules(rules, metrics).distinct()
+        when (violations.size) {
+            0 -> return
+            1 -> throw GradleException(violations.single())
+            else -> throw GradleException("Module descriptor has ${violations.size} problems:\n" +
+                    violations.joinToString("\n") { " - $it" })
+        }
+    }
 
-        val name = elementRequired(xml, "name")
-        validateCharactersForName(name)
-        elementRequired(xml, "version")
-        validateLicenseFile(xml)
-        checkComponents(xml)
-        checkAllResources(xml)
-        checkWebXmlFiles(xml)
+    /**
+     * Runs the rules one after another, recording the time taken by each rule in the metrics
+     *
+     * @return The violations of all rules, in the order of the rules
+     */
+    private fun runRules(rules: List<Rule>, metrics: PhaseMetrics): List<String> {
+        return rules.flatMap { rule ->
+            val violations = Violations()
+            metrics.measure(PhaseMetrics.VALIDATION_RULE_PREFIX + rule.name) { rule.check(violations) }
+            violations.messages
+        }
     }
 
     private fun elementRequired(xml: Node, element: String): String {
@@ -110,10 +186,10 @@ abstract class ValidateDescriptor : DefaultTask() {
         }
     }
 
-    private fun checkComponents(xml: Node) {
+    private fun checkComponents(xml: Node, violations: Violations) {
         val components = xml.filter("components").singleOrNull() ?: return
         // Run through component-specific validation rules
-        components.children.filterIsInstance<Node>().forEach { component ->
+        violations.checkEach(components.children.filterIsInstance<Node>()) { component ->
             val componentName = componentName(component)
 
             // URL Creator - all extra parameters must be unique
@@ -129,22 +205,51 @@ abstract class ValidateDescriptor : DefaultTask() {
         }
     }
 
-    private fun checkAllResources(xml: Node) {
-        xml.filter("resources").forEach { checkResources(it, "global resources") }
+    /**
+     * Warns about components found in the project which are not referenced in the descriptor, e.g. because a
+     * descriptor template of the project does not contain the `${'$'}components` placeholder.
+     */
+    private fun checkScannedComponents(xml: Node) {
+        val indexFile = componentIndexFile.orNull?.asFile?.takeIf { it.isFile } ?: return
+        val descriptorClasses = classNames(xml)
+        val missingComponents = ScannedComponents.read(indexFile)
+            .map { it.className }
+            .filter { it !in descriptorClasses }
+        if (missingComponents.isNotEmpty()) {
+            logger.warn("The module descriptor does not contain the following components of the project: {}",
+                missingComponents.joinToString())
+        }
+    }
+
+    /**
+     * Returns the values of all `<class>` elements of the descriptor, i.e. of the module and of all components
+     */
+    private fun classNames(node: Node): Set<String> {
+        return node.children.filterIsInstance<Node>().flatMapTo(mutableSetOf()) { child ->
+            if (child.nodeName == "class") {
+                listOfNotNull((child.children.singleOrNull() as? TextElement)?.text?.trim())
+            } else {
+                classNames(child)
+            }
+        }
+    }
+
+    private fun checkAllResources(xml: Node, violations: Violations) {
+        xml.filter("resources").forEach { checkResources(it, "global resources", violations) }
 
         val components = xml.filter("components").singleOrNull() ?: return
 
-        components.children.filterIsInstance<Node>().forEach { component ->
+        violations.checkEach(components.children.filterIsInstance<Node>()) { component ->
             val componentName = componentName(component)
-            component.filter("resources").forEach { checkResources(it, componentName) }
-            component.filter("web-resources").forEach { checkResources(it, componentName) }
+            component.filter("resources").forEach { checkResources(it, componentName, violations) }
+            component.filter("web-resources").forEach { checkResources(it, componentName, violations) }
         }
     }
 
-    private fun checkWebXmlFiles(xml: Node) {
+    private fun checkWebXmlFiles(xml: Node, violations: Violations) {
         val components = xml.filter("components").singleOrNull() ?: return
 
-        components.filter("web-app").forEach { webApp ->
+        violations.checkEach(components.filter("web-app")) { webApp ->
             val componentName = componentName(webApp)
             webApp.filter("web-xml").singleOrNull()?.let { webXml ->
                 if (webXml.children.isEmpty()) {
@@ -164,8 +269,8 @@ abstract class ValidateDescriptor : DefaultTask() {
         }
     }
 
-    private fun checkResources(resources: Node, source: String) {
-        resources.filter("resource").forEach { resource ->
+    private fun checkResources(resources: Node, source: String, violations: Violations) {
+        violations.checkEach(resources.filter("resource")) { resource ->
             val resourceName = resourceName(resource)
 
             if (resource.hasAttribute("minVersion") && resource.hasAttribute("maxVersion")) {
@@ -257,6 +362,39 @@ abstract class ValidateDescriptor : DefaultTask() {
         return files.first { it.startsWith(filenameWithoutVersion) }
     }
 
+    /**
+     * A validation rule, reporting its violations instead of throwing on the first one. Rules may only read the parsed
+     * descriptor and the archive.
+     */
+    private class Rule(val name: String, val check: (Violations) -> Unit)
+
+    /**
+     * Collects the violations of a single rule
+     */
+    private class Violations {
+
+        val messages = mutableListOf<String>()
+
+        /**
+         * Runs a check, reporting the [GradleException] thrown on a violation instead of aborting the rule
+         */
+        fun check(check: () -> Unit) {
+            try {
+                check()
+            } catch (e: GradleException) {
+                messages.add(e.message ?: e.toString())
+            }
+        }
+
+        /**
+         * Runs a check for each item, so a violation of one item does not prevent checking the other items
+         */
+        fun <T> checkEach(items: Iterable<T>, itemCheck: (T) -> Unit) {
+            items.forEach { item -> check { itemCheck(item) } }
+        }
+
+    }
+
     companion object {
         const val NAME_ALLOWED_CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789; ,_-"
     }
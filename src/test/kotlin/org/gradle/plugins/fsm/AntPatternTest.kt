@@ -0,0 +1,24 @@
+package org.gradle.plugins.fsm
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+
+class AntPatternTest {
+
+    @Test
+    fun `ant patterns`() {
+        assertThat(AntPattern.toRegex("*.txt").matches("a.txt")).isTrue
+        assertThat(AntPattern.toRegex("*.txt").matches("dir/a.txt")).isFalse
+        assertThat(AntPattern.toRegex("**/a?.txt").matches("x/y/ab.txt")).isTrue
+        assertThat(AntPattern.toRegex("**/a?.txt").matches("ab.txt")).isTrue
+        assertThat(AntPattern.toRegex("/files/**").matches("files/x/y.bin")).isTrue
+        assertThat(AntPattern.toRegex("a.b").matches("axb")).isFalse
+    }
+
+    @Test
+    fun `jar name patterns`() {
+        assertThat(AntPattern.toRegex("fsm-subproject-*.jar").matches("fsm-subproject-1.0.jar")).isTrue
+        assertThat(AntPattern.toRegex("fsm-subproject-*.jar").matches("other-1.0.jar")).isFalse
+    }
+
+}
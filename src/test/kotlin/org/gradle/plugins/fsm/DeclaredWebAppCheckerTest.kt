@@ -1,15 +1,22 @@
 package org.gradle.plugins.fsm
 
 import com.espirit.moddev.components.annotations.WebAppComponent
-import io.github.classgraph.ClassGraph
 import org.assertj.core.api.Assertions.assertThat
 import org.gradle.api.Project
+import org.gradle.plugins.fsm.descriptor.ScannedAnnotation
+import org.gradle.plugins.fsm.descriptor.ScannedComponent
+import org.gradle.plugins.fsm.descriptor.ScannedComponents
 import org.gradle.testfixtures.ProjectBuilder
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
 
 class DeclaredWebAppCheckerTest {
 
+    @TempDir
+    private lateinit var testDir: File
+
     private lateinit var project: Project
 
     private lateinit var webAppSubprojectA: Project
@@ -28,20 +35,21 @@ class DeclaredWebAppCheckerTest {
 
     @Test
     fun testMissingDeclaredWebApps() {
-        val classGraph = ClassGraph()
-            .enableClassInfo()
-            .enableAnnotationInfo()
-            .acceptClasses(TestWebAppA::class.qualifiedName, TestWebAppB::class.qualifiedName)
-        classGraph.scan().use { scan ->
-            val annotations = scan.getClassesWithAnnotation(WebAppComponent::class.java)
-            val webAppChecker = DeclaredWebAppChecker(project, annotations)
+        val indexFile = testDir.resolve(ScannedComponents.FILE_NAME)
+        ScannedComponents.write(indexFile, listOf(webApp(TestWebAppA::class.java, "TestWebAppA"),
+            webApp(TestWebAppB::class.java, "TestWebAppB")))
+        val webAppChecker = DeclaredWebAppChecker(project, ScannedComponents.read(indexFile))
+
+        val annotationsWithoutDeclaration = webAppChecker.webAppAnnotationsWithoutDeclaration
+        assertThat(annotationsWithoutDeclaration?.map { it.parameterValues.getValue("name") }).containsExactly("TestWebAppB")
 
-            val annotationsWithoutDeclaration = webAppChecker.webAppAnnotationsWithoutDeclaration
-            assertThat(annotationsWithoutDeclaration?.map { it.parameterValues.getValue("name") }).containsExactly("TestWebAppB")
+        val declarationsWithoutAnnotation = webAppChecker.declaredProjectsWithoutAnnotation
+        assertThat(declarationsWithoutAnnotation).containsExactly("TestWebAppC")
+    }
 
-            val declarationsWithoutAnnotation = webAppChecker.declaredProjectsWithoutAnnotation
-            assertThat(declarationsWithoutAnnotation).containsExactly("TestWebAppC")
-        }
+    private fun webApp(webAppClass: Class<*>, name: String): ScannedComponent {
+        val annotation = ScannedAnnotation(WebAppComponent::class.java.name, mapOf("name" to name))
+        return ScannedComponent(webAppClass.name, webAppClass.superclass.name, listOf(annotation), false)
     }
 
     private fun getProject(name: String): Project {
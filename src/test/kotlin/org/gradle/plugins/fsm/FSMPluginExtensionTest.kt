@@ -1,6 +1,7 @@
 package org.gradle.plugins.fsm
 
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
 import org.gradle.api.Project
 import org.gradle.api.artifacts.ProjectDependency
 import org.gradle.testfixtures.ProjectBuilder
@@ -46,4 +47,16 @@ class FSMPluginExtensionTest {
         testling.fsmDependencies = listOf(fsmModuleName)
         assertThat(testling.fsmDependencies).contains(fsmModuleName)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `nested archives are stored by default`() {
+        assertThat(testling.entryCompression).isEqualTo(FSMPluginExtension.NESTED_ARCHIVES_STORED)
+    }
+
+    @Test
+    fun `invalid entry compression level`() {
+        assertThatThrownBy { testling.entryCompression = mapOf("**/*.jar" to 10) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+            .hasMessageContaining("**/*.jar")
+    }
+}
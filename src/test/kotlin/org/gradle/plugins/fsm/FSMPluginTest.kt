@@ -1,6 +1,8 @@
 package org.gradle.plugins.fsm
 
+import de.espirit.mavenplugins.fsmchecker.ComplianceLevel
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.entry
 import org.gradle.api.Project
 import org.gradle.api.artifacts.Dependency
 import org.gradle.api.plugins.BasePlugin
@@ -8,11 +10,20 @@ import org.gradle.api.plugins.JavaBasePlugin
 import org.gradle.api.plugins.JavaPlugin
 import org.gradle.jvm.tasks.Jar
 import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin
+import org.gradle.plugins.fsm.tasks.bundling.ApplyFSMDelta
 import org.gradle.plugins.fsm.tasks.bundling.FSM
+import org.gradle.plugins.fsm.tasks.bundling.FSMDelta
+import org.gradle.plugins.fsm.tasks.bundling.ScanComponents
+import org.gradle.plugins.fsm.tasks.verification.AggregateIsolationCheck
+import org.gradle.plugins.fsm.tasks.verification.CheckClassConflicts
+import org.gradle.plugins.fsm.tasks.verification.CheckLibraries
+import org.gradle.plugins.fsm.tasks.verification.IsolationCheck
+import org.gradle.plugins.fsm.tasks.verification.ValidateDescriptor
 import org.gradle.plugins.fsm.util.TaskAssert.Companion.assertThat
 import org.gradle.testfixtures.ProjectBuilder
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import java.time.Duration
 
 class FSMPluginTest {
 
@@ -57,6 +68,22 @@ class FSMPluginTest {
         assertThat(fsm).dependsOn(JavaPlugin.JAR_TASK_NAME, FSMPlugin.GENERATE_LICENSE_REPORT_TASK_NAME)
     }
 
+    @Test
+    fun `scans and checks share the worker pool`() {
+        val subproject = ProjectBuilder.builder().withParent(project).withName("sub").build()
+        project.plugins.apply(FSMPlugin.NAME)
+        subproject.plugins.apply(FSMPlugin.NAME)
+
+        val service = (project.tasks.getByName(FSMPlugin.SCAN_COMPONENTS_TASK_NAME) as ScanComponents).workerPool.get()
+        val subprojectService = (subproject.tasks.getByName(FSMPlugin.SCAN_COMPONENTS_TASK_NAME) as ScanComponents).workerPool.get()
+        val checkLibraries = project.tasks.getByName(FSMPlugin.CHECK_LIBRARIES_TASK_NAME) as CheckLibraries
+        val checkClassConflicts = subproject.tasks.getByName(FSMPlugin.CHECK_CLASS_CONFLICTS_TASK_NAME) as CheckClassConflicts
+        assertThat(subprojectService).isSameAs(service)
+        assertThat(checkLibraries.workerPool.get()).isSameAs(service)
+        assertThat(checkClassConflicts.workerPool.get()).isSameAs(service)
+        assertThat(service.maxWorkers).isEqualTo(project.gradle.startParameter.maxWorkerCount)
+    }
+
     @Test
     fun `assemble-task depends on FSM-task`() {
         project.plugins.apply(FSMPlugin.NAME)
@@ -77,11 +104,44 @@ class FSMPluginTest {
     fun `validate-task uses FSM output as input`() {
         project.plugins.apply(FSMPlugin.NAME)
 
+        val fsm = project.tasks.getByName(FSMPlugin.FSM_TASK_NAME) as FSM
+        val fsmFile = fsm.archiveFile.get().asFile
+        val validateDescriptor = project.tasks.getByName(FSMPlugin.VALIDATE_DESCRIPTOR_TASK_NAME) as ValidateDescriptor
+
+        assertThat(validateDescriptor.fsmFile.get().asFile).isEqualTo(fsmFile)
+        assertThat(validateDescriptor.inputs.files).contains(fsmFile)
+    }
+
+    @Test
+    fun `FSM-task and validate-task use scanned components as input`() {
+        project.plugins.apply(FSMPlugin.NAME)
+
+        val scanComponents = project.tasks.getByName(FSMPlugin.SCAN_COMPONENTS_TASK_NAME) as ScanComponents
+        val componentIndexFile = scanComponents.componentIndexFile.get().asFile
         val fsm = project.tasks.getByName(FSMPlugin.FSM_TASK_NAME)
-        val fsmFile = fsm.outputs.files.singleFile
         val validateDescriptor = project.tasks.getByName(FSMPlugin.VALIDATE_DESCRIPTOR_TASK_NAME)
 
-        assertThat(validateDescriptor.inputs.files.singleFile).isEqualTo(fsmFile)
+        assertThat(componentIndexFile).isEqualTo(project.layout.buildDirectory.file("fsm/component-index.bin").get().asFile)
+        assertThat(fsm.inputs.files).contains(componentIndexFile)
+        assertThat(fsm).dependsOn(FSMPlugin.SCAN_COMPONENTS_TASK_NAME)
+        assertThat(validateDescriptor.inputs.files).contains(componentIndexFile)
+        assertThat(validateDescriptor).dependsOn(FSMPlugin.SCAN_COMPONENTS_TASK_NAME)
+        assertThat(scanComponents).dependsOn(JavaPlugin.JAR_TASK_NAME)
+    }
+
+    @Test
+    fun `scanned class directories are the classpath of the scan`() {
+        val subproject = ProjectBuilder.builder().withParent(project).withName("sub").build()
+        subproject.plugins.apply(JavaPlugin::class.java)
+        project.plugins.apply(FSMPlugin.NAME)
+        project.extensions.getByType(FSMPluginExtension::class.java).scanClassesDirectories = true
+        project.dependencies.add(JavaPlugin.IMPLEMENTATION_CONFIGURATION_NAME, project.dependencies.project(mapOf("path" to ":sub")))
+
+        val scanComponents = project.tasks.getByName(FSMPlugin.SCAN_COMPONENTS_TASK_NAME) as ScanComponents
+
+        assertThat(scanComponents.taskDependencies.getDependencies(scanComponents).map { it.path })
+            .contains(":compileJava", ":sub:compileJava")
+            .doesNotContain(":jar", ":sub:jar")
     }
 
     @Test
@@ -107,13 +167,151 @@ class FSMPluginTest {
     fun `isolation-check-task uses FSM output as input`() {
         project.plugins.apply(FSMPlugin.NAME)
 
-        val fsm = project.tasks.getByName(FSMPlugin.FSM_TASK_NAME)
-        val fsmFile = fsm.outputs.files.singleFile
+        val fsm = project.tasks.getByName(FSMPlugin.FSM_TASK_NAME) as FSM
+        val fsmFile = fsm.archiveFile.get().asFile
         val isolationCheck = project.tasks.getByName(FSMPlugin.ISOLATION_CHECK_TASK_NAME)
 
         assertThat(isolationCheck.inputs.files.singleFile).isEqualTo(fsmFile)
     }
 
+    @Test
+    fun `library-check-task uses FSM output as input`() {
+        project.plugins.apply(FSMPlugin.NAME)
+
+        val fsm = project.tasks.getByName(FSMPlugin.FSM_TASK_NAME) as FSM
+        val fsmFile = fsm.archiveFile.get().asFile
+        val checkLibraries = project.tasks.getByName(FSMPlugin.CHECK_LIBRARIES_TASK_NAME) as CheckLibraries
+
+        assertThat(checkLibraries.fsmFile.get().asFile).isEqualTo(fsmFile)
+        assertThat(checkLibraries.maxBytecodeVersion.get()).isEqualTo(61)
+        assertThat(checkLibraries).dependsOn(fsm.name)
+    }
+
+    @Test
+    fun `check-task depends on class-conflicts task`() {
+        project.plugins.apply(FSMPlugin.NAME)
+
+        val check = project.tasks.getByName(JavaBasePlugin.CHECK_TASK_NAME)
+        val checkClassConflicts = project.tasks.getByName(FSMPlugin.CHECK_CLASS_CONFLICTS_TASK_NAME) as CheckClassConflicts
+
+        assertThat(check).dependsOn(FSMPlugin.CHECK_CLASS_CONFLICTS_TASK_NAME)
+        assertThat(checkClassConflicts).dependsOn(FSMPlugin.FSM_TASK_NAME)
+        assertThat(checkClassConflicts.reportFile.get().asFile)
+            .isEqualTo(project.layout.buildDirectory.file("fsm/class-conflicts.txt").get().asFile)
+        assertThat(checkClassConflicts.failOnConflicts.get()).isFalse
+
+        project.extensions.getByType(FSMPluginExtension::class.java).failOnClassConflicts = true
+        assertThat(checkClassConflicts.failOnConflicts.get()).isTrue
+    }
+
+    @Test
+    fun `isolation-check-task depends on library-check-task if detector is configured`() {
+        project.plugins.apply(FSMPlugin.NAME)
+        project.extensions.getByType(FSMPluginExtension::class.java).isolationDetectorUrl = "https://detector.example.com"
+
+        val checkIsolationTask = project.tasks.getByName(FSMPlugin.ISOLATION_CHECK_TASK_NAME)
+
+        assertThat(checkIsolationTask).dependsOn(FSMPlugin.CHECK_LIBRARIES_TASK_NAME)
+    }
+
+    @Test
+    fun `aggregate isolation check collects the FSMs of all projects with a detector`() {
+        val first = ProjectBuilder.builder().withParent(project).withName("first").build()
+        val second = ProjectBuilder.builder().withParent(project).withName("second").build()
+        val third = ProjectBuilder.builder().withParent(project).withName("third").build()
+        listOf(first, second, third).forEach { it.plugins.apply(FSMPlugin.NAME) }
+        first.extensions.getByType(FSMPluginExtension::class.java).apply {
+            isolationDetectorUrl = "https://detector.example.com"
+            firstSpiritVersion = "5.2.2403"
+            isolationDetectorWhitelist = listOf("org.freemarker:freemarker:2.3.28")
+        }
+        second.extensions.getByType(FSMPluginExtension::class.java).apply {
+            isolationDetectorUrl = "https://detector.example.com"
+            firstSpiritVersion = "5.2.2403"
+            complianceLevel = ComplianceLevel.HIGHEST
+        }
+
+        val aggregateIsolationCheck = project.tasks
+            .getByName(FSMPlugin.AGGREGATE_ISOLATION_CHECK_TASK_NAME) as AggregateIsolationCheck
+
+        val firstFsm = first.tasks.getByName(FSMPlugin.FSM_TASK_NAME) as FSM
+        val secondFsm = second.tasks.getByName(FSMPlugin.FSM_TASK_NAME) as FSM
+        assertThat(aggregateIsolationCheck.fsmFiles.get()).containsExactly(
+            entry(first.path, firstFsm.archiveFile.get().asFile),
+            entry(second.path, secondFsm.archiveFile.get().asFile))
+        val settings = aggregateIsolationCheck.detectorSettings.get()
+        assertThat(settings.getValue(first.path).whitelistedResources).containsExactly("org.freemarker:freemarker:2.3.28")
+        assertThat(settings.getValue(first.path).complianceLevel).isEqualTo(ComplianceLevel.DEFAULT)
+        assertThat(settings.getValue(second.path).whitelistedResources).isEmpty()
+        assertThat(settings.getValue(second.path).complianceLevel).isEqualTo(ComplianceLevel.HIGHEST)
+        assertThat(aggregateIsolationCheck.buildDirectories.get()).containsEntry(second.path, second.layout.buildDirectory.get().asFile)
+        assertThat(aggregateIsolationCheck.taskDependencies.getDependencies(aggregateIsolationCheck))
+            .contains(firstFsm, secondFsm).doesNotContain(third.tasks.getByName(FSMPlugin.FSM_TASK_NAME))
+    }
+
+    @Test
+    fun `isolation checks share the detector client service`() {
+        val subproject = ProjectBuilder.builder().withParent(project).withName("sub").build()
+        project.plugins.apply(FSMPlugin.NAME)
+        subproject.plugins.apply(FSMPlugin.NAME)
+        project.extensions.getByType(FSMPluginExtension::class.java).isolationDetectorConnectTimeout = Duration.ofSeconds(30)
+
+        val service = (project.tasks.getByName(FSMPlugin.ISOLATION_CHECK_TASK_NAME) as IsolationCheck)
+            .detectorClientService.get()
+        val subprojectService = (subproject.tasks.getByName(FSMPlugin.ISOLATION_CHECK_TASK_NAME) as IsolationCheck)
+            .detectorClientService.get()
+        val aggregateService = (project.tasks.getByName(FSMPlugin.AGGREGATE_ISOLATION_CHECK_TASK_NAME) as AggregateIsolationCheck)
+            .detectorClientService.get()
+        assertThat(subprojectService).isSameAs(service)
+        assertThat(aggregateService).isSameAs(service)
+        assertThat(service.parameters.connectTimeout.get()).isEqualTo(Duration.ofSeconds(30))
+        assertThat(service.parameters.maxConnections.get()).isEqualTo(project.gradle.startParameter.maxWorkerCount)
+    }
+
+    @Test
+    fun `async isolation check is submitted after the FSM is assembled`() {
+        project.plugins.apply(FSMPlugin.NAME)
+        project.extensions.getByType(FSMPluginExtension::class.java).asyncIsolationCheck = true
+
+        val fsmTask = project.tasks.getByName(FSMPlugin.FSM_TASK_NAME)
+        val submitIsolationCheck = project.tasks.getByName(FSMPlugin.SUBMIT_ISOLATION_CHECK_TASK_NAME)
+        val checkIsolationTask = project.tasks.getByName(FSMPlugin.ISOLATION_CHECK_TASK_NAME)
+
+        assertThat(fsmTask.finalizedBy.getDependencies(fsmTask)).contains(submitIsolationCheck)
+        assertThat(checkIsolationTask).dependsOn(FSMPlugin.SUBMIT_ISOLATION_CHECK_TASK_NAME)
+        assertThat(checkIsolationTask.shouldRunAfter.getDependencies(checkIsolationTask))
+            .contains(project.tasks.getByName(JavaPlugin.TEST_TASK_NAME))
+    }
+
+    @Test
+    fun `submitted isolation check does not run checkLibraries for every assembled FSM`() {
+        project.plugins.apply(FSMPlugin.NAME)
+        val extension = project.extensions.getByType(FSMPluginExtension::class.java)
+        extension.asyncIsolationCheck = true
+        extension.isolationDetectorUrl = "https://detector.example.com"
+
+        val submitIsolationCheck = project.tasks.getByName(FSMPlugin.SUBMIT_ISOLATION_CHECK_TASK_NAME)
+        val checkLibrariesTask = project.tasks.getByName(FSMPlugin.CHECK_LIBRARIES_TASK_NAME)
+
+        assertThat(submitIsolationCheck.taskDependencies.getDependencies(submitIsolationCheck))
+            .doesNotContain(checkLibrariesTask)
+        assertThat(submitIsolationCheck.mustRunAfter.getDependencies(submitIsolationCheck)).contains(checkLibrariesTask)
+        assertThat(project.tasks.getByName(FSMPlugin.ISOLATION_CHECK_TASK_NAME)).dependsOn(FSMPlugin.CHECK_LIBRARIES_TASK_NAME)
+    }
+
+    @Test
+    fun `isolation check is not submitted by default`() {
+        project.plugins.apply(FSMPlugin.NAME)
+
+        val fsmTask = project.tasks.getByName(FSMPlugin.FSM_TASK_NAME)
+        val checkIsolationTask = project.tasks.getByName(FSMPlugin.ISOLATION_CHECK_TASK_NAME)
+
+        assertThat(fsmTask.finalizedBy.getDependencies(fsmTask).map { it.name })
+            .doesNotContain(FSMPlugin.SUBMIT_ISOLATION_CHECK_TASK_NAME)
+        assertThat(checkIsolationTask.taskDependencies.getDependencies(checkIsolationTask).map { it.name })
+            .doesNotContain(FSMPlugin.SUBMIT_ISOLATION_CHECK_TASK_NAME)
+    }
+
     @Test
     fun `isolation-check-task depends on FSM-task`() {
         project.plugins.apply(FSMPlugin.NAME)
@@ -124,6 +322,29 @@ class FSMPluginTest {
         assertThat(checkIsolationTask).dependsOn(fsmTask.name)
     }
 
+    @Test
+    fun `delta task uses FSM output as input`() {
+        project.plugins.apply(FSMPlugin.NAME)
+
+        val fsm = project.tasks.named(FSMPlugin.FSM_TASK_NAME, FSM::class.java).get()
+        val deltaTask = project.tasks.named(FSMPlugin.FSM_DELTA_TASK_NAME, FSMDelta::class.java).get()
+
+        assertThat(deltaTask.fsm.get().asFile).isEqualTo(fsm.archiveFile.get().asFile)
+        assertThat(deltaTask.deltaFile.get().asFile.name).isEqualTo(project.name + "-delta.zip")
+        assertThat(deltaTask).dependsOn(fsm.name)
+    }
+
+    @Test
+    fun `apply-delta task uses delta task output as input`() {
+        project.plugins.apply(FSMPlugin.NAME)
+
+        val deltaTask = project.tasks.named(FSMPlugin.FSM_DELTA_TASK_NAME, FSMDelta::class.java).get()
+        val applyDeltaTask = project.tasks.named(FSMPlugin.APPLY_FSM_DELTA_TASK_NAME, ApplyFSMDelta::class.java).get()
+
+        assertThat(applyDeltaTask.deltaFile.get().asFile).isEqualTo(deltaTask.deltaFile.get().asFile)
+        assertThat(applyDeltaTask.fsm.get().asFile.parentFile.name).isEqualTo("reconstructed")
+    }
+
     @Test
     fun `jar-publication removed`() {
         project.plugins.apply(FSMPlugin.NAME)
@@ -0,0 +1,89 @@
+package org.gradle.plugins.fsm
+
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.testkit.runner.GradleRunner
+import org.gradle.testkit.runner.TaskOutcome
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.nio.file.Paths
+import java.security.MessageDigest
+import java.util.jar.Attributes
+import java.util.jar.Manifest
+import java.util.zip.ZipFile
+
+class FSMReproducibleTest {
+
+    private lateinit var testDir: File
+
+    @BeforeEach
+    fun setUp(@TempDir tempDir: File) {
+        testDir = tempDir
+    }
+
+    @Test
+    fun `building twice results in identical archives`() {
+        // Copy test project files from resources folder to temp dir
+        val resourcesUrl = FSMReproducibleTest::class.java.classLoader.getResource("reproducible")
+            ?: error("test project files not found")
+        val resourcesPath = Paths.get(resourcesUrl.toURI())
+        resourcesPath.toFile().copyRecursively(testDir)
+
+        val fsmFile = testDir.resolve("build/fsm/test-reproducible-1.0.0.fsm")
+        build()
+        val firstHash = sha256(fsmFile)
+
+        // Build again from scratch, with different file timestamps
+        testDir.resolve("build").deleteRecursively()
+        testDir.resolve("subproject/build").deleteRecursively()
+        testDir.walk().filter { it.isFile }.forEach { it.setLastModified(it.lastModified() - 60_000) }
+        build()
+
+        assertThat(sha256(fsmFile)).isEqualTo(firstHash)
+
+        ZipFile(fsmFile).use { zipFile ->
+            val fsmManifest = zipFile.getInputStream(zipFile.getEntry("META-INF/MANIFEST.MF")).use { Manifest(it) }
+            assertThat(fsmManifest.mainAttributes).doesNotContainKey(Attributes.Name("Build-Jdk"))
+            assertThat(zipFile.entries().toList().first().name).isEqualTo("META-INF/")
+        }
+    }
+
+    @Test
+    fun `other FSM projects of the build do not change reproducible archives`() {
+        val resourcesUrl = FSMReproducibleTest::class.java.classLoader.getResource("reproducible")
+            ?: error("test project files not found")
+        Paths.get(resourcesUrl.toURI()).toFile().copyRecursively(testDir)
+
+        // Builds the FSM of the project without reproducibleArchive as well
+        build()
+
+        assertThat(manifest(testDir.resolve("build/fsm/test-reproducible-1.0.0.fsm")).mainAttributes)
+            .doesNotContainKey(Attributes.Name("Build-Jdk"))
+        assertThat(manifest(testDir.resolve("subproject/build/libs/subproject-1.0.0.jar")).mainAttributes)
+            .doesNotContainKey(Attributes.Name("Build-Jdk"))
+        assertThat(manifest(testDir.resolve("nonreproducible/build/fsm/nonreproducible-1.0.0.fsm")).mainAttributes)
+            .containsKey(Attributes.Name("Build-Jdk"))
+    }
+
+    private fun manifest(archive: File): Manifest {
+        return ZipFile(archive).use { zipFile ->
+            zipFile.getInputStream(zipFile.getEntry("META-INF/MANIFEST.MF")).use { Manifest(it) }
+        }
+    }
+
+    private fun build() {
+        val result = GradleRunner.create()
+            .withProjectDir(testDir)
+            .withArguments(FSMPlugin.FSM_TASK_NAME)
+            .withPluginClasspath()
+            .build()
+        assertThat(result.task(":" + FSMPlugin.FSM_TASK_NAME)!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+    }
+
+    private fun sha256(file: File): String {
+        val digest = MessageDigest.getInstance("SHA-256").digest(file.readBytes())
+        return digest.joinToString("") { "%02x".format(it) }
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.gradle.plugins.fsm.annotations
+
+import com.espirit.moddev.components.annotations.PublicComponent
+import de.espirit.firstspirit.module.Module
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.plugins.fsm.descriptor.ComponentIndex
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+import javax.tools.ToolProvider
+
+class ComponentIndexProcessorTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    @Test
+    fun `indexes components and modules`() {
+        val classesDir = compile(mapOf(
+            "de/espirit/MyComponent.java" to """
+                package de.espirit;
+                import com.espirit.moddev.components.annotations.PublicComponent;
+                import com.espirit.moddev.components.annotations.ServiceComponent;
+                @PublicComponent(name = "MyComponent")
+                public class MyComponent {
+                    @ServiceComponent(name = "MyService")
+                    public static class Service {}
+                }
+            """,
+            "de/espirit/BaseModule.java" to """
+                package de.espirit;
+                public abstract class BaseModule implements de.espirit.firstspirit.module.Module {}
+            """,
+            "de/espirit/MyModule.java" to """
+                package de.espirit;
+                public abstract class MyModule extends BaseModule {}
+            """,
+            "de/espirit/Unrelated.java" to """
+                package de.espirit;
+                public class Unrelated {}
+            """
+        ))
+
+        val indexDir = classesDir.resolve(ComponentIndex.INDEX_DIRECTORY)
+        assertThat(indexDir.list()).containsExactlyInAnyOrder(
+            "de.espirit.BaseModule", "de.espirit.MyComponent", "de.espirit.MyComponent\$Service", "de.espirit.MyModule")
+        assertThat(indexDir.resolve("de.espirit.MyModule").readLines()).containsExactly(
+            ComponentIndex.HEADER,
+            "de.espirit.BaseModule supertype",
+            "de.espirit.MyModule module"
+        )
+        assertThat(indexDir.resolve("de.espirit.MyComponent\$Service").readLines()).containsExactly(
+            ComponentIndex.HEADER,
+            "de.espirit.MyComponent\$Service ServiceComponent"
+        )
+        assertThat(ComponentIndex.read(classesDir)).containsExactlyInAnyOrder(
+            "de.espirit.BaseModule", "de.espirit.MyComponent", "de.espirit.MyComponent\$Service", "de.espirit.MyModule")
+    }
+
+    @Test
+    fun `no index is written for jars without components`() {
+        val classesDir = compile(mapOf(
+            "de/espirit/Unrelated.java" to "package de.espirit; public class Unrelated {}"
+        ))
+
+        assertThat(classesDir.resolve(ComponentIndex.INDEX_DIRECTORY)).doesNotExist()
+        assertThat(ComponentIndex.read(classesDir)).isNull()
+    }
+
+    @Test
+    fun `index of unchanged classes is kept in an incremental compilation`() {
+        val classesDir = compile(mapOf(
+            "de/espirit/MyModule.java" to """
+                package de.espirit;
+                public abstract class MyModule implements de.espirit.firstspirit.module.Module {}
+            """,
+            "de/espirit/MyComponent.java" to """
+                package de.espirit;
+                @com.espirit.moddev.components.annotations.PublicComponent(name = "MyComponent")
+                public class MyComponent {}
+            """
+        ))
+
+        // Only the changed class is passed to the compiler, like in an incremental compilation by Gradle
+        compile(mapOf(
+            "de/espirit/MyComponent.java" to """
+                package de.espirit;
+                @com.espirit.moddev.components.annotations.PublicComponent(name = "MyChangedComponent")
+                public class MyComponent {}
+            """
+        ))
+
+        assertThat(ComponentIndex.read(classesDir)).containsExactlyInAnyOrder("de.espirit.MyComponent", "de.espirit.MyModule")
+    }
+
+    @Test
+    fun `index is read from jar and class directory`() {
+        val classesDir = compile(mapOf(
+            "de/espirit/MyComponent.java" to """
+                package de.espirit;
+                @com.espirit.moddev.components.annotations.PublicComponent(name = "MyComponent")
+                public class MyComponent {}
+            """,
+            "de/espirit/Unrelated.java" to "package de.espirit; public class Unrelated {}"
+        ))
+        val indexedJar = jar("indexed.jar", classesDir)
+        assertThat(ComponentIndex.read(classesDir)).containsExactly("de.espirit.MyComponent")
+        assertThat(ComponentIndex.read(indexedJar)).containsExactly("de.espirit.MyComponent")
+
+        classesDir.resolve(ComponentIndex.INDEX_DIRECTORY).deleteRecursively()
+        val jar = jar("plain.jar", classesDir)
+        assertThat(ComponentIndex.read(classesDir)).isNull()
+        assertThat(ComponentIndex.read(jar)).isNull()
+        assertThat(ComponentIndex.classNames(classesDir)).containsExactlyInAnyOrder("de.espirit.MyComponent", "de.espirit.Unrelated")
+        assertThat(ComponentIndex.classNames(jar)).containsExactlyInAnyOrder("de.espirit.MyComponent", "de.espirit.Unrelated")
+    }
+
+    private fun compile(sources: Map<String, String>): File {
+        val sourceDir = testDir.resolve("src")
+        val classesDir = testDir.resolve("classes")
+        classesDir.mkdirs()
+        val sourceFiles = sources.map { (path, source) ->
+            sourceDir.resolve(path).apply {
+                parentFile.mkdirs()
+                writeText(source.trimIndent())
+            }
+        }
+
+        val compiler = ToolProvider.getSystemJavaCompiler()
+        compiler.getStandardFileManager(null, null, null).use { fileManager ->
+            val classpath = (listOf(PublicComponent::class.java, Module::class.java)
+                .map { File(it.protectionDomain.codeSource.location.toURI()).path } + classesDir.path)
+                .joinToString(File.pathSeparator)
+            val options = listOf("-classpath", classpath, "-d", classesDir.path)
+            val task = compiler.getTask(null, fileManager, null, options, null,
+                fileManager.getJavaFileObjectsFromFiles(sourceFiles))
+            task.setProcessors(listOf(ComponentIndexProcessor()))
+            assertThat(task.call()).isTrue
+        }
+        return classesDir
+    }
+
+    private fun jar(name: String, classesDir: File): File {
+        val jar = testDir.resolve(name)
+        ZipOutputStream(jar.outputStream()).use { out ->
+            classesDir.walkTopDown().filter { it.isFile }.forEach { file ->
+                out.putNextEntry(ZipEntry(file.relativeTo(classesDir).invariantSeparatorsPath))
+                file.inputStream().use { it.copyTo(out) }
+                out.closeEntry()
+            }
+        }
+        return jar
+    }
+
+}
@@ -2,11 +2,13 @@ package org.gradle.plugins.fsm.annotations
 
 import org.assertj.core.api.Assertions.assertThat
 import org.gradle.api.Project
+import org.gradle.api.artifacts.FileCollectionDependency
 import org.gradle.api.plugins.JavaPlugin
 import org.gradle.plugins.fsm.FSMPlugin
 import org.gradle.testfixtures.ProjectBuilder
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import java.io.File
 import java.util.*
 
 class FSMAnnotationsPluginTest {
@@ -49,5 +51,18 @@ class FSMAnnotationsPluginTest {
         assertThat(props["fsm-annotations-version"]).isEqualTo(annotationDependencyCompileOnly.version)
         assertThat(props["fsm-annotations-version"]).isEqualTo(annotationDependencyFSMAnnotations.version)
     }
+
+    @Test
+    fun `adds component index processor if enabled`() {
+        project.plugins.apply(FSMAnnotationsPlugin.NAME)
+        val processorPath = project.configurations.getByName(JavaPlugin.ANNOTATION_PROCESSOR_CONFIGURATION_NAME)
+            .dependencies.withType(FileCollectionDependency::class.java).single().files
+        assertThat(processorPath).isEmpty()
+
+        project.extensions.getByType(FSMAnnotationsPluginExtension::class.java).componentIndex = true
+
+        val processorClasses = File(ComponentIndexProcessor::class.java.protectionDomain.codeSource.location.toURI())
+        assertThat(processorPath.files).contains(processorClasses)
+    }
     
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package org.gradle.plugins.fsm.descriptor
+
+import com.espirit.moddev.components.annotations.PublicComponent
+import de.espirit.firstspirit.module.Module
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.io.InputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class ComponentReferencesTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    @Test
+    fun `class with component annotation`() {
+        assertThat(classFile(ReferencingComponent::class.java).use { ComponentReferences.referencesComponents(it) }).isTrue
+    }
+
+    @Test
+    fun `class without component annotation`() {
+        assertThat(classFile(Unrelated::class.java).use { ComponentReferences.referencesComponents(it) }).isFalse
+    }
+
+    @Test
+    fun `module class without annotation`() {
+        assertThat(classFile(PlainModule::class.java).use { ComponentReferences.referencesComponents(it) }).isTrue
+    }
+
+    @Test
+    fun `class directory without references`() {
+        val classesDir = testDir.resolve("classes")
+        copyClass(Unrelated::class.java, classesDir)
+        copyClass(UnrelatedInterface::class.java, classesDir)
+
+        assertThat(ComponentReferences.check(classesDir)).isEqualTo(ComponentReferences.Result(2, false))
+    }
+
+    @Test
+    fun `jar with references`() {
+        val jar = testDir.resolve("components.jar")
+        ZipOutputStream(jar.outputStream()).use { out ->
+            for (type in listOf(Unrelated::class.java, ReferencingComponent::class.java)) {
+                out.putNextEntry(ZipEntry(type.name.replace('.', '/') + ".class"))
+                classFile(type).use { it.copyTo(out) }
+                out.closeEntry()
+            }
+        }
+
+        assertThat(ComponentReferences.check(jar).referencesComponents).isTrue
+    }
+
+    private fun classFile(type: Class<*>): InputStream {
+        return type.getResourceAsStream("/" + type.name.replace('.', '/') + ".class")!!
+    }
+
+    private fun copyClass(type: Class<*>, classesDir: File) {
+        val target = classesDir.resolve(type.name.replace('.', '/') + ".class")
+        target.parentFile.mkdirs()
+        classFile(type).use { input -> target.outputStream().use { input.copyTo(it) } }
+    }
+
+    @PublicComponent(name = "ReferencingComponent")
+    class ReferencingComponent
+
+    abstract class PlainModule : Module
+
+    class Unrelated(val value: Long = 42L, val ratio: Double = 0.5)
+
+    interface UnrelatedInterface {
+        fun run(action: () -> String) = action()
+    }
+
+}
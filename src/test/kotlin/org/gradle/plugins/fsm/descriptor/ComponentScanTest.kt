@@ -1,5 +1,6 @@
 package org.gradle.plugins.fsm.descriptor
 
+import com.espirit.moddev.components.annotations.WebAppComponent
 import org.assertj.core.api.Assertions.assertThat
 import org.gradle.plugins.fsm.FSMManifestTest
 import org.gradle.plugins.fsm.FSMPlugin
@@ -23,11 +24,140 @@ class ComponentScanTest {
 
     @Test
     fun test() {
+        copyTestProject()
+        assertComponents()
+    }
+
+    @Test
+    fun `component index`() {
+        copyTestProject()
+        testDir.resolve("fsm-subproject/build.gradle.kts")
+            .appendText("\n\nfirstSpiritModuleAnnotations {\n    componentIndex = true\n}\n")
+
+        assertComponents()
+
+        ZipFile(testDir.resolve("fsm-subproject/build/libs/fsm-subproject-1.0.jar")).use { jar ->
+            val index = jar.getEntry(ComponentIndex.INDEX_DIRECTORY + "de.espirit.MyAbstractWebAppImpl")
+            assertThat(index).describedAs("Jar should contain the component index").isNotNull
+            val indexedClasses = jar.getInputStream(index).bufferedReader().readLines()
+            assertThat(indexedClasses).contains("de.espirit.MyAbstractWebAppImpl WebAppComponent",
+                "de.espirit.MyAbstractWebApp supertype")
+        }
+        assertThat(ComponentIndex.read(testDir.resolve("fsm-subproject/build/libs/fsm-subproject-1.0.jar")))
+            .contains("de.espirit.AbstractWebAppImpl", "de.espirit.MyAbstractWebAppImpl")
+    }
+
+    @Test
+    fun `component index of unchanged classes is kept in an incremental compilation`() {
+        copyTestProject()
+        val subprojectDir = testDir.resolve("fsm-subproject")
+        subprojectDir.resolve("build.gradle.kts")
+            .appendText("\n\nfirstSpiritModuleAnnotations {\n    componentIndex = true\n}\n")
+        subprojectDir.resolve("src/main/java/de/espirit/TestModule.java").writeText("""
+            package de.espirit;
+
+            import com.espirit.moddev.components.annotations.ModuleComponent;
+            import de.espirit.firstspirit.module.Module;
+
+            @ModuleComponent
+            public abstract class TestModule implements Module {
+            }
+        """.trimIndent())
+        assertThat(buildDescriptor().childText("class")).isEqualTo("de.espirit.TestModule")
+
+        // Only the changed class is recompiled, the module class is unchanged
+        val webApp = subprojectDir.resolve("src/main/java/de/espirit/AbstractWebAppImpl.java")
+        webApp.writeText(webApp.readText().replace("extends AbstractWebApp {",
+            "extends AbstractWebApp {\n    public static final String CHANGED = \"changed\";"))
+        val descriptor = buildDescriptor()
+
+        assertThat(descriptor.childText("class")).isEqualTo("de.espirit.TestModule")
+        assertThat(componentWithName(descriptor.first("components"), "AbstractWebAppImpl")).isNotNull
+        assertThat(componentWithName(descriptor.first("components"), "MyAbstractWebAppImpl")).isNotNull
+    }
+
+    @Test
+    fun `scan class directories`() {
+        copyTestProject()
+        testDir.resolve("build.gradle.kts").appendText("\n\nfirstSpiritModule {\n    scanClassesDirectories = true\n}\n")
+        assertComponents()
+    }
+
+    @Test
+    fun `scan class directories without building the jars`() {
+        copyTestProject()
+        testDir.resolve("build.gradle.kts").appendText("\n\nfirstSpiritModule {\n    scanClassesDirectories = true\n}\n")
+
+        val result = GradleRunner.create()
+                .withProjectDir(testDir)
+                .withArguments(FSMPlugin.SCAN_COMPONENTS_TASK_NAME)
+                .withPluginClasspath()
+                .build()
+
+        assertThat(result.task(":${FSMPlugin.SCAN_COMPONENTS_TASK_NAME}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.tasks.map { it.path }).noneMatch { it.endsWith(":jar") }
+        val components = ScannedComponents.read(testDir.resolve("build/${ScannedComponents.FILE_NAME}"))
+        assertThat(components.map { it.className })
+            .contains("de.espirit.AbstractWebAppImpl", "de.espirit.MyAbstractWebAppImpl")
+    }
+
+    @Test
+    fun `rejected packages are not scanned`() {
+        copyTestProject()
+        testDir.resolve("build.gradle.kts")
+            .appendText("\n\nfirstSpiritModule {\n    componentScanRejectPackages = listOf(\"de.espirit\")\n}\n")
+
+        val components = buildComponents()
+
+        assertThat(componentWithName(components, "AbstractWebAppImpl")).isNull()
+        assertThat(componentWithName(components, "MyAbstractWebAppImpl")).isNull()
+    }
+
+    @Test
+    fun `rejected jars are not scanned`() {
+        copyTestProject()
+        testDir.resolve("build.gradle.kts")
+            .appendText("\n\nfirstSpiritModule {\n    componentScanRejectJars = listOf(\"fsm-subproject-*.jar\")\n}\n")
+
+        val components = buildComponents()
+
+        assertThat(componentWithName(components, "AbstractWebAppImpl")).isNull()
+        assertThat(componentWithName(components, "MyAbstractWebAppImpl")).isNull()
+    }
+
+    @Test
+    fun `scanned components are written to the build directory`() {
+        copyTestProject()
+
+        val result = GradleRunner.create()
+                .withProjectDir(testDir)
+                .withArguments(FSMPlugin.SCAN_COMPONENTS_TASK_NAME)
+                .withPluginClasspath()
+                .build()
+        assertThat(result.task(":${FSMPlugin.SCAN_COMPONENTS_TASK_NAME}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
+
+        val components = ScannedComponents.read(testDir.resolve("build/${ScannedComponents.FILE_NAME}"))
+        assertThat(components.map { it.className })
+            .contains("de.espirit.AbstractWebAppImpl", "de.espirit.MyAbstractWebAppImpl")
+            .doesNotContain("de.espirit.UnrelatedWebApp")
+        val webApp = components.first { it.className == "de.espirit.AbstractWebAppImpl" }
+        assertThat(webApp.superclassName).isEqualTo("de.espirit.firstspirit.module.AbstractWebApp")
+        assertThat(webApp.annotations.map { it.name }).containsExactly(WebAppComponent::class.java.name)
+        assertThat(webApp.annotations.single().getString("name")).isEqualTo("AbstractWebAppImpl")
+    }
+
+    private fun copyTestProject() {
         // Copy Test project into temp dir
         val resourcesUrl = FSMManifestTest::class.java.classLoader.getResource("components")
                 ?: error("Components project dir not found")
         File(resourcesUrl.toURI()).copyRecursively(testDir)
+    }
 
+    private fun buildComponents(): Node {
+        return buildDescriptor().first("components")
+    }
+
+    private fun buildDescriptor(): Node {
         // Execute Gradle build
         val result = GradleRunner.create()
                 .withProjectDir(testDir)
@@ -37,10 +167,12 @@ class ComponentScanTest {
         assertThat(result.task(":${FSMPlugin.FSM_TASK_NAME}")!!.outcome).isEqualTo(TaskOutcome.SUCCESS)
 
         val outputFile = testDir.resolve(OUTPUT_FSM_FILE)
-        val moduleDescriptor = getModuleDescriptor(outputFile)
+        return getModuleDescriptor(outputFile)
+    }
 
+    private fun assertComponents() {
         // We expect exactly 2 components
-        val components = moduleDescriptor.first("components")
+        val components = buildComponents()
         assertThat(components.filter { true }.size == 2)
 
         // Test that certain components are included, but others were not.
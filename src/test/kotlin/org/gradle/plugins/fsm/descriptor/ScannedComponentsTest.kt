@@ -0,0 +1,57 @@
+package org.gradle.plugins.fsm.descriptor
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.io.IOException
+
+class ScannedComponentsTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    @Test
+    fun `write and read components`() {
+        val moduleComponent = ScannedAnnotation("com.espirit.moddev.components.annotations.ModuleComponent",
+            mapOf("configurable" to ScannedClassRef("de.espirit.firstspirit.module.Configuration")))
+        val webAppComponent = ScannedAnnotation("com.espirit.moddev.components.annotations.WebAppComponent", mapOf(
+            "name" to "TestWebApp",
+            "hidden" to "false",
+            "scope" to listOf(ScannedEnumValue("de.espirit.firstspirit.module.WebEnvironment\$WebScope", "LIVE")),
+            "webResources" to listOf(ScannedAnnotation("com.espirit.moddev.components.annotations.WebResource",
+                mapOf("name" to "resource", "path" to "lib/resource.jar"))),
+            "factories" to emptyList<Any>()
+        ))
+        val components = listOf(
+            ScannedComponent("de.espirit.TestModule", null, listOf(moduleComponent), true),
+            ScannedComponent("de.espirit.Outer\$Inner", "de.espirit.firstspirit.module.AbstractWebApp",
+                listOf(webAppComponent), false),
+            ScannedComponent("de.espirit.PlainModule", "java.lang.Object", emptyList(), true)
+        )
+        val file = testDir.resolve(ScannedComponents.FILE_NAME)
+
+        ScannedComponents.write(file, components)
+
+        assertThat(ScannedComponents.read(file)).isEqualTo(components)
+    }
+
+    @Test
+    fun `no components`() {
+        val file = testDir.resolve("component-index.bin")
+
+        ScannedComponents.write(file, emptyList())
+
+        assertThat(ScannedComponents.read(file)).isEmpty()
+    }
+
+    @Test
+    fun `unsupported file`() {
+        val file = testDir.resolve("component-index.bin")
+        file.writeText("# FirstSpirit module component index 1\n")
+
+        assertThatThrownBy { ScannedComponents.read(file) }.isInstanceOf(IOException::class.java)
+    }
+
+}
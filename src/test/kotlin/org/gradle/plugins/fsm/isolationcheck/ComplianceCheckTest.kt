@@ -0,0 +1,130 @@
+package org.gradle.plugins.fsm.isolationcheck
+
+import com.sun.net.httpserver.HttpServer
+import de.espirit.mavenplugins.fsmchecker.ComplianceLevel
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.plugins.fsm.isolationcheck.VerificationResult.Status.*
+import org.gradle.plugins.fsm.util.TestHttpServer
+import org.gradle.plugins.fsm.util.respond
+import org.gradle.plugins.fsm.util.uri
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class ComplianceCheckTest {
+
+    @TempDir
+    private lateinit var tempDir: Path
+
+    private lateinit var server: HttpServer
+
+    private lateinit var connector: WebServiceConnector
+
+    @BeforeEach
+    fun setUp() {
+        server = TestHttpServer.start()
+        server.createContext("/rest/upload") { exchange ->
+            exchange.requestBody.use { it.readBytes() }
+            exchange.respond(200, "")
+        }
+        server.createContext("/rest/categories") { it.respond(200, "[]") }
+        connector = WebServiceConnector(server.uri, "5.2", 61, null, null)
+    }
+
+    @AfterEach
+    fun tearDown() {
+        connector.close()
+        server.stop(0)
+    }
+
+    @Test
+    fun `several FSMs are uploaded and analyzed once`() {
+        val first = fsm("first.fsm", "lib/first.jar")
+        val second = fsm("second.fsm", "lib/second.jar")
+        analyzeResponse("""{"failedModules": [], "checkedFsmFiles": [
+            {"jarsWithInvalidBytecode": [], "detectedFirstSpiritArtifacts": []},
+            {"jarsWithInvalidBytecode": [], "detectedFirstSpiritArtifacts": []}]}""")
+
+        val results = ComplianceCheck(ComplianceLevel.DEFAULT, listOf(tempDir.resolve("a"), tempDir.resolve("b")),
+            connector).checkEach(listOf(first, second))
+
+        assertThat(results.keys).containsExactly(first, second)
+        assertThat(results.values).allMatch { it.isValid() }
+        assertThat(connector.requestTelemetry.filter { it.status == 200 }.map { it.endpoint })
+            .containsExactly("/rest/upload", "/rest/analyze", "/rest/categories")
+        assertThat(tempDir.resolve("a/${JUnitXMLFormatHandler.JUNIT_REPORTS_DIR}/TEST-complianceCheck.xml")).exists()
+        assertThat(tempDir.resolve("b/${JUnitXMLFormatHandler.JUNIT_REPORTS_DIR}/TEST-complianceCheck.xml")).exists()
+    }
+
+    @Test
+    fun `analysis results are assigned to the FSMs`() {
+        val first = fsm("first.fsm", "lib/first.jar")
+        val second = fsm("second.fsm", "lib/fs-isolated-runtime.jar")
+        val third = fsm("third.fsm", "lib/third.jar")
+        analyzeResponse("""{"failedModules": [
+            {"failedFile": "first.fsm", "errorMessage": "broken descriptor"}], "checkedFsmFiles": [
+            {"jarsWithInvalidBytecode": [], "detectedFirstSpiritArtifacts": ["fs-isolated-runtime.jar"]}]}""")
+
+        val results = ComplianceCheck(ComplianceLevel.DEFAULT, tempDir, connector)
+            .checkEach(listOf(first, second, third))
+
+        assertThat(results.getValue(first).status).isEqualTo(INVALID)
+        assertThat(results.getValue(first).moduleErrors).containsExactly("first.fsm --> broken descriptor")
+        assertThat(results.getValue(second).status).isEqualTo(INVALID)
+        assertThat(results.getValue(second).message).isEqualTo("FirstSpirit artifacts detected: \"fs-isolated-runtime.jar\"")
+        assertThat(results.getValue(third).isValid()).isTrue
+    }
+
+    @Test
+    fun `category violations of several FSMs are not assigned`() {
+        val first = fsm("first.fsm", "lib/first.jar")
+        val second = fsm("second.fsm", "lib/second.jar")
+        analyzeResponse("""{"failedModules": [
+            {"failedFile": "first.fsm", "errorMessage": "broken descriptor"}], "checkedFsmFiles": []}""")
+        server.removeContext("/rest/categories")
+        server.createContext("/rest/categories") {
+            it.respond(200, """[{"category": "NON_API_USAGE", "description": "Non-API usage", "count": 1}]""")
+        }
+
+        val results = ComplianceCheck(ComplianceLevel.DEFAULT, listOf(tempDir.resolve("a"), tempDir.resolve("b")),
+            connector).checkEach(listOf(first, second))
+
+        assertThat(results.getValue(first).status).isEqualTo(INVALID)
+        assertThat(results.getValue(second).status).isEqualTo(UNASSIGNED)
+        assertThat(tempDir.resolve("a/${JUnitXMLFormatHandler.JUNIT_REPORTS_DIR}")).doesNotExist()
+        assertThat(tempDir.resolve("b/${JUnitXMLFormatHandler.JUNIT_REPORTS_DIR}")).doesNotExist()
+    }
+
+    @Test
+    fun `a single FSM is checked like before`() {
+        val fsm = fsm("module.fsm", "lib/java21.jar")
+        analyzeResponse("""{"failedModules": [], "checkedFsmFiles": [
+            {"jarsWithInvalidBytecode": ["java21.jar"], "detectedFirstSpiritArtifacts": []}]}""")
+
+        val result = ComplianceCheck(ComplianceLevel.DEFAULT, tempDir, connector).check(listOf(fsm))
+
+        assertThat(result.status).isEqualTo(INVALID)
+        assertThat(result.message).isEqualTo("Jars with invalid bytecode level detected: \"java21.jar\"")
+    }
+
+    private fun analyzeResponse(response: String) {
+        server.createContext("/rest/analyze") { it.respond(200, response) }
+    }
+
+    private fun fsm(name: String, vararg entries: String): Path {
+        val fsm = tempDir.resolve(name)
+        ZipOutputStream(Files.newOutputStream(fsm)).use { zip ->
+            entries.forEach {
+                zip.putNextEntry(ZipEntry(it))
+                zip.closeEntry()
+            }
+        }
+        return fsm
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.gradle.plugins.fsm.isolationcheck
+
+import com.sun.net.httpserver.HttpServer
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.gradle.plugins.fsm.util.TestHttpServer
+import org.gradle.plugins.fsm.util.respond
+import org.gradle.plugins.fsm.util.uri
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.net.UnknownHostException
+import java.time.Duration
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+class DetectorClientServiceTest {
+
+    private lateinit var server: HttpServer
+
+    private val client = DetectorClientService.createClient(4, Duration.ofSeconds(10))
+
+    @BeforeEach
+    fun setUp() {
+        server = TestHttpServer.start()
+    }
+
+    @AfterEach
+    fun tearDown() {
+        client.close()
+        server.stop(0)
+    }
+
+    @Test
+    fun `connectors sharing a client keep their own session`() {
+        val sessions = AtomicInteger()
+        val receivedCookies = Collections.synchronizedList(mutableListOf<String>())
+        server.createContext("/rest/upload") { exchange ->
+            exchange.requestBody.use { it.readBytes() }
+            exchange.responseHeaders.add("Set-Cookie", "JSESSIONID=session${sessions.incrementAndGet()}; Path=/")
+            exchange.respond(200, "uploaded")
+        }
+        server.createContext("/rest/categories") { exchange ->
+            receivedCookies.add(exchange.requestHeaders.getFirst("Cookie"))
+            exchange.respond(200, "[]")
+        }
+
+        val first = connector()
+        val second = connector()
+        first.uploadRequest(emptyList())
+        second.uploadRequest(emptyList())
+        first.requestCategories()
+        second.requestCategories()
+
+        assertThat(receivedCookies).containsExactly("JSESSIONID=session1", "JSESSIONID=session2")
+        assertThat(first.requestTelemetry.map { it.endpoint }).containsExactly("/rest/upload", "/rest/categories")
+        assertThat(second.requestTelemetry.map { it.endpoint }).containsExactly("/rest/upload", "/rest/categories")
+    }
+
+    @Test
+    fun `shared client is not closed by the connector`() {
+        server.createContext("/rest/categories") { it.respond(200, "[]") }
+
+        connector().use { it.requestCategories() }
+
+        assertThat(connector().requestCategories()).isEqualTo("[]")
+    }
+
+    @Test
+    fun `submitted checks are awaited`() {
+        val service = ProjectBuilder.builder().build().gradle.sharedServices
+            .registerIfAbsent(DetectorClientService.NAME, DetectorClientService::class.java) {
+                parameters.maxConnections.set(1)
+                parameters.connectTimeout.set(Duration.ofSeconds(10))
+            }.get()
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+
+        service.submitCheck(":module:checkIsolation", check {
+            started.countDown()
+            release.await()
+            VerificationResult(VerificationResult.Status.VALID, "passed")
+        })
+        started.await()
+        release.countDown()
+
+        val finishedCheck = service.awaitCheck(":module:checkIsolation")
+        assertThat(finishedCheck?.getResult()?.message).isEqualTo("passed")
+        assertThat(finishedCheck?.requestTelemetry).hasSize(1)
+        assertThat(service.awaitCheck(":module:checkIsolation")).isNull()
+        service.close()
+    }
+
+    @Test
+    fun `failure of a submitted check is rethrown`() {
+        val service = ProjectBuilder.builder().build().gradle.sharedServices
+            .registerIfAbsent(DetectorClientService.NAME, DetectorClientService::class.java) {
+                parameters.maxConnections.set(1)
+                parameters.connectTimeout.set(Duration.ofSeconds(10))
+            }.get()
+
+        service.submitCheck(":checkIsolation", check { throw UnknownHostException("detector.invalid") })
+
+        val finishedCheck = service.awaitCheck(":checkIsolation")!!
+        assertThat(finishedCheck.requestTelemetry).hasSize(1)
+        assertThatThrownBy { finishedCheck.getResult() }.isInstanceOf(UnknownHostException::class.java)
+        service.close()
+    }
+
+    private fun check(action: () -> VerificationResult): DetectorClientService.DetectorCheck {
+        return object : DetectorClientService.DetectorCheck {
+            override val requestTelemetry = listOf(RequestTelemetry("POST", "/rest/upload", 1, 100))
+            override fun call() = action()
+        }
+    }
+
+    private fun connector(): WebServiceConnector {
+        return WebServiceConnector(server.uri, null, 61, null, null,
+            Duration.ofSeconds(10), client)
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.gradle.plugins.fsm.isolationcheck
+
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.plugins.fsm.isolationcheck.LibraryCheck.JarResult
+import org.gradle.plugins.fsm.util.TestProjectUtils.fsm
+import org.gradle.plugins.fsm.util.TestProjectUtils.zip
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.nio.ByteBuffer
+
+class LibraryCheckTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    private val check = LibraryCheck(61)
+
+    @Test
+    fun `valid libraries`() {
+        val fsm = fsm(testDir,
+            "lib/java11.jar" to zip("com/example/A.class" to classFile(55)),
+            "lib/java17.jar" to zip("com/example/B.class" to classFile(61), "com/example/C.class" to classFile(52)),
+            "META-INF/module-isolated.xml" to "<module/>".toByteArray()
+        )
+
+        val result = check.check(fsm)
+
+        assertThat(result.isValid()).isTrue
+        assertThat(check.checkLibraries(fsm)).containsExactly(
+            JarResult("lib/java11.jar", 55, false),
+            JarResult("lib/java17.jar", 61, false))
+    }
+
+    @Test
+    fun `invalid bytecode version`() {
+        val fsm = fsm(testDir,
+            "lib/java17.jar" to zip("com/example/A.class" to classFile(61)),
+            "lib/java21.jar" to zip("com/example/B.class" to classFile(52), "com/example/C.class" to classFile(65))
+        )
+
+        val result = check.check(fsm)
+
+        assertThat(result.isValid()).isFalse
+        assertThat(result.message).isEqualTo("Jars with invalid bytecode level detected: lib/java21.jar (65)." +
+                " The maximum bytecode version is 61.")
+    }
+
+    @Test
+    fun `classes of multi-release jars for newer Java versions are ignored`() {
+        val fsm = fsm(testDir, "lib/multi-release.jar" to zip(
+            "com/example/A.class" to classFile(52),
+            "META-INF/versions/21/com/example/A.class" to classFile(65)))
+
+        assertThat(check.check(fsm).isValid()).isTrue
+    }
+
+    @Test
+    fun `FirstSpirit artifacts`() {
+        val fsm = fsm(testDir,
+            "lib/runtime.jar" to zip("META-INF/maven/de.espirit.firstspirit/fs-isolated-runtime/pom.properties" to
+                    "groupId=de.espirit.firstspirit\nartifactId=fs-isolated-runtime\n".toByteArray()),
+            "lib/fs-access-5.2.jar" to zip("de/espirit/firstspirit/access/A.class" to classFile(55)),
+            "lib/library.jar" to zip("META-INF/maven/com.example/library/pom.properties" to
+                    "groupId=com.example\nartifactId=library\n".toByteArray())
+        )
+
+        val result = check.check(fsm)
+
+        assertThat(result.isValid()).isFalse
+        assertThat(result.message).isEqualTo("FirstSpirit artifacts detected: lib/runtime.jar, lib/fs-access-5.2.jar")
+    }
+
+    @Test
+    fun `FirstSpirit artifacts shaded into a library`() {
+        val fsm = fsm(testDir,
+            "lib/bundle.jar" to zip(
+                "META-INF/maven/com.example/bundle/pom.properties" to
+                        "groupId=com.example\nartifactId=bundle\n".toByteArray(),
+                "META-INF/maven/de.espirit.firstspirit/fs-access/pom.properties" to
+                        "groupId=de.espirit.firstspirit\nartifactId=fs-access\n".toByteArray()
+            ),
+            "lib/fs-api-client.jar" to zip("META-INF/maven/com.example/fs-api-client/pom.properties" to
+                    "groupId=com.example\nartifactId=fs-api-client\n".toByteArray())
+        )
+
+        val result = check.check(fsm)
+
+        assertThat(result.isValid()).isFalse
+        assertThat(result.message).isEqualTo("FirstSpirit artifacts detected: lib/bundle.jar")
+    }
+
+    @Test
+    fun `no libraries`() {
+        val fsm = fsm(testDir, "META-INF/module-isolated.xml" to "<module/>".toByteArray())
+
+        assertThat(check.checkLibraries(fsm)).isEmpty()
+        assertThat(check.check(fsm).isValid()).isTrue
+    }
+
+    private fun classFile(majorVersion: Int): ByteArray {
+        return ByteBuffer.allocate(16).putInt(0xCAFEBABE.toInt()).putShort(0).putShort(majorVersion.toShort()).array()
+    }
+
+}
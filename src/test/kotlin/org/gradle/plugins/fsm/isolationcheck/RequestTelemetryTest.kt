@@ -0,0 +1,102 @@
+package org.gradle.plugins.fsm.isolationcheck
+
+import com.sun.net.httpserver.HttpServer
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.plugins.fsm.util.TestHttpServer
+import org.gradle.plugins.fsm.util.respond
+import org.gradle.plugins.fsm.util.uri
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.concurrent.atomic.AtomicInteger
+
+class RequestTelemetryTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    private lateinit var server: HttpServer
+
+    private lateinit var connector: WebServiceConnector
+
+    @BeforeEach
+    fun setUp() {
+        server = TestHttpServer.start()
+        connector = WebServiceConnector(server.uri, null, 55, null, null)
+    }
+
+    @AfterEach
+    fun tearDown() {
+        connector.close()
+        server.stop(0)
+    }
+
+    @Test
+    fun `request is recorded`() {
+        server.createContext("/rest/categories") { it.respond(200, "[\"category\"]") }
+
+        connector.requestCategories()
+
+        val telemetry = connector.requestTelemetry.single()
+        assertThat(telemetry.method).isEqualTo("GET")
+        assertThat(telemetry.endpoint).isEqualTo("/rest/categories")
+        assertThat(telemetry.attempt).isEqualTo(1)
+        assertThat(telemetry.status).isEqualTo(200)
+        assertThat(telemetry.bytesReceived).isEqualTo(12)
+        assertThat(telemetry.timeToFirstByteMillis).isGreaterThanOrEqualTo(0)
+        assertThat(telemetry.durationMillis).isGreaterThanOrEqualTo(telemetry.timeToFirstByteMillis)
+    }
+
+    @Test
+    fun `uploaded bytes are recorded`() {
+        server.createContext("/rest/upload") { exchange ->
+            exchange.requestBody.use { it.readBytes() }
+            exchange.respond(200, "")
+        }
+        val fsm = testDir.resolve("test.fsm")
+        fsm.writeBytes(ByteArray(10_000))
+
+        connector.uploadRequest(listOf(fsm.toPath()))
+
+        assertThat(connector.requestTelemetry.single().bytesSent).isGreaterThan(10_000)
+    }
+
+    @Test
+    fun `each attempt is recorded`() {
+        val requests = AtomicInteger()
+        server.createContext("/rest/categories") { exchange ->
+            if (requests.incrementAndGet() == 1) {
+                exchange.responseHeaders.add("Retry-After", "1")
+                exchange.respond(503, "unavailable")
+            } else {
+                exchange.respond(200, "[]")
+            }
+        }
+
+        connector.requestCategories()
+
+        val telemetry = connector.requestTelemetry
+        assertThat(telemetry.map { it.attempt }).containsExactly(1, 2)
+        assertThat(telemetry.map { it.status }).containsExactly(503, 200)
+
+        val json = RequestTelemetry.toJson(telemetry)
+        assertThat(json.getInt("requests")).isEqualTo(1)
+        assertThat(json.getInt("retries")).isEqualTo(1)
+        assertThat(json.getJSONArray("attemptDetails").length()).isEqualTo(2)
+    }
+
+    @Test
+    fun `connection errors are recorded`() {
+        server.stop(0)
+
+        runCatching { connector.requestCategories() }
+
+        val telemetry = connector.requestTelemetry.first()
+        assertThat(telemetry.status).isEqualTo(0)
+        assertThat(telemetry.error).isNotNull()
+        assertThat(telemetry.timeToFirstByteMillis).isEqualTo(-1)
+    }
+
+}
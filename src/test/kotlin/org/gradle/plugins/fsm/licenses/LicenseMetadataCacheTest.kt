@@ -0,0 +1,141 @@
+package org.gradle.plugins.fsm.licenses
+
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.plugins.fsm.licenses.LicenseMetadataCache.Module
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class LicenseMetadataCacheTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    private lateinit var cache: LicenseMetadataCache
+    private lateinit var previousRun: LicenseMetadataCache
+    private lateinit var reportDir: File
+
+    @BeforeEach
+    fun setUp() {
+        cache = LicenseMetadataCache(testDir.resolve("cache"), CONFIGURATION_HASH)
+        previousRun = LicenseMetadataCache(testDir.resolve("previous"), CONFIGURATION_HASH)
+        reportDir = testDir.resolve("report").apply { mkdirs() }
+    }
+
+    @Test
+    fun `store and restore module`() {
+        val module = module("org.example", "library", "1.0")
+        val record = listOf("org.example:library:1.0", "https://example.org", "Apache \"2\"", "", "")
+        reportDir.resolve("library-1.0.jar/LICENSE.txt").apply { parentFile.mkdirs() }.writeText("License text")
+
+        assertThat(cache.isCached(module)).isFalse
+        cache.store(module, record, reportDir)
+        assertThat(cache.isCached(module)).isTrue
+
+        val restoreDir = testDir.resolve("restored")
+        assertThat(cache.restore(module, restoreDir)).isEqualTo(record)
+        assertThat(restoreDir.resolve("library-1.0.jar/LICENSE.txt")).hasContent("License text")
+    }
+
+    @Test
+    fun `changed artifact is not cached`() {
+        val module = module("org.example", "library", "1.0")
+        cache.store(module, listOf("org.example:library:1.0", "", "", "", ""), reportDir)
+
+        module.files.single().writeText("changed content")
+
+        assertThat(cache.isCached(module("org.example", "library", "1.0"))).isFalse
+    }
+
+    @Test
+    fun `module is not cached for changed configuration`() {
+        val module = module("org.example", "library", "1.0")
+        cache.store(module, listOf("org.example:library:1.0", "", "", "", ""), reportDir)
+
+        val changedConfiguration = LicenseMetadataCache(testDir.resolve("cache"), "changed")
+
+        assertThat(changedConfiguration.isCached(module)).isFalse
+        assertThat(changedConfiguration.key(module)).isNotEqualTo(cache.key(module))
+    }
+
+    @Test
+    fun `report excludes cached modules and merges records`() {
+        val cachedModule = module("org.example", "cached", "1.0")
+        val newModule = module("org.example", "new", "2.0")
+        cache.store(cachedModule, listOf("org.example:cached:1.0", "https://example.org/cached", "MIT", "", ""), reportDir)
+        reportDir.resolve(LicenseCsv.FILE_NAME).writeText(
+            "\"artifact\",\"moduleUrl\",\"moduleLicense\",\"moduleLicenseUrl\",\r\n" +
+            "\"com.example:first:1.0\",\"https://example.com\",\"MIT\",\"\",\r\n" +
+            "\"org.example:new:2.0\",\"https://example.org/new\",\"The \"\"New\"\" License\",\"\",\r\n")
+
+        val report = CachedLicenseReport(previousRun, cache, listOf(cachedModule, newModule))
+        assertThat(report.cachedModules).containsExactly(cachedModule)
+        assertThat(report.newModules).containsExactly(newModule)
+        assertThat(report.excludes()).containsExactly("\\Qorg.example\\E:\\Qcached\\E")
+        assertThat("org.example:cached").matches(report.excludes().single())
+
+        report.complete(reportDir)
+
+        assertThat(reportDir.resolve(LicenseCsv.FILE_NAME)).hasContent(
+            "\"artifact\",\"moduleUrl\",\"moduleLicense\",\"moduleLicenseUrl\",\r\n" +
+            "\"com.example:first:1.0\",\"https://example.com\",\"MIT\",\"\",\r\n" +
+            "\"org.example:cached:1.0\",\"https://example.org/cached\",\"MIT\",\"\",\r\n" +
+            "\"org.example:new:2.0\",\"https://example.org/new\",\"The \"\"New\"\" License\",\"\",\r\n")
+        assertThat(cache.isCached(newModule)).isTrue
+        assertThat(previousRun.keys()).containsExactlyInAnyOrder(previousRun.key(cachedModule), previousRun.key(newModule))
+    }
+
+    @Test
+    fun `incremental report reads changed modules only`() {
+        val unchangedModule = module("org.example", "unchanged", "1.0")
+        val removedModule = module("org.example", "removed", "1.0")
+        val bumpedModule = module("org.example", "bumped", "2.0")
+        previousRun.store(unchangedModule, listOf("org.example:unchanged:1.0", "", "MIT", "", ""), reportDir)
+        previousRun.store(removedModule, listOf("org.example:removed:1.0", "", "MIT", "", ""), reportDir)
+        previousRun.store(module("org.example", "bumped", "1.0"), listOf("org.example:bumped:1.0", "", "MIT", "", ""), reportDir)
+        reportDir.resolve(LicenseCsv.FILE_NAME).writeText(
+            "\"artifact\",\"moduleUrl\",\"moduleLicense\",\"moduleLicenseUrl\",\r\n" +
+            "\"org.example:bumped:2.0\",\"\",\"MIT\",\"\",\r\n")
+
+        val report = CachedLicenseReport(previousRun, null, listOf(unchangedModule, bumpedModule))
+        assertThat(report.cachedModules).containsExactly(unchangedModule)
+        assertThat(report.newModules).containsExactly(bumpedModule)
+        assertThat(report.unchangedModuleCount).isEqualTo(1)
+
+        report.complete(reportDir)
+
+        assertThat(reportDir.resolve(LicenseCsv.FILE_NAME)).hasContent(
+            "\"artifact\",\"moduleUrl\",\"moduleLicense\",\"moduleLicenseUrl\",\r\n" +
+            "\"org.example:bumped:2.0\",\"\",\"MIT\",\"\",\r\n" +
+            "\"org.example:unchanged:1.0\",\"\",\"MIT\",\"\",\r\n")
+        assertThat(previousRun.keys()).containsExactlyInAnyOrder(previousRun.key(unchangedModule), previousRun.key(bumpedModule))
+        assertThat(previousRun.isCached(removedModule)).isFalse
+    }
+
+    @Test
+    fun `module with uncached version is read completely`() {
+        val cachedVersion = module("org.example", "library", "1.0")
+        val newVersion = module("org.example", "library", "2.0")
+        cache.store(cachedVersion, listOf("org.example:library:1.0", "", "", "", ""), reportDir)
+
+        val report = CachedLicenseReport(previousRun, cache, listOf(cachedVersion, newVersion))
+
+        assertThat(report.cachedModules).isEmpty()
+        assertThat(report.excludes()).isEmpty()
+    }
+
+    private fun module(group: String, name: String, version: String): Module {
+        val jar = testDir.resolve("artifacts/$name-$version.jar")
+        if (!jar.exists()) {
+            jar.parentFile.mkdirs()
+            jar.writeText("$group:$name:$version")
+        }
+        return Module(group, name, version, listOf(jar))
+    }
+
+    companion object {
+        private const val CONFIGURATION_HASH = "configuration"
+    }
+
+}
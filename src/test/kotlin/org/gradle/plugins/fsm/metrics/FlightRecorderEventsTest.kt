@@ -0,0 +1,97 @@
+package org.gradle.plugins.fsm.metrics
+
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordedEvent
+import jdk.jfr.consumer.RecordingFile
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.plugins.fsm.FSMPluginExtension
+import org.gradle.plugins.fsm.isolationcheck.WebServiceConnector
+import org.gradle.plugins.fsm.tasks.bundling.EntryCompression
+import org.gradle.plugins.fsm.tasks.bundling.FsmArchiveWriter
+import org.gradle.plugins.fsm.util.TestHttpServer
+import org.gradle.plugins.fsm.util.uri
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class FlightRecorderEventsTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    @Test
+    fun `archive entry writes are recorded`() {
+        val source = testDir.resolve("source.zip")
+        ZipOutputStream(source.outputStream()).use { zip ->
+            zip.putNextEntry(ZipEntry("text.txt"))
+            zip.write("text ".repeat(1000).toByteArray())
+        }
+
+        val events = record("org.gradle.plugins.fsm.ArchiveEntryWrite") {
+            FsmArchiveWriter(EntryCompression(FSMPluginExtension.NESTED_ARCHIVES_STORED))
+                .write(source, testDir.resolve("target.fsm"), mapOf("generated.xml" to "<module/>".toByteArray()))
+        }
+
+        assertThat(events.map { it.getString("entry") }).containsExactly("text.txt", "generated.xml")
+        val textEvent = events.first()
+        assertThat(textEvent.getString("source")).isEqualTo(ArchiveEntryWriteEvent.COMPRESSED)
+        assertThat(textEvent.getLong("size")).isEqualTo(5000)
+        assertThat(textEvent.getLong("compressedSize")).isLessThan(5000)
+        assertThat(textEvent.getDouble("compressionRatio")).isLessThan(1.0)
+        assertThat(events[1].getString("source")).isEqualTo(ArchiveEntryWriteEvent.GENERATED)
+    }
+
+    @Test
+    fun `artifact resolution is recorded`() {
+        val events = record("org.gradle.plugins.fsm.ArtifactResolution") {
+            ArtifactResolutionEvent.record(":fsm", "fsModuleCompile") { listOf("a.jar", "b.jar") }
+        }
+
+        val event = events.single()
+        assertThat(event.getString("project")).isEqualTo(":fsm")
+        assertThat(event.getString("configuration")).isEqualTo("fsModuleCompile")
+        assertThat(event.getInt("artifactCount")).isEqualTo(2)
+    }
+
+    @Test
+    fun `detector requests are recorded`() {
+        val server = TestHttpServer.start()
+        server.createContext("/rest/categories") { exchange ->
+            // One byte in ISO-8859-1, two bytes in UTF-8
+            val body = "[\"ä\"]".toByteArray(Charsets.ISO_8859_1)
+            exchange.responseHeaders.add("Content-Type", "application/json; charset=ISO-8859-1")
+            exchange.sendResponseHeaders(200, body.size.toLong())
+            exchange.responseBody.use { it.write(body) }
+        }
+
+        try {
+            val events = record("org.gradle.plugins.fsm.DetectorRequest") {
+                WebServiceConnector(server.uri, null, 55, null, null).use { assertThat(it.requestCategories()).isEqualTo("[\"ä\"]") }
+            }
+
+            val event = events.single()
+            assertThat(event.getString("method")).isEqualTo("GET")
+            assertThat(event.getString("endpoint")).isEqualTo("/rest/categories")
+            assertThat(event.getInt("status")).isEqualTo(200)
+            assertThat(event.getLong("responseBytes")).isEqualTo(5)
+            assertThat(event.getInt("retries")).isEqualTo(0)
+        } finally {
+            server.stop(0)
+        }
+    }
+
+    private fun record(eventName: String, action: () -> Unit): List<RecordedEvent> {
+        val recordingFile = testDir.resolve("recording.jfr")
+        Recording().use { recording ->
+            recording.enable(eventName)
+            recording.start()
+            action()
+            recording.stop()
+            recording.dump(recordingFile.toPath())
+        }
+        return RecordingFile.readAllEvents(recordingFile.toPath()).filter { it.eventType.name == eventName }
+    }
+
+}
@@ -0,0 +1,102 @@
+package org.gradle.plugins.fsm.metrics
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.gradle.api.logging.Logging
+import org.json.JSONObject
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class PhaseMetricsTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    @Test
+    fun `phases are measured in order`() {
+        val metrics = PhaseMetrics()
+
+        val result = metrics.measure("first") { Thread.sleep(10); "result" }
+        metrics.measure("second") { ByteArray(1024 * 1024) }
+
+        assertThat(result).isEqualTo("result")
+        assertThat(metrics.phases().map { it.name }).containsExactly("first", "second")
+        assertThat(metrics.phases()[0].durationMillis).isGreaterThanOrEqualTo(10.0)
+        metrics.phases()[1].allocatedBytes?.let { assertThat(it).isGreaterThanOrEqualTo(1024 * 1024) }
+    }
+
+    @Test
+    fun `repeated phases are added up`() {
+        val metrics = PhaseMetrics()
+
+        metrics.measure("phase") { Thread.sleep(5) }
+        metrics.measure("phase") { Thread.sleep(5) }
+
+        assertThat(metrics.phases()).hasSize(1)
+        assertThat(metrics.phases().single().durationMillis).isGreaterThanOrEqualTo(10.0)
+    }
+
+    @Test
+    fun `failed phases are measured`() {
+        val metrics = PhaseMetrics()
+
+        assertThatThrownBy { metrics.measure("failing") { error("failed") } }.hasMessage("failed")
+
+        assertThat(metrics.phases().map { it.name }).containsExactly("failing")
+    }
+
+    @Test
+    fun `nested phases are not added to the total`() {
+        val metrics = PhaseMetrics()
+
+        metrics.measure(PhaseMetrics.ARCHIVE_ASSEMBLY) {
+            metrics.measure(PhaseMetrics.DEPENDENCY_RESOLUTION) { Thread.sleep(20) }
+        }
+        metrics.measure(PhaseMetrics.ARCHIVE_WRITING) { Thread.sleep(5) }
+
+        val phases = metrics.phases().associateBy { it.name }
+        assertThat(phases.getValue(PhaseMetrics.DEPENDENCY_RESOLUTION).nested).isTrue()
+        assertThat(phases.getValue(PhaseMetrics.ARCHIVE_ASSEMBLY).nested).isFalse()
+        val topLevelNanos = phases.getValue(PhaseMetrics.ARCHIVE_ASSEMBLY).durationNanos +
+                phases.getValue(PhaseMetrics.ARCHIVE_WRITING).durationNanos
+        assertThat(metrics.total().durationNanos).isEqualTo(topLevelNanos)
+    }
+
+    @Test
+    fun `phase measured at top level is not nested`() {
+        val metrics = PhaseMetrics()
+
+        metrics.measure(PhaseMetrics.ARCHIVE_ASSEMBLY) {
+            metrics.measure(PhaseMetrics.DEPENDENCY_RESOLUTION) { }
+        }
+        metrics.measure(PhaseMetrics.DEPENDENCY_RESOLUTION) { }
+
+        val phase = metrics.phases().single { it.name == PhaseMetrics.DEPENDENCY_RESOLUTION }
+        assertThat(phase.nested).isFalse()
+    }
+
+    @Test
+    fun `report is written as JSON`() {
+        val metrics = PhaseMetrics()
+        metrics.measure(PhaseMetrics.COMPONENT_SCAN) { }
+        metrics.measure(PhaseMetrics.ARCHIVE_WRITING) {
+            metrics.measure(PhaseMetrics.DEPENDENCY_RESOLUTION) { }
+        }
+        val file = testDir.resolve("metrics/assembleFSM.json")
+
+        metrics.report(":assembleFSM", file, Logging.getLogger(PhaseMetricsTest::class.java))
+
+        val json = JSONObject(file.readText())
+        assertThat(json.getString("task")).isEqualTo(":assembleFSM")
+        assertThat(json.getDouble("durationMillis")).isEqualTo(metrics.total().durationMillis)
+        val phases = json.getJSONArray("phases")
+        assertThat(phases.length()).isEqualTo(3)
+        assertThat(phases.getJSONObject(0).getString("name")).isEqualTo(PhaseMetrics.COMPONENT_SCAN)
+        assertThat(phases.getJSONObject(0).has("nested")).isFalse()
+        assertThat(phases.getJSONObject(1).getString("name")).isEqualTo(PhaseMetrics.DEPENDENCY_RESOLUTION)
+        assertThat(phases.getJSONObject(1).getBoolean("nested")).isTrue()
+        assertThat(phases.getJSONObject(2).getString("name")).isEqualTo(PhaseMetrics.ARCHIVE_WRITING)
+    }
+
+}
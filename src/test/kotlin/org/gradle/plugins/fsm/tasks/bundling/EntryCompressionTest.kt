@@ -0,0 +1,36 @@
+package org.gradle.plugins.fsm.tasks.bundling
+
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.plugins.fsm.FSMPluginExtension
+import org.gradle.plugins.fsm.FSMPluginExtension.Companion.STORED
+import org.junit.jupiter.api.Test
+import java.util.zip.Deflater
+
+class EntryCompressionTest {
+
+    @Test
+    fun `nested archives are stored by default`() {
+        val compression = EntryCompression(FSMPluginExtension.NESTED_ARCHIVES_STORED)
+        assertThat(compression.levelFor("lib/guava-24.0-jre.jar")).isEqualTo(STORED)
+        assertThat(compression.levelFor("files/webapp.war")).isEqualTo(STORED)
+        assertThat(compression.levelFor("bundle.zip")).isEqualTo(STORED)
+        assertThat(compression.levelFor("META-INF/licenses.csv")).isEqualTo(Deflater.DEFAULT_COMPRESSION)
+        assertThat(compression.levelFor("lib/jar")).isEqualTo(Deflater.DEFAULT_COMPRESSION)
+    }
+
+    @Test
+    fun `directories are stored`() {
+        val compression = EntryCompression(emptyMap())
+        assertThat(compression.levelFor("META-INF/")).isEqualTo(STORED)
+        assertThat(compression.levelFor("META-INF/MANIFEST.MF")).isEqualTo(Deflater.DEFAULT_COMPRESSION)
+    }
+
+    @Test
+    fun `first matching pattern is used`() {
+        val compression = EntryCompression(linkedMapOf("lib/special-*.jar" to 9, "lib/**" to STORED))
+        assertThat(compression.levelFor("lib/special-1.0.jar")).isEqualTo(9)
+        assertThat(compression.levelFor("lib/other-1.0.jar")).isEqualTo(STORED)
+        assertThat(compression.levelFor("lib/nested/special-1.0.jar")).isEqualTo(STORED)
+    }
+
+}
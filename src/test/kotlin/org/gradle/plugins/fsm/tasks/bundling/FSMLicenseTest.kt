@@ -164,6 +164,42 @@ class FSMLicenseTest {
         }
     }
 
+    @Test
+    fun `FSM with cached licenses`(@TempDir testKitDir: Path) {
+        settingsFile.writeText("""rootProject.name = "testFsmWithLicenses"""")
+        val buildScript = javaClass.getResourceAsStream("/licenses/fsmdependency.gradle.kts")
+            ?: fail("Build script '/licenses/fsmdependency.gradle.kts' not found!")
+        buildScript.use {
+            buildFile.writeText(it.reader().readText() + "\nfirstSpiritModule {\n    licenseMetadataCache = true\n}\n")
+        }
+
+        // The first build fills the license metadata cache, the second one takes the licenses from the cache.
+        // The cache is stored in a TestKit directory of its own, so it is not shared with other tests.
+        val runner = GradleRunner.create()
+            .withProjectDir(testDir.toFile())
+            .withTestKitDir(testKitDir.toFile())
+            .withPluginClasspath()
+        runner.withArguments(FSMPlugin.FSM_TASK_NAME).build()
+        val result = runner.withArguments("clean", FSMPlugin.FSM_TASK_NAME, "--info").build()
+        assertThat(result.task(':' + FSMPlugin.FSM_TASK_NAME)?.outcome).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(result.output).contains("License report: 3 modules from the license metadata cache, 0 modules read")
+
+        val fsmFile = testDir.resolve("build/fsm/testFsmWithLicenses-1.0-SNAPSHOT.fsm")
+        ZipFile(fsmFile.toFile()).use { zipFile ->
+            val expectedLicenses = javaClass.getResourceAsStream("/licenses/fsmdependency_licenses.csv")?.use {
+                it.reader().readText()
+            }
+            val licenseReport = zipFile.getEntry("META-INF/licenses.csv")
+            zipFile.getInputStream(licenseReport).use {
+                assertThat(it.reader().readText()).isEqualToNormalizingNewlines(expectedLicenses)
+            }
+
+            assertThat(zipFile.getEntry("META-INF/licenses/jackson-databind-2.10.0.jar/LICENSE.txt")).isNotNull
+            assertThat(zipFile.getEntry("META-INF/licenses/jackson-core-2.10.0.jar/LICENSE.txt")).isNotNull
+            assertThat(zipFile.getEntry("META-INF/licenses/jackson-annotations-2.10.0.jar/LICENSE.txt")).isNotNull
+        }
+    }
+
     @Test
     fun `webApp licenses`() {
         val resourcesUrl = FSMLicenseTest::class.java.classLoader.getResource("webapp-project")
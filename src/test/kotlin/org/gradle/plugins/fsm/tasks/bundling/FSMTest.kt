@@ -13,10 +13,12 @@ import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.F
 import org.gradle.plugins.fsm.configurations.FSMConfigurationsPlugin.Companion.FS_SERVER_COMPILE_CONFIGURATION_NAME
 import org.gradle.plugins.fsm.configurations.MinMaxVersion
 import org.gradle.plugins.fsm.configurations.fsDependency
+import org.gradle.plugins.fsm.metrics.PhaseMetrics
 import org.gradle.plugins.fsm.util.TestProjectUtils.defineArtifactoryForProject
 import org.gradle.testfixtures.ProjectBuilder
 import org.gradle.testkit.runner.GradleRunner
 import org.gradle.testkit.runner.TaskOutcome
+import org.json.JSONObject
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.io.TempDir
@@ -642,6 +644,189 @@ class FSMTest {
     }
 
 
+    @Test
+    fun `nested archives are stored and other entries are deflated`() {
+        copyTestJar()
+        fsm.get().execute()
+
+        withFsmFile { zipFile ->
+            val jarEntry = zipFile.getEntry("lib/${jarFileName()}")
+            assertThat(jarEntry).isNotNull
+            assertThat(jarEntry.method).isEqualTo(ZipEntry.STORED)
+            assertThat(zipFile.getEntry("META-INF/MANIFEST.MF").method).isEqualTo(ZipEntry.DEFLATED)
+            assertThat(zipFile.getEntry(FSM.MODULE_DESCRIPTOR_PATH).method).isEqualTo(ZipEntry.DEFLATED)
+        }
+    }
+
+    @Test
+    fun `entry compression is configurable`() {
+        val pluginExtension = project.extensions.getByType(FSMPluginExtension::class.java)
+        pluginExtension.entryCompression = mapOf("lib/**" to 9, "META-INF/*.xml" to FSMPluginExtension.STORED)
+        copyTestJar()
+        fsm.get().execute()
+
+        withFsmFile { zipFile ->
+            assertThat(zipFile.getEntry("lib/${jarFileName()}").method).isEqualTo(ZipEntry.DEFLATED)
+            assertThat(zipFile.getEntry(FSM.MODULE_DESCRIPTOR_PATH).method).isEqualTo(ZipEntry.STORED)
+        }
+        assertThat(moduleXml()).contains("<module")
+    }
+
+    @Test
+    fun `changing entry compression reruns the FSM task`() {
+        testDir.resolve("settings.gradle.kts").writeText("""rootProject.name = "FSMTest"""")
+        val buildScript = $$"""
+                plugins {
+                    id("de.espirit.firstspirit-module")
+                }
+
+                repositories {
+                    maven(url = "https://artifactory.e-spirit.de/artifactory/repo") {
+                        credentials {
+                            username = "${System.getProperty("artifactory_username")}"
+                            password = "${System.getProperty("artifactory_password")}"
+                        }
+                    }
+                }
+
+                version = "7.0.3"
+
+                firstSpiritModule {
+                    entryCompression = mapOf("**/*.xml" to COMPRESSION)
+                }
+            """.trimIndent()
+        testDir.resolve("build.gradle.kts").writeText(buildScript.replace("COMPRESSION", "9"))
+        assertThat(buildFsm()).isEqualTo(TaskOutcome.SUCCESS)
+        assertThat(buildFsm()).isEqualTo(TaskOutcome.UP_TO_DATE)
+
+        testDir.resolve("build.gradle.kts").writeText(buildScript.replace("COMPRESSION", "0"))
+        assertThat(buildFsm()).isEqualTo(TaskOutcome.SUCCESS)
+
+        ZipFile(testDir.resolve("build/fsm/FSMTest-7.0.3.fsm")).use { zipFile ->
+            assertThat(zipFile.getEntry(FSM.MODULE_DESCRIPTOR_PATH).method).isEqualTo(ZipEntry.STORED)
+        }
+    }
+
+
+    @Test
+    fun `archive is updated incrementally`() {
+        project.extensions.getByType(FSMPluginExtension::class.java).incrementalArchive = true
+        val fsmResourcesProjectFolder = project.file("src/main/fsm-resources").toPath()
+        Files.createDirectories(fsmResourcesProjectFolder)
+        fsmResourcesProjectFolder.resolve("unchanged.txt").writeText("Unchanged")
+        fsmResourcesProjectFolder.resolve("changed.txt").writeText("Before")
+        copyTestJar()
+        fsm.get().execute()
+
+        fsmResourcesProjectFolder.resolve("changed.txt").writeText("After")
+        fsmResourcesProjectFolder.resolve("added.txt").writeText("Added")
+        fsm.get().execute()
+
+        // The library and the unchanged resource are copied from the previous archive
+        assertThat(fsm.get().archiveWriteResult!!.reusedEntries).isGreaterThanOrEqualTo(2)
+
+        withFsmFile { zipFile ->
+            assertThat(zipFile.getInputStream(zipFile.getEntry("unchanged.txt")).reader().readText()).isEqualTo("Unchanged")
+            assertThat(zipFile.getInputStream(zipFile.getEntry("changed.txt")).reader().readText()).isEqualTo("After")
+            assertThat(zipFile.getInputStream(zipFile.getEntry("added.txt")).reader().readText()).isEqualTo("Added")
+            assertThat(zipFile.getEntry("lib/${jarFileName()}")).isNotNull
+        }
+        assertThat(moduleXml()).contains("added.txt")
+    }
+
+    @Test
+    fun `identical libraries are only added once`() {
+        project.extensions.getByType(FSMPluginExtension::class.java).deduplicateLibraries = true
+        val jarFileNames = listOf("a", "b").map { name ->
+            val subprojectDir = testDir.resolve(name)
+            subprojectDir.mkdirs()
+            val subproject = ProjectBuilder.builder().withName(name).withProjectDir(subprojectDir).withParent(project).build()
+            subproject.plugins.apply("java")
+            subproject.version = "1.0.0"
+            project.dependencies.add(FS_MODULE_COMPILE_CONFIGURATION_NAME, subproject)
+            defineArtifactoryForProject(subproject)
+
+            // Both subprojects have the same jar content
+            val jar = subproject.tasks.getByName(JavaPlugin.JAR_TASK_NAME) as Jar
+            val archiveFile = jar.archiveFile.get().asFile.toPath()
+            Files.createDirectories(archiveFile.parent)
+            Files.copy(Paths.get(System.getProperty("testJar")), archiveFile)
+            jar.archiveFileName.get()
+        }
+
+        fsm.get().execute()
+
+        val libraries = mutableListOf<String>()
+        withFsmFile { zipFile ->
+            libraries.addAll(jarFileNames.filter { zipFile.getEntry("lib/$it") != null })
+        }
+        assertThat(libraries).hasSize(1)
+        val removedLibrary = (jarFileNames - libraries.toSet()).single()
+        val moduleXml = moduleXml()
+        assertThat(moduleXml).contains(">lib/${libraries.single()}<")
+        assertThat(moduleXml).doesNotContain("lib/$removedLibrary")
+    }
+
+
+    @Test
+    fun `duplicate license texts are removed`() {
+        val pluginExtension = project.extensions.getByType(FSMPluginExtension::class.java)
+        pluginExtension.deduplicateLicenseTexts = true
+        val licensesDir = testDir.resolve("build/${FSM.LICENSES_DIR_NAME}")
+        licensesDir.resolve("a-1.0.jar/LICENSE").apply { parentFile.mkdirs() }.writeText("Apache License 2.0")
+        licensesDir.resolve("b-1.0.jar/LICENSE.txt").apply { parentFile.mkdirs() }.writeText("Apache License 2.0")
+        licensesDir.resolve("c-1.0.jar/LICENSE.txt").apply { parentFile.mkdirs() }.writeText("MIT License")
+        fsm.get().execute()
+
+        withFsmFile { zipFile ->
+            assertThat(zipFile.getEntry("META-INF/licenses/a-1.0.jar/LICENSE.txt")).isNotNull
+            assertThat(zipFile.getEntry("META-INF/licenses/b-1.0.jar/LICENSE.txt")).isNull()
+            assertThat(zipFile.getEntry("META-INF/licenses/c-1.0.jar/LICENSE.txt")).isNotNull
+            assertThat(zipFile.getInputStream(zipFile.getEntry(FSM.LICENSE_DUPLICATES_PATH)).reader().readText()).isEqualTo(
+                "\"license\",\"identicalTo\"\r\n" +
+                "\"META-INF/licenses/b-1.0.jar/LICENSE.txt\",\"META-INF/licenses/a-1.0.jar/LICENSE.txt\"\r\n")
+        }
+    }
+
+
+    @Test
+    fun `license texts are not deduplicated by default`() {
+        val licensesDir = testDir.resolve("build/${FSM.LICENSES_DIR_NAME}")
+        licensesDir.resolve("a-1.0.jar/LICENSE.txt").apply { parentFile.mkdirs() }.writeText("Apache License 2.0")
+        licensesDir.resolve("b-1.0.jar/LICENSE.txt").apply { parentFile.mkdirs() }.writeText("Apache License 2.0")
+        fsm.get().execute()
+
+        withFsmFile { zipFile ->
+            assertThat(zipFile.getEntry("META-INF/licenses/a-1.0.jar/LICENSE.txt")).isNotNull
+            assertThat(zipFile.getEntry("META-INF/licenses/b-1.0.jar/LICENSE.txt")).isNotNull
+            assertThat(zipFile.getEntry(FSM.LICENSE_DUPLICATES_PATH)).isNull()
+        }
+    }
+
+
+    @Test
+    fun `phase metrics are written`() {
+        copyTestJar()
+        fsm.get().execute()
+
+        val metricsFile = testDir.resolve("build/fsm/metrics/${FSMPlugin.FSM_TASK_NAME}.json")
+        assertThat(metricsFile).isFile
+        val phases = JSONObject(metricsFile.readText()).getJSONArray("phases")
+            .map { (it as JSONObject).getString("name") }
+        assertThat(phases).contains(PhaseMetrics.ARCHIVE_ASSEMBLY, PhaseMetrics.COMPONENT_SCAN, PhaseMetrics.XML_RENDERING,
+            PhaseMetrics.REFORMAT, PhaseMetrics.ARCHIVE_WRITING)
+    }
+
+
+    private fun buildFsm(): TaskOutcome? {
+        val result = GradleRunner.create()
+            .withProjectDir(testDir)
+            .withArguments(FSMPlugin.FSM_TASK_NAME)
+            .withPluginClasspath()
+            .build()
+        return result.task(':' + FSMPlugin.FSM_TASK_NAME)?.outcome
+    }
+
     private fun copyTestJar() {
         val testJar = Paths.get(System.getProperty("testJar"))
         val jar = project.tasks.getByName(JavaPlugin.JAR_TASK_NAME) as Jar
@@ -651,6 +836,11 @@ class FSMTest {
     }
 
 
+    private fun jarFileName(): String {
+        return (project.tasks.getByName(JavaPlugin.JAR_TASK_NAME) as Jar).archiveFileName.get()
+    }
+
+
     private fun moduleXml(): String {
         val fsmFile = testDir.resolve("build").resolve("fsm").resolve(fsm.get().archiveFile.get().asFile.name)
         return moduleXml(fsmFile)
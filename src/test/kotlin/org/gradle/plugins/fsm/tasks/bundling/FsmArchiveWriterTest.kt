@@ -0,0 +1,162 @@
+package org.gradle.plugins.fsm.tasks.bundling
+
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.plugins.fsm.FSMPluginExtension
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+class FsmArchiveWriterTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    private val writer = FsmArchiveWriter(EntryCompression(FSMPluginExtension.NESTED_ARCHIVES_STORED))
+
+    @Test
+    fun `entries are compressed according to pattern`() {
+        val source = assembledArchive("lib/test.jar" to "jar", "test.txt" to "text")
+        val target = testDir.resolve("test.fsm")
+
+        val result = writer.write(source, target, mapOf("META-INF/module-isolated.xml" to "<module/>".toByteArray()))
+
+        assertThat(result.storedEntries).isEqualTo(1)
+        assertThat(result.deflatedEntries).isEqualTo(2)
+        assertThat(result.reusedEntries).isZero
+        ZipFile(target).use { zipFile ->
+            assertThat(zipFile.getEntry("lib/test.jar").method).isEqualTo(ZipEntry.STORED)
+            assertThat(zipFile.getEntry("test.txt").method).isEqualTo(ZipEntry.DEFLATED)
+            assertThat(zipFile.content("META-INF/module-isolated.xml")).isEqualTo("<module/>")
+        }
+    }
+
+    @Test
+    fun `generated entries replace assembled entries`() {
+        val source = assembledArchive("META-INF/module-isolated.xml" to "<old/>")
+        val target = testDir.resolve("test.fsm")
+
+        writer.write(source, target, mapOf("META-INF/module-isolated.xml" to "<module/>".toByteArray()))
+
+        ZipFile(target).use { zipFile ->
+            assertThat(zipFile.size()).isEqualTo(1)
+            assertThat(zipFile.content("META-INF/module-isolated.xml")).isEqualTo("<module/>")
+        }
+    }
+
+    @Test
+    fun `unchanged entries are reused from previous archive`() {
+        val previous = testDir.resolve("previous.fsm")
+        writer.write(assembledArchive("unchanged.txt" to "unchanged", "changed.txt" to "before"), previous, emptyMap())
+
+        val target = testDir.resolve("test.fsm")
+        val source = assembledArchive("unchanged.txt" to "unchanged", "changed.txt" to "after", "added.txt" to "added")
+        val result = writer.write(source, target, emptyMap(), previous)
+
+        assertThat(result.reusedEntries).isEqualTo(1)
+        assertThat(result.deflatedEntries).isEqualTo(3)
+        ZipFile(target).use { zipFile ->
+            assertThat(zipFile.content("unchanged.txt")).isEqualTo("unchanged")
+            assertThat(zipFile.content("changed.txt")).isEqualTo("after")
+            assertThat(zipFile.content("added.txt")).isEqualTo("added")
+        }
+    }
+
+    @Test
+    fun `invalid previous archive is ignored`() {
+        val previous = testDir.resolve("previous.fsm")
+        previous.writeText("no archive")
+
+        val target = testDir.resolve("test.fsm")
+        val result = writer.write(assembledArchive("test.txt" to "text"), target, emptyMap(), previous)
+
+        assertThat(result.reusedEntries).isZero
+        ZipFile(target).use { assertThat(it.content("test.txt")).isEqualTo("text") }
+    }
+
+    @Test
+    fun `find duplicates by content`() {
+        val source = assembledArchive("lib/a-1.0.jar" to "a", "lib/b-1.0.jar" to "b", "lib/a-1.0-copy.jar" to "a",
+            "lib/a-1.0-other.jar" to "a", "a.txt" to "a")
+
+        val duplicates = writer.findDuplicates(source, "lib/")
+
+        assertThat(duplicates).containsExactlyInAnyOrderEntriesOf(mapOf(
+            "lib/a-1.0-copy.jar" to "lib/a-1.0.jar",
+            "lib/a-1.0-other.jar" to "lib/a-1.0.jar"))
+    }
+
+    @Test
+    fun `excluded entries are not written`() {
+        val source = assembledArchive("lib/a-1.0.jar" to "a", "lib/a-1.0-copy.jar" to "a")
+        val target = testDir.resolve("test.fsm")
+
+        writer.write(source, target, emptyMap(), excludedEntries = setOf("lib/a-1.0-copy.jar"))
+
+        ZipFile(target).use { zipFile ->
+            assertThat(zipFile.getEntry("lib/a-1.0.jar")).isNotNull
+            assertThat(zipFile.getEntry("lib/a-1.0-copy.jar")).isNull()
+        }
+    }
+
+    @Test
+    fun `reproducible archive is sorted and has constant timestamps`() {
+        val reproducibleWriter = FsmArchiveWriter(EntryCompression(FSMPluginExtension.NESTED_ARCHIVES_STORED), true)
+        val source = assembledArchive("b.txt" to "b", "META-INF/MANIFEST.MF" to "Manifest-Version: 1.0", "a.txt" to "a")
+        val target = testDir.resolve("test.fsm")
+
+        reproducibleWriter.write(source, target, mapOf("META-INF/module-isolated.xml" to "<module/>".toByteArray()))
+
+        ZipFile(target).use { zipFile ->
+            assertThat(zipFile.entries().toList().map { it.name })
+                .containsExactly("META-INF/MANIFEST.MF", "a.txt", "b.txt", "META-INF/module-isolated.xml")
+            assertThat(zipFile.getEntry("META-INF/module-isolated.xml").time)
+                .isEqualTo(FsmArchiveWriter.CONSTANT_TIME_FOR_ZIP_ENTRIES)
+        }
+    }
+
+    @Test
+    fun `reproducible archive is identical when updated incrementally`() {
+        val reproducibleWriter = FsmArchiveWriter(EntryCompression(FSMPluginExtension.NESTED_ARCHIVES_STORED), true)
+        val previous = testDir.resolve("previous.fsm")
+        reproducibleWriter.write(assembledArchive("a.txt" to "a", "b.txt" to "before"), previous, emptyMap())
+
+        val source = assembledArchive("a.txt" to "a", "b.txt" to "after")
+        val fullArchive = testDir.resolve("full.fsm")
+        val updatedArchive = testDir.resolve("updated.fsm")
+        reproducibleWriter.write(source, fullArchive, emptyMap())
+        val result = reproducibleWriter.write(source, updatedArchive, emptyMap(), previous)
+
+        assertThat(result.reusedEntries).isEqualTo(1)
+        assertThat(updatedArchive.readBytes()).isEqualTo(fullArchive.readBytes())
+    }
+
+    /**
+     * Creates an archive with stored entries, like the one assembled by Gradle for the FSM task
+     */
+    private fun assembledArchive(vararg entries: Pair<String, String>): File {
+        val file = File.createTempFile("assembled", ".zip", testDir)
+        ZipOutputStream(file.outputStream()).use { zip ->
+            for ((name, content) in entries) {
+                val bytes = content.toByteArray()
+                val entry = ZipEntry(name)
+                entry.time = FsmArchiveWriter.CONSTANT_TIME_FOR_ZIP_ENTRIES
+                entry.method = ZipEntry.STORED
+                entry.size = bytes.size.toLong()
+                entry.crc = CRC32().apply { update(bytes) }.value
+                zip.putNextEntry(entry)
+                zip.write(bytes)
+                zip.closeEntry()
+            }
+        }
+        return file
+    }
+
+    private fun ZipFile.content(name: String): String {
+        return getInputStream(getEntry(name)).use { it.reader().readText() }
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.gradle.plugins.fsm.tasks.bundling
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.gradle.api.GradleException
+import org.gradle.plugins.fsm.FSMPluginExtension
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+class FsmDeltaArchiveTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    @Test
+    fun `delta contains changed entries and descriptor`() {
+        val baseline = fsm("baseline.fsm", "lib/a.jar" to "a", "lib/b.jar" to "b", "removed.txt" to "removed",
+            FSM.MODULE_DESCRIPTOR_PATH to "<module/>")
+        val fsm = fsm("new.fsm", "lib/a.jar" to "a", "lib/b.jar" to "b2", "added.txt" to "added",
+            FSM.MODULE_DESCRIPTOR_PATH to "<module/>")
+        val delta = testDir.resolve("delta.zip")
+
+        val result = FsmDeltaArchive.create(baseline, fsm, delta)
+
+        assertThat(result.changedEntries).isEqualTo(3)
+        assertThat(result.unchangedEntries).isEqualTo(1)
+        assertThat(result.removedEntries).isEqualTo(1)
+        ZipFile(delta).use { zipFile ->
+            val names = zipFile.entries().toList().map { it.name }
+            assertThat(names).contains("lib/b.jar", "added.txt", FSM.MODULE_DESCRIPTOR_PATH)
+            assertThat(names).doesNotContain("lib/a.jar", "removed.txt")
+            assertThat(zipFile.content(FsmDeltaArchive.INDEX_DIR + "removed.txt")).isEqualTo("removed.txt")
+        }
+    }
+
+    @Test
+    fun `apply delta reconstructs FSM`() {
+        val baseline = fsm("baseline.fsm", "lib/a.jar" to "a", "lib/b.jar" to "b", "removed.txt" to "removed",
+            FSM.MODULE_DESCRIPTOR_PATH to "<module/>")
+        val fsm = fsm("new.fsm", "lib/a.jar" to "a", "lib/b.jar" to "b2", "added.txt" to "added",
+            FSM.MODULE_DESCRIPTOR_PATH to "<module version=\"2\"/>")
+        val delta = testDir.resolve("delta.zip")
+        val reconstructed = testDir.resolve("reconstructed.fsm")
+
+        FsmDeltaArchive.create(baseline, fsm, delta)
+        FsmDeltaArchive.apply(baseline, delta, reconstructed)
+
+        assertThat(reconstructed.readBytes()).isEqualTo(fsm.readBytes())
+    }
+
+    @Test
+    fun `delta contains entries with changed timestamp`() {
+        val baseline = fsm("baseline.fsm", "a.txt" to "a", "b.txt" to "b", time = ENTRY_TIME)
+        val fsm = fsm("new.fsm", "a.txt" to "a", "b.txt" to "b", time = ENTRY_TIME + 60_000)
+        val delta = testDir.resolve("delta.zip")
+        val reconstructed = testDir.resolve("reconstructed.fsm")
+
+        val result = FsmDeltaArchive.create(baseline, fsm, delta)
+        FsmDeltaArchive.apply(baseline, delta, reconstructed)
+
+        assertThat(result.changedEntries).isEqualTo(2)
+        assertThat(result.unchangedEntries).isZero
+        assertThat(reconstructed.readBytes()).isEqualTo(fsm.readBytes())
+    }
+
+    @Test
+    fun `delta cannot be applied to other baseline`() {
+        val baseline = fsm("baseline.fsm", "a.txt" to "a")
+        val otherBaseline = fsm("other.fsm", "a.txt" to "other")
+        val fsm = fsm("new.fsm", "a.txt" to "a", "b.txt" to "b")
+        val delta = testDir.resolve("delta.zip")
+
+        FsmDeltaArchive.create(baseline, fsm, delta)
+
+        assertThatThrownBy { FsmDeltaArchive.apply(otherBaseline, delta, testDir.resolve("reconstructed.fsm")) }
+            .isInstanceOf(GradleException::class.java)
+            .hasMessageContaining("was not created for baseline")
+    }
+
+    private fun fsm(name: String, vararg entries: Pair<String, String>, time: Long? = null): File {
+        val assembled = testDir.resolve("$name.zip")
+        ZipOutputStream(assembled.outputStream()).use { zip ->
+            for ((entryName, content) in entries) {
+                val bytes = content.toByteArray()
+                val entry = ZipEntry(entryName)
+                entry.method = ZipEntry.STORED
+                entry.size = bytes.size.toLong()
+                entry.crc = CRC32().apply { update(bytes) }.value
+                time?.let { entry.time = it }
+                zip.putNextEntry(entry)
+                zip.write(bytes)
+                zip.closeEntry()
+            }
+        }
+
+        val fsm = testDir.resolve(name)
+        FsmArchiveWriter(EntryCompression(FSMPluginExtension.NESTED_ARCHIVES_STORED), true).write(assembled, fsm, emptyMap())
+        return fsm
+    }
+
+    private fun ZipFile.content(name: String): String {
+        return getInputStream(getEntry(name)).use { it.reader().readText() }
+    }
+
+    companion object {
+        private const val ENTRY_TIME = 1_700_000_000_000L
+    }
+
+}
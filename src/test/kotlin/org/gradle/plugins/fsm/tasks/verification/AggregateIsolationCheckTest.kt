@@ -0,0 +1,117 @@
+package org.gradle.plugins.fsm.tasks.verification
+
+import com.sun.net.httpserver.HttpServer
+import de.espirit.mavenplugins.fsmchecker.ComplianceLevel
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.gradle.api.GradleException
+import org.gradle.api.Project
+import org.gradle.plugins.fsm.isolationcheck.JUnitXMLFormatHandler
+import org.gradle.plugins.fsm.isolationcheck.WebServiceConnector
+import org.gradle.plugins.fsm.util.TestHttpServer
+import org.gradle.plugins.fsm.util.respond
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class AggregateIsolationCheckTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    private lateinit var project: Project
+
+    private lateinit var server: HttpServer
+
+    private val uploads = mutableListOf<List<String>>()
+
+    @BeforeEach
+    fun setUp() {
+        project = ProjectBuilder.builder().withProjectDir(testDir).build()
+        server = TestHttpServer.start()
+        server.createContext("/rest/upload") { exchange ->
+            val body = exchange.requestBody.use { it.readBytes() }.toString(Charsets.ISO_8859_1)
+            uploads.add(listOf("first.fsm", "second.fsm").filter { body.contains("filename=\"$it\"") })
+            exchange.respond(200, "")
+        }
+        server.createContext("/rest/analyze") {
+            it.respond(200, """{"failedModules": [], "checkedFsmFiles": []}""")
+        }
+        // Only the first FSM uses internal classes
+        server.createContext("/rest/categories") {
+            val count = if ("first.fsm" in uploads.last()) 1 else 0
+            it.respond(200, """[{"category": "NON_API_USAGE", "description": "Non-API usage", "count": $count}]""")
+        }
+        server.createContext("/rest/classesforcategory") {
+            it.respond(200, """[{"name": "de.espirit.Internal", "numberOfUsages": 1}]""")
+        }
+    }
+
+    @AfterEach
+    fun tearDown() {
+        server.stop(0)
+    }
+
+    @Test
+    fun `category violations are only reported for the FSM causing them`() {
+        val task = aggregateIsolationCheck(mapOf(":first" to settings(), ":second" to settings()))
+
+        assertThatThrownBy { task.check() }
+            .isInstanceOf(GradleException::class.java)
+            .hasMessageStartingWith("Isolation check failed for 1 of 2 modules!\n - :first: ")
+
+        assertThat(uploads).containsExactly(listOf("first.fsm", "second.fsm"), listOf("first.fsm"), listOf("second.fsm"))
+        assertThat(report(":first").readText()).contains("de.espirit.Internal")
+        assertThat(report(":second").readText()).doesNotContain("de.espirit.Internal")
+    }
+
+    @Test
+    fun `FSMs with different settings are checked separately`() {
+        val task = aggregateIsolationCheck(mapOf(
+            ":first" to settings(complianceLevel = ComplianceLevel.MINIMAL),
+            ":second" to settings()))
+
+        task.check()
+
+        assertThat(uploads).containsExactly(listOf("first.fsm"), listOf("second.fsm"))
+        assertThat(report(":first")).exists()
+        assertThat(report(":second")).exists()
+    }
+
+    private fun aggregateIsolationCheck(settings: Map<String, AggregateIsolationCheck.DetectorSettings>): AggregateIsolationCheck {
+        return project.tasks.register("checkAggregateIsolation", AggregateIsolationCheck::class.java) {
+            settings.keys.forEach { projectPath ->
+                val name = projectPath.removePrefix(":")
+                fsmFiles.put(projectPath, fsm("$name.fsm"))
+                buildDirectories.put(projectPath, testDir.resolve("$name/build"))
+                responseTimeouts.put(projectPath, WebServiceConnector.DEFAULT_RESPONSE_TIMEOUT)
+            }
+            detectorSettings.putAll(settings)
+            reportDirectory.set(testDir.resolve("build"))
+        }.get()
+    }
+
+    private fun settings(complianceLevel: ComplianceLevel = ComplianceLevel.DEFAULT): AggregateIsolationCheck.DetectorSettings {
+        return AggregateIsolationCheck.DetectorSettings("http://localhost:${server.address.port}", "5.2.2403",
+            complianceLevel, 61, emptyList(), emptyList(), null, null)
+    }
+
+    private fun report(projectPath: String): File {
+        return testDir.resolve("${projectPath.removePrefix(":")}/build/${JUnitXMLFormatHandler.JUNIT_REPORTS_DIR}/TEST-complianceCheck.xml")
+    }
+
+    private fun fsm(name: String): File {
+        val fsm = testDir.resolve(name)
+        ZipOutputStream(fsm.outputStream()).use { zip ->
+            zip.putNextEntry(ZipEntry("lib/${name.removeSuffix(".fsm")}.jar"))
+            zip.closeEntry()
+        }
+        return fsm
+    }
+
+}
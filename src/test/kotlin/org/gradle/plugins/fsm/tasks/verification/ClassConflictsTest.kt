@@ -0,0 +1,147 @@
+package org.gradle.plugins.fsm.tasks.verification
+
+import org.assertj.core.api.Assertions.assertThat
+import org.gradle.plugins.fsm.tasks.verification.ClassConflicts.ClassLoaderScope
+import org.gradle.plugins.fsm.tasks.verification.ClassConflicts.ConflictingClass
+import org.gradle.plugins.fsm.util.TestProjectUtils.fsm
+import org.gradle.plugins.fsm.util.TestProjectUtils.zip
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.redundent.kotlin.xml.parse
+import java.io.File
+import java.util.zip.CRC32
+import java.util.zip.ZipFile
+
+class ClassConflictsTest {
+
+    @TempDir
+    private lateinit var testDir: File
+
+    private val classConflicts = ClassConflicts()
+
+    @Test
+    fun `scopes of the descriptor`() {
+        val descriptor = parse("""
+            <module>
+                <name>Test</name>
+                <version>1.0</version>
+                <components>
+                    <project-app>
+                        <name>TestProjectApp</name>
+                        <resources>
+                            <resource scope="module">lib/project-app.jar</resource>
+                        </resources>
+                    </project-app>
+                    <web-app>
+                        <name>TestWebApp</name>
+                        <web-resources>
+                            <resource>lib/web.jar</resource>
+                        </web-resources>
+                    </web-app>
+                    <library>
+                        <name>TestLibrary</name>
+                        <resources>
+                            <resource scope="server">lib/library.jar</resource>
+                        </resources>
+                    </library>
+                </components>
+                <resources>
+                    <resource scope="server">lib/server.jar</resource>
+                    <resource scope="module">lib/module.jar</resource>
+                    <resource>lib/unscoped.jar</resource>
+                </resources>
+            </module>
+        """.trimIndent().byteInputStream())
+
+        val scopes = ClassConflicts.scopes(descriptor)
+
+        assertThat(scopes.map { it.name }).containsExactly("server", "module", "web-app 'TestWebApp'",
+            "library 'TestLibrary'")
+        assertThat(scopes[0].jars).containsExactly("lib/server.jar", "lib/unscoped.jar")
+        assertThat(scopes[1].jars).containsExactly("lib/project-app.jar", "lib/module.jar")
+        assertThat(scopes[1].parentJars).containsExactly("lib/server.jar", "lib/unscoped.jar")
+        assertThat(scopes[2].jars).containsExactly("lib/web.jar")
+        assertThat(scopes[3].jars).containsExactly("lib/library.jar")
+    }
+
+    @Test
+    fun `classes with different content`() {
+        val fsm = fsm(testDir,
+            "lib/library-1.0.jar" to jar("com/example/A.class" to "A 1.0", "com/example/B.class" to "B"),
+            "lib/library-2.0.jar" to jar("com/example/A.class" to "A 2.0", "com/example/B.class" to "B")
+        )
+
+        val findings = ZipFile(fsm).use {
+            classConflicts.check(it, listOf(ClassLoaderScope("server", listOf("lib/library-1.0.jar", "lib/library-2.0.jar"))))
+        }
+
+        val finding = findings.single()
+        assertThat(finding.isConflict).isTrue
+        assertThat(finding.firstJar).isEqualTo("lib/library-1.0.jar")
+        assertThat(finding.secondJar).isEqualTo("lib/library-2.0.jar")
+        assertThat(finding.conflictingClassCount).isEqualTo(1)
+        assertThat(finding.identicalClassCount).isEqualTo(1)
+        assertThat(finding.conflictingClasses).containsExactly(ConflictingClass("com.example.A", crc("A 1.0"), crc("A 2.0")))
+        assertThat(finding.toString()).isEqualTo("server: lib/library-1.0.jar and lib/library-2.0.jar contain 1 classes" +
+                " with different content, e.g. com.example.A (%08x, %08x)".format(crc("A 1.0"), crc("A 2.0")))
+    }
+
+    @Test
+    fun `split packages`() {
+        val fsm = fsm(testDir,
+            "lib/api.jar" to jar("com/example/Api.class" to "Api"),
+            "lib/impl.jar" to jar("com/example/Impl.class" to "Impl", "com/example/impl/Helper.class" to "Helper")
+        )
+
+        val findings = ZipFile(fsm).use {
+            classConflicts.check(it, listOf(ClassLoaderScope("web-app 'Test'", listOf("lib/api.jar", "lib/impl.jar"))))
+        }
+
+        val finding = findings.single()
+        assertThat(finding.isConflict).isFalse
+        assertThat(finding.splitPackages).containsExactly("com.example")
+    }
+
+    @Test
+    fun `conflicts of parent classloader are reported once`() {
+        val fsm = fsm(testDir,
+            "lib/server-1.0.jar" to jar("com/example/A.class" to "A 1.0"),
+            "lib/server-2.0.jar" to jar("com/example/A.class" to "A 2.0"),
+            "lib/module.jar" to jar("com/example/module/M.class" to "M")
+        )
+        val serverJars = listOf("lib/server-1.0.jar", "lib/server-2.0.jar")
+
+        val findings = ZipFile(fsm).use {
+            classConflicts.check(it, listOf(ClassLoaderScope("server", serverJars),
+                ClassLoaderScope("module", listOf("lib/module.jar"), serverJars)))
+        }
+
+        assertThat(findings.map { it.scope }).containsExactly("server")
+    }
+
+    @Test
+    fun `separate classloaders do not conflict`() {
+        val fsm = fsm(testDir,
+            "lib/library-1.0.jar" to jar("com/example/A.class" to "A 1.0"),
+            "lib/library-2.0.jar" to jar("com/example/A.class" to "A 2.0", "META-INF/versions/21/com/example/B.class" to "B"),
+            "lib/multi-release.jar" to jar("META-INF/versions/21/com/example/A.class" to "A 21", "module-info.class" to "")
+        )
+
+        val findings = ZipFile(fsm).use {
+            classConflicts.check(it, listOf(
+                ClassLoaderScope("web-app 'First'", listOf("lib/library-1.0.jar", "lib/multi-release.jar")),
+                ClassLoaderScope("web-app 'Second'", listOf("lib/library-2.0.jar", "lib/missing.jar"))))
+        }
+
+        assertThat(findings).isEmpty()
+    }
+
+    private fun crc(content: String): Int {
+        return CRC32().apply { update(content.toByteArray()) }.value.toInt()
+    }
+
+    private fun jar(vararg entries: Pair<String, String>): ByteArray {
+        return zip(*entries.map { (name, content) -> name to content.toByteArray() }.toTypedArray())
+    }
+
+}
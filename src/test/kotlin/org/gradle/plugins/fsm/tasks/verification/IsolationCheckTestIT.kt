@@ -325,7 +325,7 @@ class IsolationCheckTestIT {
 
 
     private fun writeFSM(jarFile: Path) {
-        val fsmFile = fsm.outputs.files.singleFile
+        val fsmFile = fsm.archiveFile.get().asFile
         fsmFile.toPath().parent.createDirectories()
 
         ZipOutputStream(fsmFile.outputStream()).use {
@@ -1,8 +1,11 @@
 package org.gradle.plugins.fsm.tasks.verification
 
 import org.assertj.core.api.AbstractThrowableAssert
+import org.assertj.core.api.Assertions.assertThat
 import org.assertj.core.api.Assertions.assertThatCode
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
 
 /**
  * Test cases for [LicenseFileValidator]. In each instance, we prepare a CSV string containing licenses
@@ -60,6 +63,62 @@ class LicenseFileValidatorTest {
         assertThatValidation(licenses).hasMessage("License file '$LICENSE_FILE_NAME', line 1: Invalid Entry: ,,,,")
     }
 
+    @Test
+    fun `quoted line break and comma`() {
+        val licenses = "$HEADER\n\"artifact:with:version\",\"https://example.com\",\"License,\nwith line break\",\"\"\r\n"
+        assertThatValidation(licenses).doesNotThrowAnyException()
+    }
+
+    @Test
+    fun `unterminated quote`() {
+        val licenses = "$HEADER\n\"artifact:with:version\",\"https://example.com"
+        assertThatValidation(licenses).hasMessage("License file '$LICENSE_FILE_NAME' cannot be parsed: Unterminated string literal!")
+    }
+
+    @Test
+    fun `blank line`() {
+        val licenses = "$HEADER\n\n\"artifact:with:version\",\"https://example.com\",\"License\",\"\"\n"
+        assertThatValidation(licenses).hasMessage("License file '$LICENSE_FILE_NAME', line 1: Invalid Entry: ")
+    }
+
+    @Test
+    fun `whitespace after closing quote`() {
+        val licenses = "\"artifact\" ,\"moduleUrl\",\"moduleLicense\",\"moduleLicenseUrl\""
+        assertThatValidation(licenses)
+            .hasMessage("License file '$LICENSE_FILE_NAME': Invalid Header: artifact , moduleUrl, moduleLicense, moduleLicenseUrl")
+    }
+
+    @Test
+    fun `repair quote escaping`(@TempDir testDir: File) {
+        val licenseFile = testDir.resolve("licenses.csv")
+        licenseFile.writeText("""
+            $HEADER,
+            "tablelayout:TableLayout:20050920","https://tablelayout.dev.java.net","dev.java.net \"Other\" License","https://tablelayout.dev.java.net/servlets/LicenseDetails?licenseID=18",
+            "backslash:backslash:1.0","https://example.com","Backslash \\\"License\" Text","",
+        """.trimIndent() + "\n")
+
+        LicenseFileValidator.repairLicenseCsv(licenseFile)
+
+        assertThat(licenseFile.readText()).isEqualTo("""
+            $HEADER,
+            "tablelayout:TableLayout:20050920","https://tablelayout.dev.java.net","dev.java.net ""Other"" License","https://tablelayout.dev.java.net/servlets/LicenseDetails?licenseID=18",
+            "backslash:backslash:1.0","https://example.com","Backslash \\""License"" Text","",
+        """.trimIndent() + "\n")
+        assertThat(testDir.list()).containsExactly("licenses.csv")
+    }
+
+    @Test
+    fun `repair invalid license file`(@TempDir testDir: File) {
+        val licenseFile = testDir.resolve("licenses.csv")
+        val licenses = "$HEADER,\n\"artifact:with:version\",\"https://example.com\"\n"
+        licenseFile.writeText(licenses)
+
+        assertThatCode { LicenseFileValidator.repairLicenseCsv(licenseFile) }
+            .hasMessage("License file '$licenseFile', line 1: Invalid Entry: artifact:with:version, https://example.com")
+        assertThat(licenseFile.readText()).isEqualTo(licenses)
+        assertThat(testDir.list()).containsExactly("licenses.csv")
+    }
+
     /**
      * Convenience method providing an assert for the validation method. You can check if an exception is present
      * with the [AbstractThrowableAssert.isNull] and [AbstractThrowableAssert.isNotNull] methods.
@@ -1,14 +1,17 @@
 package org.gradle.plugins.fsm.tasks.verification
 
 import com.github.jk1.license.task.ReportTask
+import org.assertj.core.api.Assertions.assertThat
 import org.assertj.core.api.Assertions.assertThatThrownBy
 import org.gradle.api.Project
 import org.gradle.api.tasks.TaskProvider
 import org.gradle.plugins.fsm.FSMPlugin
 import org.gradle.plugins.fsm.FSMPluginExtension
+import org.gradle.plugins.fsm.metrics.PhaseMetrics
 import org.gradle.plugins.fsm.tasks.bundling.FSM
 import org.gradle.plugins.fsm.util.TestProjectUtils
 import org.gradle.testfixtures.ProjectBuilder
+import org.json.JSONObject
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.io.TempDir
@@ -469,6 +472,49 @@ class ValidateDescriptorTest {
     }
 
 
+    @Test
+    fun `all violations are reported`() {
+        val descriptor = """
+            <module>
+                <name>Test</name>
+                <version>1.0</version>
+                
+                <resources>
+                    <resource name="my.test:first-resource">first-lib.jar</resource>
+                    <resource name="my.test:second-resource">second-lib.jar</resource>
+                </resources>
+                <components>
+                    <web-app>
+                        <name>TestWebApp</name>
+                        <web-xml>web/web.xml</web-xml>
+                    </web-app>
+                </components>
+            </module>
+        """.trimIndent()
+
+        assertThatThrownBy { validate(descriptor) }
+            .hasMessage("Module descriptor has 3 problems:\n" +
+                    " - File 'first-lib.jar' specified for resource 'my.test:first-resource' in global resources" +
+                    " but is not found in the FSM.\n" +
+                    " - File 'second-lib.jar' specified for resource 'my.test:second-resource' in global resources" +
+                    " but is not found in the FSM.\n" +
+                    " - web.xml file 'web/web.xml' not found for component of type 'web-app' with name" +
+                    " 'TestWebApp' in the FSM.")
+    }
+
+    @Test
+    fun `validation rules are measured`() {
+        buildFSM()
+        validateTask.validateDescriptor()
+
+        val metricsFile = testDir.resolve("build/fsm/metrics/${validateTask.name}.json")
+        val phases = JSONObject(metricsFile.readText()).getJSONArray("phases").map { it as JSONObject }
+        val resourcesPhase = phases.single { it.getString("name") == "${PhaseMetrics.VALIDATION_RULE_PREFIX}resources" }
+        assertThat(resourcesPhase.optBoolean("nested")).isTrue
+        assertThat(phases.single { it.getString("name") == PhaseMetrics.VALIDATION }.has("nested")).isFalse
+    }
+
+
     private fun validate(descriptor: String) {
         val moduleDirName = "src/main/resources"
         val moduleDir = testDir.resolve(moduleDirName)
@@ -0,0 +1,36 @@
+package org.gradle.plugins.fsm.util
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import java.net.InetSocketAddress
+import java.net.URI
+
+/**
+ * Local HTTP server standing in for the FSM Dependency Detector in tests. The detector endpoints are added with
+ * [HttpServer.createContext], the server must be stopped after the test.
+ */
+object TestHttpServer {
+
+    /**
+     * Starts a server on a free local port
+     */
+    fun start(): HttpServer {
+        return HttpServer.create(InetSocketAddress("localhost", 0), 0).apply { start() }
+    }
+
+}
+
+/**
+ * The URI of the server, e.g. the detector URL of a [org.gradle.plugins.fsm.isolationcheck.WebServiceConnector]
+ */
+val HttpServer.uri: URI
+    get() = URI("http://localhost:${address.port}/")
+
+/**
+ * Sends a response with the given status and body, without a body if it is empty
+ */
+fun HttpExchange.respond(status: Int, body: String) {
+    val bytes = body.toByteArray()
+    sendResponseHeaders(status, if (bytes.isEmpty()) -1 else bytes.size.toLong())
+    responseBody.use { it.write(bytes) }
+}
@@ -1,7 +1,11 @@
 package org.gradle.plugins.fsm.util
 
 import org.gradle.api.Project
+import java.io.ByteArrayOutputStream
+import java.io.File
 import java.net.URI
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
 
 object TestProjectUtils {
 
@@ -18,4 +22,28 @@ object TestProjectUtils {
         }
     }
 
+    /**
+     * Returns the content of a zip file with the given entries, e.g. of a jar in an FSM
+     */
+    fun zip(vararg entries: Pair<String, ByteArray>): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        ZipOutputStream(bytes).use { zip ->
+            for ((name, content) in entries) {
+                zip.putNextEntry(ZipEntry(name))
+                zip.write(content)
+                zip.closeEntry()
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    /**
+     * Writes an FSM with the given entries to the directory
+     */
+    fun fsm(dir: File, vararg entries: Pair<String, ByteArray>): File {
+        val fsm = dir.resolve("test.fsm")
+        fsm.writeBytes(zip(*entries))
+        return fsm
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+plugins {
+    id("de.espirit.firstspirit-module")
+}
+
+group = "de.espirit"
+version = "1.0.0"
+
+repositories {
+    maven(url = "https://artifactory.e-spirit.de/artifactory/repo") {
+        credentials {
+            username = "${System.getProperty("artifactory_username")}"
+            password = "${System.getProperty("artifactory_password")}"
+        }
+    }
+}
@@ -0,0 +1,4 @@
+include("subproject")
+include("nonreproducible")
+
+rootProject.name = "test-reproducible"
@@ -0,0 +1,5 @@
+plugins {
+    id("java-library")
+}
+
+version = "1.0.0"
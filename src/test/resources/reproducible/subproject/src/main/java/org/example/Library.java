@@ -0,0 +1,9 @@
+package org.example;
+
+public class Library {
+
+    public String getName() {
+        return "library";
+    }
+
+}
@@ -0,0 +1,382 @@
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import java.util.jar.Manifest
+
+/**
+ * Performance test setup for the plugin as a whole, applied from the root build script.
+ *
+ * - `generatePerformanceBuild` generates a large multi-project FSM build into `build/performance/large-build`,
+ *   modelled on `test-projects/multiple-webapps-kotlin`. The size is configured with the project properties
+ *   `perfLibraries`, `perfWebApps`, `perfComponents` and `perfDependencies`.
+ * - `profilePerformanceBuild` runs the `gradle-profiler` scenarios of `fsm.scenarios` against the generated build.
+ *   `gradle-profiler` has to be on the `PATH`.
+ * - `checkPerformanceBaseline` compares the results with the baseline in `baselines/benchmark.csv` and fails if a
+ *   scenario is slower than the baseline by more than `perfTolerance` percent (default 10), or if no baseline has
+ *   been recorded yet.
+ * - `recordPerformanceBaseline` replaces the baseline with the latest results.
+ */
+
+val performanceDir = layout.buildDirectory.dir("performance")
+val largeBuildDir = performanceDir.map { it.dir("large-build") }
+val profilerOutputDir = performanceDir.map { it.dir("profile-out") }
+val baselineFile = layout.projectDirectory.file("test-projects/performance/baselines/benchmark.csv")
+
+abstract class GeneratePerformanceBuild : DefaultTask() {
+
+    @get:Input
+    abstract val libraries: Property<Int>
+
+    @get:Input
+    abstract val webApps: Property<Int>
+
+    @get:Input
+    abstract val componentsPerLibrary: Property<Int>
+
+    @get:Input
+    abstract val externalDependencies: Property<Int>
+
+    @get:Input
+    abstract val pluginBuildDir: Property<String>
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @TaskAction
+    fun generate() {
+        val root = outputDir.get().asFile
+        root.deleteRecursively()
+        root.mkdirs()
+
+        val libraryNames = (0 until libraries.get()).map { "lib%03d".format(it) }
+        val webAppNames = (0 until webApps.get()).map { "web%03d".format(it) }
+        val externals = (0 until externalDependencies.get()).map { "artifact%03d".format(it) }
+
+        writeRepository(root.resolve("repository"), externals)
+
+        root.resolve("settings.gradle.kts").writeText("""
+            |pluginManagement {
+            |    repositories {
+            |        val artifactory_hosting_username: String by settings
+            |        val artifactory_hosting_password: String by settings
+            |        maven(url = "https://artifactory.e-spirit.hosting/artifactory/repo/") {
+            |            credentials {
+            |                username = artifactory_hosting_username
+            |                password = artifactory_hosting_password
+            |            }
+            |        }
+            |    }
+            |}
+            |
+            |rootProject.name = "large-build"
+            |
+            |include(${(listOf("fsm") + libraryNames + webAppNames).joinToString(", ") { "\"$it\"" }})
+            |includeBuild("${pluginBuildDir.get().replace("\\", "/")}")
+            |""".trimMargin())
+
+        root.resolve("build.gradle.kts").writeText("""
+            |plugins {
+            |    id("base")
+            |}
+            |
+            |allprojects {
+            |    version = "0.0.1"
+            |    repositories {
+            |        maven(url = rootDir.resolve("repository"))
+            |        maven(url = "https://artifactory.e-spirit.hosting/artifactory/repo/") {
+            |            credentials {
+            |                username = property("artifactory_hosting_username") as String
+            |                password = property("artifactory_hosting_password") as String
+            |            }
+            |        }
+            |    }
+            |}
+            |""".trimMargin())
+
+        libraryNames.forEachIndexed { i, name ->
+            val dependencies = mutableListOf<String>()
+            if (i > 0) {
+                // A dependency tree between the libraries, so ABI changes ripple through the build
+                dependencies += "api(project(\":${libraryNames[(i - 1) / 2]}\"))"
+            }
+            dependencies += externalsOf(externals, i, 3).map { "implementation(\"$it\")" }
+            writeSubproject(root.resolve(name), "java-library", dependencies)
+            writeLibrarySources(root.resolve(name), name)
+        }
+
+        webAppNames.forEachIndexed { i, name ->
+            val dependencies = mutableListOf("compileOnly(\"$FS_RUNTIME\")")
+            dependencies += "implementation(project(\":${libraryNames[i % libraryNames.size]}\"))"
+            dependencies += "implementation(project(\":${libraryNames[(i * 7 + 3) % libraryNames.size]}\"))"
+            dependencies += externalsOf(externals, i, 5).map { "implementation(\"$it\")" }
+            writeSubproject(root.resolve(name), "java", dependencies)
+            writeSource(root.resolve(name), "bench/$name/Servlet.java", """
+                |package bench.$name;
+                |
+                |public class Servlet {
+                |    public String name() {
+                |        return "$name";
+                |    }
+                |}
+                |""".trimMargin())
+            writeFile(root.resolve("$name/src/main/fsm-resources/$name/web.xml"), """
+                |<?xml version="1.0" encoding="UTF-8"?>
+                |<web-app xmlns="http://java.sun.com/xml/ns/javaee" version="3.0">
+                |    <display-name>$name</display-name>
+                |</web-app>
+                |""".trimMargin())
+        }
+
+        writeFsmProject(root.resolve("fsm"), libraryNames, webAppNames, externals)
+    }
+
+    private fun writeFsmProject(dir: File, libraryNames: List<String>, webAppNames: List<String>,
+                                externals: List<String>) {
+        val configurations = listOf("fsModuleCompile", "fsServerCompile", "fsWebCompile")
+        val dependencies = mutableListOf("compileOnly(\"$FS_RUNTIME\")")
+        libraryNames.forEachIndexed { i, name ->
+            dependencies += "${configurations[i % configurations.size]}(project(\":$name\"))"
+        }
+        externals.forEachIndexed { i, artifact ->
+            dependencies += "${configurations[i % configurations.size]}(\"$artifact\")"
+        }
+
+        dir.mkdirs()
+        dir.resolve("build.gradle.kts").writeText("""
+            |plugins {
+            |    id("de.espirit.firstspirit-module")
+            |}
+            |
+            |dependencies {
+            |${dependencies.joinToString("\n") { "    $it" }}
+            |}
+            |
+            |firstSpiritModule {
+            |    moduleName = "Large Build"
+            |${webAppNames.joinToString("\n") { "    webAppComponent(\"${webAppClass(it)}\", project(\":$it\"))" }}
+            |}
+            |""".trimMargin())
+
+        for (webApp in webAppNames) {
+            val className = webAppClass(webApp)
+            writeSource(dir, "bench/fsm/$className.java", """
+                |package bench.fsm;
+                |
+                |import com.espirit.moddev.components.annotations.WebAppComponent;
+                |import de.espirit.firstspirit.module.WebApp;
+                |import de.espirit.firstspirit.module.WebEnvironment;
+                |import de.espirit.firstspirit.module.descriptor.WebAppDescriptor;
+                |
+                |@WebAppComponent(name = "$className", webXml = "$webApp/web.xml")
+                |public class $className implements WebApp {
+                |    @Override
+                |    public void createWar() {
+                |    }
+                |
+                |    @Override
+                |    public void init(WebAppDescriptor webAppDescriptor, WebEnvironment webEnvironment) {
+                |    }
+                |
+                |    @Override
+                |    public void installed() {
+                |    }
+                |
+                |    @Override
+                |    public void uninstalling() {
+                |    }
+                |
+                |    @Override
+                |    public void updated(String s) {
+                |    }
+                |}
+                |""".trimMargin())
+        }
+
+        for (i in 0 until FSM_RESOURCES) {
+            writeFile(dir.resolve("src/main/fsm-resources/resources/resource$i.txt"), "resource $i")
+        }
+        // Edited by the fsm-resources scenario
+        writeFile(dir.resolve("src/main/fsm-resources/config/module.properties"), "module.name=Large Build\n")
+    }
+
+    private fun writeLibrarySources(dir: File, name: String) {
+        writeSource(dir, "bench/$name/Library.java", """
+            |package bench.$name;
+            |
+            |public class Library {
+            |    public String name() {
+            |        return "$name";
+            |    }
+            |}
+            |""".trimMargin())
+        for (i in 0 until componentsPerLibrary.get()) {
+            writeSource(dir, "bench/$name/Component$i.java", """
+                |package bench.$name;
+                |
+                |import com.espirit.moddev.components.annotations.PublicComponent;
+                |
+                |@PublicComponent(name = "$name-Component$i", displayName = "Component $i of $name")
+                |public class Component$i {
+                |}
+                |""".trimMargin())
+        }
+    }
+
+    private fun writeSubproject(dir: File, plugin: String, dependencies: List<String>) {
+        writeFile(dir.resolve("build.gradle.kts"), """
+            |plugins {
+            |    `$plugin`
+            |}
+            |
+            |dependencies {
+            |    compileOnly("com.espirit.moddev.components:annotations:$ANNOTATIONS_VERSION")
+            |${dependencies.joinToString("\n") { "    $it" }}
+            |}
+            |""".trimMargin())
+    }
+
+    /**
+     * Writes a Maven repository with one jar for each external dependency. Each artifact depends on the
+     * following one, so the builds also resolve transitive dependencies.
+     */
+    private fun writeRepository(repository: File, externals: List<String>) {
+        externals.forEachIndexed { i, name ->
+            val dir = repository.resolve("$EXTERNAL_GROUP/$name/1.0".replace('.', '/'))
+            dir.mkdirs()
+            val dependency = externals.getOrNull(i + 1)?.let {
+                """
+                |    <dependencies>
+                |        <dependency>
+                |            <groupId>$EXTERNAL_GROUP</groupId>
+                |            <artifactId>$it</artifactId>
+                |            <version>1.0</version>
+                |        </dependency>
+                |    </dependencies>
+                |""".trimMargin()
+            } ?: ""
+            dir.resolve("$name-1.0.pom").writeText("""
+                |<?xml version="1.0" encoding="UTF-8"?>
+                |<project xmlns="http://maven.apache.org/POM/4.0.0">
+                |    <modelVersion>4.0.0</modelVersion>
+                |    <groupId>$EXTERNAL_GROUP</groupId>
+                |    <artifactId>$name</artifactId>
+                |    <version>1.0</version>
+                |$dependency
+                |</project>
+                |""".trimMargin())
+            JarOutputStream(dir.resolve("$name-1.0.jar").outputStream(), Manifest().apply {
+                mainAttributes.putValue("Manifest-Version", "1.0")
+            }).use { jar ->
+                jar.putNextEntry(JarEntry("$EXTERNAL_GROUP/$name/data.txt".replace('.', '/')))
+                // Some payload, so the archive writing is measured as well
+                jar.write(ByteArray(16 * 1024) { (it * 31 + i).toByte() })
+            }
+        }
+    }
+
+    private fun externalsOf(externals: List<String>, index: Int, count: Int): List<String> {
+        if (externals.isEmpty()) {
+            return emptyList()
+        }
+        return (0 until count).map { "$EXTERNAL_GROUP:${externals[(index * count + it) % externals.size]}:1.0" }
+    }
+
+    private fun webAppClass(webApp: String): String {
+        return "WebApp" + webApp.removePrefix("web")
+    }
+
+    private fun writeSource(projectDir: File, path: String, content: String) {
+        writeFile(projectDir.resolve("src/main/java/$path"), content)
+    }
+
+    private fun writeFile(file: File, content: String) {
+        file.parentFile.mkdirs()
+        file.writeText(content)
+    }
+
+    companion object {
+        const val FS_RUNTIME = "de.espirit.firstspirit:fs-isolated-runtime:5.2.251108"
+        const val ANNOTATIONS_VERSION = "3.3.0"
+        const val EXTERNAL_GROUP = "bench.external"
+        const val FSM_RESOURCES = 200
+    }
+
+}
+
+val generatePerformanceBuild by tasks.registering(GeneratePerformanceBuild::class) {
+    group = "performance"
+    description = "Generates a large multi-project FSM build for the gradle-profiler scenarios."
+    libraries.set((findProperty("perfLibraries") as String? ?: "120").toInt())
+    webApps.set((findProperty("perfWebApps") as String? ?: "30").toInt())
+    componentsPerLibrary.set((findProperty("perfComponents") as String? ?: "5").toInt())
+    externalDependencies.set((findProperty("perfDependencies") as String? ?: "300").toInt())
+    pluginBuildDir.set(rootDir.absolutePath)
+    outputDir.set(largeBuildDir)
+}
+
+val profilePerformanceBuild by tasks.registering(Exec::class) {
+    group = "performance"
+    description = "Runs the gradle-profiler scenarios against the generated large build."
+    dependsOn(generatePerformanceBuild)
+    executable = "gradle-profiler"
+    args("--benchmark",
+        "--project-dir", largeBuildDir.get().asFile.absolutePath,
+        "--scenario-file", file("test-projects/performance/fsm.scenarios").absolutePath,
+        "--output-dir", profilerOutputDir.get().asFile.absolutePath)
+    (findProperty("perfScenarios") as String?)?.let { args(it.split(",")) }
+}
+
+/**
+ * Reads the mean execution time of the measured builds of each scenario from a `gradle-profiler` CSV file.
+ * The first row contains the scenario names, the measured builds are rows starting with `measured build`.
+ */
+fun readBenchmark(file: File): Map<String, Double> {
+    val rows = file.readLines().map { it.split(",") }
+    val scenarios = rows.first().drop(1)
+    val measured = rows.filter { it.first().startsWith("measured build") }.map { row -> row.drop(1) }
+    return scenarios.withIndex().associate { (column, scenario) ->
+        scenario to measured.mapNotNull { it.getOrNull(column)?.toDoubleOrNull() }.average()
+    }
+}
+
+val checkPerformanceBaseline by tasks.registering {
+    group = "performance"
+    description = "Compares the gradle-profiler results with the stored baseline."
+    val results = profilerOutputDir.map { it.file("benchmark.csv") }
+    val baseline = baselineFile
+    val tolerance = (findProperty("perfTolerance") as String? ?: "10").toDouble()
+    doLast {
+        val resultFile = results.get().asFile
+        if (!resultFile.exists()) {
+            throw GradleException("No gradle-profiler results found at '$resultFile', run 'profilePerformanceBuild' first.")
+        }
+        if (!baseline.asFile.exists()) {
+            throw GradleException("No baseline found at '${baseline.asFile}'. Record it with 'profilePerformanceBuild " +
+                "recordPerformanceBaseline' on the performance agent, see test-projects/performance/baselines/README.md.")
+        }
+        val expected = readBenchmark(baseline.asFile)
+        val regressions = mutableListOf<String>()
+        for ((scenario, mean) in readBenchmark(resultFile)) {
+            val baselineMean = expected[scenario]
+            if (baselineMean == null || baselineMean.isNaN()) {
+                logger.lifecycle("$scenario: %.0f ms (no baseline)".format(mean))
+                continue
+            }
+            val change = (mean - baselineMean) / baselineMean * 100
+            logger.lifecycle("$scenario: %.0f ms, baseline %.0f ms (%+.1f%%)".format(mean, baselineMean, change))
+            if (change > tolerance) {
+                regressions += scenario
+            }
+        }
+        if (regressions.isNotEmpty()) {
+            throw GradleException("Scenarios slower than the baseline by more than $tolerance%: " +
+                regressions.joinToString(", "))
+        }
+    }
+}
+
+val recordPerformanceBaseline by tasks.registering(Copy::class) {
+    group = "performance"
+    description = "Stores the latest gradle-profiler results as the baseline."
+    from(profilerOutputDir.map { it.file("benchmark.csv") })
+    into(baselineFile.asFile.parentFile)
+}